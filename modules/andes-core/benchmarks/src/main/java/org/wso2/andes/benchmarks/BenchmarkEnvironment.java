@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.server.store.MessageMetaDataType;
+import org.wso2.andes.store.rdbms.h2.H2MemAndesContextStoreImpl;
+import org.wso2.andes.store.rdbms.h2.H2MemMessageStoreImpl;
+import org.wso2.andes.subscription.SubscriptionStore;
+import org.wso2.carbon.utils.ServerConstants;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingException;
+
+/**
+ * Sets up the parts of the broker the benchmarked components depend on without starting a broker. Configuration is
+ * read from an empty broker.xml so that every component uses its default values and the message store is the H2
+ * in-memory store.
+ */
+public final class BenchmarkEnvironment {
+
+    /**
+     * JNDI name of the data source the H2 in-memory message and context stores connect to
+     */
+    private static final String H2_MEM_JNDI_LOOKUP_NAME = "WSO2MBInMemoryStoreDB";
+
+    private static final String H2_MEM_URL = "jdbc:h2:mem:benchmark_store;DB_CLOSE_ON_EXIT=FALSE";
+
+    private static boolean configurationInitialized = false;
+
+    private static MessageStore messageStore;
+
+    private BenchmarkEnvironment() {
+    }
+
+    /**
+     * Initialize {@link AndesConfigurationManager} with default values. This must be called before any class reading
+     * configuration is loaded.
+     *
+     * @throws AndesException if the configuration could not be read
+     */
+    public static synchronized void initializeConfiguration() throws AndesException {
+        if (configurationInitialized) {
+            return;
+        }
+        if (null == System.getProperty(ServerConstants.CARBON_HOME)) {
+            System.setProperty(ServerConstants.CARBON_HOME, createCarbonHome().getAbsolutePath());
+        }
+        AndesConfigurationManager.initialize(0);
+        configurationInitialized = true;
+    }
+
+    /**
+     * Create and initialize the H2 in-memory message store along with an in-memory context store. Both are created
+     * once, shared and set to the {@link AndesContext}.
+     *
+     * @return in-memory message store
+     * @throws AndesException if the stores could not be initialized
+     */
+    public static synchronized MessageStore getInMemoryMessageStore() throws AndesException {
+        if (null == messageStore) {
+            initializeConfiguration();
+            bindInMemoryDataSource();
+            AndesContextStore contextStore = new H2MemAndesContextStoreImpl();
+            contextStore.init(null);
+            MessageStore store = new H2MemMessageStoreImpl();
+            store.initializeMessageStore(contextStore, null);
+            AndesContext.getInstance().setAndesContextStore(contextStore);
+            AndesContext.getInstance().setMessageStore(store);
+            messageStore = store;
+        }
+        return messageStore;
+    }
+
+    /**
+     * Initialize the {@link MessagingEngine} with the in-memory message store and a subscription store of stub
+     * subscriptions. Components reading message content through the engine use the in-memory store after this.
+     *
+     * @return subscription store used by the engine
+     * @throws AndesException if the engine could not be initialized
+     */
+    public static synchronized SubscriptionStore initializeMessagingEngine() throws AndesException {
+        SubscriptionStore subscriptionStore = AndesContext.getInstance().getSubscriptionStore();
+        if (null == subscriptionStore) {
+            MessageStore store = getInMemoryMessageStore();
+            subscriptionStore = new SubscriptionStore();
+            AndesContext.getInstance().setSubscriptionStore(subscriptionStore);
+            MessagingEngine.getInstance().initialise(store, subscriptionStore);
+        }
+        return subscriptionStore;
+    }
+
+    /**
+     * Create metadata of an AMQP message
+     *
+     * @param messageID   id of the message
+     * @param destination queue or topic name
+     * @param isTopic     true if the message is published to a topic
+     * @return message metadata
+     */
+    public static AndesMessageMetadata createMetadata(long messageID, String destination, boolean isTopic) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setMessageID(messageID);
+        metadata.setDestination(destination);
+        metadata.setStorageQueueName(destination);
+        metadata.setTopic(isTopic);
+        metadata.setMetaDataType(MessageMetaDataType.META_DATA_0_8);
+        metadata.setArrivalTime(System.currentTimeMillis());
+        metadata.setMetadata(("\u0002:MessageID=" + messageID + ",persistent=false,Topic=" + isTopic
+                + ",Destination=" + destination + ",Persistant=false,MessageContentLength=0").getBytes());
+        return metadata;
+    }
+
+    /**
+     * Create a message with content in chunks of the given size
+     *
+     * @param messageID   id of the message
+     * @param destination queue or topic name
+     * @param isTopic     true if the message is published to a topic
+     * @param content     message content
+     * @param chunkSize   maximum size of a content chunk
+     * @return message with metadata and content
+     */
+    public static AndesMessage createMessage(long messageID, String destination, boolean isTopic, byte[] content,
+                                             int chunkSize) {
+        AndesMessageMetadata metadata = createMetadata(messageID, destination, isTopic);
+        metadata.setMessageContentLength(content.length);
+        AndesMessage message = new AndesMessage(metadata);
+        for (int offset = 0; offset < content.length; offset = offset + chunkSize) {
+            int length = Math.min(chunkSize, content.length - offset);
+            byte[] chunk = new byte[length];
+            System.arraycopy(content, offset, chunk, 0, length);
+            AndesMessagePart part = new AndesMessagePart();
+            part.setMessageID(messageID);
+            part.setOffSet(offset);
+            part.setData(chunk);
+            part.setDataLength(length);
+            message.addMessagePart(part);
+        }
+        return message;
+    }
+
+    /**
+     * Bind an H2 in-memory data source to the JNDI name the in-memory message store looks up
+     */
+    private static void bindInMemoryDataSource() throws AndesException {
+        if (null == System.getProperty(Context.INITIAL_CONTEXT_FACTORY)) {
+            System.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.naming.java.javaURLContextFactory");
+            System.setProperty(Context.URL_PKG_PREFIXES, "org.apache.naming");
+        }
+        try {
+            InitialContext initialContext = new InitialContext();
+            try {
+                initialContext.createSubcontext("jdbc");
+            } catch (NameAlreadyBoundException ignored) {
+                // Sub context is created once per JVM
+            }
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL(H2_MEM_URL);
+            initialContext.rebind(H2_MEM_JNDI_LOOKUP_NAME, dataSource);
+        } catch (NamingException e) {
+            throw new AndesException("Error while binding in-memory data source for benchmarks", e);
+        }
+    }
+
+    /**
+     * Create a carbon home with an empty broker.xml
+     */
+    private static File createCarbonHome() throws AndesException {
+        try {
+            File carbonHome = Files.createTempDirectory("andes-benchmarks").toFile();
+            File configDirectory = new File(carbonHome, "repository" + File.separator + "conf");
+            if (!configDirectory.mkdirs()) {
+                throw new AndesException("Could not create configuration directory " + configDirectory);
+            }
+            Writer writer = new FileWriter(new File(configDirectory, "broker.xml"));
+            try {
+                writer.write("<broker/>");
+            } finally {
+                writer.close();
+            }
+            return carbonHome;
+        } catch (IOException e) {
+            throw new AndesException("Error while creating configuration for benchmarks", e);
+        }
+    }
+}
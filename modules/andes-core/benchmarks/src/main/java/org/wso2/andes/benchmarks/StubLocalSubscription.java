@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks;
+
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.kernel.AndesContent;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.LocalSubscription;
+import org.wso2.andes.subscription.BasicSubscription;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local subscription which is not bound to a transport. Messages sent to it are counted and dropped. A subscription
+ * accepts messages while it has credit, credit is spent per message and given back by {@link #ackReceived(long)} as
+ * a client would when acknowledging.
+ */
+public class StubLocalSubscription extends BasicSubscription implements LocalSubscription {
+
+    private final UUID channelID = UUID.randomUUID();
+
+    private final AtomicInteger credit;
+
+    private final AtomicLong receivedMessageCount = new AtomicLong();
+
+    private volatile boolean active = true;
+
+    /**
+     * Create a subscription
+     *
+     * @param destination    subscribed queue or topic
+     * @param isBoundToTopic true if subscribed to a topic
+     * @param nodeID         id of the node the subscription is at
+     * @param credit         number of messages the subscription accepts before acknowledging
+     */
+    public StubLocalSubscription(String destination, boolean isBoundToTopic, String nodeID, int credit) {
+        super(null, destination, isBoundToTopic, false, false, nodeID, System.currentTimeMillis(), destination,
+                null, isBoundToTopic ? AMQPUtils.TOPIC_EXCHANGE_NAME : AMQPUtils.DIRECT_EXCHANGE_NAME, null, null,
+                true);
+        setSubscriptionType(SubscriptionType.AMQP);
+        this.credit = new AtomicInteger(credit);
+    }
+
+    /**
+     * @return number of messages sent to the subscription
+     */
+    public long getReceivedMessageCount() {
+        return receivedMessageCount.get();
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    @Override
+    public void sendMessageToSubscriber(AndesMessageMetadata messageMetadata, AndesContent content) {
+        credit.decrementAndGet();
+        receivedMessageCount.incrementAndGet();
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public UUID getChannelID() {
+        return channelID;
+    }
+
+    @Override
+    public boolean hasRoomToAcceptMessages() {
+        return credit.get() > 0;
+    }
+
+    @Override
+    public int getRemainingCredit() {
+        return Math.max(0, credit.get());
+    }
+
+    @Override
+    public boolean hasInterest(AndesMessageMetadata messageMetadata) {
+        return true;
+    }
+
+    @Override
+    public void ackReceived(long messageID) {
+        credit.incrementAndGet();
+    }
+
+    @Override
+    public void msgRejectReceived(long messageID) {
+        credit.incrementAndGet();
+    }
+
+    @Override
+    public boolean forceDisconnect(String reason) {
+        active = false;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        active = false;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.coordination;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.ClusterManager;
+import org.wso2.andes.server.cluster.coordination.BlockReservingMessageIdGenerator;
+import org.wso2.andes.server.cluster.coordination.TimeStampBasedMessageIdGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures message ID generation of a standalone node. The lock free {@link BlockReservingMessageIdGenerator} is
+ * compared with the synchronized {@link TimeStampBasedMessageIdGenerator}, one ID at a time from one and four
+ * threads, and when reserving a block of IDs for a batch of messages as the message pre-processor does.
+ * <p/>
+ * The time stamp based generator does not produce unique IDs above 1024 IDs per millisecond, so only its cost is
+ * comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageIdGeneratorBenchmark {
+
+    /**
+     * Number of IDs reserved at once, the size of a batch of published messages
+     */
+    private static final int BLOCK_SIZE = 100;
+
+    private TimeStampBasedMessageIdGenerator timeStampBasedGenerator;
+
+    private BlockReservingMessageIdGenerator blockReservingGenerator;
+
+    @Setup
+    public void setUp() {
+        if (null == ClusterResourceHolder.getInstance().getClusterManager()) {
+            // Standalone cluster manager, which gives node ID 0
+            ClusterResourceHolder.getInstance().setClusterManager(new ClusterManager());
+        }
+        timeStampBasedGenerator = new TimeStampBasedMessageIdGenerator();
+        blockReservingGenerator = new BlockReservingMessageIdGenerator();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long timeStampBased1() {
+        return timeStampBasedGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long timeStampBased4() {
+        return timeStampBasedGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long blockReserving1() {
+        return blockReservingGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long blockReserving4() {
+        return blockReservingGenerator.getNextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BLOCK_SIZE)
+    public long blockReservingBatch() {
+        long id = blockReservingGenerator.reserveIds(BLOCK_SIZE);
+        for (int i = 1; i < BLOCK_SIZE; i++) {
+            id = BlockReservingMessageIdGenerator.nextId(id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.coordination;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.AddMessageIdProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.PollFirstMessageIdProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a slot submission followed by a fresh slot assignment on the Hazelcast slot ID map of a queue with many
+ * pending message IDs. The submission adds a message ID and the assignment takes the lowest one, so the number of
+ * pending IDs stays the same.
+ * <p/>
+ * Read-modify-write gets the whole ID set of the queue, changes it and puts it back, as the slot manager did before
+ * entry processors. The entry processor variants only send the processor to the member owning the queue. A single
+ * member is started, hence the numbers show serialization cost rather than network cost. With the default binary
+ * in memory format the owning member deserializes and serializes the set for the processor as well, so only the
+ * network transfer is saved. With the object in memory format the processor also skips most of that work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotIdMapBenchmark {
+
+    private static final String QUEUE_NAME = "benchmarkQueue";
+
+    private static final String SLOT_ID_MAP_NAME = "benchmarkSlotIdMap";
+
+    @Param({"10000"})
+    public int pendingMessageIdCount;
+
+    @Param({"BINARY", "OBJECT"})
+    public String inMemoryFormat;
+
+    private HazelcastInstance hazelcastInstance;
+
+    private IMap<String, SortedLongArrayWrapper> slotIdMap;
+
+    private long nextMessageId;
+
+    @Setup
+    public void setUp() {
+        Config config = new Config();
+        JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+        joinConfig.getMulticastConfig().setEnabled(false);
+        joinConfig.getTcpIpConfig().setEnabled(false);
+        config.getMapConfig(SLOT_ID_MAP_NAME).setInMemoryFormat(InMemoryFormat.valueOf(inMemoryFormat));
+        hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+        slotIdMap = hazelcastInstance.getMap(SLOT_ID_MAP_NAME);
+
+        SortedLongArrayWrapper messageIds = new SortedLongArrayWrapper();
+        for (nextMessageId = 1; nextMessageId <= pendingMessageIdCount; nextMessageId++) {
+            messageIds.add(nextMessageId * 1024);
+        }
+        slotIdMap.put(QUEUE_NAME, messageIds);
+    }
+
+    @TearDown
+    public void tearDown() {
+        hazelcastInstance.shutdown();
+    }
+
+    @Benchmark
+    public long submitAndAssignReadModifyWrite() {
+        SortedLongArrayWrapper messageIds = slotIdMap.get(QUEUE_NAME);
+        messageIds.add(nextMessageId++ * 1024);
+        slotIdMap.set(QUEUE_NAME, messageIds);
+
+        messageIds = slotIdMap.get(QUEUE_NAME);
+        long lowestMessageId = messageIds.pollFirst();
+        slotIdMap.set(QUEUE_NAME, messageIds);
+        return lowestMessageId;
+    }
+
+    @Benchmark
+    public Object submitAndAssignEntryProcessor() {
+        slotIdMap.executeOnKey(QUEUE_NAME, new AddMessageIdProcessor(nextMessageId++ * 1024));
+        return slotIdMap.executeOnKey(QUEUE_NAME, new PollFirstMessageIdProcessor());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.framing.BasicContentHeaderProperties;
+import org.wso2.andes.framing.ContentHeaderBody;
+import org.wso2.andes.framing.FieldTable;
+import org.wso2.andes.server.filter.BooleanExpression;
+import org.wso2.andes.server.filter.SelectorCompiler;
+import org.wso2.andes.server.filter.jms.selector.SelectorParser;
+import org.wso2.andes.server.message.AMQMessageHeader;
+import org.wso2.andes.server.message.ContentHeaderBodyAdapter;
+import org.wso2.andes.server.queue.Filterable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching messages against a JMS selector with the interpreted expression tree and with the tree compiled
+ * by {@link SelectorCompiler}. Messages carry a region, a priority and a weight, so that each operand of the
+ * selectors decides the outcome for a different share of them. Headers are kept in an AMQP field table, as they are
+ * in published messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorBenchmark {
+
+    private static final String[] REGIONS = {"EU", "US", "APAC", "LATAM"};
+
+    /**
+     * Number of distinct messages matched in turn
+     */
+    private static final int MESSAGE_COUNT = 1024;
+
+    @Param({"region = 'EU' AND priority > 5",
+            "weight > 10 AND priority > 5 AND region = 'EU'",
+            "region IN ('EU', 'US') OR (priority BETWEEN 3 AND 7 AND region LIKE 'A%')"})
+    public String selector;
+
+    private BooleanExpression interpreted;
+
+    private BooleanExpression compiled;
+
+    private HeaderMessage[] messages;
+
+    private int nextMessage;
+
+    @Setup
+    public void setUp() throws Exception {
+        interpreted = new SelectorParser().parse(selector);
+        compiled = SelectorCompiler.compile(new SelectorParser().parse(selector));
+
+        messages = new HeaderMessage[MESSAGE_COUNT];
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            messages[i] = new HeaderMessage()
+                    .withHeader("region", REGIONS[i % REGIONS.length])
+                    .withHeader("priority", i % 10)
+                    .withHeader("weight", (i % 20) * 1.5);
+        }
+    }
+
+    @Benchmark
+    public boolean interpreted() {
+        return interpreted.matches(nextMessage());
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.matches(nextMessage());
+    }
+
+    private HeaderMessage nextMessage() {
+        nextMessage = (nextMessage + 1) & (MESSAGE_COUNT - 1);
+        return messages[nextMessage];
+    }
+
+    /**
+     * Filterable AMQP message. Headers are read through the broker's adapter of the content header, the same way
+     * selectors of AMQP subscriptions read them.
+     */
+    private static class HeaderMessage implements Filterable {
+
+        private final FieldTable headers = new FieldTable();
+
+        private final AMQMessageHeader messageHeader;
+
+        HeaderMessage() {
+            BasicContentHeaderProperties properties = new BasicContentHeaderProperties();
+            properties.setHeaders(headers);
+            ContentHeaderBody contentHeaderBody = new ContentHeaderBody();
+            contentHeaderBody.setProperties(properties);
+            messageHeader = new ContentHeaderBodyAdapter(contentHeaderBody);
+        }
+
+        HeaderMessage withHeader(String name, Object value) {
+            headers.setObject(name, value);
+            return this;
+        }
+
+        @Override
+        public AMQMessageHeader getMessageHeader() {
+            return messageHeader;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return true;
+        }
+
+        @Override
+        public boolean isRedelivered() {
+            return false;
+        }
+    }
+}
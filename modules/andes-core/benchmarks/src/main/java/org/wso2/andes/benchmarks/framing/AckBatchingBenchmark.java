@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.framing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.codec.AMQDecoder;
+import org.wso2.andes.framing.AMQDataBlock;
+import org.wso2.andes.framing.AMQFrame;
+import org.wso2.andes.framing.BasicAckBody;
+import org.wso2.andes.framing.MethodRegistry;
+import org.wso2.andes.framing.ProtocolVersion;
+import org.wso2.andes.protocol.AMQVersionAwareProtocolSession;
+import org.wso2.andes.server.ack.UnacknowledgedMessageMap;
+import org.wso2.andes.server.ack.UnacknowledgedMessageMapImpl;
+import org.wso2.andes.server.message.ServerMessage;
+import org.wso2.andes.server.queue.QueueEntry;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the protocol cost of acknowledging consumed messages one by one against acknowledging them in batches with
+ * multiple acknowledgements, as the 0-8/0-9 client does when qpid.session.ack_batch_size is set. For each
+ * acknowledgement the client encodes a basic.ack frame and the broker decodes it and collects the acknowledged
+ * messages from the unacknowledged messages of the channel. An operation is one consumed message.
+ * <p/>
+ * Passing each acknowledged message to the kernel is done once per message whatever the batch size, hence it is not
+ * measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AckBatchingBenchmark {
+
+    /**
+     * Messages delivered to the channel and consumed in one invocation
+     */
+    static final int MESSAGE_COUNT = 1000;
+
+    private static final int CHANNEL_ID = 1;
+
+    @Param({"1", "10", "100"})
+    public int ackBatchSize;
+
+    private MethodRegistry methodRegistry;
+
+    private AMQDecoder decoder;
+
+    private UnacknowledgedMessageMap unacknowledgedMessages;
+
+    private QueueEntry queueEntry;
+
+    private long nextDeliveryTag = 1;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.initializeConfiguration();
+        methodRegistry = MethodRegistry.getMethodRegistry(ProtocolVersion.v0_91);
+        decoder = new AMQDecoder(false, (AMQVersionAwareProtocolSession) Proxy.newProxyInstance(
+                AMQVersionAwareProtocolSession.class.getClassLoader(),
+                new Class[]{AMQVersionAwareProtocolSession.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getMethodRegistry".equals(method.getName())) {
+                            return methodRegistry;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+        unacknowledgedMessages = new UnacknowledgedMessageMapImpl(MESSAGE_COUNT, null);
+        queueEntry = createQueueEntry();
+    }
+
+    /**
+     * Deliver the messages consumed by the next invocation
+     */
+    @Setup(Level.Invocation)
+    public void deliverMessages() {
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            unacknowledgedMessages.add(nextDeliveryTag, queueEntry);
+            nextDeliveryTag++;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGE_COUNT)
+    public int acknowledge() throws Exception {
+        long firstDeliveryTag = nextDeliveryTag - MESSAGE_COUNT;
+        boolean multiple = ackBatchSize > 1;
+        int acknowledgedCount = 0;
+        for (int i = 1; i <= MESSAGE_COUNT; i++) {
+            if (i % ackBatchSize == 0 || i == MESSAGE_COUNT) {
+                acknowledgedCount = acknowledgedCount + acknowledge(firstDeliveryTag + i - 1, multiple);
+            }
+        }
+        return acknowledgedCount;
+    }
+
+    /**
+     * Send an acknowledgement from the client and handle it as the broker channel does
+     *
+     * @return number of messages acknowledged
+     */
+    private int acknowledge(long deliveryTag, boolean multiple) throws Exception {
+        java.nio.ByteBuffer frame = methodRegistry.createBasicAckBody(deliveryTag, multiple)
+                .generateFrame(CHANNEL_ID).toNioByteBuffer();
+
+        List<AMQDataBlock> dataBlocks = decoder.decodeBuffer(frame);
+        BasicAckBody ack = (BasicAckBody) ((AMQFrame) dataBlocks.get(0)).getBodyFrame();
+
+        Map<Long, QueueEntry> acknowledgedMessages = new LinkedHashMap<Long, QueueEntry>();
+        synchronized (unacknowledgedMessages) {
+            unacknowledgedMessages.collect(ack.getDeliveryTag(), ack.getMultiple(), acknowledgedMessages);
+            unacknowledgedMessages.remove(acknowledgedMessages);
+        }
+        return acknowledgedMessages.size();
+    }
+
+    /**
+     * Queue entry of an empty message, shared by all delivered messages
+     */
+    private static QueueEntry createQueueEntry() {
+        final ServerMessage message = (ServerMessage) Proxy.newProxyInstance(ServerMessage.class.getClassLoader(),
+                new Class[]{ServerMessage.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getSize".equals(method.getName())) {
+                            return 0L;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (QueueEntry) Proxy.newProxyInstance(QueueEntry.class.getClassLoader(),
+                new Class[]{QueueEntry.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if ("getMessage".equals(method.getName())) {
+                            return message;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
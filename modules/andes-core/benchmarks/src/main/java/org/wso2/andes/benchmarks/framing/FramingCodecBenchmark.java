@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.framing;
+
+import org.apache.mina.common.ByteBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.AMQException;
+import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.EncodingUtils;
+import org.wso2.andes.framing.FieldTable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding of {@link AMQShortString} and {@link FieldTable}, which carry exchange names, routing
+ * keys and application headers of every published and delivered message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FramingCodecBenchmark {
+
+    private static final String ROUTING_KEY = "sports.cricket.scores";
+
+    private static final String HEADER_PREFIX = "header";
+
+    /**
+     * Number of application headers in the field table
+     */
+    @Param({"5", "20"})
+    public int headerCount;
+
+    private AMQShortString shortString;
+
+    private ByteBuffer encodedShortString;
+
+    private FieldTable fieldTable;
+
+    private ByteBuffer encodedFieldTable;
+
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        shortString = new AMQShortString(ROUTING_KEY);
+        encodedShortString = ByteBuffer.allocate(EncodingUtils.encodedShortStringLength(shortString));
+        shortString.writeToBuffer(encodedShortString);
+        encodedShortString.flip();
+
+        fieldTable = createFieldTable();
+        encodedFieldTable = ByteBuffer.allocate((int) fieldTable.getEncodedSize() + 4);
+        fieldTable.writeToBuffer(encodedFieldTable);
+        encodedFieldTable.flip();
+
+        buffer = ByteBuffer.allocate(64 * 1024);
+    }
+
+    @Benchmark
+    public ByteBuffer encodeShortString() {
+        buffer.clear();
+        new AMQShortString(ROUTING_KEY).writeToBuffer(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public String decodeShortString() {
+        encodedShortString.rewind();
+        return AMQShortString.readFromBuffer(encodedShortString).asString();
+    }
+
+    @Benchmark
+    public ByteBuffer encodeFieldTable() {
+        buffer.clear();
+        createFieldTable().writeToBuffer(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public String decodeFieldTable() throws AMQException {
+        encodedFieldTable.rewind();
+        // Field tables are decoded lazily, reading a header decodes all of them
+        return EncodingUtils.readFieldTable(encodedFieldTable).getString(HEADER_PREFIX + 0);
+    }
+
+    private FieldTable createFieldTable() {
+        FieldTable table = new FieldTable();
+        for (int i = 0; i < headerCount; i++) {
+            switch (i % 3) {
+                case 0:
+                    table.setString(HEADER_PREFIX + i, "value" + i);
+                    break;
+                case 1:
+                    table.setInteger(HEADER_PREFIX + i, i);
+                    break;
+                default:
+                    table.setLong(HEADER_PREFIX + i, (long) i);
+            }
+        }
+        return table;
+    }
+}
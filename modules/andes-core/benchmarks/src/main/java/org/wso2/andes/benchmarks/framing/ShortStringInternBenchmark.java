@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.framing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.framing.AMQShortString;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures interning of {@link AMQShortString} and the destination short string cache of {@link AMQPUtils} with
+ * several threads using the same routing keys, as publisher and delivery threads of a broker do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ShortStringInternBenchmark {
+
+    /**
+     * Number of distinct routing keys
+     */
+    private static final int ROUTING_KEY_COUNT = 64;
+
+    private String[] routingKeys;
+
+    /**
+     * Short strings decoded from frames, which are equal to but not the same as the pooled ones
+     */
+    private AMQShortString[] decodedRoutingKeys;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        routingKeys = new String[ROUTING_KEY_COUNT];
+        decodedRoutingKeys = new AMQShortString[ROUTING_KEY_COUNT];
+        for (int i = 0; i < ROUTING_KEY_COUNT; i++) {
+            routingKeys[i] = "sports.cricket.scores." + i;
+            decodedRoutingKeys[i] = new AMQShortString(routingKeys[i]);
+        }
+    }
+
+    /**
+     * Baseline, a new short string for every conversion
+     */
+    @Benchmark
+    public AMQShortString createShortString() {
+        return new AMQShortString(routingKeys[nextIndex()]);
+    }
+
+    @Benchmark
+    public AMQShortString intern() {
+        return decodedRoutingKeys[nextIndex()].intern();
+    }
+
+    @Benchmark
+    public AMQShortString cachedShortString() {
+        return AMQPUtils.getShortString(routingKeys[nextIndex()]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % ROUTING_KEY_COUNT;
+        return next;
+    }
+}
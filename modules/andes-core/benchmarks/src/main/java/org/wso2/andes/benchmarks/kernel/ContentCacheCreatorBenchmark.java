@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.disruptor.delivery.ContentCacheCreator;
+import org.wso2.andes.kernel.disruptor.delivery.DeliveryEventData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading content of a batch of delivery events by {@link ContentCacheCreator}. Content is read from the
+ * in-memory store when it is not cached, as for queue messages, and from the content cache when the same message is
+ * delivered again, as for topic messages with many subscribers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentCacheCreatorBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final int MAX_CHUNK_SIZE = 65500;
+
+    private static final String QUEUE_NAME = "contentCacheQueue";
+
+    @Param({"1024", "131072"})
+    public int messageSize;
+
+    private MessageStore messageStore;
+
+    private ContentCacheCreator cachedContentCreator;
+
+    private List<DeliveryEventData> eventDataList;
+
+    private List<Long> storedMessageIDs;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initializeMessagingEngine();
+        messageStore = BenchmarkEnvironment.getInMemoryMessageStore();
+        byte[] content = new byte[messageSize];
+        List<AndesMessage> messages = new ArrayList<AndesMessage>(BATCH_SIZE);
+        eventDataList = new ArrayList<DeliveryEventData>(BATCH_SIZE);
+        storedMessageIDs = new ArrayList<Long>(BATCH_SIZE);
+        for (int i = 1; i <= BATCH_SIZE; i++) {
+            AndesMessage message = BenchmarkEnvironment.createMessage(i, QUEUE_NAME, false, content,
+                    MAX_CHUNK_SIZE);
+            messages.add(message);
+            DeliveryEventData eventData = new DeliveryEventData();
+            eventData.setMetadata(message.getMetadata());
+            eventDataList.add(eventData);
+            storedMessageIDs.add((long) i);
+        }
+        messageStore.storeMessages(messages);
+        cachedContentCreator = new ContentCacheCreator(MAX_CHUNK_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() throws AndesException {
+        messageStore.deleteMessages(QUEUE_NAME, storedMessageIDs, true);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void readFromStore() throws AndesException {
+        // A new creator starts with an empty cache
+        new ContentCacheCreator(MAX_CHUNK_SIZE).onEvent(eventDataList);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void readFromCache() throws AndesException {
+        cachedContentCreator.onEvent(eventDataList);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.PriorityMessageBuffer;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the read-but-undelivered buffers of {@link org.wso2.andes.kernel.MessageFlusher}. A batch of messages is
+ * buffered as a slot delivery worker would and then drained through the iterator as a delivery strategy would.
+ * <p/>
+ * The latency of a high priority message is sampled against a backlog of low priority messages which are read
+ * before it. Percentiles of the samples, e.g. p0.99, show how long the message waits behind the backlog.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBufferBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * FIFO is the buffer of normal queues, PRIORITY is the buffer of priority queues
+     */
+    @Param({"FIFO", "PRIORITY"})
+    public String bufferType;
+
+    /**
+     * Number of low priority messages in the buffer when a high priority message arrives
+     */
+    @Param({"10000"})
+    public int backlogSize;
+
+    private Set<AndesMessageMetadata> buffer;
+
+    private AndesMessageMetadata[] messages;
+
+    private Set<AndesMessageMetadata> backlog;
+
+    private AndesMessageMetadata highPriorityMessage;
+
+    @Setup
+    public void setUp() {
+        buffer = createBuffer();
+        Random random = new Random(42);
+        messages = new AndesMessageMetadata[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            messages[i] = BenchmarkEnvironment.createMetadata(i + 1, "benchmarkQueue", false);
+            messages[i].setPriority(random.nextInt(PriorityMessageBuffer.NUMBER_OF_PRIORITY_LANES));
+        }
+
+        backlog = createBuffer();
+        for (int i = 0; i < backlogSize; i++) {
+            AndesMessageMetadata message = BenchmarkEnvironment.createMetadata(i + 1, "benchmarkQueue", false);
+            message.setPriority(0);
+            backlog.add(message);
+        }
+        highPriorityMessage = BenchmarkEnvironment.createMetadata(backlogSize + 1, "benchmarkQueue", false);
+        highPriorityMessage.setPriority(PriorityMessageBuffer.NUMBER_OF_PRIORITY_LANES - 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void bufferAndDrain(Blackhole blackhole) {
+        for (AndesMessageMetadata message : messages) {
+            buffer.add(message);
+        }
+        Iterator<AndesMessageMetadata> iterator = buffer.iterator();
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Buffer a high priority message behind the low priority backlog and read the buffer as a delivery strategy
+     * would until the message is taken. The backlog is left in the buffer.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public AndesMessageMetadata highPriorityUnderBacklog() {
+        backlog.add(highPriorityMessage);
+        Iterator<AndesMessageMetadata> iterator = backlog.iterator();
+        while (iterator.hasNext()) {
+            AndesMessageMetadata message = iterator.next();
+            if (message == highPriorityMessage) {
+                iterator.remove();
+                return message;
+            }
+        }
+        return null;
+    }
+
+    private Set<AndesMessageMetadata> createBuffer() {
+        if ("PRIORITY".equals(bufferType)) {
+            return new PriorityMessageBuffer();
+        } else {
+            return new ConcurrentSkipListSet<AndesMessageMetadata>();
+        }
+    }
+}
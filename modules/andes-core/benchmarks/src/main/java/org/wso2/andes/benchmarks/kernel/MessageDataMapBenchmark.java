@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.andes.kernel.MessageData;
+import org.wso2.andes.kernel.MessageDataMap;
+import org.wso2.andes.kernel.MessageStatus;
+import org.wso2.andes.kernel.slot.Slot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares {@link MessageDataMap} with a {@link ConcurrentHashMap} keyed by boxed message IDs as the message
+ * tracking map of {@link org.wso2.andes.kernel.OnflightMessageTracker}. Threads track, look up and release their
+ * own messages concurrently, as the slot delivery workers, delivery handlers and ack handlers do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class MessageDataMapBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Maps shared by all threads
+     */
+    @State(Scope.Benchmark)
+    public static class SharedMaps {
+
+        private final MessageDataMap messageDataMap = new MessageDataMap(16);
+
+        private final ConcurrentHashMap<Long, MessageData> concurrentHashMap =
+                new ConcurrentHashMap<Long, MessageData>(16, 0.75f, 16);
+    }
+
+    /**
+     * Messages tracked by a thread. Each thread uses its own range of message IDs.
+     */
+    @State(Scope.Thread)
+    public static class ThreadMessages {
+
+        private static final AtomicLong nextThreadBase = new AtomicLong();
+
+        private MessageData[] messages;
+
+        @Setup
+        public void setUp() {
+            long base = nextThreadBase.getAndAdd(1L << 32);
+            Slot slot = new Slot(base, base + BATCH_SIZE, "benchmarkQueue");
+            messages = new MessageData[BATCH_SIZE];
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                messages[i] = new MessageData(base + i, slot, "benchmarkQueue", 0, 0, MessageStatus.BUFFERED, 0);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void messageDataMap(SharedMaps maps, ThreadMessages thread, Blackhole blackhole) {
+        MessageDataMap map = maps.messageDataMap;
+        for (MessageData message : thread.messages) {
+            map.put(message);
+        }
+        for (MessageData message : thread.messages) {
+            blackhole.consume(map.get(message.msgID));
+        }
+        for (MessageData message : thread.messages) {
+            map.remove(message.msgID);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void concurrentHashMap(SharedMaps maps, ThreadMessages thread, Blackhole blackhole) {
+        ConcurrentHashMap<Long, MessageData> map = maps.concurrentHashMap;
+        for (MessageData message : thread.messages) {
+            map.put(message.msgID, message);
+        }
+        for (MessageData message : thread.messages) {
+            blackhole.consume(map.get(message.msgID));
+        }
+        for (MessageData message : thread.messages) {
+            map.remove(message.msgID);
+        }
+    }
+}
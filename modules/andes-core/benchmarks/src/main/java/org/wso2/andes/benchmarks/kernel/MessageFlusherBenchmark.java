@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.benchmarks.StubLocalSubscription;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.MessageFlusher;
+import org.wso2.andes.kernel.OnflightMessageTracker;
+import org.wso2.andes.kernel.SubscriptionAlreadyExistsException;
+import org.wso2.andes.kernel.SubscriptionListener.SubscriptionChange;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.subscription.SubscriptionStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures buffering of a slot of queue messages in {@link MessageFlusher} and dispatching the buffer to stub
+ * subscriptions. Dispatching includes scheduling each message to a subscriber and handing it to the delivery
+ * disruptor, whose handlers read content from the in-memory store and send it to the stub subscriptions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFlusherBenchmark {
+
+    private static final int SLOT_SIZE = 1000;
+
+    /**
+     * Credit of a stub subscription. Stub subscriptions do not acknowledge, hence this is large enough to never run
+     * out during a benchmark.
+     */
+    private static final int SUBSCRIBER_CREDIT = Integer.MAX_VALUE / 2;
+
+    @Param({"1", "10", "100"})
+    public int subscriberCount;
+
+    private String queueName;
+
+    private MessageFlusher messageFlusher;
+
+    private List<AndesMessageMetadata> messages;
+
+    private List<StubLocalSubscription> subscriptions;
+
+    private Slot slot;
+
+    @Setup
+    public void setUp() throws AndesException, SubscriptionAlreadyExistsException {
+        SubscriptionStore subscriptionStore = BenchmarkEnvironment.initializeMessagingEngine();
+        // Subscriptions are kept in the shared subscription store, hence each trial uses its own queue
+        queueName = "benchmarkQueue" + subscriberCount;
+        subscriptions = new ArrayList<StubLocalSubscription>();
+        for (int i = 0; i < subscriberCount; i++) {
+            StubLocalSubscription subscription = new StubLocalSubscription(queueName, false, "node1",
+                    SUBSCRIBER_CREDIT);
+            subscriptionStore.createDisconnectOrRemoveLocalSubscription(subscription, SubscriptionChange.ADDED);
+            subscriptions.add(subscription);
+        }
+        messageFlusher = MessageFlusher.getInstance();
+
+        messages = new ArrayList<AndesMessageMetadata>(SLOT_SIZE);
+        for (int i = 1; i <= SLOT_SIZE; i++) {
+            messages.add(BenchmarkEnvironment.createMetadata(i, queueName, false));
+        }
+        slot = new Slot(1, SLOT_SIZE, queueName);
+        slot.setStorageQueueName(queueName);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (StubLocalSubscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLOT_SIZE)
+    public void bufferSlot() throws AndesException {
+        messageFlusher.sendMessageToBuffer(messages, slot);
+        releaseSlot();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLOT_SIZE)
+    public void bufferAndDispatchSlot() throws AndesException {
+        messageFlusher.sendMessageToBuffer(messages, slot);
+        messageFlusher.sendMessagesInBuffer(queueName);
+        releaseSlot();
+    }
+
+    /**
+     * Drop messages left in the buffer and their tracking so that the same slot can be buffered again
+     */
+    private void releaseSlot() throws AndesException {
+        messageFlusher.getMessageDeliveryInfo(queueName).clearReadButUndeliveredMessages();
+        OnflightMessageTracker.getInstance().clearAllTrackingWhenSlotOrphaned(slot);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.benchmarks.StubLocalSubscription;
+import org.wso2.andes.kernel.AndesChannel;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.FlowControlListener;
+import org.wso2.andes.kernel.FlowControlManager;
+import org.wso2.andes.kernel.SubscriptionListener.SubscriptionChange;
+import org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer;
+import org.wso2.andes.kernel.disruptor.inbound.MessagePreProcessor;
+import org.wso2.andes.subscription.SubscriptionStore;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures routing of published messages by {@link MessagePreProcessor}. Queue messages only get a message ID while
+ * topic messages are matched against the cluster subscriptions, direct and wildcard, and copied once per storage
+ * queue of the matching subscriptions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePreProcessorBenchmark {
+
+    private static final String QUEUE_NAME = "benchmarkQueue";
+
+    private static final String ROUTING_KEY = "sports.cricket.scores";
+
+    private static final String[] SUBSCRIBED_DESTINATIONS = {ROUTING_KEY, "sports.#", "sports.cricket.*"};
+
+    /**
+     * Subscriptions are spread over this many nodes, hence a topic message is copied to at most this many storage
+     * queues
+     */
+    private static final int NODE_COUNT = 5;
+
+    @Param({"10", "100", "1000"})
+    public int subscriberCount;
+
+    @Param({"1024"})
+    public int messageSize;
+
+    private MessagePreProcessor messagePreProcessor;
+
+    private InboundEventContainer event;
+
+    private AndesChannel channel;
+
+    private byte[] content;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.initializeConfiguration();
+        SubscriptionStore subscriptionStore = new SubscriptionStore();
+        for (int i = 0; i < subscriberCount; i++) {
+            String destination = SUBSCRIBED_DESTINATIONS[i % SUBSCRIBED_DESTINATIONS.length];
+            subscriptionStore.createDisconnectOrRemoveClusterSubscription(
+                    new StubLocalSubscription(destination, true, "node" + (i % NODE_COUNT), 0),
+                    SubscriptionChange.ADDED);
+        }
+        messagePreProcessor = new MessagePreProcessor(subscriptionStore);
+        channel = new FlowControlManager().createChannel(new FlowControlListener() {
+            @Override
+            public void block() {
+            }
+
+            @Override
+            public void unblock() {
+            }
+        });
+        event = new InboundEventContainer();
+        content = new byte[messageSize];
+    }
+
+    @Benchmark
+    public int routeQueueMessage() throws Exception {
+        return route(QUEUE_NAME, false);
+    }
+
+    @Benchmark
+    public int routeTopicMessage() throws Exception {
+        return route(ROUTING_KEY, true);
+    }
+
+    /**
+     * Route a message as the inbound disruptor would and release the routed copies from flow control as the message
+     * writer would after storing them
+     */
+    private int route(String destination, boolean isTopic) throws Exception {
+        AndesMessage message = BenchmarkEnvironment.createMessage(0, destination, isTopic, content, content.length);
+        event.clear();
+        event.setEventType(InboundEventContainer.Type.MESSAGE_EVENT);
+        event.setChannel(channel);
+        event.addMessage(message);
+        messagePreProcessor.onEvent(event, 0, true);
+
+        int routedCount = event.getMessageList().size();
+        int chunkCount = 0;
+        for (AndesMessage routedMessage : event.getMessageList()) {
+            chunkCount = chunkCount + routedMessage.getContentChunkList().size();
+        }
+        channel.recordRemovalFromBuffer(chunkCount);
+        return routedCount;
+    }
+}
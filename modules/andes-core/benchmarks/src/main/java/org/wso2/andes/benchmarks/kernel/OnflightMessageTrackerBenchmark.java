@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.OnflightMessageTracker;
+import org.wso2.andes.kernel.slot.Slot;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures tracking of a slot of messages through the delivery cycle in {@link OnflightMessageTracker}. Each message
+ * is buffered, scheduled, delivered to a channel and acknowledged, then tracking of the slot is released.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OnflightMessageTrackerBenchmark {
+
+    private static final int SLOT_SIZE = 1000;
+
+    private static final String QUEUE_NAME = "benchmarkQueue";
+
+    private OnflightMessageTracker tracker;
+
+    private AndesMessageMetadata[] messages;
+
+    private UUID channelID;
+
+    private long nextSlotStart = 1;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initializeConfiguration();
+        tracker = OnflightMessageTracker.getInstance();
+        channelID = UUID.randomUUID();
+        messages = new AndesMessageMetadata[SLOT_SIZE];
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            messages[i] = BenchmarkEnvironment.createMetadata(i, QUEUE_NAME, false);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SLOT_SIZE)
+    public void trackSlotDelivery(Blackhole blackhole) throws AndesException {
+        long slotStart = nextSlotStart;
+        nextSlotStart = nextSlotStart + SLOT_SIZE;
+        Slot slot = new Slot(slotStart, slotStart + SLOT_SIZE - 1, QUEUE_NAME);
+        slot.setStorageQueueName(QUEUE_NAME);
+
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            AndesMessageMetadata message = messages[i];
+            message.setMessageID(slotStart + i);
+            tracker.addMessageToBufferingTracker(slot, message);
+            tracker.incrementNumberOfScheduledDeliveries(message.getMessageID());
+        }
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            long messageID = slotStart + i;
+            tracker.getTrackingData(messageID).incrementDeliveryCount(channelID);
+            tracker.decrementNumberOfScheduledDeliveries(messageID);
+        }
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            blackhole.consume(tracker.handleAckReceived(channelID, slotStart + i));
+        }
+        tracker.releaseAllMessagesOfSlotFromTracking(slot);
+    }
+}
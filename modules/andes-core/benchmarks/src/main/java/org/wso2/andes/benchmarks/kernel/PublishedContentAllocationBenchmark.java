@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.amqp.QpidAndesBridge;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.disruptor.inbound.ContentChunkHandler;
+import org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the memory allocated to take published content from network buffers to store sized chunks. Content of
+ * each frame is handed to {@link QpidAndesBridge} as the AMQP session does and the resulting parts are re-sized by
+ * {@link ContentChunkHandler} as in the inbound disruptor. An operation publishes one MB of content, so with the GC
+ * profiler, gc.alloc.rate.norm is the number of bytes allocated per published MB. Run with
+ * <p/>
+ * -Dbenchmark.args="PublishedContentAllocation -prof gc"
+ * <p/>
+ * Network buffers and message headers are created up front since the transport allocates them regardless of how
+ * content is handled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublishedContentAllocationBenchmark {
+
+    /**
+     * Content published per operation
+     */
+    private static final int PUBLISHED_BYTES = 1024 * 1024;
+
+    private static final String QUEUE_NAME = "benchmarkQueue";
+
+    @Param({"1024", "65536", "1048576"})
+    public int messageSize;
+
+    /**
+     * Content carried by a single body frame. The default is the payload of a 64 KB frame without the frame header.
+     */
+    @Param({"65528"})
+    public int framePayloadSize;
+
+    private ContentChunkHandler contentChunkHandler;
+
+    private InboundEventContainer event;
+
+    /**
+     * Metadata copied for each message, so that building its header is not measured
+     */
+    private AndesMessageMetadata metadataTemplate;
+
+    /**
+     * Content of a message as received, one buffer per frame
+     */
+    private ByteBuffer[] frames;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkEnvironment.initializeConfiguration();
+        int maxContentChunkSize = AndesConfigurationManager.readValue(
+                AndesConfiguration.PERFORMANCE_TUNING_MAX_CONTENT_CHUNK_SIZE);
+        contentChunkHandler = new ContentChunkHandler(maxContentChunkSize);
+        event = new InboundEventContainer();
+        metadataTemplate = BenchmarkEnvironment.createMetadata(0, QUEUE_NAME, false);
+        metadataTemplate.setMessageContentLength(messageSize);
+
+        int frameCount = (messageSize + framePayloadSize - 1) / framePayloadSize;
+        frames = new ByteBuffer[frameCount];
+        for (int i = 0; i < frameCount; i++) {
+            int length = Math.min(framePayloadSize, messageSize - i * framePayloadSize);
+            frames[i] = ByteBuffer.wrap(new byte[length]);
+        }
+    }
+
+    /**
+     * Publish one MB of content as messages of the configured size
+     *
+     * @return number of store chunks created
+     */
+    @Benchmark
+    public int publishMegabyte() throws Exception {
+        int chunkCount = 0;
+        for (int published = 0; published < PUBLISHED_BYTES; published = published + messageSize) {
+            chunkCount = chunkCount + receiveMessage(published);
+        }
+        return chunkCount;
+    }
+
+    private int receiveMessage(long messageID) throws Exception {
+        AndesMessage message = new AndesMessage(metadataTemplate.shallowCopy(messageID));
+        int offset = 0;
+        for (ByteBuffer frame : frames) {
+            message.addMessagePart(QpidAndesBridge.messageContentChunkReceived(messageID, offset, frame));
+            offset = offset + frame.remaining();
+        }
+
+        event.clear();
+        event.setEventType(InboundEventContainer.Type.MESSAGE_EVENT);
+        event.addMessage(message);
+        contentChunkHandler.onEvent(event, 0, true);
+        return message.getContentChunkList().size();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.benchmarks.StubLocalSubscription;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.LocalSubscription;
+import org.wso2.andes.kernel.ReadySubscriberScheduler;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of choosing a subscriber per queue message in {@link ReadySubscriberScheduler} as the number of
+ * subscribers grows. A share of the subscribers has no credit, as slow consumers would, and is expected to be parked
+ * instead of being checked for every message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadySubscriberSchedulerBenchmark {
+
+    private static final int MESSAGES_PER_ROUND = 1000;
+
+    private static final int SUBSCRIBER_CREDIT = 100;
+
+    @Param({"10", "100", "1000"})
+    public int subscriberCount;
+
+    /**
+     * Percentage of subscribers without credit
+     */
+    @Param({"0", "90"})
+    public int saturatedPercentage;
+
+    @Param({"1", "10"})
+    public int batchSize;
+
+    private ReadySubscriberScheduler scheduler;
+
+    private Set<LocalSubscription> subscriptions;
+
+    private AndesMessageMetadata message;
+
+    @Setup
+    public void setUp() {
+        scheduler = new ReadySubscriberScheduler(batchSize);
+        subscriptions = new LinkedHashSet<LocalSubscription>();
+        int saturatedCount = subscriberCount * saturatedPercentage / 100;
+        for (int i = 0; i < subscriberCount; i++) {
+            int credit = i < saturatedCount ? 0 : SUBSCRIBER_CREDIT;
+            subscriptions.add(new StubLocalSubscription("benchmarkQueue", false, "node1", credit));
+        }
+        message = BenchmarkEnvironment.createMetadata(1, "benchmarkQueue", false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_ROUND)
+    public int dispatchRound() throws AndesException {
+        scheduler.startRound(subscriptions);
+        int scheduledCount = 0;
+        for (int i = 0; i < MESSAGES_PER_ROUND; i++) {
+            LocalSubscription subscription = scheduler.getCurrentSubscription();
+            if (null == subscription) {
+                break;
+            }
+            subscription.sendMessageToSubscriber(message, null);
+            scheduler.messageScheduled(subscription);
+            // Acknowledge immediately so that subscribers with credit never run out of it
+            subscription.ackReceived(message.getMessageID());
+            scheduledCount++;
+        }
+        return scheduledCount;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.server.stats.StatisticsCounter;
+import org.wso2.andes.server.stats.StripedCounter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures registering message statistics from several threads at once, as connection, virtual host and broker
+ * wide counters are updated by every thread passing messages. A single {@link AtomicLong} is measured as the
+ * baseline of a counter all threads contend on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticsCounterBenchmark {
+
+    /**
+     * Size of a registered message in bytes
+     */
+    private static final long MESSAGE_SIZE = 1024;
+
+    private AtomicLong atomicLong;
+
+    private StripedCounter stripedCounter;
+
+    private StatisticsCounter statisticsCounter;
+
+    @Setup
+    public void setUp() {
+        atomicLong = new AtomicLong();
+        stripedCounter = new StripedCounter();
+        statisticsCounter = new StatisticsCounter("benchmark");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long atomicLong1() {
+        return atomicLong.addAndGet(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long atomicLong4() {
+        return atomicLong.addAndGet(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long atomicLong16() {
+        return atomicLong.addAndGet(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void stripedCounter1() {
+        stripedCounter.add(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void stripedCounter4() {
+        stripedCounter.add(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void stripedCounter16() {
+        stripedCounter.add(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void statisticsCounter1() {
+        statisticsCounter.registerEvent(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void statisticsCounter4() {
+        statisticsCounter.registerEvent(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void statisticsCounter16() {
+        statisticsCounter.registerEvent(MESSAGE_SIZE);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.kernel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.benchmarks.StubLocalSubscription;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.LocalSubscription;
+import org.wso2.andes.kernel.TopicMessageLog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures delivery of topic messages through a {@link TopicMessageLog} shared by fast and slow subscribers. Fast
+ * subscribers read every message of a batch and slow ones read a tenth of them. When the log is full the oldest
+ * message is dropped for the slow subscribers, as with the drop oldest slow subscriber policy.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopicMessageLogBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final int LOG_SIZE = 5000;
+
+    private static final int SLOW_SUBSCRIBER_READ_RATIO = 10;
+
+    @Param({"10", "100"})
+    public int subscriberCount;
+
+    /**
+     * Percentage of subscribers reading slower than messages arrive
+     */
+    @Param({"0", "10"})
+    public int slowPercentage;
+
+    private TopicMessageLog topicMessageLog;
+
+    private List<LocalSubscription> fastSubscriptions;
+
+    private List<LocalSubscription> slowSubscriptions;
+
+    private AndesMessageMetadata[] messages;
+
+    private long nextMessageID = 1;
+
+    @Setup
+    public void setUp() {
+        topicMessageLog = new TopicMessageLog(LOG_SIZE);
+        fastSubscriptions = new ArrayList<LocalSubscription>();
+        slowSubscriptions = new ArrayList<LocalSubscription>();
+        Set<LocalSubscription> subscriptions = new LinkedHashSet<LocalSubscription>();
+        int slowCount = subscriberCount * slowPercentage / 100;
+        for (int i = 0; i < subscriberCount; i++) {
+            LocalSubscription subscription = new StubLocalSubscription("benchmarkTopic", true, "node1",
+                    Integer.MAX_VALUE);
+            subscriptions.add(subscription);
+            if (i < slowCount) {
+                slowSubscriptions.add(subscription);
+            } else {
+                fastSubscriptions.add(subscription);
+            }
+        }
+        topicMessageLog.updateSubscriptions(subscriptions);
+
+        messages = new AndesMessageMetadata[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            messages[i] = BenchmarkEnvironment.createMetadata(i, "benchmarkTopic", true);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void appendAndRead(Blackhole blackhole) {
+        for (AndesMessageMetadata message : messages) {
+            if (topicMessageLog.isFull()) {
+                topicMessageLog.skipOldest();
+                blackhole.consume(topicMessageLog.trim());
+            }
+            message.setMessageID(nextMessageID++);
+            topicMessageLog.append(message);
+        }
+        for (LocalSubscription subscription : fastSubscriptions) {
+            AndesMessageMetadata message = topicMessageLog.next(subscription);
+            while (null != message) {
+                blackhole.consume(message);
+                message = topicMessageLog.next(subscription);
+            }
+        }
+        for (LocalSubscription subscription : slowSubscriptions) {
+            for (int i = 0; i < BATCH_SIZE / SLOW_SUBSCRIBER_READ_RATIO; i++) {
+                blackhole.consume(topicMessageLog.next(subscription));
+            }
+        }
+        blackhole.consume(topicMessageLog.trim());
+    }
+}
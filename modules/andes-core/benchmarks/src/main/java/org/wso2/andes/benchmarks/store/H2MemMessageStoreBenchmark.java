@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesMessagePart;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.store.rdbms.h2.H2MemMessageStoreImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures batch writes and reads of {@link H2MemMessageStoreImpl}. Writes store a batch of messages, metadata and
+ * content, as the message writer does. Reads fetch a batch of metadata as a slot delivery worker does and the content
+ * of a batch of messages as the delivery disruptor does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class H2MemMessageStoreBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * Number of messages stored for read benchmarks
+     */
+    private static final int STORED_MESSAGE_COUNT = 1000;
+
+    private static final int MAX_CHUNK_SIZE = 65500;
+
+    private static final long READ_MESSAGE_ID_BASE = 1L << 40;
+
+    private static final String WRITE_QUEUE_NAME = "storeWriteQueue";
+
+    private static final String READ_QUEUE_NAME = "storeReadQueue";
+
+    @Param({"1024", "65536"})
+    public int messageSize;
+
+    private MessageStore messageStore;
+
+    private byte[] content;
+
+    /**
+     * Ids of the messages written during the current iteration
+     */
+    private List<Long> writtenMessageIDs;
+
+    private long nextMessageID;
+
+    private List<Long> storedMessageIDs;
+
+    private int nextReadOffset;
+
+    @Setup
+    public void setUp() throws AndesException {
+        messageStore = BenchmarkEnvironment.getInMemoryMessageStore();
+        content = new byte[messageSize];
+        writtenMessageIDs = new ArrayList<Long>();
+        nextMessageID = 1;
+        storedMessageIDs = new ArrayList<Long>(STORED_MESSAGE_COUNT);
+        List<AndesMessage> messages = new ArrayList<AndesMessage>(STORED_MESSAGE_COUNT);
+        // Read queue messages get ids above the ones written messages get during a run
+        for (long id = READ_MESSAGE_ID_BASE; id < READ_MESSAGE_ID_BASE + STORED_MESSAGE_COUNT; id++) {
+            messages.add(BenchmarkEnvironment.createMessage(id, READ_QUEUE_NAME, false, content, MAX_CHUNK_SIZE));
+            storedMessageIDs.add(id);
+        }
+        messageStore.storeMessages(messages);
+    }
+
+    @TearDown
+    public void tearDown() throws AndesException {
+        messageStore.deleteMessages(READ_QUEUE_NAME, storedMessageIDs, true);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteWrittenMessages() throws AndesException {
+        messageStore.deleteMessages(WRITE_QUEUE_NAME, writtenMessageIDs, true);
+        writtenMessageIDs.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void writeBatch() throws AndesException {
+        List<AndesMessage> messages = new ArrayList<AndesMessage>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            long messageID = nextMessageID++;
+            messages.add(BenchmarkEnvironment.createMessage(messageID, WRITE_QUEUE_NAME, false, content,
+                    MAX_CHUNK_SIZE));
+            writtenMessageIDs.add(messageID);
+        }
+        messageStore.storeMessages(messages);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<AndesMessageMetadata> readMetadataBatch() throws AndesException {
+        return messageStore.getNextNMessageMetadataFromQueue(READ_QUEUE_NAME, nextReadBatch().get(0), BATCH_SIZE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Map<Long, List<AndesMessagePart>> readContentBatch() throws AndesException {
+        return messageStore.getContent(nextReadBatch());
+    }
+
+    /**
+     * Ids of the next batch of stored messages, wrapping around at the end of the read queue
+     */
+    private List<Long> nextReadBatch() {
+        List<Long> batch = storedMessageIDs.subList(nextReadOffset, nextReadOffset + BATCH_SIZE);
+        nextReadOffset = (nextReadOffset + BATCH_SIZE) % STORED_MESSAGE_COUNT;
+        return batch;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.store;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.MessageStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures reading metadata of one slot of every storage queue of a node, as slot delivery workers do. Reads are
+ * either made one after the other on the calling thread, as a worker did before metadata reads were pipelined, or
+ * submitted to a bounded reader pool and collected, as workers do now.
+ * <p/>
+ * The H2 in-memory store answers without network round trips, hence a store latency can be added to each read to
+ * see how reads overlap when the store is a remote database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotMetadataReadBenchmark {
+
+    /**
+     * Number of messages stored in the slot of each queue
+     */
+    private static final int SLOT_SIZE = 10;
+
+    private static final int MESSAGE_SIZE = 1024;
+
+    private static final int MAX_CHUNK_SIZE = 65500;
+
+    private static final String QUEUE_NAME_PREFIX = "slotReadQueue";
+
+    @Param({"1000"})
+    public int queueCount;
+
+    @Param({"10"})
+    public int readerThreadCount;
+
+    @Param({"0", "500"})
+    public long storeLatencyMicros;
+
+    private MessageStore messageStore;
+
+    private ExecutorService metadataReaderExecutor;
+
+    private List<String> queueNames;
+
+    /**
+     * Id of the first message in the slot of each queue
+     */
+    private long[] firstMessageIDs;
+
+    @Setup
+    public void setUp() throws AndesException {
+        messageStore = BenchmarkEnvironment.getInMemoryMessageStore();
+        metadataReaderExecutor = Executors.newFixedThreadPool(readerThreadCount);
+        queueNames = new ArrayList<String>(queueCount);
+        firstMessageIDs = new long[queueCount];
+        byte[] content = new byte[MESSAGE_SIZE];
+        long messageID = 1;
+        for (int i = 0; i < queueCount; i++) {
+            String queueName = QUEUE_NAME_PREFIX + i;
+            queueNames.add(queueName);
+            firstMessageIDs[i] = messageID;
+            List<AndesMessage> messages = new ArrayList<AndesMessage>(SLOT_SIZE);
+            for (int j = 0; j < SLOT_SIZE; j++) {
+                messages.add(BenchmarkEnvironment.createMessage(messageID++, queueName, false, content,
+                        MAX_CHUNK_SIZE));
+            }
+            messageStore.storeMessages(messages);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws AndesException {
+        metadataReaderExecutor.shutdownNow();
+        for (int i = 0; i < queueCount; i++) {
+            List<Long> messageIDs = new ArrayList<Long>(SLOT_SIZE);
+            for (long id = firstMessageIDs[i]; id < firstMessageIDs[i] + SLOT_SIZE; id++) {
+                messageIDs.add(id);
+            }
+            messageStore.deleteMessages(queueNames.get(i), messageIDs, true);
+        }
+    }
+
+    @Benchmark
+    public int readSequentially() throws AndesException {
+        int messageCount = 0;
+        for (int i = 0; i < queueCount; i++) {
+            messageCount = messageCount + readSlot(i).size();
+        }
+        return messageCount;
+    }
+
+    @Benchmark
+    public int readInParallel() throws AndesException, InterruptedException, ExecutionException {
+        List<Future<List<AndesMessageMetadata>>> reads =
+                new ArrayList<Future<List<AndesMessageMetadata>>>(queueCount);
+        for (int i = 0; i < queueCount; i++) {
+            final int queueIndex = i;
+            reads.add(metadataReaderExecutor.submit(new Callable<List<AndesMessageMetadata>>() {
+                @Override
+                public List<AndesMessageMetadata> call() throws AndesException {
+                    return readSlot(queueIndex);
+                }
+            }));
+        }
+        int messageCount = 0;
+        for (Future<List<AndesMessageMetadata>> read : reads) {
+            messageCount = messageCount + read.get().size();
+        }
+        return messageCount;
+    }
+
+    /**
+     * Read metadata of the slot of a queue, waiting for the store latency first
+     */
+    private List<AndesMessageMetadata> readSlot(int queueIndex) throws AndesException {
+        if (storeLatencyMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(storeLatencyMicros));
+        }
+        return messageStore.getMetadataList(queueNames.get(queueIndex), firstMessageIDs[queueIndex],
+                firstMessageIDs[queueIndex] + SLOT_SIZE - 1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.benchmarks.subscription;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.andes.benchmarks.BenchmarkEnvironment;
+import org.wso2.andes.benchmarks.StubLocalSubscription;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesSubscription;
+import org.wso2.andes.kernel.AndesSubscription.SubscriptionType;
+import org.wso2.andes.kernel.SubscriptionListener.SubscriptionChange;
+import org.wso2.andes.subscription.ClusterSubscriptionBitMapHandler;
+import org.wso2.andes.subscription.SubscriptionStore;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the cluster subscriptions of a topic message. Topics have the form region.device.metric and a
+ * share of the subscriptions use wildcards, which are matched by the subscription bitmap. Matching is measured
+ * through the {@link SubscriptionStore}, which adds direct subscriptions of the topic, and on the
+ * {@link ClusterSubscriptionBitMapHandler} alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionMatchingBenchmark {
+
+    private static final int REGION_COUNT = 10;
+
+    private static final String[] METRICS = {"temperature", "humidity", "pressure"};
+
+    /**
+     * Number of distinct routing keys messages are published with
+     */
+    private static final int ROUTING_KEY_COUNT = 1024;
+
+    @Param({"100", "1000", "10000"})
+    public int subscriberCount;
+
+    /**
+     * Percentage of subscriptions with a wildcard destination
+     */
+    @Param({"10", "50"})
+    public int wildcardPercentage;
+
+    private SubscriptionStore subscriptionStore;
+
+    private ClusterSubscriptionBitMapHandler bitMapHandler;
+
+    private String[] routingKeys;
+
+    private int nextRoutingKey;
+
+    @Setup
+    public void setUp() throws AndesException {
+        BenchmarkEnvironment.initializeConfiguration();
+        subscriptionStore = new SubscriptionStore();
+        bitMapHandler = new ClusterSubscriptionBitMapHandler(SubscriptionType.AMQP);
+
+        int wildcardCount = subscriberCount * wildcardPercentage / 100;
+        for (int i = 0; i < subscriberCount; i++) {
+            String destination;
+            if (i < wildcardCount) {
+                destination = wildcardDestination(i);
+            } else {
+                destination = topic(i);
+            }
+            StubLocalSubscription subscription = new StubLocalSubscription(destination, true, "node" + (i % 5), 0);
+            subscriptionStore.createDisconnectOrRemoveClusterSubscription(subscription, SubscriptionChange.ADDED);
+            if (i < wildcardCount) {
+                bitMapHandler.addWildCardSubscription(subscription);
+            }
+        }
+
+        routingKeys = new String[ROUTING_KEY_COUNT];
+        for (int i = 0; i < ROUTING_KEY_COUNT; i++) {
+            routingKeys[i] = topic(i * 7);
+        }
+    }
+
+    @Benchmark
+    public Set<AndesSubscription> subscriptionStore() throws AndesException {
+        return subscriptionStore.getClusterSubscribersForDestination(nextRoutingKey(), true, SubscriptionType.AMQP);
+    }
+
+    @Benchmark
+    public Set<AndesSubscription> wildcardBitMap() {
+        return bitMapHandler.getMatchingWildCardSubscriptions(nextRoutingKey());
+    }
+
+    private String nextRoutingKey() {
+        nextRoutingKey = (nextRoutingKey + 1) & (ROUTING_KEY_COUNT - 1);
+        return routingKeys[nextRoutingKey];
+    }
+
+    private static String topic(int index) {
+        return "region" + (index % REGION_COUNT) + ".device" + index + "." + METRICS[index % METRICS.length];
+    }
+
+    private static String wildcardDestination(int index) {
+        String region = "region" + (index % REGION_COUNT);
+        switch (index % 3) {
+            case 0:
+                return region + ".#";
+            case 1:
+                return region + ".*." + METRICS[index % METRICS.length];
+            default:
+                return "*.device" + index + ".*";
+        }
+    }
+}
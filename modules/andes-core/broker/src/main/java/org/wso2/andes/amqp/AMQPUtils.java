@@ -17,11 +17,14 @@
  */
 package org.wso2.andes.amqp;
 
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.abstraction.MessagePublishInfo;
+import org.wso2.andes.framing.abstraction.MessagePublishInfoImpl;
 import org.wso2.andes.kernel.AndesAckData;
 import org.wso2.andes.kernel.AndesContent;
 import org.wso2.andes.kernel.AndesException;
@@ -33,6 +36,7 @@ import org.wso2.andes.kernel.disruptor.inbound.InboundExchangeEvent;
 import org.wso2.andes.kernel.disruptor.inbound.InboundQueueEvent;
 import org.wso2.andes.kernel.disruptor.inbound.InboundSubscriptionEvent;
 import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.mqtt.MQTTMessageMetaData;
 import org.wso2.andes.server.ClusterResourceHolder;
 import org.wso2.andes.server.binding.Binding;
 import org.wso2.andes.server.exchange.DirectExchange;
@@ -55,6 +59,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -79,6 +84,40 @@ public class AMQPUtils {
      for the next chunk it can be retrieved without accessing the database */
     private static Map<Long, AndesMessagePart> messagePartCache = new HashMap<Long, AndesMessagePart>();
 
+    /**
+     * Maximum number of cached short strings, the same as the size of the {@link AMQShortString} intern pool
+     */
+    private static final int SHORT_STRING_CACHE_SIZE =
+            Integer.getInteger(AMQShortString.INTERN_POOL_SIZE_PROP_NAME, 10000);
+
+    /**
+     * Interned short strings of destinations and exchange names keyed by their string value. The least recently
+     * used names are evicted when the cache is full.
+     */
+    private static final ConcurrentMap<String, AMQShortString> shortStringCache = CacheBuilder.newBuilder()
+            .maximumSize(SHORT_STRING_CACHE_SIZE)
+            .<String, AMQShortString>build()
+            .asMap();
+
+    /**
+     * Get the short string of a destination, routing key or exchange name. Short strings are cached so that
+     * converting a name used before neither allocates nor blocks.
+     *
+     * @param value string value
+     * @return interned short string, null if the value is null
+     */
+    public static AMQShortString getShortString(String value) {
+        if (null == value) {
+            return null;
+        }
+        AMQShortString shortString = shortStringCache.get(value);
+        if (null == shortString) {
+            shortString = new AMQShortString(value).intern();
+            shortStringCache.putIfAbsent(value, shortString);
+        }
+        return shortString;
+    }
+
     /**
      * convert Andes metadata list to qpid queue entry list
      *
@@ -166,18 +205,37 @@ public class AMQPUtils {
     }
 
     /**
-     * convert Andes metadata to StorableMessageMetaData
+     * convert Andes metadata to StorableMessageMetaData. The protocol header is decoded here and the routing key
+     * and exchange overridden in andes metadata are applied to it.
      *
      * @param andesMessageMetadata andes metadata
      * @return StorableMessageMetaData
      */
     public static StorableMessageMetaData convertAndesMetadataToAMQMetadata(AndesMessageMetadata andesMessageMetadata) {
-        byte[] dataAsBytes = andesMessageMetadata.getMetadata();
+        byte[] dataAsBytes = andesMessageMetadata.getProtocolMetadata();
         ByteBuffer buf = ByteBuffer.wrap(dataAsBytes);
         buf.position(1);
         buf = buf.slice();
         MessageMetaDataType type = MessageMetaDataType.values()[dataAsBytes[0]];
-        return type.getFactory().createMetaData(buf);
+        StorableMessageMetaData metaData = type.getFactory().createMetaData(buf);
+
+        String exchangeOverride = andesMessageMetadata.getExchangeOverride();
+        if (null == exchangeOverride) {
+            return metaData;
+        }
+        String routingKey = andesMessageMetadata.getDestination();
+        if (MessageMetaDataType.META_DATA_MQTT.equals(type)) {
+            MQTTMessageMetaData mqttMetaData = (MQTTMessageMetaData) metaData;
+            return new MQTTMessageMetaData(mqttMetaData.getMessageID(), false, routingKey,
+                    mqttMetaData.isPersistent(), mqttMetaData.getContentSize(), mqttMetaData.getQosLevel());
+        }
+        MessageMetaData amqMetaData = (MessageMetaData) metaData;
+        MessagePublishInfo originalPublishInfo = amqMetaData.getMessagePublishInfo();
+        MessagePublishInfo publishInfo = new MessagePublishInfoImpl(getShortString(exchangeOverride),
+                originalPublishInfo.isImmediate(), originalPublishInfo.isMandatory(), getShortString(routingKey));
+        return new MessageMetaData(publishInfo, amqMetaData.getContentHeaderBody(),
+                amqMetaData.getPublisherSessionID(), amqMetaData.getContentChunkCount(),
+                amqMetaData.getArrivalTime());
     }
 
     /**
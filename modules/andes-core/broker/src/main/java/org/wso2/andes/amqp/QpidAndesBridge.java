@@ -165,7 +165,9 @@ public class QpidAndesBridge {
     }
 
     /**
-     * message content chunk received to the server
+     * message content chunk received to the server. If the content takes up most of the array it was received into,
+     * the part is created as a slice view over that array instead of copying the content. Network buffers are
+     * allocated per read and are not reused, therefore the array stays valid as long as the part refers to it.
      *
      * @param messageID       id of message to which content belongs
      * @param offsetInMessage chunk offset
@@ -178,13 +180,19 @@ public class QpidAndesBridge {
         }
         AndesMessagePart part = new AndesMessagePart();
         src = src.slice();
-        final byte[] chunkData = new byte[src.limit()];
-        src.duplicate().get(chunkData);
-
-        part.setData(chunkData);
+        int length = src.limit();
+
+        // Referring a small part of a large array would keep the whole array in memory, so such content is copied
+        if (length > 0 && src.hasArray() && length >= src.array().length / 2) {
+            part.setData(src.array(), src.arrayOffset(), length);
+        } else {
+            final byte[] chunkData = new byte[length];
+            src.duplicate().get(chunkData);
+            part.setData(chunkData);
+            part.setDataLength(length);
+        }
         part.setMessageID(messageID);
         part.setOffSet(offsetInMessage);
-        part.setDataLength(chunkData.length);
 
         return part;
     }
@@ -433,7 +441,7 @@ public class QpidAndesBridge {
                     + binding.getExchange().getName() + " queue: " + binding.getQueue().getName());
         }
         InboundBindingEvent inboundBindingEvent = AMQPUtils.createAndesBinding(binding.getExchange(),
-                binding.getQueue(), new AMQShortString(binding.getBindingKey()));
+                binding.getQueue(), AMQPUtils.getShortString(binding.getBindingKey()));
         Andes.getInstance().removeBinding(inboundBindingEvent);
     }
 
@@ -459,7 +467,7 @@ public class QpidAndesBridge {
                         continue;
                     }
 
-                    AndesBinding andesBinding = AMQPUtils.createAndesBinding(b.getExchange(), b.getQueue(), new AMQShortString(b.getBindingKey()));
+                    AndesBinding andesBinding = AMQPUtils.createAndesBinding(b.getExchange(), b.getQueue(), AMQPUtils.getShortString(b.getBindingKey()));
                     if (uniqueBindings.add(andesBinding)) {
                         InboundSubscriptionEvent localSubscription = AMQPUtils.createAMQPLocalSubscription(queue, subscription, b);
                         Andes.getInstance().openLocalSubscription(localSubscription);
@@ -495,7 +503,7 @@ public class QpidAndesBridge {
                     continue;
                 }
 
-                AndesBinding andesBinding = AMQPUtils.createAndesBinding(b.getExchange(), b.getQueue(), new AMQShortString(b.getBindingKey()));
+                AndesBinding andesBinding = AMQPUtils.createAndesBinding(b.getExchange(), b.getQueue(), AMQPUtils.getShortString(b.getBindingKey()));
                 if (uniqueBindings.add(andesBinding)) {
                     InboundSubscriptionEvent localSubscription = AMQPUtils.createAMQPLocalSubscription(queue, subscription, b);
                     Andes.getInstance().closeLocalSubscription(localSubscription);
@@ -22,6 +22,7 @@ import org.wso2.andes.configuration.modules.JKSStore;
 import org.wso2.andes.configuration.util.ConfigurationProperty;
 import org.wso2.andes.configuration.util.ImmutableMetaProperties;
 import org.wso2.andes.configuration.util.MetaProperties;
+import org.wso2.andes.configuration.util.SlowSubscriberPolicy;
 import org.wso2.andes.configuration.util.TopicMessageDeliveryStrategy;
 
 import java.util.List;
@@ -173,6 +174,13 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     TRANSPORTS_MQTT_DELIVERY_BUFFER_SIZE("transports/mqtt/deliveryBufferSize", "32768", Integer.class),
 
+    /**
+     * Retained messages with content up to this many bytes are kept in memory in the retained message index so
+     * that they are delivered to new subscribers without reading the store. Set to 0 to keep only metadata.
+     */
+    TRANSPORTS_MQTT_RETAINED_MESSAGE_MAX_CACHED_CONTENT_SIZE("transports/mqtt/retainedMessages/maxCachedContentSize",
+            "1024", Integer.class),
+
     /**
      * This is a temporary list of user elements to enable user-authentication for MQTT.
      */
@@ -235,7 +243,7 @@ public enum AndesConfiguration implements ConfigurationProperty {
      * The ID generation class that is used to maintain unique IDs for each message that arrives at the server.
      */
     PERSISTENCE_ID_GENERATOR("persistence/idGenerator", "org.wso2.andes.server.cluster" +
-            ".coordination.TimeStampBasedMessageIdGenerator", String.class),
+            ".coordination.BlockReservingMessageIdGenerator", String.class),
 
     /**
      * This is the Task interval (in SECONDS) to check weather communication
@@ -279,12 +287,49 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_SLOTS_SLOT_WINDOW_SIZE("performanceTuning/slots/windowSize", "1000",
             Integer.class),
 
+    /**
+     * Enable adaptive slot sizing. When enabled, the slot window size of each queue follows the observed publish
+     * rate of the queue within the configured minimum and maximum window sizes, and slots are submitted to the
+     * coordinator once their oldest message waited for the configured submit latency. The windowSize,
+     * slotRetainTimeInMemory and windowCreationTimeout values are not used to submit slots in this mode.
+     */
+    PERFORMANCE_TUNING_SLOTS_ADAPTIVE_SIZING_ENABLED("performanceTuning/slots/adaptiveSizing/@enabled", "false",
+            Boolean.class),
+
+    /**
+     * Maximum time in milliseconds a published message waits in an open slot before the slot is submitted to the
+     * coordinator when adaptive slot sizing is enabled. Slots are checked at the end of each batch written to the
+     * message store, therefore the bound holds without a slow timer. Lower values reduce publish to deliver latency
+     * at the cost of more slot submissions.
+     */
+    PERFORMANCE_TUNING_SLOTS_ADAPTIVE_SUBMIT_LATENCY("performanceTuning/slots/adaptiveSizing/submitLatency",
+            "10", Integer.class),
+
+    /**
+     * Lower bound of the adaptive slot window size of a queue.
+     */
+    PERFORMANCE_TUNING_SLOTS_ADAPTIVE_MIN_WINDOW_SIZE("performanceTuning/slots/adaptiveSizing/minWindowSize",
+            "100", Integer.class),
+
+    /**
+     * Upper bound of the adaptive slot window size of a queue.
+     */
+    PERFORMANCE_TUNING_SLOTS_ADAPTIVE_MAX_WINDOW_SIZE("performanceTuning/slots/adaptiveSizing/maxWindowSize",
+            "10000", Integer.class),
+
     /**
      * Number of Slot Delivery Worker threads that should be started.
      */
     PERFORMANCE_TUNING_SLOTS_WORKER_THREAD_COUNT("performanceTuning/slots/workerThreadCount", "5",
             Integer.class),
 
+    /**
+     * Number of threads slot delivery workers read metadata of slots on. Reads of different storage queues run in
+     * parallel on these threads while the slot delivery workers deliver messages already read.
+     */
+    PERFORMANCE_TUNING_SLOTS_METADATA_READER_THREAD_COUNT("performanceTuning/slots/metadataReaderThreadCount",
+            "10", Integer.class),
+
     /**
      * Published message information is sent to slot coordinator by the node when it either reaches the
      * slot window size or the window creation timeout. This configures the timeout for slot window creation
@@ -304,6 +349,29 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_DELIVERY_MAX_READ_BUT_UNDELIVERED_MESSAGES("performanceTuning/delivery" +
             "/maxNumberOfReadButUndeliveredMessages", "1000", Integer.class),
 
+    /**
+     * List of queues whose messages are delivered in JMS priority order. Messages of other queues are delivered in
+     * the order they were published, ignoring the priority header.
+     */
+    LIST_PERFORMANCE_TUNING_DELIVERY_PRIORITY_QUEUES("performanceTuning/delivery/priorityDelivery/queues/queue", "",
+            List.class),
+
+    /**
+     * For priority queues, read-but-undelivered message buffer can grow up to maxNumberOfReadButUndeliveredMessages
+     * multiplied by this factor. Reading slots ahead allows high priority messages to overtake low priority messages
+     * which are already buffered. Increasing this value will increase memory usage of priority queues.
+     */
+    PERFORMANCE_TUNING_DELIVERY_PRIORITY_READ_AHEAD_FACTOR("performanceTuning/delivery/priorityDelivery" +
+            "/readAheadFactor", "4", Integer.class),
+
+    /**
+     * Number of consecutive queue messages scheduled to a subscriber in its turn before moving to the next
+     * subscriber. A turn ends early when the subscriber runs out of room for unacknowledged messages. Larger
+     * batches reduce scheduling work per message while smaller batches spread messages more evenly.
+     */
+    PERFORMANCE_TUNING_DELIVERY_SUBSCRIBER_BATCH_SIZE("performanceTuning/delivery/subscriberBatchSize", "1",
+            Integer.class),
+
     /**
      * This is the ring buffer size of the delivery disruptor. This value should be a power of 2 (E.g. 1024, 2048,
      * 4096). Use a small ring size if you want to reduce the memory usage.
@@ -393,6 +461,13 @@ public enum AndesConfiguration implements ConfigurationProperty {
     PERFORMANCE_TUNING_ACK_HANDLER_COUNT("performanceTuning/ackHandling/ackHandlerCount", "8",
             Integer.class ),
 
+    /**
+     * Maximum number of messages moved to the dead letter channel in a single store operation. Messages rejected
+     * in the delivery path are batched in the inbound disruptor up to this size.
+     */
+    PERFORMANCE_TUNING_DEAD_LETTER_CHANNEL_HANDLER_BATCH_SIZE
+            ("performanceTuning/ackHandling/deadLetterChannelHandlerBatchSize", "100", Integer.class),
+
     /**
      * Message delivery from server to the client will be paused temporarily if number of delivered but
      * unacknowledged message count reaches this size. Should be set considering message consume rate.
@@ -407,6 +482,21 @@ public enum AndesConfiguration implements ConfigurationProperty {
             + "topicMessageDeliveryStrategy/strategyName", TopicMessageDeliveryStrategy.DISCARD_NONE.toString() ,
             TopicMessageDeliveryStrategy.class),
 
+    /**
+     * Maximum number of messages kept in memory per topic by the SUBSCRIBER_CURSOR topic message delivery strategy.
+     * Fast subscribers can run ahead of the slowest subscriber by up to this many messages.
+     */
+    PERFORMANCE_TUNING_TOPIC_MESSAGE_LOG_SIZE("performanceTuning/delivery/topicMessageDeliveryStrategy/topicLogSize",
+            "5000", Integer.class),
+
+    /**
+     * How subscribers which fall behind are handled when the topic message log of the SUBSCRIBER_CURSOR topic
+     * message delivery strategy is full. By default slow subscribers lose the oldest message so that a full log
+     * never stalls the other subscribers of the topic.
+     */
+    PERFORMANCE_TUNING_TOPIC_SLOW_SUBSCRIBER_POLICY("performanceTuning/delivery/topicMessageDeliveryStrategy/"
+            + "slowSubscriberPolicy", SlowSubscriberPolicy.DROP_OLDEST.toString(), SlowSubscriberPolicy.class),
+
     /**
      * If you choose DISCARD_ALLOWED topic message delivery strategy, we keep messages in memory
      * until ack is done until this timeout. If an ack is not received under this timeout, ack will
@@ -449,11 +539,18 @@ public enum AndesConfiguration implements ConfigurationProperty {
             ("performanceTuning/messageCounter/counterTaskInterval", "15", Integer.class),
 
     /**
-     * Message count is updated in batches. Once the count exceed the batch size message count update is given to
-     * message count update task.
+     * Interval in seconds at which in-memory message counts are replaced with the counts in the message store. This
+     * picks up count changes made by other nodes of the cluster.
+     */
+    PERFORMANCE_TUNING_MESSAGE_COUNTER_RECONCILE_INTERVAL
+            ("performanceTuning/messageCounter/reconcileInterval", "300", Integer.class),
+
+    /**
+     * One in this many messages is timed at each lifecycle stage to build per stage and per destination latency
+     * histograms. Set to 0 to disable latency sampling.
      */
-    PERFORMANCE_TUNING_MESSAGE_COUNTER_UPDATE_BATCH_SIZE
-            ("performanceTuning/messageCounter/countUpdateBatchSize", "100", Integer.class),
+    PERFORMANCE_TUNING_LATENCY_SAMPLE_INTERVAL
+            ("performanceTuning/latencySampling/sampleInterval", "1000", Integer.class),
 
     /**
      * Maximum batch size (Messages) for a transaction. Exceeding this limit will result in a failure in the subsequent
@@ -461,6 +558,20 @@ public enum AndesConfiguration implements ConfigurationProperty {
      */
     MAX_TRANSACTION_BATCH_SIZE ("transaction/maxBatchSizeInBytes", "10000000", Integer.class),
 
+    /**
+     * Once the uncommitted messages of a transaction held in memory exceed this size (payload bytes) they are
+     * written to a staging area in the message store and released from memory. Staged transactions are not
+     * limited by maxBatchSizeInBytes. Should be lower than maxBatchSizeInBytes. 0 disables staging. Staging is
+     * supported with RDBMS message stores only.
+     */
+    TRANSACTION_STAGING_THRESHOLD ("transaction/stagingThresholdInBytes", "0", Integer.class),
+
+    /**
+     * Number of staged messages read back from the message store at once when the staging area of a transaction is
+     * cleared on rollback or close.
+     */
+    TRANSACTION_STAGING_READ_BATCH_SIZE ("transaction/stagingReadBatchSize", "200", Integer.class),
+
     /**
      * The number of messages to be fetched per page when browsing message in management console.
      */
@@ -540,7 +651,32 @@ public enum AndesConfiguration implements ConfigurationProperty {
      * Enable RDBMS slot information store
      */
     SLOT_MANAGEMENT_STORAGE("slotManagement/storage", "Hazelcast",
-                                                  String.class);
+                                                  String.class),
+
+    /**
+     * Keep slot coordination state in memory of the coordinator and write changes to the RDBMS slot store
+     * asynchronously. Only applicable when RDBMS slot information store is used.
+     */
+    SLOT_MANAGEMENT_WRITE_BEHIND_ENABLED("slotManagement/writeBehind/@enabled", "false", Boolean.class),
+
+    /**
+     * Interval in milliseconds at which pending slot store changes are written to the RDBMS slot store
+     */
+    SLOT_MANAGEMENT_WRITE_BEHIND_FLUSH_INTERVAL("slotManagement/writeBehind/flushIntervalInMillis", "100",
+            Integer.class),
+
+    /**
+     * Number of pending slot store changes which triggers a write to the RDBMS slot store before the flush interval
+     * elapses
+     */
+    SLOT_MANAGEMENT_WRITE_BEHIND_MAX_BATCH_SIZE("slotManagement/writeBehind/maxBatchSize", "1000", Integer.class),
+
+    /**
+     * Interval in milliseconds at which the coordinator picks up message ids written to the RDBMS slot store by
+     * other nodes (i.e. during message recovery at node start up). 0 disables reconciling.
+     */
+    SLOT_MANAGEMENT_WRITE_BEHIND_RECONCILE_INTERVAL("slotManagement/writeBehind/reconcileIntervalInMillis",
+            "10000", Integer.class);
 
 
     private final MetaProperties metaProperties;
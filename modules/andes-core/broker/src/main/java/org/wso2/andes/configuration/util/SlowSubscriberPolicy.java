@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.configuration.util;
+
+/**
+ * Enum to specify how topic subscribers which fall behind are handled when the topic message log of the
+ * SUBSCRIBER_CURSOR delivery strategy is full. This is configured at broker.xml under
+ * <delivery>/<topicMessageDeliveryStrategy>/<slowSubscriberPolicy>
+ */
+public enum SlowSubscriberPolicy {
+
+    /**
+     * oldest message of the log is dropped for subscribers which have not read it yet. Fast subscribers are never
+     held back but slow subscribers lose messages
+     */
+    DROP_OLDEST,
+
+    /**
+     * subscribers which have not read the oldest message of the log are disconnected. Subscribers which cannot be
+     disconnected by the broker lose the oldest message instead
+     */
+    DISCONNECT,
+
+    /**
+     * no more messages are taken into the log until the slowest subscriber reads the oldest message. Messages wait
+     in the message store meanwhile, so no message is lost. However once the log is full every subscriber of the
+     topic, including fast ones, stalls until the slowest subscriber catches up
+     */
+    SPILL_TO_STORE
+}
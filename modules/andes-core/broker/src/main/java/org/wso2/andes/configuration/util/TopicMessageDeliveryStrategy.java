@@ -41,5 +41,12 @@ public enum TopicMessageDeliveryStrategy {
      sent but not acked message count to <maxUnackedMessages>. If it is breached, message can
      either be lost or actually sent but ack is not honoured
      */
-    DISCARD_ALLOWED
+    DISCARD_ALLOWED,
+
+    /**
+     * messages are kept in a bounded in-memory log per topic and each subscriber reads the log at its own
+     pace, so slow subscribers do not hold back fast ones. When the log is full, subscribers which have not read
+     the oldest message are handled according to <slowSubscriberPolicy>
+     */
+    SUBSCRIBER_CURSOR
 }
@@ -131,6 +131,7 @@ public class AMQPConstructStore {
             //create the space created to keep message counter on this queue
             messageStore.removeQueue(queueName);
         }
+        MessagingEngine.getInstance().removeMessageCountOfQueue(queueName);
         andesQueues.remove(queueName);
     }
 
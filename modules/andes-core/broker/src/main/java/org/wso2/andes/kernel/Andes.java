@@ -105,6 +105,17 @@ public class Andes {
      */
     private final int MAX_TX_BATCH_SIZE;
 
+    /**
+     * In memory content size of a transaction after which its messages are moved to the staging area of the
+     * message store. 0 if staging is disabled.
+     */
+    private final int TX_STAGING_THRESHOLD;
+
+    /**
+     * Number of staged messages moved to destination queues at once when committing a staged transaction
+     */
+    private final int TX_STAGING_READ_BATCH_SIZE;
+
     /**
      * Instance of AndesAPI returned
      *
@@ -122,6 +133,10 @@ public class Andes {
         this.flowControlManager = new FlowControlManager();
         MAX_TX_BATCH_SIZE = AndesConfigurationManager.
                 readValue(AndesConfiguration.MAX_TRANSACTION_BATCH_SIZE);
+        TX_STAGING_THRESHOLD = AndesConfigurationManager.
+                readValue(AndesConfiguration.TRANSACTION_STAGING_THRESHOLD);
+        TX_STAGING_READ_BATCH_SIZE = AndesConfigurationManager.
+                readValue(AndesConfiguration.TRANSACTION_STAGING_READ_BATCH_SIZE);
     }
 
     /**
@@ -405,14 +420,14 @@ public class Andes {
     }
 
     /**
-     * Move the messages meta data in the given message to the Dead Letter Channel.
+     * Move the messages meta data in the given message to the Dead Letter Channel. The message is moved
+     * asynchronously in a batch with other messages moved to the Dead Letter Channel.
      *
      * @param messageId            The message Id to be removed
      * @param destinationQueueName The original destination queue of the message
-     * @throws AndesException
      */
-    public void moveMessageToDeadLetterChannel(long messageId, String destinationQueueName) throws AndesException {
-        MessagingEngine.getInstance().moveMessageToDeadLetterChannel(messageId, destinationQueueName);
+    public void moveMessageToDeadLetterChannel(long messageId, String destinationQueueName) {
+        inboundEventManager.moveMessageToDeadLetterChannel(messageId, destinationQueueName);
     }
 
     /**
@@ -651,7 +666,7 @@ public class Andes {
      */
     public InboundTransactionEvent newTransaction(AndesChannel channel) throws AndesException {
         return new InboundTransactionEvent(messagingEngine, inboundEventManager,
-                MAX_TX_BATCH_SIZE, channel);
+                MAX_TX_BATCH_SIZE, TX_STAGING_THRESHOLD, TX_STAGING_READ_BATCH_SIZE, channel);
     }
 
 }
@@ -21,6 +21,7 @@ package org.wso2.andes.kernel;
 import org.wso2.andes.configuration.util.ConfigurationProperties;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
 import org.wso2.andes.store.HealthAwareStore;
 
 import java.util.List;
@@ -152,6 +153,14 @@ public interface AndesContextStore extends HealthAwareStore{
      */
     void decrementMessageCountForQueue(String destinationQueueName, long decrementBy) throws AndesException;
 
+    /**
+     * Update message counters of several queues in a single store operation
+     *
+     * @param countDeltas value each queue counter is updated by, keyed by queue name. Negative values decrement
+     * @throws AndesException
+     */
+    void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException;
+
     /**
      * Store exchange information (amqp)
      *
@@ -385,6 +394,14 @@ public interface AndesContextStore extends HealthAwareStore{
      */
     public void deleteMessageId(long messageId) throws AndesException;
 
+    /**
+     * Apply a batch of slot table changes in one transaction, in the order given by {@link SlotStoreChanges}
+     *
+     * @param changes changes to apply
+     * @throws AndesException
+     */
+    public void applySlotStoreChanges(SlotStoreChanges changes) throws AndesException;
+
     /**
      * Get all assigned slots for give node
      * @param nodeId id of node
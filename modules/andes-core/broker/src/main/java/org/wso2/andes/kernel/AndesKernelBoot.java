@@ -26,6 +26,7 @@ import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.slot.SlotDeletionExecutor;
 import org.wso2.andes.kernel.slot.SlotManagerClusterMode;
 import org.wso2.andes.kernel.slot.SlotManagerStandalone;
+import org.wso2.andes.metrics.MessageLatencySampler;
 import org.wso2.andes.server.ClusterResourceHolder;
 import org.wso2.andes.server.cluster.ClusterManagementInformationMBean;
 import org.wso2.andes.server.cluster.ClusterManager;
@@ -107,6 +108,9 @@ public class AndesKernelBoot {
     public static void bootAndesKernel() throws AndesException {
         try {
             isKernelShuttingDown = false;
+            Integer latencySampleInterval = AndesConfigurationManager.readValue
+                    (AndesConfiguration.PERFORMANCE_TUNING_LATENCY_SAMPLE_INTERVAL);
+            MessageLatencySampler.setSampleInterval(latencySampleInterval);
             //loadConfigurations - done from outside
             //startAndesStores - done from outside
             int threadPoolCount = 1;
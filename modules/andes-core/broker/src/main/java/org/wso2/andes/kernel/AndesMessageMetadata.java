@@ -23,7 +23,6 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.amqp.AMQPUtils;
 import org.wso2.andes.mqtt.MQTTMessageMetaData;
-import org.wso2.andes.mqtt.MQTTMetaDataHandler;
 import org.wso2.andes.server.message.MessageMetaData;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.server.store.MessageMetaDataType;
@@ -42,7 +41,7 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
      */
     long messageID;
     /**
-     * AMQ metadata of the message
+     * Protocol metadata of the message, the metadata type byte followed by the protocol header
      */
     byte[] metadata;
     /**
@@ -86,6 +85,17 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
     private boolean reDelivered;
     private static Log log = LogFactory.getLog(AndesMessageMetadata.class);
 
+    /**
+     * JMS/AMQP priority of the message (0-9). Messages of protocols without priorities (e.g. MQTT) get the
+     * JMS default priority.
+     */
+    private int priority = DEFAULT_PRIORITY;
+
+    /**
+     * Priority assumed for messages which do not carry a priority header. This is the JMS default priority.
+     */
+    public static final int DEFAULT_PRIORITY = 4;
+
     /**
      * Added for MQTT usage
      */
@@ -128,6 +138,12 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
      */
     private boolean retain;
 
+    /**
+     * Exchange the message is routed through after its destination is overridden by
+     * {@link #updateMetadata(String, String)}. Null if the destination is the one the message was published to.
+     */
+    private String exchangeOverride;
+
     public AndesMessageMetadata() {
         propertyMap = new HashMap<String, Object>();
         this.retain = false;
@@ -143,13 +159,25 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
         this.retain = retain;
     }
 
+    /**
+     * Create metadata from stored bytes. Fields of a metadata envelope are always read, the protocol header of
+     * metadata written by an older broker is decoded only if parse is true.
+     *
+     * @param messageID id of the message
+     * @param metadata  stored metadata, either an envelope or plain protocol metadata
+     * @param parse     true to decode the protocol header of plain protocol metadata
+     */
     public AndesMessageMetadata(long messageID, byte[] metadata, boolean parse) {
         super();
         propertyMap = new HashMap<String, Object>();
         this.messageID = messageID;
-        this.metadata = metadata;
-        if (parse) {
-            parseMetaData();
+        if (MetadataEnvelope.isEnvelope(metadata)) {
+            MetadataEnvelope.decode(metadata, this);
+        } else {
+            this.metadata = metadata;
+            if (parse) {
+                parseMetaData();
+            }
         }
 
     }
@@ -190,14 +218,52 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
         this.qosLevel = qosLevel;
     }
 
+    /**
+     * Stored form of the metadata. Fields of the message are written to an envelope ahead of the protocol metadata.
+     *
+     * @return metadata envelope, null if the message has no protocol metadata
+     * @see MetadataEnvelope
+     */
     public byte[] getMetadata() {
+        if (null == metadata || 0 == metadata.length) {
+            return metadata;
+        }
+        return MetadataEnvelope.encode(this);
+    }
+
+    /**
+     * Protocol metadata of the message as it was received. The routing key and exchange of the header are the
+     * original ones, see {@link #getExchangeOverride()}.
+     *
+     * @return metadata type byte followed by the protocol header
+     */
+    public byte[] getProtocolMetadata() {
         return metadata;
     }
 
+    /**
+     * Set protocol metadata of the message
+     *
+     * @param metadata metadata type byte followed by the protocol header
+     */
     public void setMetadata(byte[] metadata) {
         this.metadata = metadata;
     }
 
+    /**
+     * Exchange the message is routed through if its destination was overridden. The destination of the message is
+     * then the routing key to deliver the message with.
+     *
+     * @return exchange name, null if the destination is not overridden
+     */
+    public String getExchangeOverride() {
+        return exchangeOverride;
+    }
+
+    void setExchangeOverride(String exchangeOverride) {
+        this.exchangeOverride = exchangeOverride;
+    }
+
     public long getExpirationTime() {
         return expirationTime;
     }
@@ -273,22 +339,33 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
         clone.isPersistent = isPersistent;
         clone.slot = slot;
         clone.arrivalTime = arrivalTime;
+        clone.priority = priority;
         clone.metaDataType = metaDataType;
         clone.propertyMap = propertyMap;
+        clone.exchangeOverride = exchangeOverride;
+        clone.messageContentLength = messageContentLength;
+        clone.qosLevel = qosLevel;
         return clone;
     }
 
 
     /**
-     * Update metadata of message. This will change AMQP bytes representing
-     * metadata. Routing key and exchange name will be set to the
-     * given values.
+     * Update metadata of message. Routing key and exchange name will be set to the given values. The protocol
+     * header is left as it is, the new values are kept in the metadata envelope and applied when the message is
+     * delivered.
      *
      * @param newDestination  new routing key to set
      * @param newExchangeName new exchange name to set
      */
     public void updateMetadata(String newDestination, String newExchangeName) {
-        this.metadata = createNewMetadata(this.metadata, newDestination, newExchangeName);
+        if (null == metaDataType) {
+            metaDataType = MessageMetaDataType.values()[metadata[0]];
+        }
+        if (MessageMetaDataType.META_DATA_MQTT.equals(metaDataType)) {
+            //This needs to be set to the latest queue name
+            setStorageQueueName(newDestination);
+        }
+        this.exchangeOverride = newExchangeName;
         this.destination = newDestination;
         log.debug("updated andes message metadata id= " + messageID + " new destination = " + newDestination);
     }
@@ -324,6 +401,7 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
             arrivalTime = ((MessageMetaData) mdt).getArrivalTime();
             destination = ((MessageMetaData) mdt).getMessagePublishInfo().getRoutingKey().toString();
             this.messageContentLength = ((MessageMetaData) mdt).getContentSize();
+            priority = ((MessageMetaData) mdt).getMessageHeader().getPriority();
             isTopic = ((MessageMetaData) mdt).getMessagePublishInfo().getExchange().equals(AMQPUtils.TOPIC_EXCHANGE_NAME);
         }
         //For MQTT Specific Types
@@ -338,58 +416,16 @@ public class AndesMessageMetadata implements Comparable<AndesMessageMetadata> {
     }
 
     /**
-     * Create a copy of metadata
-     * @param originalMetadata source metadata that needs to be copied
-     * @param routingKey routing key of the message
-     * @param exchangeName exchange of the message
-     * @return copu of the metadata as a byte array
+     * Get JMS/AMQP priority of the message
+     *
+     * @return priority of the message. {@link #DEFAULT_PRIORITY} if the protocol has no priorities
      */
-    private byte[] createNewMetadata(byte[] originalMetadata, String routingKey, String exchangeName) {
-        ByteBuffer buf = ByteBuffer.wrap(originalMetadata);
-        buf.position(1);
-        buf = buf.slice();
-        MessageMetaDataType type = MessageMetaDataType.values()[originalMetadata[0]];
-        metaDataType = type;
-        StorableMessageMetaData original_mdt = type.getFactory()
-                .createMetaData(buf);
-
-        byte[] underlying;
-        MetaDataHandler handler;
-        //TODO need to implement factory pattern here
-        if (type.equals(MessageMetaDataType.META_DATA_MQTT)) {
-            handler = new MQTTMetaDataHandler();
-            //This needs to be set to the latest queue name
-            setStorageQueueName(routingKey);
-        } else {
-            handler = new AMQPMetaDataHandler();
-        }
+    public int getPriority() {
+        return priority;
+    }
 
-        underlying = handler.constructMetadata(routingKey, buf, original_mdt, exchangeName);
-        //TODO uncomment this once the logic is confirmed - Hasitha to review the change
-/*		ContentHeaderBody contentHeaderBody = ((MessageMetaData) original_mdt)
-                .getContentHeaderBody();
-		int contentChunkCount = ((MessageMetaData) original_mdt)
-				.getContentChunkCount();
-		long arrivalTime = ((MessageMetaData) original_mdt).getArrivalTime();
-
-		// modify routing key to the binding name
-		MessagePublishInfo messagePublishInfo = new CustomMessagePublishInfo(
-				original_mdt);
-		messagePublishInfo.setRoutingKey(new AMQShortString(routingKey));
-        messagePublishInfo.setExchange(new AMQShortString(exchangeName));
-		MessageMetaData modifiedMetaData = new MessageMetaData(
-				messagePublishInfo, contentHeaderBody, contentChunkCount,
-				arrivalTime);
-
-		final int bodySize = 1 + modifiedMetaData.getStorableSize();
-		byte[] underlying = new byte[bodySize];
-		underlying[0] = (byte) modifiedMetaData.getType().ordinal();
-		buf = java.nio.ByteBuffer.wrap(underlying);
-		buf.position(1);
-		buf = buf.slice();
-		modifiedMetaData.writeToBuffer(0, buf);*/
-
-        return underlying;
+    public void setPriority(int priority) {
+        this.priority = priority;
     }
 
     public int getMessageContentLength() {
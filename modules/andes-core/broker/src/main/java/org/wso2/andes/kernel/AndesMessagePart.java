@@ -18,12 +18,32 @@
 
 package org.wso2.andes.kernel;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A chunk of message content. Content is either held in an array of its own or is a slice view over an array shared
+ * with other chunks (i.e. the network buffer content was received into), in which case no bytes are copied until
+ * {@link #getData()} is called.
+ */
 public class AndesMessagePart {
     long messageID;
     int offSet = 0;
     private byte[] data;
     private int dataLength;
 
+    /**
+     * Start of content within data. Only used by slices.
+     */
+    private int dataOffset;
+
+    private boolean slice;
+
+    /**
+     * Copy of slice content created on first call to {@link #getData()}
+     */
+    private volatile byte[] materializedData;
+
     public int getOffSet() {
         return offSet;
     }
@@ -40,12 +60,79 @@ public class AndesMessagePart {
         this.messageID = messageID;
     }
 
+    /**
+     * Get content as an array of its own. Slice content is copied to a new array on first call, therefore writers
+     * should prefer {@link #getBackingArray()} or {@link #getDataAsByteBuffer()}.
+     *
+     * @return content
+     */
     public byte[] getData() {
-        return data;
+        if (!slice) {
+            return data;
+        }
+        byte[] copy = materializedData;
+        if (null == copy) {
+            copy = Arrays.copyOfRange(data, dataOffset, dataOffset + dataLength);
+            materializedData = copy;
+        }
+        return copy;
     }
 
     public void setData(byte[] data) {
         this.data = data;
+        dataOffset = 0;
+        slice = false;
+        materializedData = null;
+    }
+
+    /**
+     * Set content as a slice view over a shared array. The array is not copied and must not be modified afterwards.
+     *
+     * @param backingArray array holding the content
+     * @param offset       start of content within the array
+     * @param length       length of content
+     */
+    public void setData(byte[] backingArray, int offset, int length) {
+        data = backingArray;
+        dataOffset = offset;
+        dataLength = length;
+        slice = true;
+        materializedData = null;
+    }
+
+    /**
+     * @return true if content is a slice view over a shared array
+     */
+    public boolean isSlice() {
+        return slice;
+    }
+
+    /**
+     * Array holding the content from {@link #getDataOffset()}. Not copied, hence may hold content of other chunks.
+     *
+     * @return backing array of content
+     */
+    public byte[] getBackingArray() {
+        return data;
+    }
+
+    /**
+     * @return start of content within {@link #getBackingArray()}
+     */
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
+    /**
+     * Get content as a buffer without copying it
+     *
+     * @return buffer positioned at the start of content
+     */
+    public ByteBuffer getDataAsByteBuffer() {
+        if (!slice) {
+            return ByteBuffer.wrap(data);
+        }
+        return ByteBuffer.wrap(data, dataOffset, dataLength).slice();
     }
 
     public int getDataLength() {
@@ -67,6 +154,9 @@ public class AndesMessagePart {
         clone.offSet = offSet;
         clone.data = data;
         clone.dataLength = dataLength;
+        clone.dataOffset = dataOffset;
+        clone.slice = slice;
+        clone.materializedData = materializedData;
         return clone;
     }
 }
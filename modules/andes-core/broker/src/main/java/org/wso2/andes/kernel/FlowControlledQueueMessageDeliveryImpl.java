@@ -46,7 +46,9 @@ public class FlowControlledQueueMessageDeliveryImpl implements MessageDeliverySt
         int sentMessageCount = 0;
         boolean orphanedSlot = false;
         Iterator<AndesMessageMetadata> iterator = messages.iterator();
-
+        ReadySubscriberScheduler subscriberScheduler = MessageFlusher.getInstance()
+                .getMessageDeliveryInfo(destination).getSubscriberScheduler();
+        boolean roundStarted = false;
 
         while (iterator.hasNext()) {
 
@@ -54,62 +56,75 @@ public class FlowControlledQueueMessageDeliveryImpl implements MessageDeliverySt
 
                 AndesMessageMetadata message = iterator.next();
 
-                /**
-                 * get all relevant type of subscriptions. This call does NOT
-                 * return hierarchical subscriptions for the destination. There
-                 * are duplicated messages for each different subscribed destination.
-                 * For durable topic subscriptions this should return queue subscription
-                 * bound to unique queue based on subscription id
-                 */
-                Collection<LocalSubscription> subscriptions4Queue =
-                        subscriptionStore.getActiveLocalSubscribers(destination, message.isTopic());
-
-                if (subscriptions4Queue.isEmpty()) {
-                    // We don't have subscribers for this message
-                    // Handle orphaned slot created with this no subscription scenario for queue
-                    orphanedSlot = true;
-                    break; // break the loop
+                if (!roundStarted) {
+                    /**
+                     * get all relevant type of subscriptions. This call does NOT
+                     * return hierarchical subscriptions for the destination. There
+                     * are duplicated messages for each different subscribed destination.
+                     * For durable topic subscriptions this should return queue subscription
+                     * bound to unique queue based on subscription id. Messages of a buffer are
+                     * either all queue messages or all topic messages, hence this is read once per round.
+                     */
+                    Set<LocalSubscription> subscriptions4Queue =
+                            subscriptionStore.getActiveLocalSubscribers(destination, message.isTopic());
+
+                    if (subscriptions4Queue.isEmpty()) {
+                        // We don't have subscribers for this message
+                        // Handle orphaned slot created with this no subscription scenario for queue
+                        orphanedSlot = true;
+                        break; // break the loop
+                    }
+                    subscriberScheduler.startRound(subscriptions4Queue);
+                    roundStarted = true;
                 }
 
-                int numOfCurrentMsgDeliverySchedules = 0;
-
                 /**
                  * if message is addressed to queues, only ONE subscriber should
-                 * get the message. Otherwise, loop for every subscriber
+                 * get the message. The subscriber in turn gets the message if it is interested. Otherwise the
+                 * next interested subscriber with room gets it, so that content is only read for messages
+                 * that have a taker
                  */
-                for (int j = 0; j < subscriptions4Queue.size(); j++) {
-                    LocalSubscription localSubscription = MessageFlusher.getInstance().
-                            findNextSubscriptionToSent(destination, subscriptions4Queue);
-                    if (localSubscription.hasRoomToAcceptMessages()) {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Scheduled to send id = " + message.getMessageID());
-                        }
-
-                        // In a re-queue for delivery scenario we need the correct destination. Hence setting
-                        // it back correctly in AndesMetadata for durable subscription for topics
-                        if (localSubscription.isBoundToTopic()) {
-                            message.setDestination(localSubscription.getSubscribedDestination());
-                        }
-
-                        MessageFlusher.getInstance().deliverMessageAsynchronously(localSubscription, message);
-                        numOfCurrentMsgDeliverySchedules++;
-
-                        //for queue messages and durable topic messages (as they are now queue messages)
-                        // we only send to one selected subscriber if it is a queue message
-                        break;
+                LocalSubscription localSubscription = subscriberScheduler.getCurrentSubscription();
+                if (null == localSubscription) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("All subscriptions for destination " + destination + " have max unacked " +
+                                "messages " + message.getDestination());
                     }
+                    //if we continue message order will break
+                    break;
                 }
+                if (!localSubscription.hasInterest(message)) {
+                    localSubscription = subscriberScheduler.findInterestedSubscription(message);
+                }
+
+                if (null != localSubscription) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Scheduled to send id = " + message.getMessageID());
+                    }
+
+                    // In a re-queue for delivery scenario we need the correct destination. Hence setting
+                    // it back correctly in AndesMetadata for durable subscription for topics
+                    if (localSubscription.isBoundToTopic()) {
+                        message.setDestination(localSubscription.getSubscribedDestination());
+                    }
+
+                    MessageFlusher.getInstance().deliverMessageAsynchronously(localSubscription, message);
+                    subscriberScheduler.messageScheduled(localSubscription);
 
-                if (numOfCurrentMsgDeliverySchedules == 1) {
                     iterator.remove();
                     if (log.isDebugEnabled()) {
                         log.debug("Removing Scheduled to send message from buffer. MsgId= " + message.getMessageID());
                     }
                     sentMessageCount++;
+                } else if (!subscriberScheduler.hasSaturatedSubscriptions()) {
+                    // None of the subscribers selects this message. Any of them would reject it, hence moving it
+                    // to DLC here without reading content
+                    iterator.remove();
+                    moveMessageWithoutTakerToDLC(message);
                 } else {
                     if (log.isDebugEnabled()) {
-                        log.debug("All subscriptions for destination " + destination + " have max unacked " +
-                                "messages " + message.getDestination());
+                        log.debug("No subscription with room for destination " + destination + " is interested " +
+                                "in message id= " + message.getMessageID());
                     }
                     //if we continue message order will break
                     break;
@@ -137,4 +152,28 @@ public class FlowControlledQueueMessageDeliveryImpl implements MessageDeliverySt
         return sentMessageCount;
     }
 
+    /**
+     * Move a message none of the subscribers are interested in to DLC. This is what happens when a subscriber
+     * rejects the message through delivery rules.
+     *
+     * @param message metadata of the message
+     * @throws AndesException
+     */
+    private void moveMessageWithoutTakerToDLC(AndesMessageMetadata message) throws AndesException {
+        if (log.isDebugEnabled()) {
+            log.debug("No subscriber is interested in message id= " + message.getMessageID()
+                    + ". Moving to DLC");
+        }
+        OnflightMessageTracker.getInstance().setMessageStatus(MessageStatus.DELIVERY_REJECT, message.getMessageID());
+        Andes.getInstance().moveMessageToDeadLetterChannel(message.getMessageID(),
+                message.getDestination());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingMessages(String destination) {
+        return false;
+    }
 }
@@ -35,6 +35,22 @@ public interface LocalSubscription extends AndesSubscription {
      */
     public boolean hasRoomToAcceptMessages();
 
+    /**
+     * Number of messages this subscription can accept before it runs out of room
+     * @return remaining message count. Integer.MAX_VALUE if the subscription is not flow controlled
+     */
+    public int getRemainingCredit();
+
+    /**
+     * Check if subscription is interested in the message, i.e. the message matches the selectors of the
+     * subscription. This is evaluated on message metadata only, so that message content is read from the store
+     * only for messages that have a taker
+     * @param messageMetadata metadata of the message
+     * @return true if the message can be delivered to the subscription
+     * @throws AndesException
+     */
+    public boolean hasInterest(AndesMessageMetadata messageMetadata) throws AndesException;
+
     /**
      * Ack received for subscription. Protocol specific subscribers implement
      * independent behaviours
@@ -49,6 +65,14 @@ public interface LocalSubscription extends AndesSubscription {
      */
     public void msgRejectReceived(long messageID);
 
+    /**
+     * Disconnect the subscriber from the broker side, e.g. when it cannot keep up with the message rate
+     * @param reason reason reported to the client
+     * @return true if the subscriber is disconnected, false if the protocol does not allow the broker to disconnect it
+     * @throws AndesException
+     */
+    public boolean forceDisconnect(String reason) throws AndesException;
+
     /**
      * Close subscriber. Here subscriber should release all the resources.
      */
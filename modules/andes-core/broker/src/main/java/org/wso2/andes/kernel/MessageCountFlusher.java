@@ -18,10 +18,12 @@
 
 package org.wso2.andes.kernel;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -30,7 +32,12 @@ import org.wso2.andes.store.HealthAwareStore;
 import org.wso2.andes.store.StoreHealthListener;
 
 /**
- * Updates message count in batches. Can be used as a scheduled task as well to update message counts
+ * Keeps message counts of storage queues in memory and updates the store asynchronously. Count updates of all queues
+ * are flushed to the store in a single operation when this is run as a scheduled task.
+ * <p/>
+ * Message counts are read from memory. The count of a queue is read from the store once, when it is first needed,
+ * and afterwards only by {@link #reconcileMessageCounts()}. Reconciling picks up count changes made by other nodes
+ * of the cluster and corrects any drift of the in-memory counts.
  */
 public class MessageCountFlusher implements Runnable, StoreHealthListener {
 
@@ -45,27 +52,33 @@ public class MessageCountFlusher implements Runnable, StoreHealthListener {
     /**
      * Map to keep message count difference not flushed to disk of each queue
      */
-    private Map<String, AtomicInteger> messageCountDifferenceMap;
+    private ConcurrentMap<String, AtomicLong> messageCountDifferenceMap;
 
     /**
-     * Message count will be flushed to DB when count difference reach this value
+     * In-memory message count of each queue
      */
-    private int messageCountFlushNumberGap;
+    private ConcurrentMap<String, AtomicLong> messageCountMap;
 
     /**
      * Used to increment and decrement message counts
      */
     private MessageStore messageStore;
 
+    /**
+     * True if the store counts messages of a queue on each read, in which case the store count already includes
+     * count updates which are not flushed yet
+     */
+    private final boolean liveMessageCounts;
+
     /**
      * Creates a message count flusher object to store message counts in store
      * @param messageStore MessageStore
-     * @param messageCountFlushNumberGap batch size of the count update for a given queue.
      */
-    public MessageCountFlusher(MessageStore messageStore, int messageCountFlushNumberGap) {
+    public MessageCountFlusher(MessageStore messageStore) {
         this.messageStore = messageStore;
-        this.messageCountFlushNumberGap = messageCountFlushNumberGap;
-        this.messageCountDifferenceMap = new ConcurrentHashMap<String, AtomicInteger>();
+        this.liveMessageCounts = messageStore.isMessageCountLive();
+        this.messageCountDifferenceMap = new ConcurrentHashMap<>();
+        this.messageCountMap = new ConcurrentHashMap<>();
         this.messageStoresOperational = new AtomicBoolean(true); // we could do messageStore.isOperational As well.
         FailureObservingStoreManager.registerStoreHealthListener(this);
     }
@@ -76,13 +89,11 @@ public class MessageCountFlusher implements Runnable, StoreHealthListener {
      */
     @Override
     public void run() {
-        for (Map.Entry<String, AtomicInteger> entry : messageCountDifferenceMap.entrySet()) {
-            flushToStore(entry.getKey(), entry.getValue());
-        }
+        flushToStore();
     }
 
     /**
-     * Increment message count of queue. Flush if difference is in tab
+     * Increment message count of queue. Store is updated by the next flush
      *
      * @param queueName   name of the queue to increment count
      * @param incrementBy increment count by this value
@@ -96,7 +107,7 @@ public class MessageCountFlusher implements Runnable, StoreHealthListener {
     }
 
     /**
-     * decrement queue count. Flush if difference is in tab
+     * decrement queue count. Store is updated by the next flush
      *
      * @param queueName   name of the queue to decrement count
      * @param decrementBy decrement count by this value, This should be a positive value
@@ -109,36 +120,124 @@ public class MessageCountFlusher implements Runnable, StoreHealthListener {
     }
 
     /**
-     * Increment or decrement the queue count by given delta. Count update is reflected in store when either the count
-     * update batch size (messageCountFlushNumberGap) is reached or scheduled message count update task is triggered
+     * Get message count of a queue. Count is read from the store only if the queue is not counted in memory yet.
+     *
+     * @param queueName name of the queue
+     * @return message count of the queue
+     * @throws AndesException
+     */
+    public long getMessageCount(String queueName) throws AndesException {
+        AtomicLong count = messageCountMap.get(queueName);
+        if (null == count) {
+            return reconcileMessageCount(queueName);
+        }
+        return count.get();
+    }
+
+    /**
+     * Flush pending count updates and replace in-memory counts of all queues with the counts in the store
+     */
+    public synchronized void reconcileMessageCounts() {
+        if (!messageStoresOperational.get()) {
+            return;
+        }
+        flushToStore();
+        for (String queueName : messageCountMap.keySet()) {
+            try {
+                updateCountFromStore(queueName);
+            } catch (AndesException e) {
+                log.error("Error while reconciling message count of queue " + queueName, e);
+            }
+        }
+    }
+
+    /**
+     * Flush pending count updates of a queue and replace its in-memory count with the count in the store
+     *
+     * @param queueName name of the queue
+     * @return message count of the queue
+     * @throws AndesException
+     */
+    public synchronized long reconcileMessageCount(String queueName) throws AndesException {
+        AtomicLong difference = messageCountDifferenceMap.get(queueName);
+        if (null != difference) {
+            long pendingDifference = difference.getAndSet(0);
+            if (0 != pendingDifference) {
+                Map<String, Long> countDelta = new HashMap<>(1);
+                countDelta.put(queueName, pendingDifference);
+                try {
+                    messageStore.updateMessageCountsForQueues(countDelta);
+                } catch (AndesException e) {
+                    difference.addAndGet(pendingDifference);
+                    throw e;
+                }
+            }
+        }
+        return updateCountFromStore(queueName);
+    }
+
+    /**
+     * Stop counting a deleted queue. Count updates of the queue which are not flushed yet are discarded.
+     *
+     * @param queueName name of the queue
+     */
+    public synchronized void removeQueue(String queueName) {
+        messageCountMap.remove(queueName);
+        messageCountDifferenceMap.remove(queueName);
+    }
+
+    /**
+     * Set the in-memory count of a queue to its count in the store plus the count updates recorded after the last
+     * flush, which the store count does not include yet. Stores with live message counts already include them. Must
+     * be called while holding the lock of this object so that no flush runs in between.
+     *
+     * @param queueName name of the queue
+     * @return message count of the queue
+     * @throws AndesException
+     */
+    private long updateCountFromStore(String queueName) throws AndesException {
+        long storeCount = messageStore.getMessageCountForQueue(queueName);
+        long messageCount = storeCount;
+        if (!liveMessageCounts) {
+            AtomicLong difference = messageCountDifferenceMap.get(queueName);
+            messageCount += null == difference ? 0 : difference.get();
+        }
+        AtomicLong count = messageCountMap.putIfAbsent(queueName, new AtomicLong(messageCount));
+        if (null != count) {
+            count.set(messageCount);
+        }
+        return messageCount;
+    }
+
+    /**
+     * Increment or decrement the queue count by given delta. Count update is reflected in memory immediately and in
+     * store when the scheduled message count update task is triggered
      *
      * @param queueName name of the queue to update the queue count
      * @param delta     value to be decrement or increment. Positive value to increment and vice versa
      */
     private void updateQueueCount(String queueName, int delta) {
-        AtomicInteger difference = messageCountDifferenceMap.get(queueName);
+        AtomicLong difference = messageCountDifferenceMap.get(queueName);
         if (null == difference) {
-            difference = new AtomicInteger(0);
-            messageCountDifferenceMap.put(queueName, difference);
+            difference = new AtomicLong(0);
+            AtomicLong existingDifference = messageCountDifferenceMap.putIfAbsent(queueName, difference);
+            if (null != existingDifference) {
+                difference = existingDifference;
+            }
         }
+        difference.addAndGet(delta);
 
-        // Decrement value and get the current value
-        int newDifference = difference.addAndGet(delta);
-        // We use the new value at the time we decrement and make decisions on that value.
-        // we flush this value to store in 100 message tabs.
-        if (newDifference % messageCountFlushNumberGap == 0) {
-            // "newDifference" is already updated in "difference"  as well
-            flushToStore(queueName, difference);
+        // Queues not counted in memory yet are read from the store when the count is first needed
+        AtomicLong count = messageCountMap.get(queueName);
+        if (null != count) {
+            count.addAndGet(delta);
         }
     }
 
     /**
-     * Update the store with new message counts
-     *
-     * @param queueName  count is updated in this queue
-     * @param difference count is updated by this value in store
+     * Update the store with count differences of all queues in a single store operation
      */
-    private void flushToStore(String queueName, AtomicInteger difference) {
+    private synchronized void flushToStore() {
         
         if (messageStoresOperational.compareAndSet(false, false)) {
             // Check if the message store is not available we will not going to
@@ -146,33 +245,38 @@ public class MessageCountFlusher implements Runnable, StoreHealthListener {
             return;
         }        
         
-        int count = 0;
+        // We get the current difference and reset the value at the same time so that this call is going to
+        // take care of the current difference only. Any update happen during the method execution will be
+        // reflected in subsequent calls to this method.
+        Map<String, Long> countDeltas = new HashMap<>();
+        for (Map.Entry<String, AtomicLong> entry : messageCountDifferenceMap.entrySet()) {
+            long difference = entry.getValue().getAndSet(0);
+            if (0 != difference) {
+                countDeltas.put(entry.getKey(), difference);
+            }
+        }
+
+        if (countDeltas.isEmpty()) {
+            return;
+        }
+
         try {
-            // Get the current count and make decisions from that value.
-            // If not, within the execution of method some other thread might update the value and subsequent reads
-            // of the value will be different leading to unpredictable behaviour.
-            // We get the current count and reset the value at the same time so that this call is going to
-            // take care of the current count only. Any update happen during the method execution will be reflected
-            // in subsequent calls to this method.
-            count = difference.getAndSet(0);
-
-            if (count > 0) {
-                if(log.isDebugEnabled()) {
-                    log.debug("Increment store count by " + count + " for queue " + queueName);
-                }
-                messageStore.incrementMessageCountForQueue(queueName, count);
-            } else if (count < 0) {
-                if(log.isDebugEnabled()) {
-                    log.debug("Decrement store count by " + count + " for queue " + queueName);
-                }
-                messageStore.incrementMessageCountForQueue(queueName, count);
+            if (log.isDebugEnabled()) {
+                log.debug("Updating store counts of " + countDeltas.size() + " queues by " + countDeltas);
             }
+            messageStore.updateMessageCountsForQueues(countDeltas);
         } catch (AndesException e) {
-            // On error add back the count. Since the operation didn't run correctly. Next call to this method might
-            // get the chance to update the value properly.
-            difference.addAndGet(count);
+            // On error add back the differences. Since the operation didn't run correctly. Next call to this method
+            // might get the chance to update the values properly.
+            for (Map.Entry<String, Long> entry : countDeltas.entrySet()) {
+                AtomicLong difference = messageCountDifferenceMap.get(entry.getKey());
+                // Queue could have been deleted meanwhile
+                if (null != difference) {
+                    difference.addAndGet(entry.getValue());
+                }
+            }
             
-            log.error("Error while updating message counts for queue " + queueName, e);
+            log.error("Error while updating message counts of " + countDeltas.size() + " queues", e);
         }
     }
 
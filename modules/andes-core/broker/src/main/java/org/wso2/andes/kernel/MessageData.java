@@ -60,6 +60,10 @@ public class MessageData {
      * Parent slot of message.
      */
     public Slot slot;
+    /**
+     * Whether the message was found acknowledged by all its receivers. Guarded by this object monitor.
+     */
+    private boolean ackedByAll;
 
     public MessageData(long msgID, Slot slot, String destination, long timestamp,
                     long expirationTime, MessageStatus messageStatus,
@@ -150,4 +154,19 @@ public class MessageData {
     public boolean allAcksReceived() {
         return channelToNumOfDeliveries.isEmpty();
     }
+
+    /**
+     * Mark the message as acknowledged by all its receivers. Acknowledgements and releasing scheduled deliveries
+     * can both find a message ready to delete, this makes sure only one of them deletes it.
+     *
+     * @return true if the message was not marked before
+     */
+    public synchronized boolean markAckedByAll() {
+        if (ackedByAll) {
+            return false;
+        }
+        ackedByAll = true;
+        addMessageStatus(MessageStatus.ACKED_BY_ALL);
+        return true;
+    }
 }
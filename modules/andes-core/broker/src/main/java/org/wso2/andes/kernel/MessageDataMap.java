@@ -0,0 +1,323 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent map of {@link MessageData} keyed by primitive message id. Tracking objects already carry their message
+ * id, therefore the map stores only the values in open-addressing tables and never boxes the key or allocates an
+ * entry object per message.
+ * <p/>
+ * Reads are lock-free. Writes are striped over segments, each segment guarded by its own monitor, so
+ * concurrent writers only contend when they hit the same segment.
+ */
+public class MessageDataMap {
+
+    /**
+     * Marks a removed entry. Probe sequences continue over tombstones, therefore a slot never goes back to null
+     * while a table is in use.
+     */
+    private static final MessageData TOMBSTONE = new MessageData(Long.MIN_VALUE, null, null, 0L, 0L, null, 0L);
+
+    private static final int MINIMUM_TABLE_SIZE = 16;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    private final int segmentShift;
+
+    /**
+     * Create a map
+     *
+     * @param concurrencyLevel estimated number of concurrently writing threads. Rounded up to a power of two.
+     */
+    public MessageDataMap(int concurrencyLevel) {
+        int segmentCount = 1;
+        int shift = 0;
+        while (segmentCount < concurrencyLevel) {
+            segmentCount <<= 1;
+            shift++;
+        }
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment();
+        }
+        segmentMask = segmentCount - 1;
+        // upper bits of the hash select the segment, lower bits the index within the segment table
+        segmentShift = 32 - shift;
+    }
+
+    /**
+     * Get tracking object of a message
+     *
+     * @param messageId id of the message
+     * @return tracking object or null if not present
+     */
+    public MessageData get(long messageId) {
+        int hash = hash(messageId);
+        return segmentFor(hash).get(messageId, hash);
+    }
+
+    /**
+     * Check if tracking object of a message is present
+     *
+     * @param messageId id of the message
+     * @return true if present
+     */
+    public boolean containsKey(long messageId) {
+        return null != get(messageId);
+    }
+
+    /**
+     * Add tracking object if there is no tracking object for the same message id
+     *
+     * @param messageData tracking object
+     * @return existing tracking object, or null if the given object was added
+     */
+    public MessageData putIfAbsent(MessageData messageData) {
+        int hash = hash(messageData.msgID);
+        return segmentFor(hash).put(messageData, hash, true);
+    }
+
+    /**
+     * Add or replace tracking object of a message
+     *
+     * @param messageData tracking object
+     * @return replaced tracking object, or null if there was none
+     */
+    public MessageData put(MessageData messageData) {
+        int hash = hash(messageData.msgID);
+        return segmentFor(hash).put(messageData, hash, false);
+    }
+
+    /**
+     * Remove tracking object of a message
+     *
+     * @param messageId id of the message
+     * @return removed tracking object or null if not present
+     */
+    public MessageData remove(long messageId) {
+        int hash = hash(messageId);
+        return segmentFor(hash).remove(messageId, hash);
+    }
+
+    /**
+     * Number of tracking objects in the map. Not an atomic snapshot under concurrent modifications.
+     *
+     * @return number of entries
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size = size + segment.count;
+        }
+        return size;
+    }
+
+    /**
+     * @return true if there are no tracking objects in the map
+     */
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    /**
+     * Snapshot of tracking objects in the map. Weakly consistent under concurrent modifications.
+     *
+     * @return list of tracking objects
+     */
+    public List<MessageData> values() {
+        List<MessageData> values = new ArrayList<MessageData>(size());
+        for (Segment segment : segments) {
+            segment.collectValues(values);
+        }
+        return values;
+    }
+
+    /**
+     * Remove all tracking objects
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash >>> segmentShift) & segmentMask];
+    }
+
+    /**
+     * Spread message id bits. Message ids are time stamp based and differ mostly in the middle bits.
+     *
+     * @param messageId id of the message
+     * @return well distributed hash
+     */
+    private static int hash(long messageId) {
+        long hash = messageId;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * Segment holding an open addressing table with linear probing
+     */
+    private static final class Segment {
+
+        /**
+         * Current table. Replaced as a whole on resize, therefore readers always probe a consistent table.
+         */
+        private volatile AtomicReferenceArray<MessageData> table =
+                new AtomicReferenceArray<MessageData>(MINIMUM_TABLE_SIZE);
+
+        /**
+         * Number of live entries
+         */
+        private volatile int count;
+
+        /**
+         * Number of non null slots (live entries and tombstones). Guarded by segment monitor.
+         */
+        private int usedSlots;
+
+        MessageData get(long messageId, int hash) {
+            AtomicReferenceArray<MessageData> currentTable = table;
+            int mask = currentTable.length() - 1;
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                MessageData value = currentTable.get(index);
+                if (null == value) {
+                    return null;
+                }
+                if (value != TOMBSTONE && value.msgID == messageId) {
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        synchronized MessageData put(MessageData messageData, int hash, boolean onlyIfAbsent) {
+            AtomicReferenceArray<MessageData> currentTable = table;
+            int mask = currentTable.length() - 1;
+            int index = hash & mask;
+            int firstTombstone = -1;
+            for (int probes = 0; probes <= mask; probes++) {
+                MessageData value = currentTable.get(index);
+                if (null == value) {
+                    break;
+                }
+                if (value == TOMBSTONE) {
+                    if (firstTombstone < 0) {
+                        firstTombstone = index;
+                    }
+                } else if (value.msgID == messageData.msgID) {
+                    if (!onlyIfAbsent) {
+                        currentTable.set(index, messageData);
+                    }
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+
+            if (firstTombstone >= 0) {
+                currentTable.set(firstTombstone, messageData);
+            } else {
+                currentTable.set(index, messageData);
+                usedSlots++;
+            }
+            count++;
+
+            if (usedSlots > currentTable.length() * LOAD_FACTOR) {
+                rehash();
+            }
+            return null;
+        }
+
+        synchronized MessageData remove(long messageId, int hash) {
+            AtomicReferenceArray<MessageData> currentTable = table;
+            int mask = currentTable.length() - 1;
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                MessageData value = currentTable.get(index);
+                if (null == value) {
+                    return null;
+                }
+                if (value != TOMBSTONE && value.msgID == messageId) {
+                    currentTable.set(index, TOMBSTONE);
+                    count--;
+                    return value;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        synchronized void collectValues(List<MessageData> values) {
+            AtomicReferenceArray<MessageData> currentTable = table;
+            for (int i = 0; i < currentTable.length(); i++) {
+                MessageData value = currentTable.get(i);
+                if (null != value && value != TOMBSTONE) {
+                    values.add(value);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            table = new AtomicReferenceArray<MessageData>(MINIMUM_TABLE_SIZE);
+            usedSlots = 0;
+            count = 0;
+        }
+
+        /**
+         * Copy live entries to a new table sized for the current entry count. Also drops accumulated tombstones.
+         */
+        private void rehash() {
+            AtomicReferenceArray<MessageData> oldTable = table;
+            int newSize = MINIMUM_TABLE_SIZE;
+            while (newSize * LOAD_FACTOR < count * 2) {
+                newSize <<= 1;
+            }
+            AtomicReferenceArray<MessageData> newTable = new AtomicReferenceArray<MessageData>(newSize);
+            int mask = newSize - 1;
+            for (int i = 0; i < oldTable.length(); i++) {
+                MessageData value = oldTable.get(i);
+                if (null != value && value != TOMBSTONE) {
+                    int index = hash(value.msgID) & mask;
+                    while (null != newTable.get(index)) {
+                        index = (index + 1) & mask;
+                    }
+                    newTable.set(index, value);
+                }
+            }
+            usedSlots = count;
+            table = newTable;
+        }
+    }
+}
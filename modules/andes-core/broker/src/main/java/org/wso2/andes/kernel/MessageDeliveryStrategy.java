@@ -36,4 +36,12 @@ public interface MessageDeliveryStrategy {
      */
     public int deliverMessageToSubscriptions(String destination, Set<AndesMessageMetadata> messages) throws
             AndesException;
+
+    /**
+     * Check whether the strategy holds messages of the destination which are not yet sent to subscribers. Such
+     * messages are delivered even if the message buffer of the destination is empty.
+     * @param destination destination of messages
+     * @return true if there are messages to deliver
+     */
+    public boolean hasPendingMessages(String destination);
 }
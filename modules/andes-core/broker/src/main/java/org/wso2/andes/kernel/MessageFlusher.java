@@ -29,6 +29,7 @@ import org.wso2.andes.subscription.SubscriptionStore;
 import org.wso2.andes.tools.utils.MessageTracer;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -51,6 +52,22 @@ public class MessageFlusher {
 
     private final int queueWorkerWaitInterval = 1000;
 
+    /**
+     * Queues for which messages are delivered in JMS priority order rather than in message id order
+     */
+    private final Set<String> priorityQueues;
+
+    /**
+     * Multiplier applied on read-but-undelivered message limit for priority queues. Reading ahead lets
+     * high priority messages of later slots overtake already buffered low priority messages.
+     */
+    private final int priorityReadAheadFactor;
+
+    /**
+     * Number of consecutive queue messages scheduled to a subscriber in its turn
+     */
+    private final int subscriberBatchSize;
+
     /**
      * Subscribed destination wise information
      * the key here is the original destination of message. NOT storage queue name.
@@ -84,6 +101,13 @@ public class MessageFlusher {
         this.maxNumberOfReadButUndeliveredMessages = AndesConfigurationManager.readValue
                 (AndesConfiguration.PERFORMANCE_TUNING_DELIVERY_MAX_READ_BUT_UNDELIVERED_MESSAGES);
 
+        this.priorityQueues = new HashSet<String>(AndesConfigurationManager.readValueList
+                (AndesConfiguration.LIST_PERFORMANCE_TUNING_DELIVERY_PRIORITY_QUEUES));
+        this.priorityReadAheadFactor = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_DELIVERY_PRIORITY_READ_AHEAD_FACTOR);
+        this.subscriberBatchSize = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_DELIVERY_SUBSCRIBER_BATCH_SIZE);
+
         //set queue message flusher
         this.queueMessageFlusher = new FlowControlledQueueMessageDeliveryImpl(subscriptionStore);
 
@@ -95,6 +119,8 @@ public class MessageFlusher {
             this.topicMessageFlusher = new NoLossBurstTopicMessageDeliveryImpl(subscriptionStore);
         } else if(topicMessageDeliveryStrategy.equals(TopicMessageDeliveryStrategy.SLOWEST_SUB_RATE)) {
             this.topicMessageFlusher = new SlowestSubscriberTopicMessageDeliveryImpl(subscriptionStore);
+        } else if(topicMessageDeliveryStrategy.equals(TopicMessageDeliveryStrategy.SUBSCRIBER_CURSOR)) {
+            this.topicMessageFlusher = new SubscriberCursorTopicMessageDeliveryImpl(subscriptionStore);
         }
 
     }
@@ -107,8 +133,17 @@ public class MessageFlusher {
 
         Iterator<LocalSubscription> iterator;
         //in-memory message list scheduled to be delivered
-        Set<AndesMessageMetadata> readButUndeliveredMessages = new
-                ConcurrentSkipListSet<AndesMessageMetadata>();
+        Set<AndesMessageMetadata> readButUndeliveredMessages;
+
+        /**
+         * Maximum number of messages kept in read-but-undelivered buffer
+         */
+        private final int bufferLimit;
+
+        /**
+         * Chooses the subscriber for each queue message of the destination
+         */
+        private final ReadySubscriberScheduler subscriberScheduler;
 
         /***
          * In case of a purge, we must store the timestamp when the purge was called.
@@ -119,9 +154,25 @@ public class MessageFlusher {
         /***
          * Constructor
          * initialize lastPurgedTimestamp to 0.
+         * @param priorityDelivery true if messages should be delivered in priority order
          */
-        public MessageDeliveryInfo() {
+        public MessageDeliveryInfo(boolean priorityDelivery) {
             lastPurgedTimestamp = 0l;
+            if (priorityDelivery) {
+                readButUndeliveredMessages = new PriorityMessageBuffer();
+                bufferLimit = maxNumberOfReadButUndeliveredMessages * priorityReadAheadFactor;
+            } else {
+                readButUndeliveredMessages = new ConcurrentSkipListSet<AndesMessageMetadata>();
+                bufferLimit = maxNumberOfReadButUndeliveredMessages;
+            }
+            subscriberScheduler = new ReadySubscriberScheduler(subscriberBatchSize);
+        }
+
+        /**
+         * @return scheduler choosing the subscriber for each queue message of the destination
+         */
+        public ReadySubscriberScheduler getSubscriberScheduler() {
+            return subscriberScheduler;
         }
 
         /**
@@ -131,7 +182,7 @@ public class MessageFlusher {
          */
         public boolean isMessageBufferFull() {
             boolean hasRoom = true;
-            if (readButUndeliveredMessages.size() >= maxNumberOfReadButUndeliveredMessages) {
+            if (readButUndeliveredMessages.size() >= bufferLimit) {
                 hasRoom = false;
             }
             return hasRoom;
@@ -221,7 +272,7 @@ public class MessageFlusher {
     public MessageDeliveryInfo getMessageDeliveryInfo(String destination) throws AndesException {
         MessageDeliveryInfo messageDeliveryInfo = subscriptionCursar4QueueMap.get(destination);
         if (messageDeliveryInfo == null) {
-            messageDeliveryInfo = new MessageDeliveryInfo();
+            messageDeliveryInfo = new MessageDeliveryInfo(isPriorityDeliveryEnabled(destination));
             messageDeliveryInfo.destination = destination;
             Collection<LocalSubscription> localSubscribersForQueue = subscriptionStore
                     .getActiveLocalSubscribersForQueuesAndTopics(destination);
@@ -232,14 +283,25 @@ public class MessageFlusher {
     }
 
 
+    /**
+     * Check if messages addressed to the destination are delivered in priority order
+     *
+     * @param destination queue name
+     * @return true if priority delivery is configured for the destination
+     */
+    public boolean isPriorityDeliveryEnabled(String destination) {
+        return priorityQueues.contains(destination);
+    }
+
     /**
      * Validates if the the buffer is empty, the messages will be read through this buffer and will be delivered to the
      * relevant subscriptions
      * @param queueName the name of the queue which hold the messages
-     * @return whether the buffer is empty
+     * @return whether the buffer is empty and no messages taken from it are pending delivery
      */
     public boolean isMessageBufferEmpty(String queueName) {
-        return subscriptionCursar4QueueMap.get(queueName).readButUndeliveredMessages.isEmpty();
+        return subscriptionCursar4QueueMap.get(queueName).readButUndeliveredMessages.isEmpty()
+                && !topicMessageFlusher.hasPendingMessages(queueName);
     }
 
     /**
@@ -359,6 +421,9 @@ public class MessageFlusher {
             } else {
                 return queueMessageFlusher.deliverMessageToSubscriptions(destination, messages);
             }
+        } else if (topicMessageFlusher.hasPendingMessages(destination)) {
+            //topic messages taken from the buffer earlier are still to be sent to some subscribers
+            return topicMessageFlusher.deliverMessageToSubscriptions(destination, messages);
         } else {
             if(log.isDebugEnabled()) {
                 // This exception can occur because the iterator of ConcurrentSkipListSet loads the
@@ -150,6 +150,29 @@ public interface MessageStore extends HealthAwareStore{
     public void updateMetadataInformation(String currentQueueName, List<AndesMessageMetadata> metadataList) throws
             AndesException;
 
+    /**
+     * Move messages staged in a storage queue to their destination storage queues in a single store transaction.
+     * Metadata and content of each staged message are moved to the message ID given for it, nothing is copied. If
+     * the move fails no message is moved.
+     *
+     * @param stagingQueueName storage queue the messages are staged in
+     * @param stagedMessageIds IDs of the staged messages
+     * @param targetMetadata   new message ID and destination storage queue of each staged message, in the order of
+     *                         stagedMessageIds
+     * @throws AndesException
+     */
+    public void moveStagedMessages(String stagingQueueName, List<Long> stagedMessageIds,
+                                   List<AndesMessageMetadata> targetMetadata) throws AndesException;
+
+    /**
+     * Delete metadata and content of all messages in storage queues whose name starts with the given prefix
+     *
+     * @param storageQueueNamePrefix prefix of the storage queue names
+     * @return number of deleted messages
+     * @throws AndesException
+     */
+    public int deleteAllMessagesOfStorageQueues(String storageQueueNamePrefix) throws AndesException;
+
     /**
      * read metadata from store
      *
@@ -370,6 +393,24 @@ public interface MessageStore extends HealthAwareStore{
      */
     public void decrementMessageCountForQueue(String storageQueueName, long decrementBy) throws AndesException;
 
+    /**
+     * Update message counters of several queues in a single store operation
+     *
+     * @param countDeltas value each queue counter is updated by, keyed by the name of the queue actually stored in
+     *                    DB. Negative values decrement
+     * @throws AndesException
+     */
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException;
+
+    /**
+     * Check whether the message count of a queue is counted from the stored messages on each read. Message counts of
+     * such stores already include all stored messages and are not changed by
+     * {@link #updateMessageCountsForQueues(Map)}
+     *
+     * @return true if message counts are counted from the stored messages
+     */
+    public boolean isMessageCountLive();
+
     /**
      * Store retained message list in the message store.
      * @see org.wso2.andes.kernel.AndesMessageMetadata#retain
@@ -387,6 +428,15 @@ public interface MessageStore extends HealthAwareStore{
      */
     public List<String> getAllRetainedTopics() throws AndesException;
 
+    /**
+     * Return metadata of all retained messages in the database
+     * @see org.wso2.andes.kernel.AndesMessageMetadata#retain
+     *
+     * @return Retained message metadata keyed by topic name
+     * @throws AndesException
+     */
+    public Map<String, AndesMessageMetadata> getAllRetainedMetadata() throws AndesException;
+
     /**
      * Get all content parts for the given message ID. The message ID should belong to a
      * existing retained message.
@@ -398,6 +448,17 @@ public interface MessageStore extends HealthAwareStore{
      */
     public Map<Integer, AndesMessagePart> getRetainedContentParts(long messageID) throws AndesException;
 
+    /**
+     * Get all content parts of the given retained messages in one batch.
+     * @see org.wso2.andes.kernel.AndesMessageMetadata#retain
+     *
+     * @param messageIDList Message IDs of retained messages
+     * @return Content parts keyed by offset for each message ID
+     * @throws AndesException
+     */
+    public Map<Long, Map<Integer, AndesMessagePart>> getRetainedContentParts(List<Long> messageIDList)
+            throws AndesException;
+
     /**
      * Return retained message metadata for the given destination. Null is returned if
      * no retained message is available for a destination.
@@ -20,9 +20,9 @@ package org.wso2.andes.kernel;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.log4j.Logger;
-import org.wso2.andes.amqp.AMQPUtils;
 import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.kernel.disruptor.inbound.InboundTransactionEvent;
 import org.wso2.andes.kernel.slot.ConnectionException;
 import org.wso2.andes.kernel.slot.SlotCoordinator;
 import org.wso2.andes.kernel.slot.SlotCoordinatorCluster;
@@ -32,9 +32,9 @@ import org.wso2.andes.kernel.slot.SlotManagerClusterMode;
 import org.wso2.andes.kernel.slot.SlotManagerStandalone;
 import org.wso2.andes.kernel.slot.SlotMessageCounter;
 import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.coordination.BlockReservingMessageIdGenerator;
 import org.wso2.andes.server.cluster.coordination.ClusterCoordinationHandler;
 import org.wso2.andes.server.cluster.coordination.MessageIdGenerator;
-import org.wso2.andes.server.cluster.coordination.TimeStampBasedMessageIdGenerator;
 import org.wso2.andes.server.cluster.coordination.hazelcast.HazelcastAgent;
 import org.wso2.andes.server.queue.DLCQueueUtils;
 import org.wso2.andes.subscription.SubscriptionStore;
@@ -42,6 +42,7 @@ import org.wso2.andes.thrift.MBThriftClient;
 import org.wso2.andes.tools.utils.MessageTracer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -71,7 +72,7 @@ public class MessagingEngine {
     private MessageIdGenerator messageIdGenerator;
 
     /**
-     * Updates the message counts in batches if batch size exceeds or the scheduled time elapses
+     * Keeps message counts in memory and updates the store in batches when the scheduled time elapses
      */
     private MessageCountFlusher messageCountFlusher;
 
@@ -101,6 +102,26 @@ public class MessagingEngine {
      */
     private SlotCoordinator slotCoordinator;
 
+    /**
+     * Node local index of retained messages used to resolve retained messages of new MQTT subscriptions
+     */
+    private RetainedMessageIndex retainedMessageIndex;
+
+    /**
+     * Listener used to communicate retained message changes to the cluster
+     */
+    private RetainedMessageListener retainedMessageListener;
+
+    /**
+     * Maximum number of retained messages content is read for in a single store call
+     */
+    private static final int RETAINED_CONTENT_BATCH_SIZE = 100;
+
+    /**
+     * Number of times moving the messages of a queue to the dead letter channel is tried before giving up
+     */
+    private static final int DLC_MOVE_ATTEMPTS = 3;
+
     /**
      * private constructor for singleton pattern
      */
@@ -138,8 +159,8 @@ public class MessagingEngine {
         // message count will be flushed to DB in these interval in seconds
         Integer messageCountFlushInterval = AndesConfigurationManager.readValue
                 (AndesConfiguration.PERFORMANCE_TUNING_MESSAGE_COUNTER_TASK_INTERVAL);
-        Integer messageCountFlushNumberGap = AndesConfigurationManager.readValue
-                (AndesConfiguration.PERFORMANCE_TUNING_MESSAGE_COUNTER_UPDATE_BATCH_SIZE);
+        Integer messageCountReconcileInterval = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_MESSAGE_COUNTER_RECONCILE_INTERVAL);
         Integer schedulerPeriod = AndesConfigurationManager.readValue
                 (AndesConfiguration.PERFORMANCE_TUNING_DELETION_CONTENT_REMOVAL_TASK_INTERVAL);
 
@@ -148,24 +169,45 @@ public class MessagingEngine {
 
         //register listeners for queue changes
         queueListener = new ClusterCoordinationHandler(HazelcastAgent.getInstance());
+        retainedMessageListener = new ClusterCoordinationHandler(HazelcastAgent.getInstance());
 
-        // Only two scheduled tasks running (content removal task and message count update task).
-        // And each scheduled tasks run with fixed delay. Hence at a given time
-        // maximum needed threads would be 2.
-        int threadPoolCount = 2;
+        Integer maxCachedRetainedContentSize = AndesConfigurationManager.readValue(
+                AndesConfiguration.TRANSPORTS_MQTT_RETAINED_MESSAGE_MAX_CACHED_CONTENT_SIZE);
+        RetainedMessageIndex retainedIndex = new RetainedMessageIndex(maxCachedRetainedContentSize);
+        for (Map.Entry<String, AndesMessageMetadata> entry : messageStore.getAllRetainedMetadata().entrySet()) {
+            retainedIndex.update(entry.getKey(), entry.getValue());
+        }
+        retainedMessageIndex = retainedIndex;
+        log.info("Loaded " + retainedIndex.size() + " retained messages to the retained message index");
+
+        // Only three scheduled tasks running (content removal task, message count update task and message count
+        // reconcile task). And each scheduled tasks run with fixed delay. Hence at a given time
+        // maximum needed threads would be 3.
+        int threadPoolCount = 3;
         ThreadFactory namedThreadFactory =
                 new ThreadFactoryBuilder().setNameFormat("MessagingEngine-AsyncStoreTasksSchedulerPool")
                                           .build();
         asyncStoreTasksScheduler = Executors.newScheduledThreadPool(threadPoolCount , namedThreadFactory);
 
         // This task will periodically flush message count value to the store
-        messageCountFlusher = new MessageCountFlusher(messageStore, messageCountFlushNumberGap);
+        messageCountFlusher = new MessageCountFlusher(messageStore);
 
         asyncStoreTasksScheduler.scheduleWithFixedDelay(messageCountFlusher,
                 messageCountFlushInterval,
                 messageCountFlushInterval,
                 TimeUnit.SECONDS);
 
+        // This task will periodically replace in memory message counts with the counts in the store
+        asyncStoreTasksScheduler.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        messageCountFlusher.reconcileMessageCounts();
+                    }
+                },
+                messageCountReconcileInterval,
+                messageCountReconcileInterval,
+                TimeUnit.SECONDS);
+
         /*
         Initialize the SlotCoordinator
          */
@@ -209,6 +251,53 @@ public class MessagingEngine {
         messageStore.storeMessages(messageList);
     }
 
+    /**
+     * Delete messages held in the staging area of a transaction. Staged messages are not counted in any queue,
+     * therefore queue counts are not updated. Expiry data of staged messages refers to their metadata, hence it
+     * is deleted first.
+     *
+     * @param stagingQueueName storage queue used as the staging area of the transaction
+     * @param messageIdList    ids of the staged messages to delete
+     * @throws AndesException
+     */
+    public void deleteStagedMessages(String stagingQueueName, List<Long> messageIdList) throws AndesException {
+        messageStore.deleteMessagesFromExpiryQueue(messageIdList);
+        messageStore.deleteMessages(stagingQueueName, messageIdList, false);
+    }
+
+    /**
+     * Move messages staged by a transaction to their destination queues in a single store transaction
+     *
+     * @param stagingQueueName storage queue used as the staging area of the transaction
+     * @param stagedMessageIds ids of the staged messages
+     * @param targetMetadata   new message ID and destination storage queue of each staged message
+     * @throws AndesException
+     */
+    public void moveStagedMessages(String stagingQueueName, List<Long> stagedMessageIds,
+                                   List<AndesMessageMetadata> targetMetadata) throws AndesException {
+        messageStore.moveStagedMessages(stagingQueueName, stagedMessageIds, targetMetadata);
+    }
+
+    /**
+     * Delete messages left in the staging areas of transactions of a node which left the cluster or restarted.
+     * Nothing is done if transaction staging is disabled.
+     *
+     * @param nodeId ID of the node
+     * @throws AndesException
+     */
+    public void deleteStagedMessagesOfNode(String nodeId) throws AndesException {
+        Integer stagingThreshold = AndesConfigurationManager.readValue(
+                AndesConfiguration.TRANSACTION_STAGING_THRESHOLD);
+        if (stagingThreshold > 0) {
+            int deletedMessageCount = messageStore.deleteAllMessagesOfStorageQueues(
+                    InboundTransactionEvent.getStagingQueuePrefix(nodeId));
+            if (deletedMessageCount > 0) {
+                log.info(deletedMessageCount + " staged messages of uncommitted transactions of node " + nodeId
+                        + " deleted");
+            }
+        }
+    }
+
     /**
      * Get a single metadata object
      *
@@ -267,20 +356,100 @@ public class MessagingEngine {
      */
     public void moveMessageToDeadLetterChannel(long messageId, String destinationQueueName)
             throws AndesException {
-        String deadLetterQueueName = DLCQueueUtils.identifyTenantInformationAndGenerateDLCString(destinationQueueName);
+        List<AndesRemovableMetadata> messages = new ArrayList<>(1);
+        messages.add(new AndesRemovableMetadata(messageId, destinationQueueName, destinationQueueName));
+        moveMessagesToDeadLetterChannel(messages);
+    }
 
-        messageStore.moveMetadataToDLC(messageId, deadLetterQueueName);
+    /**
+     * Move meta data of the given messages to the Dead Letter Channel and remove those meta data from the
+     * original queues. Messages are moved with one store operation per original queue and message counts and
+     * slot tracking are updated once for the whole batch.
+     * <p/>
+     * If the messages of a queue cannot be moved after {@link #DLC_MOVE_ATTEMPTS} attempts they are left in the
+     * original queue and their tracking is removed, so that their slot is not held by messages which will never
+     * be acknowledged. The slot is then checked again for messages and they are delivered once more. Messages of
+     * other queues are still moved and the failure is thrown afterwards.
+     *
+     * @param messages messages to move. Storage destination of each message is the original queue
+     * @throws AndesException if messages of any queue could not be moved
+     */
+    public void moveMessagesToDeadLetterChannel(List<AndesRemovableMetadata> messages) throws AndesException {
+        AndesException moveFailure = null;
+
+        for (Map.Entry<String, List<Long>> entry : groupByStorageQueue(messages).entrySet()) {
+            String destinationQueueName = entry.getKey();
+            List<Long> messageIDs = entry.getValue();
+            String deadLetterQueueName =
+                    DLCQueueUtils.identifyTenantInformationAndGenerateDLCString(destinationQueueName);
 
-        // Increment count by 1 in DLC and decrement by 1 in original queue
-        incrementQueueCount(deadLetterQueueName, 1);
-        decrementQueueCount(destinationQueueName, 1);
+            try {
+                moveMetadataToDLC(messageIDs, deadLetterQueueName);
+            } catch (AndesException e) {
+                log.error("Could not move " + messageIDs.size() + " messages of " + destinationQueueName
+                        + " to dead letter channel. Messages are released to be delivered again.", e);
+                OnflightMessageTracker.getInstance().stampMessagesAsDLCAndRemoveFromTacking(messageIDs);
+                moveFailure = e;
+                continue;
+            }
 
-        //remove tracking of the message
-        OnflightMessageTracker.getInstance()
-                .stampMessageAsDLCAndRemoveFromTacking(messageId);
+            // Increment count in DLC and decrement in original queue by the number of moved messages
+            incrementQueueCount(deadLetterQueueName, messageIDs.size());
+            decrementQueueCount(destinationQueueName, messageIDs.size());
 
-	    //Tracing message activity
-	    MessageTracer.trace(messageId, destinationQueueName, MessageTracer.MOVED_TO_DLC);
+            //remove tracking of the messages
+            OnflightMessageTracker.getInstance().stampMessagesAsDLCAndRemoveFromTacking(messageIDs);
+
+            //Tracing message activity
+            for (Long messageID : messageIDs) {
+                MessageTracer.trace(messageID, destinationQueueName, MessageTracer.MOVED_TO_DLC);
+            }
+        }
+
+        if (null != moveFailure) {
+            throw new AndesException("Error while moving messages to dead letter channel", moveFailure);
+        }
+    }
+
+    /**
+     * Group ids of the given messages by the queue they are stored in
+     *
+     * @param messages messages to group
+     * @return message ids by storage queue. Ids of a queue keep the order of the given messages
+     */
+    static Map<String, List<Long>> groupByStorageQueue(List<AndesRemovableMetadata> messages) {
+        Map<String, List<Long>> messageIDsByQueue = new HashMap<>();
+        for (AndesRemovableMetadata message : messages) {
+            List<Long> messageIDs = messageIDsByQueue.get(message.getStorageDestination());
+            if (null == messageIDs) {
+                messageIDs = new ArrayList<>();
+                messageIDsByQueue.put(message.getStorageDestination(), messageIDs);
+            }
+            messageIDs.add(message.getMessageID());
+        }
+        return messageIDsByQueue;
+    }
+
+    /**
+     * Move metadata of the given messages to a dead letter queue, retrying store failures
+     *
+     * @param messageIDs          ids of the messages to move
+     * @param deadLetterQueueName dead letter queue to move the messages to
+     * @throws AndesException if the last attempt fails
+     */
+    private void moveMetadataToDLC(List<Long> messageIDs, String deadLetterQueueName) throws AndesException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                messageStore.moveMetadataToDLC(messageIDs, deadLetterQueueName);
+                return;
+            } catch (AndesException e) {
+                if (attempt >= DLC_MOVE_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Attempt " + attempt + " to move " + messageIDs.size() + " messages to "
+                        + deadLetterQueueName + " failed. Retrying.", e);
+            }
+        }
     }
 
     /**
@@ -373,6 +542,8 @@ public class MessagingEngine {
                 //delete all the messages in dlc
                 deletedMessageCount = messageStore.clearDlcQueue(storageQueueName);
             }
+            // Counts are not decremented for purged messages
+            messageCountFlusher.reconcileMessageCount(storageQueueName);
 
             return deletedMessageCount;
 
@@ -462,6 +633,14 @@ public class MessagingEngine {
         messageCountFlusher.incrementQueueCount(queueName, incrementBy);
     }
 
+    /**
+     * Stop keeping the message count of a deleted queue in memory
+     * @param queueName name of the deleted queue
+     */
+    public void removeMessageCountOfQueue(String queueName) {
+        messageCountFlusher.removeQueue(queueName);
+    }
+
     /**
      * Get content chunk from store
      *
@@ -475,14 +654,15 @@ public class MessagingEngine {
     }
 
     /**
-     * Get message count for queue
+     * Get message count for queue. Count is served from memory and may not yet reflect changes made by other
+     * nodes of the cluster.
      *
      * @param queueName name of the queue
      * @return message count of the queue
      * @throws AndesException
      */
     public long getMessageCountOfQueue(String queueName) throws AndesException {
-        return messageStore.getMessageCountForQueue(queueName);
+        return messageCountFlusher.getMessageCount(queueName);
     }
 
     /**
@@ -616,14 +796,21 @@ public class MessagingEngine {
                 log.error(
                         "Error while loading Message id generator implementation : " +
                                 idGeneratorImpl +
-                                " adding TimeStamp based implementation as the default", e);
-                messageIdGenerator = new TimeStampBasedMessageIdGenerator();
+                                " adding block reserving implementation as the default", e);
+                messageIdGenerator = new BlockReservingMessageIdGenerator();
             }
         } else {
-            messageIdGenerator = new TimeStampBasedMessageIdGenerator();
+            messageIdGenerator = new BlockReservingMessageIdGenerator();
         }
     }
 
+    /**
+     * @return cluster wide unique message id generator
+     */
+    public MessageIdGenerator getMessageIdGenerator() {
+        return messageIdGenerator;
+    }
+
     /**
      * Start message delivery. Start threads. If not created create.
      */
@@ -716,19 +903,58 @@ public class MessagingEngine {
     }
 
     /**
-     * Store retained messages in the message store.
+     * Store retained messages in the message store. The retained message index of this node is updated after the
+     * messages are stored and other nodes are notified to update theirs.
      *
      * @see org.wso2.andes.kernel.AndesMessageMetadata#retain
      * @param retainMap Retained message Map
      */
     public void storeRetainedMessages(Map<String,AndesMessage> retainMap) throws AndesException {
         messageStore.storeRetainedMessages(retainMap);
+
+        for (AndesMessage message : retainMap.values()) {
+            retainedMessageIndex.update(message);
+            AndesMessageMetadata metadata = message.getMetadata();
+            RetainedMessageListener.RetainedMessageEvent changeType =
+                    (null == retainedMessageIndex.get(metadata.getDestination()))
+                            ? RetainedMessageListener.RetainedMessageEvent.DELETED
+                            : RetainedMessageListener.RetainedMessageEvent.UPDATED;
+            retainedMessageListener.handleLocalRetainedMessageChanged(metadata.getDestination(),
+                    metadata.getMessageID(), changeType);
+        }
     }
 
+    /**
+     * Refresh the retained message of a topic in the retained message index from the store. Called when the
+     * retained message of the topic is changed in another node.
+     *
+     * @param topic     topic of the retained message
+     * @param messageID id of the message which changed the retained message
+     * @throws AndesException
+     */
+    public void refreshRetainedMessage(String topic, long messageID) throws AndesException {
+        // Index is loaded from the store when the engine is initialised
+        if (null == retainedMessageIndex) {
+            return;
+        }
+
+        // Notifications of this node's own changes are received as well
+        RetainedMessageIndex.Entry entry = retainedMessageIndex.get(topic);
+        if (null != entry && entry.getMessageID() >= messageID) {
+            return;
+        }
+
+        AndesMessageMetadata metadata = messageStore.getRetainedMetadata(topic);
+        if (null == metadata) {
+            retainedMessageIndex.remove(topic, messageID);
+        } else {
+            retainedMessageIndex.update(topic, metadata);
+        }
+    }
 
     /**
      * Return matching retained message metadata for the given subscription topic name. An empty list is returned if no
-     * match is found.
+     * match is found. Retained messages are resolved from the retained message index without reading the store.
      *
      * @param subscriptionTopicName
      *         Destination string provided by the subscriber
@@ -736,13 +962,11 @@ public class MessagingEngine {
      * @throws AndesException
      */
     public List<AndesMessageMetadata> getRetainedMessageByTopic(String subscriptionTopicName) throws AndesException {
-        List<AndesMessageMetadata> retainMessageList = new ArrayList<AndesMessageMetadata>();
-        List<String> topicList = messageStore.getAllRetainedTopics();
+        List<RetainedMessageIndex.Entry> entries = retainedMessageIndex.getMatching(subscriptionTopicName);
+        List<AndesMessageMetadata> retainMessageList = new ArrayList<AndesMessageMetadata>(entries.size());
 
-        for (String topicName : topicList) {
-            if (TopicParserUtil.isMatching(topicName, subscriptionTopicName)) {
-                retainMessageList.add(messageStore.getRetainedMetadata(topicName));
-            }
+        for (RetainedMessageIndex.Entry entry : entries) {
+            retainMessageList.add(entry.getMetadata());
         }
 
         return retainMessageList;
@@ -757,12 +981,64 @@ public class MessagingEngine {
      * @throws AndesException
      */
     public AndesContent getRetainedMessageContent(AndesMessageMetadata metadata) throws AndesException {
-        long messageID = metadata.getMessageID();
-        int contentSize = AMQPUtils.convertAndesMetadataToAMQMetadata(metadata).getContentSize();
+        return getRetainedMessageContent(Collections.singletonList(metadata)).get(metadata.getMessageID());
+    }
 
-        Map<Integer, AndesMessagePart> retainedContentParts = messageStore.getRetainedContentParts(messageID);
+    /**
+     * Return message content for the given retained message metadata list. Content kept in the retained message
+     * index is used as it is and the rest is read from the store in batches.
+     *
+     * @param metadataList
+     *         Message metadata list
+     * @return AndesContent keyed by message id
+     * @throws AndesException
+     */
+    public Map<Long, AndesContent> getRetainedMessageContent(List<AndesMessageMetadata> metadataList)
+            throws AndesException {
+        Map<Long, AndesContent> contentMap = new HashMap<>(metadataList.size());
+        Map<Long, RetainedMessageIndex.Entry> entriesToRead = new HashMap<>();
+        List<Long> messageIDsToRead = new ArrayList<>();
+
+        for (AndesMessageMetadata metadata : metadataList) {
+            long messageID = metadata.getMessageID();
+            RetainedMessageIndex.Entry entry = retainedMessageIndex.get(metadata.getDestination());
+            if (null != entry && entry.getMessageID() != messageID) {
+                entry = null;
+            }
+            if (null != entry && null != entry.getContent()) {
+                contentMap.put(messageID, new RetainedContent(entry.getContent(), entry.getContentLength(),
+                        messageID));
+            } else {
+                entriesToRead.put(messageID, entry);
+                messageIDsToRead.add(messageID);
+            }
+        }
+
+        for (int start = 0; start < messageIDsToRead.size(); start = start + RETAINED_CONTENT_BATCH_SIZE) {
+            List<Long> batch = messageIDsToRead.subList(start,
+                    Math.min(start + RETAINED_CONTENT_BATCH_SIZE, messageIDsToRead.size()));
+            Map<Long, Map<Integer, AndesMessagePart>> contentPartsMap = messageStore.getRetainedContentParts(batch);
+            for (Long messageID : batch) {
+                Map<Integer, AndesMessagePart> contentParts = contentPartsMap.get(messageID);
+                if (null == contentParts) {
+                    contentParts = Collections.emptyMap();
+                }
+                RetainedMessageIndex.Entry entry = entriesToRead.get(messageID);
+                int contentSize;
+                if (null != entry) {
+                    contentSize = entry.getContentLength();
+                    retainedMessageIndex.cacheContent(entry, contentParts);
+                } else {
+                    contentSize = 0;
+                    for (AndesMessagePart messagePart : contentParts.values()) {
+                        contentSize = contentSize + messagePart.getDataLength();
+                    }
+                }
+                contentMap.put(messageID, new RetainedContent(contentParts, contentSize, messageID));
+            }
+        }
 
-        return new RetainedContent(retainedContentParts, contentSize, messageID);
+        return contentMap;
     }
 
     /**
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.server.store.MessageMetaDataType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Stored form of {@link AndesMessageMetadata}. Fields Andes needs to route, expire and deliver a message are written
+ * at fixed offsets ahead of the protocol header, so that metadata read from the store can be used without decoding
+ * the AMQP content header. The protocol header is kept as it was received and is only decoded when the message is
+ * handed over to the protocol for delivery.
+ * <p/>
+ * Layout of version 1
+ * <pre>
+ * offset  size  field
+ * 0       1     marker
+ * 1       1     version
+ * 2       1     flags (topic, persistent, destination override)
+ * 3       1     protocol metadata type
+ * 4       1     priority
+ * 5       1     qos level
+ * 6       8     expiration time
+ * 14      8     arrival time
+ * 22      4     content length
+ * 26      2     destination length (-1 if there is none), followed by the UTF-8 encoded destination
+ *         2     exchange length, followed by the UTF-8 encoded exchange (only if the destination is overridden)
+ *               protocol metadata (type byte followed by the protocol header)
+ * </pre>
+ * Metadata written before the envelope was introduced starts with the protocol metadata type, which is a small non
+ * negative ordinal. Those rows are identified by the missing marker and decoded by parsing the protocol header.
+ */
+final class MetadataEnvelope {
+
+    /**
+     * First byte of an envelope. Negative, hence never a {@link MessageMetaDataType} ordinal
+     */
+    static final byte MARKER = (byte) 0xAE;
+
+    static final byte VERSION = 1;
+
+    private static final byte FLAG_TOPIC = 1;
+
+    private static final byte FLAG_PERSISTENT = 1 << 1;
+
+    private static final byte FLAG_DESTINATION_OVERRIDE = 1 << 2;
+
+    private static final int FIXED_SIZE = 28;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private MetadataEnvelope() {
+    }
+
+    /**
+     * Check whether stored metadata is an envelope or plain protocol metadata written by an older broker
+     *
+     * @param bytes stored metadata
+     * @return true if the metadata is an envelope
+     */
+    static boolean isEnvelope(byte[] bytes) {
+        return null != bytes && bytes.length >= FIXED_SIZE && MARKER == bytes[0];
+    }
+
+    /**
+     * Write the envelope of the given metadata
+     *
+     * @param metadata metadata of the message
+     * @return envelope followed by the protocol metadata
+     */
+    static byte[] encode(AndesMessageMetadata metadata) {
+        byte[] protocolMetadata = metadata.getProtocolMetadata();
+        String exchangeOverride = metadata.getExchangeOverride();
+        byte[] destination = toBytes(metadata.getDestination());
+        byte[] exchange = (null == exchangeOverride) ? null : toBytes(exchangeOverride);
+
+        int size = FIXED_SIZE + lengthOf(destination) + protocolMetadata.length;
+        if (null != exchange) {
+            size = size + 2 + lengthOf(exchange);
+        }
+
+        byte flags = 0;
+        if (isTopic(metadata, protocolMetadata[0])) {
+            flags |= FLAG_TOPIC;
+        }
+        if (metadata.isPersistent()) {
+            flags |= FLAG_PERSISTENT;
+        }
+        if (null != exchange) {
+            flags |= FLAG_DESTINATION_OVERRIDE;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MARKER);
+        buffer.put(VERSION);
+        buffer.put(flags);
+        buffer.put(protocolMetadata[0]);
+        buffer.put((byte) metadata.getPriority());
+        buffer.put((byte) metadata.getQosLevel());
+        buffer.putLong(metadata.getExpirationTime());
+        buffer.putLong(metadata.getArrivalTime());
+        buffer.putInt(metadata.getMessageContentLength());
+        writeString(buffer, destination);
+        if (null != exchange) {
+            writeString(buffer, exchange);
+        }
+        buffer.put(protocolMetadata);
+        return buffer.array();
+    }
+
+    /**
+     * Read the fields of an envelope into the given metadata. The protocol header is not decoded.
+     *
+     * @param bytes    envelope as written by {@link #encode(AndesMessageMetadata)}
+     * @param metadata metadata to fill
+     */
+    static void decode(byte[] bytes, AndesMessageMetadata metadata) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        byte version = buffer.get();
+        if (VERSION != version) {
+            throw new IllegalArgumentException("Unsupported metadata envelope version " + version + " of message "
+                    + metadata.getMessageID());
+        }
+        byte flags = buffer.get();
+        byte type = buffer.get();
+        if (type >= 0 && type < MessageMetaDataType.values().length) {
+            metadata.setMetaDataType(MessageMetaDataType.values()[type]);
+        }
+        metadata.setTopic(0 != (flags & FLAG_TOPIC));
+        metadata.setPersistent(0 != (flags & FLAG_PERSISTENT));
+        metadata.setPriority(buffer.get());
+        metadata.setQosLevel(buffer.get());
+        metadata.setExpirationTime(buffer.getLong());
+        metadata.setArrivalTime(buffer.getLong());
+        metadata.setMessageContentLength(buffer.getInt());
+        metadata.setDestination(readString(buffer));
+        if (0 != (flags & FLAG_DESTINATION_OVERRIDE)) {
+            metadata.setExchangeOverride(readString(buffer));
+        }
+        metadata.setMetadata(Arrays.copyOfRange(bytes, buffer.position(), bytes.length));
+    }
+
+    /**
+     * Topic flag as the protocol header would carry it. A destination override makes the message a queue message
+     * unless it is routed through the topic exchange, MQTT messages are never topic messages after an override.
+     */
+    private static boolean isTopic(AndesMessageMetadata metadata, byte type) {
+        String exchangeOverride = metadata.getExchangeOverride();
+        if (null == exchangeOverride) {
+            return metadata.isTopic();
+        }
+        return MessageMetaDataType.META_DATA_MQTT.ordinal() != type
+                && AMQPUtils.TOPIC_EXCHANGE_NAME.equals(exchangeOverride);
+    }
+
+    private static byte[] toBytes(String value) {
+        return (null == value) ? null : value.getBytes(UTF_8);
+    }
+
+    private static int lengthOf(byte[] value) {
+        return (null == value) ? 0 : value.length;
+    }
+
+    private static void writeString(ByteBuffer buffer, byte[] value) {
+        if (null == value) {
+            buffer.putShort((short) -1);
+        } else {
+            buffer.putShort((short) value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -160,4 +160,12 @@ public class NoLossBurstTopicMessageDeliveryImpl implements MessageDeliveryStrat
 
         return sentMessageCount;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingMessages(String destination) {
+        return false;
+    }
 }
@@ -30,11 +30,15 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.*;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class will track message delivery by broker
@@ -61,22 +65,17 @@ public class OnflightMessageTracker {
     }
 
     /**
-     * In memory map keeping sent message statistics by message id
+     * In memory map keeping sent message statistics by message id. Keyed by primitive message id to avoid
+     * boxing and entry allocation per in-flight message.
      */
-    private final ConcurrentHashMap<Long, MessageData> msgId2MsgData;
+    private final MessageDataMap msgId2MsgData;
 
     /**
      * Map to track messages being buffered to be sent <Id of the slot, messageID, MsgData
      * reference>
      */
-    private final ConcurrentHashMap<String, ConcurrentHashMap<Long, MessageData>> messageBufferingTracker
-            = new ConcurrentHashMap<String, ConcurrentHashMap<Long, MessageData>>();
-
-    /**
-     * Map to track messages being sent <channel id, message id, MsgData reference>
-     */
-    private final ConcurrentHashMap<UUID, ConcurrentHashMap<Long, MessageData>> messageSendingTracker
-            = new ConcurrentHashMap<UUID, ConcurrentHashMap<Long, MessageData>>();
+    private final ConcurrentHashMap<String, MessageDataMap> messageBufferingTracker
+            = new ConcurrentHashMap<String, MessageDataMap>();
 
     /**
      * Map to keep track of message counts pending to read
@@ -91,6 +90,12 @@ public class OnflightMessageTracker {
      */
     private final ConcurrentMap<String, Set<Slot>> subscriptionSlotTracker = new ConcurrentHashMap<String, Set<Slot>>();
 
+    /**
+     * Concurrency level of per slot buffering maps. A slot is buffered by a single slot delivery worker and
+     * released by ack handlers, therefore few segments are enough.
+     */
+    private static final int SLOT_TRACKER_CONCURRENCY_LEVEL = 2;
+
     /**
      * Class to keep tracking data of a message
      */
@@ -101,7 +106,7 @@ public class OnflightMessageTracker {
         // Load factor set to default value 0.75
         // Concurrency level set to 6. Currently SlotDeliveryWorker, AckHandler AckSubscription, DeliveryEventHandler,
         // MessageFlusher access this. To be on the safe side set to 6.
-        msgId2MsgData = new ConcurrentHashMap<Long, MessageData>(16, 0.75f, 6);
+        msgId2MsgData = new MessageDataMap(16);
 
     }
 
@@ -173,8 +178,20 @@ public class OnflightMessageTracker {
      */
     public void decrementMessageCountInSlot(Slot slot)
             throws AndesException {
+        decrementMessageCountInSlot(slot, 1);
+    }
+
+    /**
+     * Decrement message count in slot by the given amount and if it is zero prepare for slot deletion
+     *
+     * @param slot   Slot whose message count is decremented
+     * @param amount number of messages of the slot that are done with
+     * @throws AndesException
+     */
+    public void decrementMessageCountInSlot(Slot slot, int amount)
+            throws AndesException {
         AtomicInteger pendingMessageCount = pendingMessagesBySlot.get(slot);
-        int messageCount = pendingMessageCount.decrementAndGet();
+        int messageCount = pendingMessageCount.addAndGet(-amount);
         if (messageCount == 0) {
             /*
             All the Acks for the slot has bee received. Check the slot again for unsend
@@ -190,6 +207,17 @@ public class OnflightMessageTracker {
         }
     }
 
+    /**
+     * Get number of messages of a slot which are not done with yet
+     *
+     * @param slot slot to get the count of
+     * @return pending message count, 0 if the slot is not tracked
+     */
+    int getPendingMessageCount(Slot slot) {
+        AtomicInteger pendingMessageCount = pendingMessagesBySlot.get(slot);
+        return null == pendingMessageCount ? 0 : pendingMessageCount.get();
+    }
+
     /**
      * Increment the message count in a slot
      *
@@ -231,8 +259,8 @@ public class OnflightMessageTracker {
             trackingData.addMessageStatus(MessageStatus.ACKED);
 
             //we consider ack is received if all acks came for channels message was sent
-            if (trackingData.allAcksReceived() && getNumberOfScheduledDeliveries(messageID) == 0) {
-                trackingData.addMessageStatus(MessageStatus.ACKED_BY_ALL);
+            if (trackingData.allAcksReceived() && getNumberOfScheduledDeliveries(messageID) == 0
+                    && trackingData.markAckedByAll()) {
 
                 isOKToDeleteMessage = true;
                 if (log.isDebugEnabled()) {
@@ -277,21 +305,25 @@ public class OnflightMessageTracker {
             log.debug("Buffering message id = " + messageID + " slot = " + slot.toString());
         }
         String slotID = slot.getId();
-        ConcurrentHashMap<Long, MessageData> messagesOfSlot = messageBufferingTracker.get(slotID);
+        MessageDataMap messagesOfSlot = messageBufferingTracker.get(slotID);
         if (messagesOfSlot == null) {
-            messagesOfSlot = new ConcurrentHashMap<Long, MessageData>();
-            messageBufferingTracker.put(slotID, messagesOfSlot);
+            messagesOfSlot = new MessageDataMap(SLOT_TRACKER_CONCURRENCY_LEVEL);
+            MessageDataMap existingMessagesOfSlot = messageBufferingTracker.putIfAbsent(slotID, messagesOfSlot);
+            if (null != existingMessagesOfSlot) {
+                messagesOfSlot = existingMessagesOfSlot;
+            }
             // track destination to slot
             // use this map to remove messageBufferingTracker when subscriber close before receive all messages in slot
-            Set<Slot> subscriptionSlots = subscriptionSlotTracker.get(slot.getDestinationOfMessagesInSlot());
+            String destination = slot.getDestinationOfMessagesInSlot();
+            Set<Slot> subscriptionSlots = subscriptionSlotTracker.get(destination);
             if(subscriptionSlots == null) {
-                Set<Slot> newTrackedSlots = new HashSet<Slot>();
-                newTrackedSlots.add(slot);
-                subscriptionSlotTracker.put(slot.getDestinationOfMessagesInSlot(), newTrackedSlots);
-            } else {
-                subscriptionSlots.add(slot);
-                subscriptionSlotTracker.put(slot.getDestinationOfMessagesInSlot(), subscriptionSlots);
+                Set<Slot> newTrackedSlots = Collections.newSetFromMap(new ConcurrentHashMap<Slot, Boolean>());
+                subscriptionSlots = subscriptionSlotTracker.putIfAbsent(destination, newTrackedSlots);
+                if (null == subscriptionSlots) {
+                    subscriptionSlots = newTrackedSlots;
+                }
             }
+            subscriptionSlots.add(slot);
         }
         MessageData trackingData = messagesOfSlot.get(messageID);
         if (trackingData == null) {
@@ -300,8 +332,8 @@ public class OnflightMessageTracker {
                     System.currentTimeMillis(),
                     andesMessageMetadata.getExpirationTime(),
                     MessageStatus.BUFFERED, andesMessageMetadata.getArrivalTime());
-            msgId2MsgData.put(messageID, trackingData);
-            messagesOfSlot.put(messageID, trackingData);
+            msgId2MsgData.put(trackingData);
+            messagesOfSlot.put(trackingData);
             isOKToBuffer = true;
         } else {
             if (log.isDebugEnabled()) {
@@ -322,8 +354,8 @@ public class OnflightMessageTracker {
     public boolean checkIfMessageIsAlreadyBuffered(Slot slot, long messageID) {
         boolean isAlreadyBuffered = false;
         String slotID = slot.getId();
-        MessageData trackingData = messageBufferingTracker.get(slotID).get(messageID);
-        if (trackingData != null) {
+        MessageDataMap messagesOfSlot = messageBufferingTracker.get(slotID);
+        if (null != messagesOfSlot && messagesOfSlot.containsKey(messageID)) {
             isAlreadyBuffered = true;
         }
         return isAlreadyBuffered;
@@ -343,10 +375,10 @@ public class OnflightMessageTracker {
             log.debug("Releasing tracking of messages for slot " + slot.toString());
         }
         String slotID = slot.getId();
-        ConcurrentHashMap<Long, MessageData> messagesOfSlot = messageBufferingTracker.remove(slotID);
+        MessageDataMap messagesOfSlot = messageBufferingTracker.remove(slotID);
         if (messagesOfSlot != null) {
-            for (Long messageId : messagesOfSlot.keySet()) {
-                MessageData msgData = getTrackingData(messageId);
+            for (MessageData msgData : messagesOfSlot.values()) {
+                long messageId = msgData.msgID;
                 msgData.addMessageStatus(MessageStatus.SLOT_REMOVED);
                 if (checkIfReadyToRemoveFromTracking(messageId)) {
                     if (log.isDebugEnabled()) {
@@ -396,10 +428,10 @@ public class OnflightMessageTracker {
             log.debug("Orphan slot situation and clear tracking of messages for slot = " + slot);
         }
         String slotID = slot.getId();
-        ConcurrentHashMap<Long, MessageData> messagesOfSlot = messageBufferingTracker.remove(slotID);
+        MessageDataMap messagesOfSlot = messageBufferingTracker.remove(slotID);
         if (messagesOfSlot != null) {
-            for (Long messageId : messagesOfSlot.keySet()) {
-                msgId2MsgData.remove(messageId);
+            for (MessageData msgData : messagesOfSlot.values()) {
+                msgId2MsgData.remove(msgData.msgID);
             }
         }
         subscriptionSlotTracker.remove(slot);
@@ -417,7 +449,10 @@ public class OnflightMessageTracker {
             log.debug("Releasing message buffering tacking id= " + messageId);
         }
         String slotID = slot.getId();
-        messageBufferingTracker.get(slotID).remove(messageId);
+        MessageDataMap messagesOfSlot = messageBufferingTracker.get(slotID);
+        if (null != messagesOfSlot) {
+            messagesOfSlot.remove(messageId);
+        }
     }
 
     /**
@@ -499,6 +534,41 @@ public class OnflightMessageTracker {
         decrementMessageCountInSlot(slot);
     }
 
+    /**
+     * Remove tracking of messages moved to the dead letter channel as a batch. Slot message counts are
+     * decremented once per slot. Messages which are no longer tracked are skipped.
+     *
+     * @param messageIDs ids of the messages moved to the dead letter channel
+     * @throws AndesException
+     */
+    public void stampMessagesAsDLCAndRemoveFromTacking(List<Long> messageIDs) throws AndesException {
+        Map<Slot, Integer> movedMessageCountBySlot = new HashMap<>();
+        for (Long messageID : messageIDs) {
+            MessageData trackingData = msgId2MsgData.remove(messageID);
+            if (null == trackingData) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Message id = " + messageID + " moved to DLC is not tracked");
+                }
+                continue;
+            }
+            for (UUID channelID : trackingData.getAllDeliveredChannels()) {
+                LocalSubscription subscription = AndesContext.getInstance().getSubscriptionStore()
+                        .getLocalSubscriptionForChannelId(channelID);
+                if (null != subscription) {
+                    subscription.msgRejectReceived(messageID);
+                }
+            }
+            releaseMessageBufferingFromTracking(trackingData.slot, messageID);
+
+            Integer movedMessageCount = movedMessageCountBySlot.get(trackingData.slot);
+            movedMessageCountBySlot.put(trackingData.slot, null == movedMessageCount ? 1 : movedMessageCount + 1);
+        }
+
+        for (Map.Entry<Slot, Integer> entry : movedMessageCountBySlot.entrySet()) {
+            decrementMessageCountInSlot(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Increment number of times this message is scheduled to be delivered
      * to different subscribers. This value will be equal to the number
@@ -542,6 +612,23 @@ public class OnflightMessageTracker {
         return count;
     }
 
+    /**
+     * Release a scheduled delivery added with {@link #incrementNumberOfScheduledDeliveries(long)} to hold the
+     * message while it is scheduled to subscribers over time. If all acknowledgements are already received the
+     * message can be deleted by the caller.
+     *
+     * @param messageID identifier of the message
+     * @return true if the message is OK to delete
+     */
+    public boolean releaseScheduledDelivery(long messageID) {
+        MessageData trackingData = getTrackingData(messageID);
+        if (trackingData == null) {
+            return false;
+        }
+        int count = decrementNumberOfScheduledDeliveries(messageID);
+        return count == 0 && trackingData.allAcksReceived() && trackingData.markAckedByAll();
+    }
+
     /**
      * Number of times a message is scheduled to deliver.
      * There will be this number of executables ready to
@@ -584,8 +671,7 @@ public class OnflightMessageTracker {
             writer.append("Channels sent");
             writer.append('\n');
 
-            for (Long messageID : msgId2MsgData.keySet()) {
-                MessageData trackingData = msgId2MsgData.get(messageID);
+            for (MessageData trackingData : msgId2MsgData.values()) {
                 writer.append(Long.toString(trackingData.msgID));
                 writer.append(',');
                 writer.append("null");
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-but-undelivered message buffer for queues in priority delivery mode. Messages are kept in one lane per
+ * JMS priority (0-9). Within a lane messages are ordered by message id, and lanes are iterated from the highest
+ * priority to the lowest. Therefore delivery strategies iterating the buffer always see urgent messages first while
+ * FIFO order is kept among messages of the same priority.
+ * <p/>
+ * Iterators are weakly consistent the same way as {@link ConcurrentSkipListSet} iterators are.
+ */
+public class PriorityMessageBuffer extends AbstractSet<AndesMessageMetadata> {
+
+    /**
+     * Number of priority lanes. JMS defines priorities 0 to 9
+     */
+    public static final int NUMBER_OF_PRIORITY_LANES = 10;
+
+    /**
+     * Priority lanes indexed by priority
+     */
+    private final ConcurrentSkipListSet<AndesMessageMetadata>[] lanes;
+
+    /**
+     * Number of messages in all the lanes. Kept separately since size() of a skip list set is not a constant
+     * time operation and buffer size is checked on every slot read
+     */
+    private final AtomicInteger size;
+
+    @SuppressWarnings("unchecked")
+    public PriorityMessageBuffer() {
+        lanes = new ConcurrentSkipListSet[NUMBER_OF_PRIORITY_LANES];
+        for (int i = 0; i < NUMBER_OF_PRIORITY_LANES; i++) {
+            lanes[i] = new ConcurrentSkipListSet<AndesMessageMetadata>();
+        }
+        size = new AtomicInteger(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean add(AndesMessageMetadata message) {
+        boolean added = laneOf(message).add(message);
+        if (added) {
+            size.incrementAndGet();
+        }
+        return added;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean remove(Object object) {
+        if (!(object instanceof AndesMessageMetadata)) {
+            return false;
+        }
+        boolean removed = laneOf((AndesMessageMetadata) object).remove(object);
+        if (removed) {
+            size.decrementAndGet();
+        }
+        return removed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean contains(Object object) {
+        return object instanceof AndesMessageMetadata && laneOf((AndesMessageMetadata) object).contains(object);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear() {
+        for (ConcurrentSkipListSet<AndesMessageMetadata> lane : lanes) {
+            while (null != lane.pollFirst()) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Number of messages buffered with the given priority
+     *
+     * @param priority JMS priority
+     * @return message count of the lane
+     */
+    public int sizeOfLane(int priority) {
+        return lanes[laneIndexOf(priority)].size();
+    }
+
+    /**
+     * Iterate messages from the highest priority lane to the lowest. Removing through the iterator removes the
+     * message from its lane.
+     *
+     * @return iterator over buffered messages
+     */
+    @Override
+    public Iterator<AndesMessageMetadata> iterator() {
+        return new PriorityLaneIterator();
+    }
+
+    private ConcurrentSkipListSet<AndesMessageMetadata> laneOf(AndesMessageMetadata message) {
+        return lanes[laneIndexOf(message.getPriority())];
+    }
+
+    /**
+     * Map a priority to a lane. Out of range priorities are clamped to the nearest lane.
+     *
+     * @param priority JMS priority
+     * @return lane index
+     */
+    private static int laneIndexOf(int priority) {
+        if (priority < 0) {
+            return 0;
+        } else if (priority >= NUMBER_OF_PRIORITY_LANES) {
+            return NUMBER_OF_PRIORITY_LANES - 1;
+        }
+        return priority;
+    }
+
+    /**
+     * Iterator walking lanes from highest priority to lowest
+     */
+    private class PriorityLaneIterator implements Iterator<AndesMessageMetadata> {
+
+        private int currentLane = NUMBER_OF_PRIORITY_LANES - 1;
+
+        private Iterator<AndesMessageMetadata> laneIterator = lanes[currentLane].iterator();
+
+        /**
+         * Last element returned by the iterator. Used for removal.
+         */
+        private AndesMessageMetadata lastReturned;
+
+        @Override
+        public boolean hasNext() {
+            while (!laneIterator.hasNext()) {
+                if (currentLane == 0) {
+                    return false;
+                }
+                currentLane--;
+                laneIterator = lanes[currentLane].iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public AndesMessageMetadata next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = laneIterator.next();
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (null == lastReturned) {
+                throw new IllegalStateException();
+            }
+            PriorityMessageBuffer.this.remove(lastReturned);
+            lastReturned = null;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Chooses the subscriber of a destination to receive the next queue message. Subscribers with room for more
+ * messages wait in a ready queue and take turns in order. A subscriber receives up to a batch of consecutive
+ * messages in its turn, limited by its remaining credit. Subscribers found without room are parked and are only
+ * checked again at the start of the next dispatch round, therefore scheduling a message does not depend on the number
+ * of saturated subscribers.
+ * <p/>
+ * Not thread safe. A destination is dispatched by a single slot delivery worker.
+ */
+public class ReadySubscriberScheduler {
+
+    /**
+     * Maximum number of consecutive messages scheduled to a subscriber in a turn
+     */
+    private final int batchSize;
+
+    /**
+     * Active subscriptions of the destination at the start of the current round
+     */
+    private Set<LocalSubscription> subscriptions = Collections.emptySet();
+
+    /**
+     * Subscriptions expected to have room, in the order they get their turn
+     */
+    private final Set<LocalSubscription> readySubscriptions = new LinkedHashSet<LocalSubscription>();
+
+    /**
+     * Subscriptions without room at the time they were last checked
+     */
+    private final Set<LocalSubscription> saturatedSubscriptions = new LinkedHashSet<LocalSubscription>();
+
+    private LocalSubscription currentSubscription;
+
+    /**
+     * Messages the current subscription can still receive in its turn
+     */
+    private int remainingInTurn;
+
+    public ReadySubscriberScheduler(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Start a dispatch round. New subscriptions join the ready queue, removed ones are dropped and parked
+     * subscriptions which regained room since the last round through acknowledgements are ready again.
+     *
+     * @param activeSubscriptions active local subscriptions of the destination
+     */
+    public void startRound(Set<LocalSubscription> activeSubscriptions) {
+        for (LocalSubscription subscription : activeSubscriptions) {
+            if (!subscriptions.contains(subscription)) {
+                readySubscriptions.add(subscription);
+            }
+        }
+        subscriptions = activeSubscriptions;
+
+        Iterator<LocalSubscription> saturatedIterator = saturatedSubscriptions.iterator();
+        while (saturatedIterator.hasNext()) {
+            LocalSubscription subscription = saturatedIterator.next();
+            if (!subscriptions.contains(subscription)) {
+                saturatedIterator.remove();
+            } else if (subscription.hasRoomToAcceptMessages()) {
+                saturatedIterator.remove();
+                readySubscriptions.add(subscription);
+            }
+        }
+    }
+
+    /**
+     * Get the subscription whose turn it is. Moves to the next ready subscription when the turn of the current one is
+     * over.
+     *
+     * @return subscription to receive the next message. Null if no subscription has room.
+     */
+    public LocalSubscription getCurrentSubscription() {
+        if (null != currentSubscription) {
+            if (remainingInTurn > 0 && isActive(currentSubscription)
+                    && currentSubscription.hasRoomToAcceptMessages()) {
+                return currentSubscription;
+            }
+            endTurn();
+        }
+
+        Iterator<LocalSubscription> readyIterator = readySubscriptions.iterator();
+        while (readyIterator.hasNext()) {
+            LocalSubscription subscription = readyIterator.next();
+            readyIterator.remove();
+            if (!isActive(subscription)) {
+                continue;
+            }
+            if (subscription.hasRoomToAcceptMessages()) {
+                currentSubscription = subscription;
+                remainingInTurn = Math.max(1, Math.min(batchSize, subscription.getRemainingCredit()));
+                return subscription;
+            }
+            saturatedSubscriptions.add(subscription);
+        }
+        return null;
+    }
+
+    /**
+     * Find a subscription with room, other than the current one, which accepts the message. Used when the current
+     * subscription is not interested in the message. Ready subscriptions found without room are parked.
+     *
+     * @param message metadata of the message
+     * @return interested subscription. Null if none of the ready subscriptions is interested.
+     * @throws AndesException
+     */
+    public LocalSubscription findInterestedSubscription(AndesMessageMetadata message) throws AndesException {
+        Iterator<LocalSubscription> readyIterator = readySubscriptions.iterator();
+        while (readyIterator.hasNext()) {
+            LocalSubscription subscription = readyIterator.next();
+            if (!isActive(subscription)) {
+                readyIterator.remove();
+            } else if (!subscription.hasRoomToAcceptMessages()) {
+                readyIterator.remove();
+                saturatedSubscriptions.add(subscription);
+            } else if (subscription.hasInterest(message)) {
+                return subscription;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record that a message was scheduled to the subscription
+     *
+     * @param subscription subscription the message was scheduled to
+     */
+    public void messageScheduled(LocalSubscription subscription) {
+        if (subscription == currentSubscription) {
+            remainingInTurn--;
+        }
+    }
+
+    /**
+     * @return true if a subscription of the destination was found without room in this or an earlier round
+     */
+    public boolean hasSaturatedSubscriptions() {
+        return !saturatedSubscriptions.isEmpty()
+                || (null != currentSubscription && !currentSubscription.hasRoomToAcceptMessages());
+    }
+
+    /**
+     * Put the current subscription at the end of the ready queue, or park it if it ran out of room
+     */
+    private void endTurn() {
+        if (isActive(currentSubscription)) {
+            if (currentSubscription.hasRoomToAcceptMessages()) {
+                readySubscriptions.add(currentSubscription);
+            } else {
+                saturatedSubscriptions.add(currentSubscription);
+            }
+        }
+        currentSubscription = null;
+        remainingInTurn = 0;
+    }
+
+    private boolean isActive(LocalSubscription subscription) {
+        return subscriptions.contains(subscription) && subscription.hasExternalSubscriptions();
+    }
+}
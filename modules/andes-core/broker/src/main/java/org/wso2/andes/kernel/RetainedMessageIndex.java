@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.wso2.andes.amqp.AMQPUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Node local index of retained messages. Retained messages are kept in a trie of topic levels so that a subscription
+ * topic with wildcards is resolved by walking only the matching branches instead of matching every retained topic.
+ * Each entry holds the metadata of the retained message and, if the content is small, the content as well.
+ * <p/>
+ * Updates are serialized while lookups do not lock. A lookup running concurrently with an update sees either the
+ * previous or the new retained message of a topic.
+ * <p/>
+ * Topics are matched as {@link TopicParserUtil#isMatching(String, String)} does.
+ */
+public class RetainedMessageIndex {
+
+    /**
+     * Root of the topic trie. Root does not represent a topic since every topic has at least one level.
+     */
+    private final TopicNode root = new TopicNode();
+
+    /**
+     * Maximum content size in bytes of a retained message to keep its content in memory
+     */
+    private final int maxCachedContentSize;
+
+    /**
+     * Number of topics with a retained message
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Create an empty index
+     *
+     * @param maxCachedContentSize content of retained messages up to this size in bytes is kept in memory
+     */
+    public RetainedMessageIndex(int maxCachedContentSize) {
+        this.maxCachedContentSize = maxCachedContentSize;
+    }
+
+    /**
+     * Update the retained message of the topic of the given message. A message with empty content removes the
+     * retained message of the topic.
+     *
+     * @param message retained message written to the store
+     */
+    public void update(AndesMessage message) {
+        AndesMessageMetadata metadata = message.getMetadata();
+        List<AndesMessagePart> contentChunks = message.getContentChunkList();
+
+        int contentLength = 0;
+        for (AndesMessagePart messagePart : contentChunks) {
+            contentLength = contentLength + messagePart.getDataLength();
+        }
+
+        if (0 == contentLength) {
+            remove(metadata.getDestination());
+        } else {
+            Map<Integer, AndesMessagePart> content = null;
+            if (contentLength <= maxCachedContentSize) {
+                content = new HashMap<>(contentChunks.size());
+                for (AndesMessagePart messagePart : contentChunks) {
+                    content.put(messagePart.getOffSet(), messagePart);
+                }
+            }
+            put(metadata.getDestination(), new Entry(metadata, contentLength, content), false);
+        }
+    }
+
+    /**
+     * Update the retained message of a topic with metadata read from the store unless the index already has a newer
+     * message for the topic. Content is not kept until it is read with {@link #cacheContent(Entry, Map)}. A message
+     * with empty content removes the retained message of the topic.
+     *
+     * @param topic    topic of the retained message
+     * @param metadata metadata of the retained message
+     */
+    public void update(String topic, AndesMessageMetadata metadata) {
+        int contentLength = AMQPUtils.convertAndesMetadataToAMQMetadata(metadata).getContentSize();
+        if (0 == contentLength) {
+            remove(topic, metadata.getMessageID());
+        } else {
+            put(topic, new Entry(metadata, contentLength, null), true);
+        }
+    }
+
+    /**
+     * Keep the content of a retained message read from the store if it is small enough
+     *
+     * @param entry   entry of the retained message
+     * @param content content parts keyed by offset
+     */
+    public void cacheContent(Entry entry, Map<Integer, AndesMessagePart> content) {
+        if (entry.contentLength <= maxCachedContentSize) {
+            entry.content = content;
+        }
+    }
+
+    /**
+     * Remove the retained message of a topic
+     *
+     * @param topic topic name
+     */
+    public void remove(String topic) {
+        remove(topic, Long.MAX_VALUE);
+    }
+
+    /**
+     * Remove the retained message of a topic unless it is newer than the given message
+     *
+     * @param topic     topic name
+     * @param messageID id of the message which removed the retained message
+     */
+    public synchronized void remove(String topic, long messageID) {
+        List<String> levels = splitTopic(topic);
+        TopicNode[] path = new TopicNode[levels.size() + 1];
+        path[0] = root;
+        for (int i = 0; i < levels.size(); i++) {
+            path[i + 1] = path[i].children.get(levels.get(i));
+            if (null == path[i + 1]) {
+                return;
+            }
+        }
+
+        TopicNode node = path[levels.size()];
+        if (null != node.entry && node.entry.getMessageID() <= messageID) {
+            node.entry = null;
+            size.decrementAndGet();
+        }
+
+        // Prune nodes left without a retained message or children
+        for (int i = levels.size(); i > 0 && path[i].isEmpty(); i--) {
+            path[i - 1].children.remove(levels.get(i - 1));
+        }
+    }
+
+    /**
+     * Get the retained message of a topic
+     *
+     * @param topic topic name
+     * @return entry of the retained message, null if the topic has no retained message
+     */
+    public Entry get(String topic) {
+        TopicNode node = root;
+        for (String level : splitTopic(topic)) {
+            node = node.children.get(level);
+            if (null == node) {
+                return null;
+            }
+        }
+        return node.entry;
+    }
+
+    /**
+     * Get retained messages of all topics matching the given subscription topic
+     *
+     * @param subscriptionTopic subscription topic which may have wildcards
+     * @return matching entries, empty if no topic matches
+     * @throws AndesException if the subscription topic is not valid
+     */
+    public List<Entry> getMatching(String subscriptionTopic) throws AndesException {
+        List<String> levels = splitSubscriptionTopic(subscriptionTopic);
+        List<Entry> matches = new ArrayList<>();
+        match(root, levels, 0, 0, matches);
+        return matches;
+    }
+
+    /**
+     * @return number of topics with a retained message
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private synchronized void put(String topic, Entry entry, boolean onlyIfNewer) {
+        TopicNode node = root;
+        for (String level : splitTopic(topic)) {
+            TopicNode child = node.children.get(level);
+            if (null == child) {
+                child = new TopicNode();
+                node.children.put(level, child);
+            }
+            node = child;
+        }
+        if (null == node.entry) {
+            size.incrementAndGet();
+        } else if (onlyIfNewer && node.entry.getMessageID() >= entry.getMessageID()) {
+            return;
+        }
+        node.entry = entry;
+    }
+
+    /**
+     * Collect entries of the topics under the given node matching the subscription levels starting from the given
+     * level.
+     * <p/>
+     * A single level wildcard is also matched by a missing level at the end of a topic, e.g. "a/+" matches "a".
+     * Overflow counts the subscription levels matched past the end of the topic of the given node this way.
+     */
+    private static void match(TopicNode node, List<String> levels, int level, int overflow, List<Entry> matches) {
+        if (level == levels.size()) {
+            if (overflow <= 1) {
+                addEntry(node, matches);
+            }
+            return;
+        }
+
+        String subscriptionLevel = levels.get(level);
+        if (TopicParserUtil.MULTIPLE_LEVEL_WILDCARD.equals(subscriptionLevel)) {
+            if (0 == overflow) {
+                addAllEntries(node, matches);
+            } else {
+                addEntry(node, matches);
+            }
+        } else if (TopicParserUtil.SINGLE_LEVEL_WILDCARD.equals(subscriptionLevel)) {
+            if (0 == overflow) {
+                for (TopicNode child : node.children.values()) {
+                    match(child, levels, level + 1, 0, matches);
+                }
+            }
+            if (null != node.entry) {
+                match(node, levels, level + 1, overflow + 1, matches);
+            }
+        } else if (0 == overflow) {
+            TopicNode child = node.children.get(subscriptionLevel);
+            if (null != child) {
+                match(child, levels, level + 1, 0, matches);
+            }
+        }
+    }
+
+    private static void addEntry(TopicNode node, List<Entry> matches) {
+        Entry entry = node.entry;
+        if (null != entry) {
+            matches.add(entry);
+        }
+    }
+
+    private static void addAllEntries(TopicNode node, List<Entry> matches) {
+        addEntry(node, matches);
+        for (TopicNode child : node.children.values()) {
+            addAllEntries(child, matches);
+        }
+    }
+
+    /**
+     * Split a topic to levels the same way {@link TopicParserUtil} does
+     */
+    private static List<String> splitTopic(String topic) {
+        String[] levels = topic.split(TopicParserUtil.TOPIC_TOKEN_SEPARATOR);
+        if (0 == levels.length) {
+            return Collections.singletonList("");
+        }
+        return Arrays.asList(levels);
+    }
+
+    /**
+     * Split a subscription topic to levels validating wildcards
+     */
+    private static List<String> splitSubscriptionTopic(String subscriptionTopic) throws AndesException {
+        List<String> levels = splitTopic(subscriptionTopic);
+        for (int i = 0; i < levels.size(); i++) {
+            String level = levels.get(i);
+            if (TopicParserUtil.MULTIPLE_LEVEL_WILDCARD.equals(level)) {
+                if (i != levels.size() - 1) {
+                    throw new AndesException("Bad format of topic " + subscriptionTopic
+                            + ", the multi symbol (#) has to be the last one after a separator");
+                }
+            } else if (!TopicParserUtil.SINGLE_LEVEL_WILDCARD.equals(level)
+                    && (level.contains(TopicParserUtil.MULTIPLE_LEVEL_WILDCARD)
+                    || level.contains(TopicParserUtil.SINGLE_LEVEL_WILDCARD))) {
+                throw new AndesException("Bad format of topic " + subscriptionTopic + ", invalid subtopic name: "
+                        + level);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * A topic level in the trie
+     */
+    private static class TopicNode {
+
+        /**
+         * Next levels keyed by level name
+         */
+        private final Map<String, TopicNode> children = new ConcurrentHashMap<>();
+
+        /**
+         * Retained message of the topic ending at this level, null if there is none
+         */
+        private volatile Entry entry;
+
+        private boolean isEmpty() {
+            return null == entry && children.isEmpty();
+        }
+    }
+
+    /**
+     * Retained message of a topic
+     */
+    public static class Entry {
+
+        private final AndesMessageMetadata metadata;
+
+        private final int contentLength;
+
+        /**
+         * Content parts keyed by offset, null if the content is not kept in memory
+         */
+        private volatile Map<Integer, AndesMessagePart> content;
+
+        private Entry(AndesMessageMetadata metadata, int contentLength, Map<Integer, AndesMessagePart> content) {
+            this.metadata = metadata.shallowCopy(metadata.getMessageID());
+            this.contentLength = contentLength;
+            this.content = content;
+        }
+
+        public long getMessageID() {
+            return metadata.getMessageID();
+        }
+
+        /**
+         * Metadata of the retained message. A copy is returned since metadata is updated when delivering.
+         *
+         * @return copy of the metadata
+         */
+        public AndesMessageMetadata getMetadata() {
+            return metadata.shallowCopy(metadata.getMessageID());
+        }
+
+        public int getContentLength() {
+            return contentLength;
+        }
+
+        /**
+         * @return content parts keyed by offset, null if the content is not kept in memory
+         */
+        public Map<Integer, AndesMessagePart> getContent() {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+/**
+ * Listener listening for retained message changes local and cluster
+ */
+public interface RetainedMessageListener {
+
+    public static enum RetainedMessageEvent {
+        UPDATED,
+        DELETED
+    }
+
+    /**
+     * Handle the event where the retained message of a topic has changed in another node
+     *
+     * @param topic      topic of the retained message
+     * @param messageID  id of the message which changed the retained message
+     * @param changeType what type of change has happened
+     */
+    public void handleClusterRetainedMessageChanged(String topic, long messageID, RetainedMessageEvent changeType)
+            throws AndesException;
+
+    /**
+     * Handle the retained message of a topic has changed in this node
+     *
+     * @param topic      topic of the retained message
+     * @param messageID  id of the message which changed the retained message
+     * @param changeType what type of change has happened
+     */
+    public void handleLocalRetainedMessageChanged(String topic, long messageID, RetainedMessageEvent changeType)
+            throws AndesException;
+}
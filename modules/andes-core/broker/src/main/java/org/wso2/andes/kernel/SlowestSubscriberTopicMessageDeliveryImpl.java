@@ -170,5 +170,11 @@ public class SlowestSubscriberTopicMessageDeliveryImpl implements MessageDeliver
         return sentMessageCount;
     }
 
-
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingMessages(String destination) {
+        return false;
+    }
 }
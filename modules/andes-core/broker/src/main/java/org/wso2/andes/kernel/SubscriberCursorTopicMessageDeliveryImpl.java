@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.configuration.util.SlowSubscriberPolicy;
+import org.wso2.andes.server.store.MessageMetaDataType;
+import org.wso2.andes.subscription.SubscriptionStore;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements topic message delivery through a shared in-memory log per topic. Messages read to the
+ * buffer are moved to the log of the topic once and each non-durable subscriber reads the log at its own pace,
+ * limited by its own credit. Therefore slow subscribers do not hold back fast ones until the log is full. When it is
+ * full, subscribers which have not read the oldest message are handled according to the configured
+ * {@link SlowSubscriberPolicy}.
+ * <p/>
+ * A message in the log holds a scheduled delivery so that acknowledgements do not delete it while subscribers are
+ * still to receive it. The hold is released when every subscriber has passed the message. The log of a topic is
+ * dropped once the topic has no subscribers left.
+ */
+public class SubscriberCursorTopicMessageDeliveryImpl implements MessageDeliveryStrategy {
+
+    private static Log log = LogFactory.getLog(SubscriberCursorTopicMessageDeliveryImpl.class);
+
+    private SubscriptionStore subscriptionStore;
+
+    /**
+     * Message log of each topic
+     */
+    private final Map<String, TopicMessageLog> topicMessageLogs = new ConcurrentHashMap<String, TopicMessageLog>();
+
+    private final int topicLogSize;
+
+    private final SlowSubscriberPolicy slowSubscriberPolicy;
+
+    public SubscriberCursorTopicMessageDeliveryImpl(SubscriptionStore subscriptionStore) {
+        this.subscriptionStore = subscriptionStore;
+        this.topicLogSize = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_TOPIC_MESSAGE_LOG_SIZE);
+        this.slowSubscriberPolicy = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_TOPIC_SLOW_SUBSCRIBER_POLICY);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deliverMessageToSubscriptions(String destination, Set<AndesMessageMetadata> messages) throws
+            AndesException {
+
+        TopicMessageLog topicMessageLog = topicMessageLogs.get(destination);
+        if (null == topicMessageLog) {
+            topicMessageLog = new TopicMessageLog(topicLogSize);
+            topicMessageLogs.put(destination, topicMessageLog);
+        }
+
+        Set<LocalSubscription> subscriptions = new LinkedHashSet<LocalSubscription>();
+        for (LocalSubscription subscription : subscriptionStore.getActiveLocalSubscribers(destination, true)) {
+            //Durable topic subscriptions get messages via queue path
+            if (!subscription.isDurable()) {
+                subscriptions.add(subscription);
+            }
+        }
+        topicMessageLog.updateSubscriptions(subscriptions);
+
+        int sentMessageCount = deliverFromLog(topicMessageLog);
+        List<AndesMessageMetadata> trimmedMessages = topicMessageLog.trim();
+
+        Iterator<AndesMessageMetadata> iterator = messages.iterator();
+        while (iterator.hasNext()) {
+            try {
+                if (topicMessageLog.isFull() && !makeRoom(destination, topicMessageLog, trimmedMessages)) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Topic message log of " + destination + " is full. Messages are kept in buffer.");
+                    }
+                    break;
+                }
+                AndesMessageMetadata message = iterator.next();
+                OnflightMessageTracker.getInstance().incrementNumberOfScheduledDeliveries(message.getMessageID());
+                topicMessageLog.append(message);
+                iterator.remove();
+            } catch (NoSuchElementException ex) {
+                // This exception can occur because the iterator of ConcurrentSkipListSet loads the at-the-time
+                // snapshot. Some records could be deleted by the time the iterator reaches them.
+                log.warn("NoSuchElementException thrown. ", ex);
+                break;
+            }
+        }
+
+        sentMessageCount = sentMessageCount + deliverFromLog(topicMessageLog);
+        trimmedMessages.addAll(topicMessageLog.trim());
+        releaseMessages(trimmedMessages);
+
+        if (subscriptions.isEmpty()) {
+            //Log has no cursors left, so every message in it is already trimmed and released
+            topicMessageLogs.remove(destination);
+        }
+
+        return sentMessageCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasPendingMessages(String destination) {
+        TopicMessageLog topicMessageLog = topicMessageLogs.get(destination);
+        return null != topicMessageLog && topicMessageLog.hasPendingMessages();
+    }
+
+    /**
+     * Schedule messages of the log to each subscriber up to its remaining credit
+     *
+     * @param topicMessageLog message log of the topic
+     * @return number of messages scheduled
+     */
+    private int deliverFromLog(TopicMessageLog topicMessageLog) {
+        int sentMessageCount = 0;
+        for (LocalSubscription subscription : topicMessageLog.getSubscriptions()) {
+            int credit = subscription.hasRoomToAcceptMessages() ? subscription.getRemainingCredit() : 0;
+            while (credit > 0) {
+                AndesMessageMetadata message = topicMessageLog.next(subscription);
+                if (null == message) {
+                    break;
+                }
+                if (isInterested(subscription, message)) {
+                    MessageFlusher.getInstance().deliverMessageAsynchronously(subscription, message);
+                    sentMessageCount++;
+                    credit--;
+                }
+            }
+        }
+        return sentMessageCount;
+    }
+
+    /**
+     * Make room in a full log according to the slow subscriber policy
+     *
+     * @param destination     topic of the log
+     * @param topicMessageLog message log of the topic
+     * @param trimmedMessages list to add messages removed from the log
+     * @return true if the log has room after
+     */
+    private boolean makeRoom(String destination, TopicMessageLog topicMessageLog,
+                             List<AndesMessageMetadata> trimmedMessages) {
+        switch (slowSubscriberPolicy) {
+            case DISCONNECT:
+                for (LocalSubscription subscription : topicMessageLog.getSubscriptionsAtHead()) {
+                    try {
+                        if (subscription.forceDisconnect("Subscriber is too slow to receive messages of topic "
+                                + destination)) {
+                            log.warn("Disconnected slow subscriber " + subscription + " of topic " + destination);
+                            topicMessageLog.evictSubscription(subscription);
+                        }
+                    } catch (AndesException e) {
+                        log.error("Error while disconnecting slow subscriber " + subscription, e);
+                    }
+                }
+                //Subscribers which could not be disconnected lose the oldest message
+                topicMessageLog.skipOldest();
+                break;
+            case DROP_OLDEST:
+                if (log.isDebugEnabled()) {
+                    log.debug("Dropping oldest message of topic " + destination + " for subscribers "
+                            + topicMessageLog.getSubscriptionsAtHead());
+                }
+                topicMessageLog.skipOldest();
+                break;
+            default:
+                //Leave messages in the buffer and the store until slow subscribers catch up
+                return false;
+        }
+        trimmedMessages.addAll(topicMessageLog.trim());
+        return !topicMessageLog.isFull();
+    }
+
+    /**
+     * Release the hold of messages removed from the log and delete the ones which are already acknowledged by all
+     * their receivers, including messages no subscriber received
+     *
+     * @param trimmedMessages messages removed from the log
+     * @throws AndesException
+     */
+    private void releaseMessages(Collection<AndesMessageMetadata> trimmedMessages) throws AndesException {
+        if (trimmedMessages.isEmpty()) {
+            return;
+        }
+        List<AndesRemovableMetadata> messagesToRemove = new ArrayList<AndesRemovableMetadata>();
+        for (AndesMessageMetadata message : trimmedMessages) {
+            if (OnflightMessageTracker.getInstance().releaseScheduledDelivery(message.getMessageID())) {
+                messagesToRemove.add(new AndesRemovableMetadata(message.getMessageID(), message.getDestination(),
+                        message.getStorageQueueName()));
+            }
+        }
+        MessagingEngine.getInstance().deleteMessages(messagesToRemove, false);
+        OnflightMessageTracker.getInstance().updateMessageDeliveryInSlot(messagesToRemove);
+    }
+
+    /**
+     * Only topic subscribers who appeared before publishing the message and use the same protocol as the publisher
+     * should receive it
+     *
+     * @param subscription topic subscriber
+     * @param message      metadata of the message
+     * @return true if the message should be sent to the subscriber
+     */
+    private boolean isInterested(LocalSubscription subscription, AndesMessageMetadata message) {
+        if (subscription.getSubscribeTime() > message.getArrivalTime()) {
+            return false;
+        }
+        boolean isMQTTMessage = MessageMetaDataType.META_DATA_MQTT == message.getMetaDataType();
+        if (AndesSubscription.SubscriptionType.MQTT == subscription.getSubscriptionType()) {
+            return isMQTTMessage;
+        } else if (AndesSubscription.SubscriptionType.AMQP == subscription.getSubscriptionType()) {
+            return !isMQTTMessage;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded in-memory log of messages of a topic. Each local subscriber of the topic has a cursor and reads the log
+ * at its own pace. A message is trimmed from the log once every cursor has passed it.
+ * <p/>
+ * Not thread safe. A destination is dispatched by a single slot delivery worker.
+ */
+public class TopicMessageLog {
+
+    /**
+     * Messages of the log. Message with sequence s is at index s % capacity.
+     */
+    private final AndesMessageMetadata[] entries;
+
+    /**
+     * Sequence of the oldest message in the log
+     */
+    private long headSequence;
+
+    /**
+     * Sequence the next appended message gets
+     */
+    private long tailSequence;
+
+    /**
+     * Sequence of the next message to read for each subscriber
+     */
+    private final Map<LocalSubscription, Long> cursors = new LinkedHashMap<LocalSubscription, Long>();
+
+    /**
+     * Subscriptions removed from the log which should not be added back while they are still reported active
+     */
+    private final Set<LocalSubscription> evictedSubscriptions = new HashSet<LocalSubscription>();
+
+    public TopicMessageLog(int capacity) {
+        entries = new AndesMessageMetadata[Math.max(1, capacity)];
+    }
+
+    /**
+     * Update subscribers of the log. New subscribers start reading from the end of the log and the cursors of
+     * removed subscribers are dropped.
+     *
+     * @param activeSubscriptions active local subscriptions of the topic
+     */
+    public void updateSubscriptions(Set<LocalSubscription> activeSubscriptions) {
+        evictedSubscriptions.retainAll(activeSubscriptions);
+        cursors.keySet().retainAll(activeSubscriptions);
+        for (LocalSubscription subscription : activeSubscriptions) {
+            if (!cursors.containsKey(subscription) && !evictedSubscriptions.contains(subscription)) {
+                cursors.put(subscription, tailSequence);
+            }
+        }
+    }
+
+    /**
+     * Remove a subscriber from the log. It is not added back until it is no longer reported active.
+     *
+     * @param subscription subscription to remove
+     */
+    public void evictSubscription(LocalSubscription subscription) {
+        cursors.remove(subscription);
+        evictedSubscriptions.add(subscription);
+    }
+
+    /**
+     * @return subscribers reading the log
+     */
+    public Collection<LocalSubscription> getSubscriptions() {
+        return cursors.keySet();
+    }
+
+    /**
+     * Append a message to the log
+     *
+     * @param message metadata of the message
+     * @throws IllegalStateException if the log is full
+     */
+    public void append(AndesMessageMetadata message) {
+        if (isFull()) {
+            throw new IllegalStateException("Topic message log is full");
+        }
+        entries[(int) (tailSequence % entries.length)] = message;
+        tailSequence++;
+    }
+
+    /**
+     * Read the next message for a subscriber and advance its cursor
+     *
+     * @param subscription subscriber reading the log
+     * @return next message. Null if the subscriber has read all messages.
+     */
+    public AndesMessageMetadata next(LocalSubscription subscription) {
+        Long cursor = cursors.get(subscription);
+        if (null == cursor || cursor == tailSequence) {
+            return null;
+        }
+        cursors.put(subscription, cursor + 1);
+        return entries[(int) (cursor % entries.length)];
+    }
+
+    /**
+     * @return subscribers which have not read the oldest message of the log
+     */
+    public List<LocalSubscription> getSubscriptionsAtHead() {
+        List<LocalSubscription> subscriptionsAtHead = new ArrayList<LocalSubscription>();
+        if (headSequence == tailSequence) {
+            return subscriptionsAtHead;
+        }
+        for (Map.Entry<LocalSubscription, Long> cursor : cursors.entrySet()) {
+            if (cursor.getValue() == headSequence) {
+                subscriptionsAtHead.add(cursor.getKey());
+            }
+        }
+        return subscriptionsAtHead;
+    }
+
+    /**
+     * Move the subscribers which have not read the oldest message past it. The message is lost for them.
+     */
+    public void skipOldest() {
+        if (headSequence == tailSequence) {
+            return;
+        }
+        for (Map.Entry<LocalSubscription, Long> cursor : cursors.entrySet()) {
+            if (cursor.getValue() == headSequence) {
+                cursor.setValue(headSequence + 1);
+            }
+        }
+    }
+
+    /**
+     * Remove messages which every subscriber has read
+     *
+     * @return removed messages in log order
+     */
+    public List<AndesMessageMetadata> trim() {
+        long minimumCursor = tailSequence;
+        for (Long cursor : cursors.values()) {
+            minimumCursor = Math.min(minimumCursor, cursor);
+        }
+        List<AndesMessageMetadata> trimmedMessages = new ArrayList<AndesMessageMetadata>(
+                (int) (minimumCursor - headSequence));
+        while (headSequence < minimumCursor) {
+            int index = (int) (headSequence % entries.length);
+            trimmedMessages.add(entries[index]);
+            entries[index] = null;
+            headSequence++;
+        }
+        return trimmedMessages;
+    }
+
+    /**
+     * @return true if a subscriber has messages left to read
+     */
+    public boolean hasPendingMessages() {
+        for (Long cursor : cursors.values()) {
+            if (cursor < tailSequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isFull() {
+        return tailSequence - headSequence == entries.length;
+    }
+
+    public int size() {
+        return (int) (tailSequence - headSequence);
+    }
+}
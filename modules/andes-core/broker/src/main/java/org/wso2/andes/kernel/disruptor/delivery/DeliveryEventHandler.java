@@ -21,9 +21,7 @@ package org.wso2.andes.kernel.disruptor.delivery;
 import com.lmax.disruptor.EventHandler;
 import org.apache.log4j.Logger;
 import org.wso2.andes.kernel.Andes;
-import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.AndesMessageMetadata;
-import org.wso2.andes.kernel.AndesRemovableMetadata;
 import org.wso2.andes.kernel.LocalSubscription;
 import org.wso2.andes.kernel.MessageFlusher;
 import org.wso2.andes.kernel.OnflightMessageTracker;
@@ -33,9 +31,6 @@ import org.wso2.carbon.metrics.manager.Level;
 import org.wso2.carbon.metrics.manager.Meter;
 import org.wso2.carbon.metrics.manager.MetricManager;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Disruptor handler used to send the message. This the final event handler of the ring-buffer
  */
@@ -121,6 +116,7 @@ public class DeliveryEventHandler implements EventHandler<DeliveryEventData> {
 
     /**
      * When an error is occurred in message delivery, this method will move the message to dead letter channel.
+     * The move is done asynchronously so that the delivery thread does not wait on the message store.
      *
      * @param message
      *         Meta data for the message
@@ -130,20 +126,7 @@ public class DeliveryEventHandler implements EventHandler<DeliveryEventData> {
         // since topics doesn't have a Dead Letter Channel
         if (!message.isTopic()) {
             log.info("Moving message to Dead Letter Channel. Message ID " + message.getMessageID());
-            AndesRemovableMetadata removableMessage = new AndesRemovableMetadata(message.getMessageID(),
-                                                                                 message.getDestination(),
-                                                                                 message.getStorageQueueName());
-            List<AndesRemovableMetadata> messageToMoveToDLC = new ArrayList<AndesRemovableMetadata>();
-            messageToMoveToDLC.add(removableMessage);
-            try {
-                Andes.getInstance().deleteMessages(messageToMoveToDLC, true);
-            } catch (AndesException dlcException) {
-                // If an exception occur in this level, it means that there is a message store level error.
-                // There's a possibility that we might lose this message
-                // If the message is not removed the slot will not get removed which will lead to an
-                // inconsistency
-                log.error("Error moving message " + message.getMessageID() + " to dead letter channel.", dlcException);
-            }
+            Andes.getInstance().moveMessageToDeadLetterChannel(message.getMessageID(), message.getStorageQueueName());
         }
     }
 }
@@ -41,7 +41,7 @@ public class ContentChunkHandler implements EventHandler<InboundEventContainer>
      * Creates a {@link ContentChunkHandler} object
      * @param maxChunkSize maximum allowed chunk size to be stored in DB
      */
-    ContentChunkHandler(int maxChunkSize) {
+    public ContentChunkHandler(int maxChunkSize) {
         this.maxChunkSize = maxChunkSize;
     }
 
@@ -108,8 +108,9 @@ public class ContentChunkHandler implements EventHandler<InboundEventContainer>
      * <p/>
      * Algorithm
      * <p/>
-     * While iterating through each original content chunk it copies the content to a new data chunk that will
-     * have a maximum length of maxChunkSize.
+     * While iterating through each original content chunk, a resized chunk which lies completely within the
+     * original chunk is created as a slice view over the original chunk's content without copying. Only resized
+     * chunks that span more than one original chunk are copied into a new data array.
      * <p/>
      * This can handle content with maximum chunk size equal to, less than or greater than the maxChunkSize
      *
@@ -121,79 +122,58 @@ public class ContentChunkHandler implements EventHandler<InboundEventContainer>
 
         List<AndesMessagePart> chunkList = new ArrayList<>();
         int written = 0;    // Written bytes to new content chunks
-        int totalRemainingLength = contentLength;
-        byte[] data = null;
+        byte[] data = null; // Data array of a resized chunk spanning original chunks
         int startPos = 0;   // Start position of destination data array. (for copying)
 
         for (AndesMessagePart chunk : partList) {
 
-            // Chunk can be added directly to the new chunk list if there is no remaining data array left
-            // and the following conditions are met
-            //
-            // Chunk is either equal to the the maxChunkSize or the last chunk of the original that is
-            // less than the maxChunkSize.
-            if (data == null && (chunk.getDataLength() == maxChunkSize ||
-                    (chunk.getDataLength() < maxChunkSize && chunk.getDataLength() == totalRemainingLength))) {
+            byte[] source = chunk.getBackingArray();
+            int chunkStartPos = chunk.getDataOffset();
+            int chunkRemainingLength = chunk.getDataLength();
 
+            // Empty content is kept as it is
+            if (0 == chunkRemainingLength && null == data) {
                 chunk.setOffSet(written);
                 chunkList.add(chunk);
-                written = written + chunk.getDataLength();
-                totalRemainingLength = contentLength - written;
-                continue; // Whole chunk is written. Move to next iteration
-            }
-
-            // When a larger chunk is found, split it to smaller chunks.
-            int chunkStartPos = 0;
-            int chunkRemainingLength = chunk.getDataLength();
-            while (chunkRemainingLength >= maxChunkSize) {
-
-                if (null == data) {
-                    data = new byte[maxChunkSize];
-                    startPos = 0;
-                }
-
-                System.arraycopy(chunk.getData(), chunkStartPos, data, startPos, maxChunkSize - startPos);
-
-                AndesMessagePart newChunk = new AndesMessagePart();
-                newChunk.setMessageID(chunk.getMessageID());
-                newChunk.setDataLength(data.length); // ultimately we write a max chunk here
-                newChunk.setOffSet(written);
-                newChunk.setData(data);
-                chunkList.add(newChunk);
-
-                written = written + data.length;
-                data = null;
-                chunkStartPos = chunkStartPos + (maxChunkSize - startPos);
-                chunkRemainingLength = chunkRemainingLength - (maxChunkSize - startPos);
-                startPos = 0;
-                totalRemainingLength = contentLength - written;
+                continue;
             }
 
-            // This is either original chunks left over part is less than maxChunkSize
-            // or a original chunk it self is less than maxChunkSize
             while (chunkRemainingLength > 0) {
+                int totalRemainingLength = Math.max(contentLength - written, chunkRemainingLength);
+
                 if (null == data) {
-                    int arrayLength;
-                    if (chunkRemainingLength == totalRemainingLength) {
-                        arrayLength = chunkRemainingLength;
-                    } else if (totalRemainingLength >= maxChunkSize) {
-                        arrayLength = maxChunkSize;
-                    } else {
-                        arrayLength = totalRemainingLength;
+                    // Either a full chunk or the last part of the content is within this original chunk
+                    if (chunkRemainingLength >= maxChunkSize || chunkRemainingLength == totalRemainingLength) {
+                        int length = Math.min(chunkRemainingLength, maxChunkSize);
+
+                        if (chunkStartPos == chunk.getDataOffset() && length == chunk.getDataLength()) {
+                            // Whole chunk can be added directly to the new chunk list
+                            chunk.setOffSet(written);
+                            chunkList.add(chunk);
+                        } else {
+                            AndesMessagePart newChunk = new AndesMessagePart();
+                            newChunk.setMessageID(chunk.getMessageID());
+                            newChunk.setOffSet(written);
+                            newChunk.setData(source, chunkStartPos, length);
+                            chunkList.add(newChunk);
+                        }
+
+                        written = written + length;
+                        chunkStartPos = chunkStartPos + length;
+                        chunkRemainingLength = chunkRemainingLength - length;
+                        continue;
                     }
-                    data = new byte[arrayLength];
-                }
 
-                int writeSize;
-                if (chunkRemainingLength <= (data.length - startPos)) {
-                    writeSize = chunkRemainingLength;
-                } else {
-                    writeSize = data.length - startPos;
+                    data = new byte[Math.min(totalRemainingLength, maxChunkSize)];
+                    startPos = 0;
                 }
-                System.arraycopy(chunk.getData(), chunkStartPos, data, startPos, writeSize);
+
+                int writeSize = Math.min(chunkRemainingLength, data.length - startPos);
+                System.arraycopy(source, chunkStartPos, data, startPos, writeSize);
                 startPos = startPos + writeSize;
                 chunkStartPos = chunkStartPos + writeSize;
                 chunkRemainingLength = chunkRemainingLength - writeSize;
+
                 if (startPos == data.length) {
                     AndesMessagePart newChunk = new AndesMessagePart();
                     newChunk.setMessageID(chunk.getMessageID());
@@ -202,7 +182,6 @@ public class ContentChunkHandler implements EventHandler<InboundEventContainer>
                     newChunk.setData(data);
                     chunkList.add(newChunk);
                     written = written + data.length;
-                    totalRemainingLength = contentLength - written;
                     data = null;
                     startPos = 0;
                 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor.inbound;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.AndesRemovableMetadata;
+import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.kernel.disruptor.BatchEventHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves messages rejected in the delivery path to the dead letter channel. Messages are batched by the disruptor
+ * so that delivery threads do not wait on the message store and a burst of rejected messages is moved with a few
+ * store operations.
+ */
+public class DeadLetterChannelHandler implements BatchEventHandler {
+
+    private static Log log = LogFactory.getLog(DeadLetterChannelHandler.class);
+
+    private final MessagingEngine messagingEngine;
+
+    /**
+     * Messages of the current batch
+     */
+    private final List<AndesRemovableMetadata> messagesToMove;
+
+    DeadLetterChannelHandler(MessagingEngine messagingEngine) {
+        this.messagingEngine = messagingEngine;
+        this.messagesToMove = new ArrayList<>();
+    }
+
+    @Override
+    public void onEvent(final List<InboundEventContainer> eventList) throws Exception {
+        for (InboundEventContainer event : eventList) {
+            messagesToMove.add(event.deadLetterMessage);
+            event.clear();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(messagesToMove.size() + " messages received from disruptor to move to DLC.");
+        }
+
+        try {
+            messagingEngine.moveMessagesToDeadLetterChannel(messagesToMove);
+        } catch (AndesException e) {
+            // Log the AndesException since there is no point in passing the exception to Disruptor. Messages which
+            // could not be moved are already released by the messaging engine to be delivered again
+            log.error("Error occurred while moving " + messagesToMove.size() + " messages to dead letter channel", e);
+        } finally {
+            messagesToMove.clear();
+        }
+    }
+}
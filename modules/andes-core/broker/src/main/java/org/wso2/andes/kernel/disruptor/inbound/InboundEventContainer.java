@@ -23,6 +23,7 @@ import org.wso2.andes.kernel.AndesAckData;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesRemovableMetadata;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -63,6 +64,11 @@ public class InboundEventContainer {
      */
     public AndesAckData ackData;
 
+    /**
+     * Message to be moved to the dead letter channel
+     */
+    public AndesRemovableMetadata deadLetterMessage;
+
     /**
      * When content chunk processed this boolean is set to false
      * {@link ContentChunkHandler} will check this boolean and
@@ -106,6 +112,11 @@ public class InboundEventContainer {
          */
         TRANSACTION_COMMIT_EVENT,
 
+        /**
+         * Event related to moving in memory messages of a transaction to the staging area of the store
+         */
+        TRANSACTION_STAGE_EVENT,
+
         /**
          * Event related to transaction rollback
          */
@@ -121,6 +132,11 @@ public class InboundEventContainer {
          */
         ACKNOWLEDGEMENT_EVENT,
 
+        /**
+         * Event related to moving a message to the dead letter channel
+         */
+        DEAD_LETTER_CHANNEL_EVENT,
+
         /**
          * Andes state change related event type
          */
@@ -171,6 +187,9 @@ public class InboundEventContainer {
             case TRANSACTION_CLOSE_EVENT:
                 getTransactionEvent().updateState();
                 break;
+            case TRANSACTION_STAGE_EVENT:
+                getTransactionEvent().stageMessages(messageList);
+                break;
             default:
                 break;
         }
@@ -187,6 +206,7 @@ public class InboundEventContainer {
         messageList.clear();
         retainMessage = null;
         ackData = null;
+        deadLetterMessage = null;
         stateEvent = null;
         eventType = Type.IGNORE_EVENT;
         pubAckHandler = null;
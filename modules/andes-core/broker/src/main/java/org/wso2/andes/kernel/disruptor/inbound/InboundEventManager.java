@@ -29,6 +29,7 @@ import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.kernel.AndesAckData;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesRemovableMetadata;
 import org.wso2.andes.kernel.DisablePubAckImpl;
 import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.disruptor.ConcurrentBatchEventHandler;
@@ -49,12 +50,14 @@ import static org.wso2.andes.configuration.enums.AndesConfiguration.MAX_TRANSACT
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_ACKNOWLEDGEMENT_HANDLER_BATCH_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_ACK_HANDLER_COUNT;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_CONTENT_CHUNK_HANDLER_COUNT;
+import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_DEAD_LETTER_CHANNEL_HANDLER_BATCH_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_MAX_CONTENT_CHUNK_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_MESSAGE_WRITER_BATCH_SIZE;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_MESSAGE_WRITERS;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PARALLEL_TRANSACTION_MESSAGE_WRITERS;
 import static org.wso2.andes.configuration.enums.AndesConfiguration.PERFORMANCE_TUNING_PUBLISHING_BUFFER_SIZE;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.ACKNOWLEDGEMENT_EVENT;
+import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.DEAD_LETTER_CHANNEL_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.MESSAGE_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.SAFE_ZONE_DECLARE_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.STATE_CHANGE_EVENT;
@@ -62,6 +65,7 @@ import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.TRANSACTION_COMMIT_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.TRANSACTION_ENQUEUE_EVENT;
 import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.TRANSACTION_ROLLBACK_EVENT;
+import static org.wso2.andes.kernel.disruptor.inbound.InboundEventContainer.Type.TRANSACTION_STAGE_EVENT;
 
 /**
  * Disruptor based inbound event handling class.
@@ -93,6 +97,8 @@ public class InboundEventManager {
                 PERFORMANCE_TUNING_PARALLEL_TRANSACTION_MESSAGE_WRITERS);
         Integer transactionBatchSize = AndesConfigurationManager.readValue(
                 MAX_TRANSACTION_BATCH_SIZE);
+        Integer deadLetterChannelBatchSize = AndesConfigurationManager.readValue(
+                PERFORMANCE_TUNING_DEAD_LETTER_CHANNEL_HANDLER_BATCH_SIZE);
 
         disablePubAck = new DisablePubAckImpl();
         int maxContentChunkSize = AndesConfigurationManager.readValue(
@@ -114,7 +120,7 @@ public class InboundEventManager {
         disruptor.handleExceptionsWith(new LogExceptionHandler());
 
         ConcurrentBatchEventHandler[] concurrentBatchEventHandlers =
-                new ConcurrentBatchEventHandler[writeHandlerCount + ackHandlerCount + transactionHandlerCount];
+                new ConcurrentBatchEventHandler[writeHandlerCount + ackHandlerCount + transactionHandlerCount + 1];
 
         ContentChunkHandler[] chunkHandlers = new ContentChunkHandler[contentChunkHandlerCount];
         for (int i = 0; i < contentChunkHandlerCount; i++) {
@@ -144,12 +150,19 @@ public class InboundEventManager {
                             new AckHandler(messagingEngine));
         }
 
+        // A single handler moves messages to DLC so that messages of a queue are moved in one batch
+        concurrentBatchEventHandlers[writeHandlerCount + transactionHandlerCount + ackHandlerCount] =
+                new ConcurrentBatchEventHandler(0, 1,
+                        deadLetterChannelBatchSize,
+                        DEAD_LETTER_CHANNEL_EVENT,
+                        new DeadLetterChannelHandler(messagingEngine));
+
         MessagePreProcessor preProcessor = new MessagePreProcessor(subscriptionStore);
 
         // Order in which handlers run in Disruptor
         // - ContentChunkHandlers
         // - MessagePreProcessor
-        // - MessageWriters and AckHandlers
+        // - MessageWriters, AckHandlers and DeadLetterChannelHandler
         // - StateEventHandler
         disruptor.handleEventsWith(chunkHandlers).then(preProcessor);
         disruptor.after(preProcessor).handleEventsWith(concurrentBatchEventHandlers);
@@ -218,6 +231,32 @@ public class InboundEventManager {
         }
     }
 
+    /**
+     * Messages rejected in the delivery path are moved to the dead letter channel through this method. The message
+     * is moved asynchronously along with other rejected messages.
+     *
+     * @param messageId            id of the message to move
+     * @param destinationQueueName storage queue the message currently is in
+     */
+    public void moveMessageToDeadLetterChannel(long messageId, String destinationQueueName) {
+        // Publishers claim events in sequence
+        long sequence = ringBuffer.next();
+        InboundEventContainer event = ringBuffer.get(sequence);
+        try {
+            event.setEventType(DEAD_LETTER_CHANNEL_EVENT);
+            event.deadLetterMessage = new AndesRemovableMetadata(messageId, destinationQueueName,
+                    destinationQueueName);
+        } finally {
+            // make the event available to EventProcessors
+            ringBuffer.publish(sequence);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("[ sequence: " + sequence + " ] Message id " + messageId
+                    + " published to disruptor to move to DLC.");
+        }
+    }
+
     /**
      * Publish state change event to event Manager
      * @param stateEvent AndesInboundStateEvent
@@ -289,6 +328,17 @@ public class InboundEventManager {
         }
     }
 
+    /**
+     * Publish transaction stage event to Disruptor. Messages enqueued to the transaction up to this event are
+     * written to the staging area of the message store by the state event handler.
+     *
+     * @param transactionEvent {@link org.wso2.andes.kernel.disruptor.inbound.InboundTransactionEvent}
+     * @param channel {@link org.wso2.andes.kernel.AndesChannel}
+     */
+    public void requestTransactionStageEvent(InboundTransactionEvent transactionEvent, AndesChannel channel) {
+        requestTransactionEvent(transactionEvent, TRANSACTION_STAGE_EVENT, channel);
+    }
+
     /**
      * Publish transaction commit event to Disruptor for processing
      *
@@ -26,6 +26,7 @@ import org.wso2.andes.mqtt.MQTTLocalSubscription;
 import org.wso2.andes.subscription.BasicSubscription;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -140,9 +141,11 @@ public abstract class InboundSubscriptionEvent extends BasicSubscription impleme
                 if (!this.isDurable() && this.isBoundToTopic()) {
                     List<AndesMessageMetadata> metadataList = MessagingEngine.getInstance().getRetainedMessageByTopic(
                             this.getSubscribedDestination());
+                    Map<Long, AndesContent> contentMap =
+                            MessagingEngine.getInstance().getRetainedMessageContent(metadataList);
 
                     for (AndesMessageMetadata metadata : metadataList) {
-                        AndesContent content = MessagingEngine.getInstance().getRetainedMessageContent(metadata);
+                        AndesContent content = contentMap.get(metadata.getMessageID());
                         metadata.setRetain(true);
                         this.sendMessageToSubscriber(metadata, content);
                     }
@@ -18,31 +18,56 @@
 
 package org.wso2.andes.kernel.disruptor.inbound;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.AndesChannel;
 import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.AndesMessage;
+import org.wso2.andes.kernel.AndesMessageMetadata;
 import org.wso2.andes.kernel.AndesRemovableMetadata;
 import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.slot.SlotMessageCounter;
+import org.wso2.andes.server.ClusterResourceHolder;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This is the Andes transaction event related class. This event object handles
  * the life cycle of a single transaction coming from the protocol level to Andes.
+ * <p/>
+ * When staging is enabled, once the enqueued content held in memory exceeds the staging threshold the
+ * messages are routed and written to a staging area in the message store, a storage queue owned by this transaction
+ * which is never part of a slot. Only the ID and the destination storage queue of each staged message are kept in
+ * memory. On commit the staged messages are moved to their destination queues in a single store transaction, which
+ * updates the queue of the stored metadata and content instead of copying them. Moved messages get new message IDs
+ * assigned in commit order since slots expect message IDs of a queue to become visible in increasing order.
+ * Staging areas left by a node which crashed are cleared when the node is found gone or restarts.
  */
 public class InboundTransactionEvent implements AndesInboundStateEvent {
 
     private static Log log = LogFactory.getLog(InboundTransactionEvent.class);
 
+    /**
+     * Prefix of the storage queue used as the staging area of a transaction
+     */
+    private static final String STAGING_QUEUE_PREFIX = "AndesTxStaging_";
+
+    /**
+     * Separates the node ID from the channel ID in the staging queue name. Node IDs are not expected to contain it,
+     * so that the staging queue prefix of a node does not match staging queues of another node.
+     */
+    private static final String STAGING_QUEUE_NODE_SEPARATOR = "#";
+
     /**
      * Reference to Disruptor based event manager
      */
@@ -55,10 +80,16 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
 
     /**
      * This is used to make {@link #commit()} {@link #rollback()} and {@link #close()} methods
-     * blocking calls
+     * blocking calls and to notify completion of {@link #commitAsync()}
      */
     private SettableFuture<Boolean> taskCompleted;
 
+    /**
+     * Completion of the last commit published by {@link #commitAsync()}. The published event shares the state of
+     * this object, hence {@link #rollback()} and {@link #close()} wait for it before changing the state.
+     */
+    private volatile ListenableFuture<Boolean> pendingCommit;
+
     /**
      * Message list of the current transaction. This list doesn't have the duplicates that are
      * created for topics.
@@ -81,6 +112,62 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
      */
     private int currentBatchSize;
 
+    /**
+     * Content size held in memory after which enqueued messages are moved to the staging area. 0 if staging is
+     * disabled.
+     */
+    private final int stagingThreshold;
+
+    /**
+     * Number of staged messages read back at once when the staging area is cleared
+     */
+    private final int stagingReadBatchSize;
+
+    /**
+     * Storage queue used as the staging area of this transaction. Null if staging is disabled.
+     */
+    private final String stagingQueueName;
+
+    /**
+     * True if messages of the current transaction have been sent to the staging area
+     */
+    private boolean staged;
+
+    /**
+     * IDs of the messages staged since the last commit, rollback or close, in staging order. Accessed only from
+     * {@link org.wso2.andes.kernel.disruptor.inbound.MessagePreProcessor}.
+     */
+    private List<Long> stagedMessageIds;
+
+    /**
+     * Storage queue each staged message is routed to, in the order of {@link #stagedMessageIds}. Accessed only
+     * from {@link org.wso2.andes.kernel.disruptor.inbound.MessagePreProcessor}.
+     */
+    private List<String> stagedStorageQueueNames;
+
+    /**
+     * IDs of the staged messages moved to destinations by the current commit event. Set by the pre-processor
+     * and used by the state event handler.
+     */
+    private List<Long> committedStagedMessageIds;
+
+    /**
+     * New message ID and destination storage queue of each message in {@link #committedStagedMessageIds}
+     */
+    private List<AndesMessageMetadata> committedStagedMessages;
+
+    /**
+     * Cause of the failure if writing a staged batch or moving staged messages failed. Staged messages are no
+     * longer in memory, hence subsequent commits fail until the transaction is rolled back or closed.
+     */
+    private Throwable stagingFailure;
+
+    /**
+     * True once the staging area is cleared of messages left by a previous broker run. Accessed only from the
+     * state event handler.
+     */
+    private boolean stagingAreaCleared;
+
     /**
      * Reference to the channel of the publisher
      */
@@ -133,25 +220,57 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
         TX_CLOSE_EVENT
     }
 
-    /**
-     *
-     * @param eventManager InboundEventManager
-     */
     /**
      * Transaction object to do a transaction
      * @param messagingEngine {@link org.wso2.andes.kernel.MessagingEngine}
      * @param eventManager InboundEventManager
      * @param maxBatchSize maximum batch size for a commit
+     * @param stagingThreshold in memory content size after which messages are staged in store. 0 to disable
+     * @param stagingReadBatchSize number of staged messages read back at once when the staging area is cleared
      * @param channel AndesChannel
      */
     public InboundTransactionEvent(MessagingEngine messagingEngine, InboundEventManager eventManager,
-                                   int maxBatchSize, AndesChannel channel) {
+                                   int maxBatchSize, int stagingThreshold, int stagingReadBatchSize,
+                                   AndesChannel channel) {
         this.messagingEngine = messagingEngine;
         this.eventManager = eventManager;
         messageQueue = new ConcurrentLinkedQueue<>();
         taskCompleted = SettableFuture.create();
         this.maxBatchSize = maxBatchSize;
+        this.stagingThreshold = stagingThreshold;
+        this.stagingReadBatchSize = stagingReadBatchSize;
         this.channel = channel;
+        stagedMessageIds = new ArrayList<>();
+        stagedStorageQueueNames = new ArrayList<>();
+        committedStagedMessageIds = Collections.emptyList();
+        committedStagedMessages = Collections.emptyList();
+
+        if (stagingThreshold > 0) {
+            // Channel ids are unique within a node run. A name reused after a restart is cleared before first use.
+            stagingQueueName = getStagingQueuePrefix(ClusterResourceHolder.getInstance().getClusterManager()
+                    .getMyNodeID()) + channel.getId();
+        } else {
+            stagingQueueName = null;
+        }
+    }
+
+    /**
+     * Prefix of the names of the staging queues of transactions of a node
+     *
+     * @param nodeId ID of the node
+     * @return staging queue name prefix
+     */
+    public static String getStagingQueuePrefix(String nodeId) {
+        return STAGING_QUEUE_PREFIX + nodeId + STAGING_QUEUE_NODE_SEPARATOR;
+    }
+
+    /**
+     * Storage queue used as the staging area of this transaction
+     *
+     * @return staging queue name, null if staging is disabled
+     */
+    String getStagingQueueName() {
+        return stagingQueueName;
     }
 
     /**
@@ -162,6 +281,21 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
      * @throws AndesException
      */
     public void commit() throws AndesException {
+        // Make the call blocking
+        waitForCompletion(commitAsync());
+    }
+
+    /**
+     * Commit the batched transacted messages without blocking the calling thread. The returned future
+     * completes once messages are stored and slot information is updated, or fails with the cause of the
+     * commit failure.
+     *
+     * The transaction must not be used until the returned future is complete, except for {@link #rollback()} and
+     * {@link #close()} which wait for it.
+     * @return future completed when commit is done
+     * @throws AndesException if the transaction exceeded the maximum batch size
+     */
+    public ListenableFuture<Boolean> commitAsync() throws AndesException {
 
         if(currentBatchSize > maxBatchSize) {
             currentBatchSize = 0;
@@ -175,12 +309,22 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
         }
 
         eventType = EventType.TX_COMMIT_EVENT;
-        taskCompleted = SettableFuture.create();
+
+        if (staged) {
+            // Messages still in memory are staged as well so that the whole transaction is moved to destinations
+            // by the commit event
+            requestStaging();
+            staged = false;
+            currentBatchSize = 0;
+        }
+
+        SettableFuture<Boolean> commitCompleted = SettableFuture.create();
+        taskCompleted = commitCompleted;
+        pendingCommit = commitCompleted;
 
         // Publish to event manager for processing
         eventManager.requestTransactionCommitEvent(this, channel);
-        // Make the call blocking
-        waitForCompletion();
+        return commitCompleted;
     }
 
     /**
@@ -194,7 +338,9 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
             log.debug("Prepare for rollback. Channel: " + channel.getId());
         }
 
+        waitForPendingCommit();
         eventType = EventType.TX_ROLLBACK_EVENT;
+        staged = false;
         taskCompleted = SettableFuture.create();
 
         // Publish to event manager for processing
@@ -224,6 +370,12 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
                 log.debug("Enqueue message with message id " +
                         message.getMetadata().getMessageID() + " for transaction ");
             }
+
+            if ((stagingThreshold > 0) && (currentBatchSize > stagingThreshold)) {
+                requestStaging();
+                // Content counted so far is released from memory once staged
+                currentBatchSize = 0;
+            }
         }
     }
 
@@ -235,7 +387,10 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
      * @throws AndesException
      */
     public void close() throws AndesException {
+        // The channel can be closed with the connection while a commit is still in the disruptor
+        waitForPendingCommit();
         eventType = EventType.TX_CLOSE_EVENT;
+        staged = false;
         taskCompleted = SettableFuture.create();
         eventManager.requestTransactionCloseEvent(this, channel);
         waitForCompletion();
@@ -273,6 +428,145 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
         return "Event type " + eventType;
     }
 
+    /**
+     * Write messages of a staging event to the staging area of the transaction. Message IDs and the staging
+     * storage queue are set by {@link org.wso2.andes.kernel.disruptor.inbound.MessagePreProcessor}. This is called
+     * by {@link org.wso2.andes.kernel.disruptor.inbound.StateEventHandler}
+     *
+     * @param messages messages to be staged
+     * @throws AndesException
+     */
+    void stageMessages(List<AndesMessage> messages) throws AndesException {
+        try {
+            if (!stagingAreaCleared) {
+                clearStagingArea();
+                stagingAreaCleared = true;
+            }
+
+            if (!messages.isEmpty()) {
+                messagingEngine.messagesReceived(messages);
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug(messages.size() + " messages staged in " + stagingQueueName);
+            }
+        } catch (Throwable t) {
+            stagingFailure = t;
+            throw new AndesException("Exception occurred while staging transaction messages. Channel id " +
+                    channel.getId(), t);
+        }
+    }
+
+    /**
+     * Publish a staging event for messages enqueued so far
+     */
+    private void requestStaging() {
+        staged = true;
+        eventManager.requestTransactionStageEvent(this, channel);
+    }
+
+    /**
+     * Record a message routed to the staging area. Called by the pre-processor for each routed copy of a staged
+     * message, before its storage queue is replaced with the staging queue.
+     *
+     * @param stagedMessageId  ID of the staged message
+     * @param storageQueueName storage queue the message is routed to
+     */
+    void addStagedMessage(long stagedMessageId, String storageQueueName) {
+        stagedMessageIds.add(stagedMessageId);
+        stagedStorageQueueNames.add(storageQueueName);
+    }
+
+    /**
+     * Storage queues the messages staged since the last commit, rollback or close are routed to, in staging order.
+     * Called by the pre-processor.
+     *
+     * @return storage queue of each staged message
+     */
+    List<String> getStagedStorageQueueNames() {
+        return stagedStorageQueueNames;
+    }
+
+    /**
+     * Hand the staged messages over to the current commit event. Called by the pre-processor once it assigned new
+     * message IDs to the staged messages.
+     *
+     * @param movedMessages new message ID and storage queue of each staged message, in staging order
+     */
+    void prepareStagedCommit(List<AndesMessageMetadata> movedMessages) {
+        committedStagedMessageIds = stagedMessageIds;
+        committedStagedMessages = movedMessages;
+        discardStagedMessages();
+    }
+
+    /**
+     * Forget the messages staged since the last commit. Called by the pre-processor when the transaction is rolled
+     * back or closed, the staging area itself is cleared by the state event handler.
+     */
+    void discardStagedMessages() {
+        stagedMessageIds = new ArrayList<>();
+        stagedStorageQueueNames = new ArrayList<>();
+    }
+
+    /**
+     * Move the staged messages of the current commit event to their destinations in a single store transaction and
+     * record them in slots
+     *
+     * @throws AndesException if staging failed or the staged messages could not be moved
+     */
+    private void moveStagedMessages() throws AndesException {
+        List<Long> messageIds = committedStagedMessageIds;
+        List<AndesMessageMetadata> movedMessages = committedStagedMessages;
+        committedStagedMessageIds = Collections.emptyList();
+        committedStagedMessages = Collections.emptyList();
+
+        if (null != stagingFailure) {
+            throw new AndesException("Staged messages of the transaction are incomplete", stagingFailure);
+        }
+
+        try {
+            messagingEngine.moveStagedMessages(stagingQueueName, messageIds, movedMessages);
+        } catch (AndesException e) {
+            // Staged messages are kept in the staging area until the transaction is rolled back or closed
+            stagingFailure = e;
+            throw e;
+        }
+
+        for (AndesMessageMetadata metadata : movedMessages) {
+            SlotMessageCounter.getInstance().recordMetadataCountInSlot(metadata);
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(messageIds.size() + " staged messages committed. Channel id " + channel.getId());
+        }
+    }
+
+    /**
+     * Delete all messages in the staging area of the transaction
+     *
+     * @throws AndesException
+     */
+    private void clearStagingArea() throws AndesException {
+        if (null == stagingQueueName) {
+            return;
+        }
+
+        List<AndesMessageMetadata> metadataList =
+                messagingEngine.getNextNMessageMetadataFromQueue(stagingQueueName, 0, stagingReadBatchSize);
+        while (!metadataList.isEmpty()) {
+            List<Long> messageIds = new ArrayList<>(metadataList.size());
+            for (AndesMessageMetadata metadata : metadataList) {
+                messageIds.add(metadata.getMessageID());
+            }
+            messagingEngine.deleteStagedMessages(stagingQueueName, messageIds);
+
+            long lastStagedId = messageIds.get(messageIds.size() - 1);
+            metadataList = messagingEngine.getNextNMessageMetadataFromQueue(stagingQueueName, lastStagedId + 1,
+                    stagingReadBatchSize);
+        }
+        stagingFailure = null;
+    }
+
     /**
      * Close the current transaction
      */
@@ -280,6 +574,7 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
         try {
             messageQueue.clear();
             currentBatchSize = 0;
+            clearStagingArea();
             taskCompleted.set(true);
         } catch (Throwable t) {
             // Exception is passed to the the caller who is waiting on the future
@@ -297,6 +592,9 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
      */
     private void executeCommitEvent() throws AndesException {
         try {
+            if (!committedStagedMessageIds.isEmpty() || (null != stagingFailure)) {
+                moveStagedMessages();
+            }
             messagesStoredNotCommitted = true;
             // update slot information for transaction related messages
             SlotMessageCounter.getInstance().recordMetadataCountInSlot(getQueuedMessages());
@@ -334,6 +632,7 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
 
             messageQueue.clear();
             currentBatchSize = 0;
+            clearStagingArea();
             taskCompleted.set(true);
         } catch (Throwable t) {
             taskCompleted.setException(t);
@@ -342,6 +641,26 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
         }
     }
 
+    /**
+     * Wait until the last commit published by {@link #commitAsync()} is processed. A failed commit is reported to
+     * its caller through the commit future, hence it is ignored here.
+     */
+    private void waitForPendingCommit() {
+        ListenableFuture<Boolean> commit = pendingCommit;
+        if (null == commit) {
+            return;
+        }
+        try {
+            Uninterruptibles.getUninterruptibly(commit);
+        } catch (ExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Pending commit failed before changing the state of transaction. Channel id "
+                        + channel.getId(), e);
+            }
+        }
+        pendingCommit = null;
+    }
+
     /**
      * Wait until the respective task set the value of the future once the task is completed
      *
@@ -349,8 +668,19 @@ public class InboundTransactionEvent implements AndesInboundStateEvent {
      * @throws AndesException
      */
     private Boolean waitForCompletion() throws AndesException {
+        return waitForCompletion(taskCompleted);
+    }
+
+    /**
+     * Wait until the given task completion future is set
+     *
+     * @param completion future of the task
+     * @return True if task is successful and false otherwise
+     * @throws AndesException
+     */
+    private Boolean waitForCompletion(Future<Boolean> completion) throws AndesException {
         try {
-            return taskCompleted.get();
+            return completion.get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (ExecutionException e) {
@@ -23,8 +23,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.amqp.AMQPUtils;
 import org.wso2.andes.kernel.*;
+import org.wso2.andes.metrics.MessageLatencySampler;
 import org.wso2.andes.metrics.MetricsConstants;
-import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.coordination.BlockReservingMessageIdGenerator;
+import org.wso2.andes.server.cluster.coordination.MessageIdGenerator;
 import org.wso2.andes.server.store.MessageMetaDataType;
 import org.wso2.andes.subscription.SubscriptionStore;
 import org.wso2.andes.tools.utils.MessageTracer;
@@ -32,9 +34,11 @@ import org.wso2.carbon.metrics.manager.Level;
 import org.wso2.carbon.metrics.manager.Meter;
 import org.wso2.carbon.metrics.manager.MetricManager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
 
 /**
@@ -49,7 +53,14 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
 
     public MessagePreProcessor(SubscriptionStore subscriptionStore) {
         this.subscriptionStore = subscriptionStore;
-        idGenerator = new MessageIDGenerator();
+        // Share the generator of the messaging engine when possible so that IDs generated elsewhere in the node
+        // never collide with message IDs
+        MessageIdGenerator engineIdGenerator = MessagingEngine.getInstance().getMessageIdGenerator();
+        if (engineIdGenerator instanceof BlockReservingMessageIdGenerator) {
+            idGenerator = new MessageIDGenerator((BlockReservingMessageIdGenerator) engineIdGenerator);
+        } else {
+            idGenerator = new MessageIDGenerator(new BlockReservingMessageIdGenerator());
+        }
     }
 
     @Override
@@ -65,6 +76,13 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
             case TRANSACTION_COMMIT_EVENT:
                 preProcessTransaction(inboundEvent, sequence);
                 break;
+            case TRANSACTION_STAGE_EVENT:
+                preProcessStagedMessages(inboundEvent, sequence);
+                break;
+            case TRANSACTION_ROLLBACK_EVENT:
+            case TRANSACTION_CLOSE_EVENT:
+                inboundEvent.getTransactionEvent().discardStagedMessages();
+                break;
             case SAFE_ZONE_DECLARE_EVENT:
                 setSafeZoneLimit(inboundEvent, sequence);
                 break;
@@ -80,6 +98,8 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
      */
     private void preProcessTransaction(InboundEventContainer eventContainer, long sequence) throws AndesException {
 
+        preProcessStagedCommit(eventContainer.getTransactionEvent());
+
         // Routing information of all the messages of current transaction is updated.
         // Messages duplicated as needed.
         Collection<AndesMessage> messageList = eventContainer.getTransactionEvent().getQueuedMessages();
@@ -99,6 +119,63 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
         eventContainer.getChannel().recordRemovalFromBuffer(size);
     }
 
+    /**
+     * Route messages enqueued to the transaction so far and address the routed copies to the staging area of the
+     * transaction. The transaction keeps the ID and the destination storage queue of each staged copy so that staged
+     * messages can be moved to their destinations on commit without reading them back.
+     *
+     * @param eventContainer InboundEventContainer
+     * @param sequence Disruptor ring sequence number.
+     */
+    private void preProcessStagedMessages(InboundEventContainer eventContainer, long sequence) {
+        InboundTransactionEvent transactionEvent = eventContainer.getTransactionEvent();
+        String stagingQueueName = transactionEvent.getStagingQueueName();
+        Queue<AndesMessage> queuedMessages = transactionEvent.getQueuedMessages();
+
+        AndesMessage message = queuedMessages.poll();
+        while (null != message) {
+            updateRoutingInformation(eventContainer, message, sequence);
+            message = queuedMessages.poll();
+        }
+
+        int size = 0;
+        for (AndesMessage stagedMessage : eventContainer.getMessageList()) {
+            AndesMessageMetadata metadata = stagedMessage.getMetadata();
+            transactionEvent.addStagedMessage(metadata.getMessageID(), metadata.getStorageQueueName());
+            metadata.setStorageQueueName(stagingQueueName);
+            size = size + stagedMessage.getContentChunkList().size();
+        }
+        eventContainer.getChannel().recordRemovalFromBuffer(size);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[ Sequence " + sequence + " ] " + eventContainer.getMessageList().size()
+                    + " transaction messages prepared for staging in " + stagingQueueName);
+        }
+    }
+
+    /**
+     * Assign new message IDs to the messages staged by a transaction which is being committed. Staged messages get
+     * IDs in commit order, like messages routed at commit, since slots expect message IDs of a queue to become
+     * visible in increasing order.
+     *
+     * @param transactionEvent transaction being committed
+     */
+    private void preProcessStagedCommit(InboundTransactionEvent transactionEvent) {
+        List<String> stagedStorageQueueNames = transactionEvent.getStagedStorageQueueNames();
+        if (stagedStorageQueueNames.isEmpty()) {
+            return;
+        }
+
+        List<AndesMessageMetadata> movedMessages = new ArrayList<>(stagedStorageQueueNames.size());
+        for (String storageQueueName : stagedStorageQueueNames) {
+            AndesMessageMetadata metadata = new AndesMessageMetadata();
+            metadata.setMessageID(idGenerator.getNextId());
+            metadata.setStorageQueueName(storageQueueName);
+            movedMessages.add(metadata);
+        }
+        transactionEvent.prepareStagedCommit(movedMessages);
+    }
+
     /**
      * Calculate the current safe zone for this node (using the last generated message ID)
      * @param event event
@@ -276,6 +353,8 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
         }
 
         message.getMetadata().setMessageID(messageId);
+        MessageLatencySampler.checkpoint(messageId, message.getMetadata().getDestination(),
+                MessageTracer.MESSAGE_ID_MAPPED);
 
         for (AndesMessagePart messagePart: message.getContentChunkList()) {
             messagePart.setMessageID(messageId);
@@ -283,51 +362,44 @@ public class MessagePreProcessor implements EventHandler<InboundEventContainer>
     }
 
     /**
-     * Generates IDs. This id generator cannot be used in a multi threaded environment. Removed any locking behaviour to
-     * improve id generation in single threaded approach
+     * Generates IDs from blocks reserved from the shared {@link BlockReservingMessageIdGenerator}. This id generator
+     * cannot be used in a multi threaded environment. A block is only used within the millisecond it was reserved in,
+     * so that message IDs keep following the publish time.
      */
     private static class MessageIDGenerator {
 
-        /** REFERENCE_START time set to 2011 */
-        private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L;
-        private int uniqueIdForNode;
-        private long lastTimestamp;
-        private long lastID;
-        private int offset;
-
-        MessageIDGenerator() {
-            uniqueIdForNode = 0;
-            lastTimestamp = 0;
-            lastID = 0;
-            offset = 0;
+        /**
+         * Number of IDs reserved at once
+         */
+        private static final int BLOCK_SIZE = 64;
+
+        private final BlockReservingMessageIdGenerator generator;
+
+        private long nextId;
+
+        private int remainingIdsInBlock;
+
+        private long blockReservedTime;
+
+        MessageIDGenerator(BlockReservingMessageIdGenerator generator) {
+            this.generator = generator;
         }
 
         /**
-         * Out of 64 bits for long, we will use the range as follows
-         * [1 sign bit][45bits for time spent from reference time in milliseconds][8bit node id][10 bit offset for ID
-         * falls within the same timestamp]
-         * This assumes there will not be more than 1024 hits within a given millisecond. Range is sufficient for
-         * 6029925857 years.
+         * Generated IDs are strictly increasing
          *
          * @return Generated ID
          */
         public long getNextId() {
-
-            // id might change at runtime. Hence reading the value
-            uniqueIdForNode = ClusterResourceHolder.getInstance().getClusterManager().getUniqueIdForLocalNode();
-            long ts = System.currentTimeMillis();
-
-            if (ts == lastTimestamp) {
-                offset = offset + 1;
-            } else {
-                offset = 0;
-            }
-            lastTimestamp = ts;
-            long id = (ts - REFERENCE_START) * 256 * 1024 + uniqueIdForNode * 1024 + offset;
-            if (lastID == id) {
-                throw new RuntimeException("duplicate ids detected. This should never happen");
+            long currentTime = System.currentTimeMillis();
+            if (0 == remainingIdsInBlock || currentTime != blockReservedTime) {
+                nextId = generator.reserveIds(BLOCK_SIZE);
+                remainingIdsInBlock = BLOCK_SIZE;
+                blockReservedTime = currentTime;
             }
-            lastID = id;
+            long id = nextId;
+            nextId = BlockReservingMessageIdGenerator.nextId(nextId);
+            remainingIdsInBlock--;
             return id;
         }
     }
@@ -72,6 +72,11 @@ public class StateEventHandler implements EventHandler<InboundEventContainer> {
                     break;
             }
 
+            if (endOfBatch) {
+                // Hand slots which reached the submit latency while this batch was processed to the submit timer
+                SlotMessageCounter.getInstance().onInboundBatchEnd();
+            }
+
         } finally {
             // This is the final handler that visits the slot in ring buffer. Hence after processing is done clear the
             // slot so that in next iteration of the first event handler over the same slot won't find garbage from
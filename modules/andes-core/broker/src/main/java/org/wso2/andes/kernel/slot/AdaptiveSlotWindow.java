@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.slot;
+
+/**
+ * Slot window size of a queue derived from its publish rate. The window is sized to hold the messages published
+ * to the queue within the submit latency, so that a busy queue fills its slot about when the latency bound is
+ * reached and a slow queue submits small slots on time.
+ */
+class AdaptiveSlotWindow {
+
+    /**
+     * Weight of the latest observation in the smoothed publish rate of a queue
+     */
+    static final double PUBLISH_RATE_SMOOTHING_FACTOR = 0.5;
+
+    /**
+     * Maximum time in milliseconds a message waits in an open slot
+     */
+    private final int submitLatency;
+
+    private final int minWindowSize;
+
+    private final int maxWindowSize;
+
+    /**
+     * Smoothed publish rate of the queue in messages per millisecond
+     */
+    private double publishRate;
+
+    private volatile int windowSize;
+
+    /**
+     * @param initialWindowSize window size until the first slot is submitted
+     * @param submitLatency     maximum time in milliseconds a message waits in an open slot
+     * @param minWindowSize     lower bound of the window size
+     * @param maxWindowSize     upper bound of the window size
+     */
+    AdaptiveSlotWindow(int initialWindowSize, int submitLatency, int minWindowSize, int maxWindowSize) {
+        this.submitLatency = submitLatency;
+        this.minWindowSize = minWindowSize;
+        this.maxWindowSize = maxWindowSize;
+        windowSize = clamp(initialWindowSize);
+        publishRate = (double) windowSize / submitLatency;
+    }
+
+    /**
+     * Update the window with a submitted slot
+     *
+     * @param messageCount number of messages in the slot
+     * @param slotAge      time in milliseconds the slot was open
+     */
+    synchronized void update(long messageCount, long slotAge) {
+        double observedRate = (double) messageCount / Math.max(1, slotAge);
+        publishRate = PUBLISH_RATE_SMOOTHING_FACTOR * observedRate
+                + (1 - PUBLISH_RATE_SMOOTHING_FACTOR) * publishRate;
+        windowSize = clamp(Math.round(publishRate * submitLatency));
+    }
+
+    /**
+     * @return number of messages after which the open slot of the queue is submitted
+     */
+    int getWindowSize() {
+        return windowSize;
+    }
+
+    private int clamp(long size) {
+        return (int) Math.min(maxWindowSize, Math.max(minWindowSize, size));
+    }
+}
@@ -34,9 +34,17 @@ import org.wso2.andes.store.StoreHealthListener;
 import org.wso2.andes.subscription.SubscriptionStore;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SlotDelivery worker is responsible of distributing messages to subscribers. Messages will be
@@ -61,24 +69,47 @@ public class SlotDeliveryWorker extends Thread implements StoreHealthListener{
     private SlotCoordinator slotCoordinator;
 
     /**
-     * Indicates and provides a barrier if messages stores become offline.
-     * marked as volatile since this value could be set from a different thread
-     * (other than those of Disruptor)
+     * Indicates and provides a barrier if messages stores become offline. Set and cleared by store health
+     * notifications while metadata reader threads wait on it, hence readers only read it.
      */
-    private volatile SettableFuture<Boolean> messageStoresUnavailable;
+    private final AtomicReference<SettableFuture<Boolean>> messageStoresUnavailable;
 
     /**
      * Maximum number to retries retrieve metadata list for a given storage
      * queue ( in the errors occur in message stores)
      */
     private static final int MAX_META_DATA_RETRIEVAL_COUNT = 5;
+
+    /**
+     * Time in milliseconds the worker waits for metadata reads when all its queues are idle
+     */
+    private static final long IDLE_WAIT_TIME_MILLISECONDS = 100;
+
+    /**
+     * Pool metadata of slots is read on. Shared by all slot delivery workers of the node
+     */
+    private final ExecutorService metadataReaderExecutor;
+
+    /**
+     * Metadata reads in progress keyed by storage queue. A queue has at most one read in progress so that slots of
+     * a queue are buffered in order. Accessed only by the worker thread.
+     */
+    private final Map<String, MetadataRead> pendingMetadataReads;
+
+    /**
+     * Released by each completed metadata read to wake up the worker thread
+     */
+    private final Semaphore completedMetadataReads;
     
-    public SlotDeliveryWorker() {
+    public SlotDeliveryWorker(ExecutorService metadataReaderExecutor) {
+        this.metadataReaderExecutor = metadataReaderExecutor;
+        this.pendingMetadataReads = new HashMap<>();
+        this.completedMetadataReads = new Semaphore(0);
         messageFlusher = MessageFlusher.getInstance();
         this.storageQueueNameToDestinationMap = new ConcurrentSkipListMap<>();
         this.subscriptionStore = AndesContext.getInstance().getSubscriptionStore();
         slotCoordinator = MessagingEngine.getInstance().getSlotCoordinator();
-        messageStoresUnavailable = null;
+        messageStoresUnavailable = new AtomicReference<>();
         FailureObservingStoreManager.registerStoreHealthListener(this);
     }
 
@@ -96,100 +127,9 @@ public class SlotDeliveryWorker extends Thread implements StoreHealthListener{
 
             for (String storageQueueName : storageQueueNameToDestinationMap.keySet()) {
                 String destinationOfMessagesInQueue = storageQueueNameToDestinationMap.get(storageQueueName);
-                Collection<LocalSubscription> subscriptions4Queue;
                 try {
-                    subscriptions4Queue = 
-                            subscriptionStore.getActiveLocalSubscribersForQueuesAndTopics(destinationOfMessagesInQueue);
-                    if (subscriptions4Queue != null && !subscriptions4Queue.isEmpty()) {
-                        //Check in memory buffer in MessageFlusher has room
-                        if (messageFlusher.getMessageDeliveryInfo(destinationOfMessagesInQueue)
-                                .isMessageBufferFull()) {
-                            
-                            //get a slot from coordinator.
-                            Slot currentSlot = requestSlot(storageQueueName);
-                            currentSlot.setDestinationOfMessagesInSlot(destinationOfMessagesInQueue);
-                            
-                            
-                            /**
-                             * If the slot is empty
-                             */
-                            if (0 == currentSlot.getEndMessageId()) {
-
-                                    /*
-                                    If the message buffer in MessageFlusher is not empty
-                                     send those messages
-                                     */
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Received an empty slot from slot manager");
-                                }
-                                boolean sentFromMessageBuffer = sendFromMessageBuffer(
-                                        destinationOfMessagesInQueue);
-                                if (!sentFromMessageBuffer) {
-                                    //No available free slots
-                                    idleQueueCounter++;
-                                    if (idleQueueCounter == storageQueueNameToDestinationMap.size()) {
-                                        try {
-                                            if (log.isDebugEnabled()) {
-                                                log.debug("Sleeping Slot Delivery Worker");
-                                            }
-                                            Thread.sleep(100);
-                                        } catch (InterruptedException ignored) {
-                                            //Silently ignore
-                                        }
-                                    }
-                                }
-                            } else {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Received slot for storage queue " + storageQueueName + " " +
-                                            "is: " + currentSlot.getStartMessageId() +
-                                            " - " + currentSlot.getEndMessageId() +
-                                            "Thread Id:" + Thread.currentThread().getId());
-                                }
-                                List<AndesMessageMetadata> messagesRead =
-                                                                          getMetaDataListBySlot(storageQueueName,
-                                                                                                currentSlot);
-
-
-                                if (messagesRead != null &&
-                                        !messagesRead.isEmpty()) {
-                                    if (log.isDebugEnabled()) {
-                                        log.debug("Number of messages read from slot " +
-                                                currentSlot.getStartMessageId() + " - " +
-                                                currentSlot.getEndMessageId() + " is " +
-                                                messagesRead.size() + " storage queue= " + storageQueueName);
-                                    }
-                                    MessageFlusher.getInstance().sendMessageToBuffer(
-                                            messagesRead, currentSlot);
-                                    MessageFlusher.getInstance().sendMessagesInBuffer(
-                                            currentSlot.getDestinationOfMessagesInSlot());
-                                } else {
-                                    currentSlot.setSlotInActive();
-                                    deleteSlot(currentSlot);
-                                }
-                            }
-
-                        } else {
-                                /*If there are messages to be sent in the message
-                                            buffer in MessageFlusher send them */
-                            if (log.isDebugEnabled()) {
-                                log.debug(
-                                        "The queue " + storageQueueName + " has no room. Thus sending " +
-                                                "from buffer.");
-                            }
-                            sendFromMessageBuffer(destinationOfMessagesInQueue);
-                        }
-                    } else {
+                    if (!processQueue(storageQueueName, destinationOfMessagesInQueue)) {
                         idleQueueCounter++;
-                        if (idleQueueCounter == storageQueueNameToDestinationMap.size()) {
-                            try {
-                                if (log.isDebugEnabled()) {
-                                    log.debug("Sleeping Slot Delivery Worker");
-                                }
-                                Thread.sleep(100);
-                            } catch (InterruptedException ignored) {
-                                //Silently ignore
-                            }
-                        }
                     }
                 } catch (AndesException e) {
                     log.error("Error running Message Store Reader " + e.getMessage(), e);
@@ -203,8 +143,153 @@ public class SlotDeliveryWorker extends Thread implements StoreHealthListener{
                     log.error("Error while running Slot Delivery Worker. ", e);
                 }
             }
+
+            if (idleQueueCounter >= storageQueueNameToDestinationMap.size()) {
+                waitForMetadataReads();
+            }
+        }
+
+    }
+
+    /**
+     * Deliver messages of a storage queue. Metadata of a slot is read on the metadata reader pool and buffered by a
+     * later call once the read completes, so that reads of all queues of this worker overlap with each other and
+     * with delivery.
+     *
+     * @param storageQueueName             storage queue to deliver messages of
+     * @param destinationOfMessagesInQueue destination the messages of the storage queue are addressed to
+     * @return true if messages were read or sent, false if the queue is idle or waiting for a read to complete
+     * @throws AndesException
+     * @throws ConnectionException if connectivity to coordinator is lost.
+     */
+    private boolean processQueue(String storageQueueName, String destinationOfMessagesInQueue)
+            throws AndesException, ConnectionException {
+
+        MetadataRead pendingRead = pendingMetadataReads.get(storageQueueName);
+        if (null != pendingRead) {
+            if (!pendingRead.messagesRead.isDone()) {
+                return false;
+            }
+            pendingMetadataReads.remove(storageQueueName);
+            bufferMessagesOfSlot(storageQueueName, pendingRead.slot, pendingRead.getMessagesRead());
+            return true;
+        }
+
+        Collection<LocalSubscription> subscriptions4Queue =
+                subscriptionStore.getActiveLocalSubscribersForQueuesAndTopics(destinationOfMessagesInQueue);
+        if (subscriptions4Queue == null || subscriptions4Queue.isEmpty()) {
+            return false;
+        }
+
+        //Check in memory buffer in MessageFlusher has room
+        if (messageFlusher.getMessageDeliveryInfo(destinationOfMessagesInQueue).isMessageBufferFull()) {
+
+            //get a slot from coordinator.
+            Slot currentSlot = requestSlot(storageQueueName);
+            currentSlot.setDestinationOfMessagesInSlot(destinationOfMessagesInQueue);
+
+            /**
+             * If the slot is empty
+             */
+            if (0 == currentSlot.getEndMessageId()) {
+
+                /*
+                If the message buffer in MessageFlusher is not empty
+                send those messages
+                 */
+                if (log.isDebugEnabled()) {
+                    log.debug("Received an empty slot from slot manager");
+                }
+                //No available free slots if nothing is sent from buffer
+                return sendFromMessageBuffer(destinationOfMessagesInQueue);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debug("Received slot for storage queue " + storageQueueName + " " +
+                            "is: " + currentSlot.getStartMessageId() +
+                            " - " + currentSlot.getEndMessageId() +
+                            "Thread Id:" + Thread.currentThread().getId());
+                }
+                pendingMetadataReads.put(storageQueueName,
+                        new MetadataRead(currentSlot, readMetadataAsync(storageQueueName, currentSlot)));
+                return true;
+            }
+
+        } else {
+            /*If there are messages to be sent in the message
+                        buffer in MessageFlusher send them */
+            if (log.isDebugEnabled()) {
+                log.debug(
+                        "The queue " + storageQueueName + " has no room. Thus sending " +
+                                "from buffer.");
+            }
+            sendFromMessageBuffer(destinationOfMessagesInQueue);
+            return true;
+        }
+    }
+
+    /**
+     * Buffer messages read from a slot and send them. An empty slot is deleted.
+     *
+     * @param storageQueueName storage queue the slot belongs to
+     * @param slot             slot the messages are read from
+     * @param messagesRead     metadata of messages in the slot
+     * @throws AndesException
+     */
+    private void bufferMessagesOfSlot(String storageQueueName, Slot slot, List<AndesMessageMetadata> messagesRead)
+            throws AndesException {
+        if (messagesRead != null &&
+                !messagesRead.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Number of messages read from slot " +
+                        slot.getStartMessageId() + " - " +
+                        slot.getEndMessageId() + " is " +
+                        messagesRead.size() + " storage queue= " + storageQueueName);
+            }
+            MessageFlusher.getInstance().sendMessageToBuffer(
+                    messagesRead, slot);
+            MessageFlusher.getInstance().sendMessagesInBuffer(
+                    slot.getDestinationOfMessagesInSlot());
+        } else {
+            slot.setSlotInActive();
+            deleteSlot(slot);
         }
+    }
+
+    /**
+     * Read metadata of a slot on the metadata reader pool. Completion of the read wakes this worker up if it is
+     * waiting.
+     *
+     * @param storageQueueName name of the storage queue which this slot belongs to
+     * @param slot             the slot which messages are retrieved.
+     * @return future of the metadata list of the slot
+     */
+    private Future<List<AndesMessageMetadata>> readMetadataAsync(final String storageQueueName, final Slot slot) {
+        return metadataReaderExecutor.submit(new Callable<List<AndesMessageMetadata>>() {
+            @Override
+            public List<AndesMessageMetadata> call() throws AndesException {
+                try {
+                    return getMetaDataListBySlot(storageQueueName, slot);
+                } finally {
+                    completedMetadataReads.release();
+                }
+            }
+        });
+    }
 
+    /**
+     * Wait until a metadata read completes or a short time elapses. Called when all queues of this worker are idle
+     * or waiting for reads.
+     */
+    private void waitForMetadataReads() {
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Sleeping Slot Delivery Worker");
+            }
+            completedMetadataReads.tryAcquire(IDLE_WAIT_TIME_MILLISECONDS, TimeUnit.MILLISECONDS);
+            completedMetadataReads.drainPermits();
+        } catch (InterruptedException ignored) {
+            //Silently ignore
+        }
     }
 
     /**
@@ -233,14 +318,16 @@ public class SlotDeliveryWorker extends Thread implements StoreHealthListener{
 
         List<AndesMessageMetadata> messagesRead;
                
-        if ( messageStoresUnavailable != null){
+        // Read once since the store health notifications replace it. Cleared when stores become operational.
+        SettableFuture<Boolean> storesUnavailable = messageStoresUnavailable.get();
+        if (storesUnavailable != null) {
             try {
                 
                 log.info("Message store has become unavailable therefore "+ 
-                          "waiting until store becomes available. thread id: " + this.getId());
-                messageStoresUnavailable.get();
-                messageStoresUnavailable = null; // we are passing the blockade (therefore clear it).
-                log.info("Message store became available. resuming work. thread id: " + this.getId());
+                          "waiting until store becomes available. thread id: " + Thread.currentThread().getId());
+                storesUnavailable.get();
+                log.info("Message store became available. resuming work. thread id: "
+                         + Thread.currentThread().getId());
                 
             } catch (InterruptedException e) {
                 throw new AndesException("Thread interrupted while waiting for message stores to come online", e);
@@ -380,7 +467,8 @@ public class SlotDeliveryWorker extends Thread implements StoreHealthListener{
     public void storeNonOperational(HealthAwareStore store, Exception ex) {
       
         log.info("Message stores became not operational therefore waiting");
-        messageStoresUnavailable = SettableFuture.create();
+        // Keep the future of an outage already in progress so that readers waiting on it are released
+        messageStoresUnavailable.compareAndSet(null, SettableFuture.<Boolean>create());
  
     }
 
@@ -391,8 +479,44 @@ public class SlotDeliveryWorker extends Thread implements StoreHealthListener{
     @Override
     public void storeOperational(HealthAwareStore store) {
         log.info("Message stores became operational therefore resuming work");
-        messageStoresUnavailable.set(false);
+        SettableFuture<Boolean> storesUnavailable = messageStoresUnavailable.getAndSet(null);
+        if (null != storesUnavailable) {
+            storesUnavailable.set(false);
+        }
         
     }
+
+    /**
+     * Metadata read of a slot submitted to the metadata reader pool
+     */
+    private static final class MetadataRead {
+
+        private final Slot slot;
+
+        private final Future<List<AndesMessageMetadata>> messagesRead;
+
+        private MetadataRead(Slot slot, Future<List<AndesMessageMetadata>> messagesRead) {
+            this.slot = slot;
+            this.messagesRead = messagesRead;
+        }
+
+        /**
+         * @return metadata of the slot. Must be called only after the read is done
+         * @throws AndesException if metadata of the slot could not be read
+         */
+        private List<AndesMessageMetadata> getMessagesRead() throws AndesException {
+            try {
+                return messagesRead.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AndesException("Interrupted while reading metadata of slot " + slot, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof AndesException) {
+                    throw (AndesException) e.getCause();
+                }
+                throw new AndesException("Error while reading metadata of slot " + slot, e.getCause());
+            }
+        }
+    }
 }
 
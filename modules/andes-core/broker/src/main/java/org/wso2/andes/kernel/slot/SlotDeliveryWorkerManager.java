@@ -39,6 +39,11 @@ public class SlotDeliveryWorkerManager {
 
     private ExecutorService slotDeliveryWorkerExecutor;
 
+    /**
+     * Bounded pool slot delivery workers read metadata of slots on
+     */
+    private ExecutorService metadataReaderExecutor;
+
     private static Log log = LogFactory.getLog(SlotDeliveryWorkerManager.class);
 
     /**
@@ -47,6 +52,9 @@ public class SlotDeliveryWorkerManager {
     private static ThreadFactory namedThreadFactory = new ThreadFactoryBuilder().setNameFormat
             ("SlotDeliveryWorkerExecutor-%d").build();
 
+    private static ThreadFactory metadataReaderThreadFactory = new ThreadFactoryBuilder().setNameFormat
+            ("SlotMetadataReader-%d").build();
+
 
     /**
     Number of slot delivery worker threads running in one MB node
@@ -63,6 +71,10 @@ public class SlotDeliveryWorkerManager {
         numberOfThreads = AndesConfigurationManager.readValue
                 (AndesConfiguration.PERFORMANCE_TUNING_SLOTS_WORKER_THREAD_COUNT);
         this.slotDeliveryWorkerExecutor = Executors.newFixedThreadPool(numberOfThreads, namedThreadFactory);
+        Integer numberOfMetadataReaderThreads = AndesConfigurationManager.readValue
+                (AndesConfiguration.PERFORMANCE_TUNING_SLOTS_METADATA_READER_THREAD_COUNT);
+        this.metadataReaderExecutor = Executors.newFixedThreadPool(numberOfMetadataReaderThreads,
+                metadataReaderThreadFactory);
     }
 
     /**
@@ -93,7 +105,7 @@ public class SlotDeliveryWorkerManager {
                 }
             }
         } else {
-            SlotDeliveryWorker slotDeliveryWorker = new SlotDeliveryWorker();
+            SlotDeliveryWorker slotDeliveryWorker = new SlotDeliveryWorker(metadataReaderExecutor);
             if(log.isDebugEnabled()) {
                 log.debug("Slot Delivery Worker Started. Reading messages storageQ= " + storageQueueName + " MsgDest= " + destinaton);
             }
@@ -29,6 +29,7 @@ import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.server.cluster.coordination.SlotAgent;
 import org.wso2.andes.server.cluster.coordination.hazelcast.HazelcastAgent;
 import org.wso2.andes.server.cluster.coordination.rdbms.RDBMSAgent;
+import org.wso2.andes.server.cluster.coordination.rdbms.WriteBehindRDBMSAgent;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -97,7 +98,12 @@ public class SlotManagerClusterMode {
         if(AndesConfigurationManager.readValue(AndesConfiguration.SLOT_MANAGEMENT_STORAGE) != null &&
             AndesConfigurationManager.readValue(AndesConfiguration.SLOT_MANAGEMENT_STORAGE).equals("RDBMS")) {
             //Use RDBMS slot information storing
-            slotAgent = new RDBMSAgent();
+            if (AndesConfigurationManager.<Boolean>readValue(
+                    AndesConfiguration.SLOT_MANAGEMENT_WRITE_BEHIND_ENABLED)) {
+                slotAgent = new WriteBehindRDBMSAgent();
+            } else {
+                slotAgent = new RDBMSAgent();
+            }
         } else {
             //Use Hazelcast slot information storing
             slotAgent = HazelcastAgent.getInstance();
@@ -167,11 +173,11 @@ public class SlotManagerClusterMode {
     private Slot getFreshSlot(String queueName, String nodeId) throws AndesException{
 
         Slot slotToBeAssigned = null;
-        TreeSet<Long> messageIDSet;
-        // Get message id set from database
-        messageIDSet = slotAgent.getMessageIds(queueName);
+        //end messageID will be the lowest in published message ID list. Get and remove in one
+        //operation on the slot store so that the whole list is not read
+        Long lowestMessageId = slotAgent.pollFirstMessageId(queueName);
 
-        if (messageIDSet != null && !messageIDSet.isEmpty()) {
+        if (null != lowestMessageId) {
 
             slotToBeAssigned = new Slot();
             //start msgID will be last assigned ID + 1 so that slots are created with no
@@ -184,11 +190,7 @@ public class SlotManagerClusterMode {
                 slotToBeAssigned.setStartMessageId(0L);
             }
 
-            //end messageID will be the lowest in published message ID list. Get and remove
-            slotToBeAssigned.setEndMessageId(messageIDSet.pollFirst());
-
-            //remove polled message id from database
-            slotAgent.deleteMessageId(queueName, slotToBeAssigned.getEndMessageId());
+            slotToBeAssigned.setEndMessageId(lowestMessageId);
 
             //set storage queue name (db queue to read messages from)
             slotToBeAssigned.setStorageQueueName(queueName);
@@ -288,10 +290,6 @@ public class SlotManagerClusterMode {
 		    queuesToRecover.remove(queueName);
 	    }
 
-	    // Read message Id set for slots from store
-	    TreeSet<Long> messageIdSet;
-	    messageIdSet = slotAgent.getMessageIds(queueName);
-
         String lockKey = queueName + SlotManagerClusterMode.class;
         synchronized (lockKey.intern()) {
             //Get last assigned message id from database
@@ -337,7 +335,7 @@ public class SlotManagerClusterMode {
                         if (log.isDebugEnabled()) {
                             log.debug(lastMessageIdInTheSlot + " added to store " +
                                     "(RightExtraSlot). Current values in " +
-                                    "store " + messageIdSet);
+                                    "store " + slotAgent.getMessageIds(queueName));
                         }
                         slotAgent.setNodeToLastPublishedId(nodeId, lastMessageIdInTheSlot);
                     }
@@ -493,6 +491,9 @@ public class SlotManagerClusterMode {
      */
     public void shutDownSlotManager() {
         slotDeleteSafeZoneCalc.setRunning(false);
+        if (slotAgent instanceof WriteBehindRDBMSAgent) {
+            ((WriteBehindRDBMSAgent) slotAgent).stop();
+        }
     }
 
     /**
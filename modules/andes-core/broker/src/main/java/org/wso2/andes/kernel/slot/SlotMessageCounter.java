@@ -28,20 +28,36 @@ import org.wso2.andes.kernel.AndesMessageMetadata;
 import org.wso2.andes.kernel.MessagingEngine;
 
 import java.util.Collection;
-import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This class is responsible of counting messages in a slot for each queue
+ * This class is responsible of counting messages in a slot for each queue.
+ * <p/>
+ * By default a slot of a queue is submitted to the coordinator when it reaches the slot window size or when it is
+ * older than the slot retain time, which is checked by a timer. When adaptive slot sizing is enabled the window size
+ * of each queue follows the observed publish rate of the queue and a slot is submitted once its oldest message waited
+ * for the submit latency. The age of open slots is checked at the end of each batch handled by the inbound
+ * disruptor, which hands expired slots to the timer thread for submission, while the timer itself only covers idle
+ * periods.
  */
 public class SlotMessageCounter {
 
+    /**
+     * Open slot of each queue. Updated together with {@link #slotTimeOutMap} under the counter monitor since slots
+     * are recorded by the inbound disruptor and submitted by both the disruptor and the timer.
+     */
     private ConcurrentHashMap<String, Slot> queueToSlotMap = new ConcurrentHashMap<>();
     private ConcurrentHashMap<String, Long> slotTimeOutMap = new ConcurrentHashMap<>();
+
+    /**
+     * Adaptive window of each queue. Only used when adaptive slot sizing is enabled.
+     */
+    private ConcurrentHashMap<String, AdaptiveSlotWindow> queueToAdaptiveWindowMap = new ConcurrentHashMap<>();
+
     /**
      * Timeout in milliseconds for messages in the slot. When this timeout is exceeded slot will be
      * submitted to the coordinator
@@ -49,7 +65,6 @@ public class SlotMessageCounter {
     private Long timeOutForMessagesInQueue;
     private Timer submitSlotToCoordinatorTimer = new Timer();
     private Log log = LogFactory.getLog(SlotMessageCounter.class);
-    private static SlotMessageCounter slotMessageCounter = new SlotMessageCounter();
     private Integer slotWindowSize;
     private long currentSlotDeleteSafeZone;
 
@@ -63,6 +78,11 @@ public class SlotMessageCounter {
 
     private static final int SLOT_SUBMIT_LOOP_SKIP_COUNT_THRESHOLD = 10;
 
+    /**
+     * True while a submission of expired slots requested by the inbound disruptor is pending on the timer
+     */
+    private final AtomicBoolean expiredSlotSubmissionScheduled = new AtomicBoolean(false);
+
     /**
      * Time between successive slot submit scheduled tasks.
      * <p/>
@@ -72,19 +92,76 @@ public class SlotMessageCounter {
      */
     public final int SLOT_SUBMIT_TIMEOUT;
 
+    private final boolean adaptiveSizingEnabled;
+
+    /**
+     * Maximum time in milliseconds a message waits in an open slot when adaptive slot sizing is enabled
+     */
+    private final int submitLatency;
+
+    private final int minWindowSize;
+
+    private final int maxWindowSize;
+
+    /**
+     * Number of consecutive idle timer runs after which the slot deletion safe zone is submitted
+     */
+    private final int slotSubmitLoopSkipCountThreshold;
+
     private SlotMessageCounter() {
+        this(MessagingEngine.getInstance().getSlotCoordinator(),
+                (Integer) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SUBMIT_SLOT_TIMEOUT),
+                (Integer) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SLOTS_SLOT_WINDOW_SIZE),
+                (Long) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SLOTS_SLOT_RETAIN_TIME_IN_MEMORY),
+                (Boolean) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SLOTS_ADAPTIVE_SIZING_ENABLED),
+                (Integer) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SLOTS_ADAPTIVE_SUBMIT_LATENCY),
+                (Integer) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SLOTS_ADAPTIVE_MIN_WINDOW_SIZE),
+                (Integer) AndesConfigurationManager.readValue(
+                        AndesConfiguration.PERFORMANCE_TUNING_SLOTS_ADAPTIVE_MAX_WINDOW_SIZE));
+    }
 
-        SLOT_SUBMIT_TIMEOUT = AndesConfigurationManager.readValue(
-                AndesConfiguration.PERFORMANCE_TUNING_SUBMIT_SLOT_TIMEOUT);
+    /**
+     * Create a slot message counter with the given settings. Used by tests, the broker uses {@link #getInstance()}.
+     *
+     * @param slotCoordinator        coordinator slots are submitted to
+     * @param slotSubmitTimeout      time in milliseconds between runs of the slot submit timer
+     * @param slotWindowSize         number of messages after which a slot is submitted
+     * @param slotRetainTime         time in milliseconds after which an open slot is submitted
+     * @param adaptiveSizingEnabled  true to size slots by publish rate
+     * @param submitLatency          maximum time in milliseconds a message waits in an open slot with adaptive sizing
+     * @param minWindowSize          lower bound of adaptive slot windows
+     * @param maxWindowSize          upper bound of adaptive slot windows
+     */
+    SlotMessageCounter(SlotCoordinator slotCoordinator, int slotSubmitTimeout, int slotWindowSize,
+                       long slotRetainTime, boolean adaptiveSizingEnabled, int submitLatency, int minWindowSize,
+                       int maxWindowSize) {
 
-        slotWindowSize = AndesConfigurationManager.readValue
-                (AndesConfiguration.PERFORMANCE_TUNING_SLOTS_SLOT_WINDOW_SIZE);
+        SLOT_SUBMIT_TIMEOUT = slotSubmitTimeout;
+        this.slotWindowSize = slotWindowSize;
+        timeOutForMessagesInQueue = slotRetainTime;
+        this.adaptiveSizingEnabled = adaptiveSizingEnabled;
+        this.submitLatency = Math.max(1, submitLatency);
+        this.minWindowSize = Math.max(1, minWindowSize);
+        this.maxWindowSize = Math.max(this.minWindowSize, maxWindowSize);
 
-        timeOutForMessagesInQueue = AndesConfigurationManager.readValue
-                (AndesConfiguration.PERFORMANCE_TUNING_SLOTS_SLOT_RETAIN_TIME_IN_MEMORY);
+        if (adaptiveSizingEnabled) {
+            // Keep submitting the safe zone at the same interval as with the slower timer
+            slotSubmitLoopSkipCountThreshold = Math.max(1,
+                    SLOT_SUBMIT_LOOP_SKIP_COUNT_THRESHOLD * SLOT_SUBMIT_TIMEOUT / this.submitLatency);
+            log.info("Adaptive slot sizing enabled. Submit latency: " + this.submitLatency + " ms, window size: "
+                    + this.minWindowSize + " to " + this.maxWindowSize);
+        } else {
+            slotSubmitLoopSkipCountThreshold = SLOT_SUBMIT_LOOP_SKIP_COUNT_THRESHOLD;
+        }
 
         slotSubmitLoopSkipCount = 0;
-        slotCoordinator = MessagingEngine.getInstance().getSlotCoordinator();
+        this.slotCoordinator = slotCoordinator;
 
         scheduleSubmitSlotToCoordinatorTimer();
     }
@@ -93,25 +170,12 @@ public class SlotMessageCounter {
      * This thread is to record message IDs in slot manager when a timeout is passed
      */
     private void scheduleSubmitSlotToCoordinatorTimer() {
+        long period = adaptiveSizingEnabled ? submitLatency : SLOT_SUBMIT_TIMEOUT;
         submitSlotToCoordinatorTimer.scheduleAtFixedRate(new TimerTask() {
             public void run() {
-                Set<Map.Entry<String, Long>> slotTimeoutEntries = slotTimeOutMap.entrySet();
-                for (Map.Entry<String, Long> entry : slotTimeoutEntries) {
-                    if ((System.currentTimeMillis() - entry
-                            .getValue()) > timeOutForMessagesInQueue) {
-                        try {
-                            submitSlot(entry.getKey());
-                        } catch (AndesException e) {
-                            // We do not do anything here since this thread will be run every 3
-                            // seconds
-                            log.error("Error occurred while connecting to the thrift coordinator " +
-                                    e.getMessage(), e);
-                        }
-                    }
-                }
-                if (slotTimeoutEntries.isEmpty()) {
+                if (slotTimeOutMap.isEmpty()) {
                     slotSubmitLoopSkipCount += 1;
-                    if (slotSubmitLoopSkipCount == SLOT_SUBMIT_LOOP_SKIP_COUNT_THRESHOLD) {
+                    if (slotSubmitLoopSkipCount >= slotSubmitLoopSkipCountThreshold) {
                         //update current slot Deletion Safe Zone
                         try {
                             submitCurrentSafeZone(currentSlotDeleteSafeZone);
@@ -120,9 +184,69 @@ public class SlotMessageCounter {
                             log.error("Error while sending slot deletion safe zone update", e);
                         }
                     }
+                } else {
+                    submitExpiredSlots();
                 }
             }
-        }, SLOT_SUBMIT_TIMEOUT, SLOT_SUBMIT_TIMEOUT);
+        }, period, period);
+    }
+
+    /**
+     * Submit slots which are open longer than the slot timeout. The timeout is the submit latency when adaptive slot
+     * sizing is enabled and the slot retain time otherwise.
+     */
+    private void submitExpiredSlots() {
+        long slotTimeout = adaptiveSizingEnabled ? submitLatency : timeOutForMessagesInQueue;
+        long currentTime = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : slotTimeOutMap.entrySet()) {
+            if ((currentTime - entry.getValue()) >= slotTimeout) {
+                try {
+                    submitSlot(entry.getKey());
+                } catch (AndesException e) {
+                    // We do not do anything here since this will be retried by the timer
+                    log.error("Error occurred while connecting to the thrift coordinator " +
+                            e.getMessage(), e);
+                } catch (RuntimeException e) {
+                    // The slot is kept for the next run. Do not let the timer thread die
+                    log.error("Error occurred while submitting slot of queue " + entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by the inbound disruptor at the end of each batch. When adaptive slot sizing is enabled and a slot's
+     * oldest message waited for the submit latency, submission of expired slots is handed to the timer thread so that
+     * the latency bound does not depend on the timer period while the disruptor does not wait on the coordinator.
+     */
+    public void onInboundBatchEnd() {
+        if (adaptiveSizingEnabled && hasExpiredSlot() && expiredSlotSubmissionScheduled.compareAndSet(false, true)) {
+            try {
+                submitSlotToCoordinatorTimer.schedule(new TimerTask() {
+                    public void run() {
+                        expiredSlotSubmissionScheduled.set(false);
+                        submitExpiredSlots();
+                    }
+                }, 0);
+            } catch (IllegalStateException e) {
+                // Timer is cancelled since the counter is stopped
+                expiredSlotSubmissionScheduled.set(false);
+                log.debug("Slot submit timer is stopped. Expired slots are not submitted.", e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the oldest message of an open slot waited for the submit latency
+     */
+    private boolean hasExpiredSlot() {
+        long currentTime = System.currentTimeMillis();
+        for (Long slotCreationTime : slotTimeOutMap.values()) {
+            if ((currentTime - slotCreationTime) >= submitLatency) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -144,10 +268,11 @@ public class SlotMessageCounter {
      */
     public void recordMetadataCountInSlot(AndesMessageMetadata metadata) {
         String storageQueueName = metadata.getStorageQueueName();
-        //If this is the first message to that queue
-        Slot currentSlot;
-        currentSlot = updateQueueToSlotMap(metadata);
-        if (currentSlot.getMessageCount() >= slotWindowSize) {
+        long messageCount;
+        synchronized (this) {
+            messageCount = updateQueueToSlotMap(metadata).getMessageCount();
+        }
+        if (messageCount >= getSlotWindowSize(storageQueueName)) {
             try {
                 submitSlot(storageQueueName);
             } catch (AndesException e) {
@@ -165,8 +290,7 @@ public class SlotMessageCounter {
     }
 
     /**
-     * Update in-memory queue to slot map. This method is is not synchronized. Single publisher should access this.
-     * Ideally through a disruptor event handler
+     * Update in-memory queue to slot map. Caller should hold the counter monitor.
      *
      * @param metadata Andes metadata whose ID needs to be reported to SlotManager
      * @return Current slot which this metadata belongs to
@@ -186,34 +310,97 @@ public class SlotMessageCounter {
             long newMessageCount = currentMsgCount + 1;
             currentSlot.setMessageCount(newMessageCount);
             currentSlot.setEndMessageId(metadata.getMessageID());
-            queueToSlotMap.put(storageQueueName, currentSlot);
         }
         return currentSlot;
     }
 
     /**
      * Submit last message ID in the slot to SlotManager.
+     * <p/>
+     * The slot is detached from the queue before it is sent so that messages recorded meanwhile go to a new slot.
+     * If the slot is not submitted for any reason it is put back, merged with any slot opened meanwhile, so that the
+     * timer submits it again.
      *
      * @param storageQueueName name of the queue which this slot belongs to
      */
     public void submitSlot(String storageQueueName) throws AndesException {
-        Slot slot = queueToSlotMap.get(storageQueueName);
+        Slot slot;
+        Long slotCreationTime;
+        synchronized (this) {
+            slot = queueToSlotMap.remove(storageQueueName);
+            slotCreationTime = slotTimeOutMap.remove(storageQueueName);
+        }
         if (null != slot) {
+            boolean submitted = false;
             try {
                 slotCoordinator.updateMessageId(storageQueueName, slot.getStartMessageId(),
                         slot.getEndMessageId());
-                queueToSlotMap.remove(storageQueueName);
-                slotTimeOutMap.remove(storageQueueName);
-
+                submitted = true;
             } catch (ConnectionException e) {
-                 /* we only log here since this thread will be run every 3
-                seconds*/
+                 /* we only log here since the slot will be submitted again by the timer */
                 log.error("Error occurred while connecting to the thrift coordinator " + e
                         .getMessage(), e);
+            } finally {
+                if (!submitted) {
+                    restoreSlot(storageQueueName, slot, slotCreationTime);
+                }
+            }
+            if (submitted && adaptiveSizingEnabled) {
+                getAdaptiveWindow(storageQueueName).update(slot.getMessageCount(),
+                        System.currentTimeMillis() - slotCreationTime);
+            }
+        }
+    }
+
+    /**
+     * Put back a slot which could not be submitted. Messages recorded after the slot was detached have higher
+     * message IDs, therefore a slot opened meanwhile is merged at the end of the restored slot.
+     *
+     * @param storageQueueName name of the queue which this slot belongs to
+     * @param slot             slot which could not be submitted
+     * @param slotCreationTime time the slot was opened
+     */
+    private synchronized void restoreSlot(String storageQueueName, Slot slot, Long slotCreationTime) {
+        Slot newerSlot = queueToSlotMap.get(storageQueueName);
+        if (null != newerSlot) {
+            slot.setEndMessageId(newerSlot.getEndMessageId());
+            slot.setMessageCount(slot.getMessageCount() + newerSlot.getMessageCount());
+        }
+        queueToSlotMap.put(storageQueueName, slot);
+        slotTimeOutMap.put(storageQueueName, slotCreationTime);
+    }
+
+    /**
+     * @param storageQueueName name of the queue
+     * @return number of messages after which the open slot of the queue is submitted
+     */
+    private long getSlotWindowSize(String storageQueueName) {
+        if (!adaptiveSizingEnabled) {
+            return slotWindowSize;
+        }
+        AdaptiveSlotWindow adaptiveWindow = queueToAdaptiveWindowMap.get(storageQueueName);
+        if (null == adaptiveWindow) {
+            return clampWindowSize(slotWindowSize);
+        }
+        return adaptiveWindow.getWindowSize();
+    }
+
+    private AdaptiveSlotWindow getAdaptiveWindow(String storageQueueName) {
+        AdaptiveSlotWindow adaptiveWindow = queueToAdaptiveWindowMap.get(storageQueueName);
+        if (null == adaptiveWindow) {
+            adaptiveWindow = new AdaptiveSlotWindow(slotWindowSize, submitLatency, minWindowSize, maxWindowSize);
+            AdaptiveSlotWindow existingWindow = queueToAdaptiveWindowMap.putIfAbsent(storageQueueName,
+                    adaptiveWindow);
+            if (null != existingWindow) {
+                adaptiveWindow = existingWindow;
             }
         }
+        return adaptiveWindow;
     }
 
+    private int clampWindowSize(long windowSize) {
+        return (int) Math.min(maxWindowSize, Math.max(minWindowSize, windowSize));
+    }
 
     public void updateSafeZoneForNode(long currentSafeZoneVal) {
         currentSlotDeleteSafeZone = currentSafeZoneVal;
@@ -231,7 +418,7 @@ public class SlotMessageCounter {
      * @return SlotMessageCounter instance
      */
     public static SlotMessageCounter getInstance() {
-        return slotMessageCounter;
+        return SlotMessageCounterHolder.INSTANCE;
     }
 
     /**
@@ -242,4 +429,11 @@ public class SlotMessageCounter {
         submitSlotToCoordinatorTimer.cancel();
     }
 
+    /**
+     * Holds the broker's counter, which is created on first use since it reads the configuration and the slot
+     * coordinator of the messaging engine
+     */
+    private static final class SlotMessageCounterHolder {
+        private static final SlotMessageCounter INSTANCE = new SlotMessageCounter();
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.slot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of changes to the slot tables of a context store, applied together by
+ * {@link org.wso2.andes.kernel.AndesContextStore#applySlotStoreChanges(SlotStoreChanges)}. Stores apply the changes
+ * in the following order,
+ * <ol>
+ * <li>message id deletions</li>
+ * <li>message id insertions</li>
+ * <li>slot deletions</li>
+ * <li>slot creations</li>
+ * <li>slot assignments</li>
+ * <li>last assigned ids of queues and last published ids of nodes</li>
+ * </ol>
+ * Changes which would give a different result in another order, i.e. a slot created and deleted in the same batch,
+ * must be merged by the caller before they are added.
+ */
+public class SlotStoreChanges {
+
+    private final List<Long> deletedMessageIds = new ArrayList<>();
+
+    private final List<MessageIdChange> addedMessageIds = new ArrayList<>();
+
+    private final List<SlotChange> deletedSlots = new ArrayList<>();
+
+    private final List<SlotChange> createdSlots = new ArrayList<>();
+
+    private final List<SlotChange> slotAssignments = new ArrayList<>();
+
+    private final Map<String, Long> queueToLastAssignedIds = new LinkedHashMap<>();
+
+    private final Map<String, Long> nodeToLastPublishedIds = new LinkedHashMap<>();
+
+    public void deleteMessageId(long messageId) {
+        deletedMessageIds.add(messageId);
+    }
+
+    public void addMessageId(String queueName, long messageId) {
+        addedMessageIds.add(new MessageIdChange(queueName, messageId));
+    }
+
+    public void deleteSlot(long startMessageId, long endMessageId) {
+        deletedSlots.add(new SlotChange(startMessageId, endMessageId, null, null));
+    }
+
+    public void createSlot(long startMessageId, long endMessageId, String storageQueueName, String assignedNodeId) {
+        createdSlots.add(new SlotChange(startMessageId, endMessageId, storageQueueName, assignedNodeId));
+    }
+
+    public void createSlotAssignment(String nodeId, String queueName, long startMessageId, long endMessageId) {
+        slotAssignments.add(new SlotChange(startMessageId, endMessageId, queueName, nodeId));
+    }
+
+    public void setQueueToLastAssignedId(String queueName, long lastAssignedId) {
+        queueToLastAssignedIds.put(queueName, lastAssignedId);
+    }
+
+    public void setNodeToLastPublishedId(String nodeId, long lastPublishedId) {
+        nodeToLastPublishedIds.put(nodeId, lastPublishedId);
+    }
+
+    public List<Long> getDeletedMessageIds() {
+        return deletedMessageIds;
+    }
+
+    public List<MessageIdChange> getAddedMessageIds() {
+        return addedMessageIds;
+    }
+
+    public List<SlotChange> getDeletedSlots() {
+        return deletedSlots;
+    }
+
+    public List<SlotChange> getCreatedSlots() {
+        return createdSlots;
+    }
+
+    public List<SlotChange> getSlotAssignments() {
+        return slotAssignments;
+    }
+
+    public Map<String, Long> getQueueToLastAssignedIds() {
+        return queueToLastAssignedIds;
+    }
+
+    public Map<String, Long> getNodeToLastPublishedIds() {
+        return nodeToLastPublishedIds;
+    }
+
+    /**
+     * @return total number of changes
+     */
+    public int size() {
+        return deletedMessageIds.size() + addedMessageIds.size() + deletedSlots.size() + createdSlots.size()
+                + slotAssignments.size() + queueToLastAssignedIds.size() + nodeToLastPublishedIds.size();
+    }
+
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    /**
+     * Message id added to a queue
+     */
+    public static class MessageIdChange {
+
+        private final String queueName;
+
+        private final long messageId;
+
+        private MessageIdChange(String queueName, long messageId) {
+            this.queueName = queueName;
+            this.messageId = messageId;
+        }
+
+        public String getQueueName() {
+            return queueName;
+        }
+
+        public long getMessageId() {
+            return messageId;
+        }
+    }
+
+    /**
+     * Slot created, deleted or assigned. Queue and node are not set for deletions.
+     */
+    public static class SlotChange {
+
+        private final long startMessageId;
+
+        private final long endMessageId;
+
+        private final String queueName;
+
+        private final String nodeId;
+
+        private SlotChange(long startMessageId, long endMessageId, String queueName, String nodeId) {
+            this.startMessageId = startMessageId;
+            this.endMessageId = endMessageId;
+            this.queueName = queueName;
+            this.nodeId = nodeId;
+        }
+
+        public long getStartMessageId() {
+            return startMessageId;
+        }
+
+        public long getEndMessageId() {
+            return endMessageId;
+        }
+
+        public String getQueueName() {
+            return queueName;
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.metrics;
+
+import com.google.common.cache.CacheBuilder;
+import org.wso2.andes.tools.utils.MessageTracer;
+import org.wso2.carbon.metrics.manager.Level;
+import org.wso2.carbon.metrics.manager.MetricManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time messages spend between the lifecycle checkpoints named in {@link MessageTracer}. One in every
+ * sample interval messages is stamped with the nano time at each checkpoint. The time since the previous checkpoint
+ * is recorded in a histogram per stage and the time since the message ID was assigned is recorded in a histogram per
+ * stage and destination. Histograms are registered with the {@link MetricManager} in microseconds.
+ * <p/>
+ * A stage is recorded once per message, repeated checkpoints such as dispatching a topic message to several
+ * subscribers only count the first one.
+ */
+public class MessageLatencySampler {
+
+    /**
+     * Maximum number of sampled messages tracked at a time. Messages which never reach a final checkpoint are
+     * evicted after this or after {@link #SAMPLE_EXPIRY_MINUTES}.
+     */
+    private static final int MAX_TRACKED_SAMPLES = 10000;
+
+    private static final int SAMPLE_EXPIRY_MINUTES = 10;
+
+    /**
+     * Lifecycle stages of a message in the order they are reached
+     */
+    private enum Stage {
+        ID_MAPPED(MessageTracer.MESSAGE_ID_MAPPED, "idMapped"),
+        CONTENT_WRITTEN(MessageTracer.CONTENT_WRITTEN_TO_DB, "contentWritten"),
+        SLOT_UPDATED(MessageTracer.SLOT_INFO_UPDATED, "slotUpdated"),
+        METADATA_READ(MessageTracer.METADATA_READ_FROM_DB, "metadataRead"),
+        BUFFERED(MessageTracer.METADATA_BUFFERED_FOR_DELIVERY, "buffered"),
+        OUTBOUND_PUBLISHED(MessageTracer.PUBLISHED_TO_OUTBOUND_DISRUPTOR, "outboundPublished"),
+        CONTENT_READ(MessageTracer.CONTENT_READ, "contentRead"),
+        DISPATCHED(MessageTracer.DISPATCHED_TO_PROTOCOL, "dispatched"),
+        ACK_RECEIVED(MessageTracer.ACK_RECEIVED_FROM_PROTOCOL, "ackReceived"),
+        ACK_PUBLISHED(MessageTracer.ACK_PUBLISHED_TO_DISRUPTOR, "ackPublished"),
+        DELETED(MessageTracer.MESSAGE_DELETED, "deleted"),
+        MOVED_TO_DLC(MessageTracer.MOVED_TO_DLC, "movedToDLC");
+
+        private final String checkpoint;
+
+        private final String metricName;
+
+        Stage(String checkpoint, String metricName) {
+            this.checkpoint = checkpoint;
+            this.metricName = metricName;
+        }
+
+        private boolean isFinal() {
+            return this == DELETED || this == MOVED_TO_DLC;
+        }
+    }
+
+    private static final Map<String, Stage> CHECKPOINT_STAGES = new HashMap<String, Stage>();
+
+    static {
+        for (Stage stage : Stage.values()) {
+            CHECKPOINT_STAGES.put(stage.checkpoint, stage);
+        }
+    }
+
+    /**
+     * One in this many messages is sampled. Sampling is disabled if zero.
+     */
+    private static volatile int sampleInterval = 0;
+
+    private static final ConcurrentMap<Long, LatencySample> samples = CacheBuilder.newBuilder()
+            .maximumSize(MAX_TRACKED_SAMPLES)
+            .expireAfterAccess(SAMPLE_EXPIRY_MINUTES, TimeUnit.MINUTES)
+            .<Long, LatencySample>build()
+            .asMap();
+
+    /**
+     * Set how often messages are sampled
+     *
+     * @param interval one in this many messages is sampled. Zero disables sampling.
+     */
+    public static void setSampleInterval(int interval) {
+        sampleInterval = Math.max(0, interval);
+        if (0 == sampleInterval) {
+            samples.clear();
+        }
+    }
+
+    /**
+     * @return true if messages are sampled
+     */
+    public static boolean isEnabled() {
+        return sampleInterval > 0;
+    }
+
+    /**
+     * Check whether a message is sampled. This does not depend on the stage so that all checkpoints of a message
+     * agree.
+     *
+     * @param messageId Andes message id
+     * @return true if checkpoints of the message are stamped
+     */
+    public static boolean isSampled(long messageId) {
+        int interval = sampleInterval;
+        if (interval <= 0 || messageId <= 0) {
+            return false;
+        }
+        // Message IDs are time based, mix the bits so that sampling does not follow the millisecond sequence
+        long hash = messageId * 0x9E3779B97F4A7C15L;
+        return ((hash >>> 33) % interval) == 0;
+    }
+
+    /**
+     * Stamp a checkpoint of a sampled message
+     *
+     * @param messageId   Andes message id
+     * @param destination destination of the message
+     * @param checkpoint  checkpoint name defined in {@link MessageTracer}
+     */
+    public static void checkpoint(long messageId, String destination, String checkpoint) {
+        if (!isSampled(messageId)) {
+            return;
+        }
+        Stage stage = CHECKPOINT_STAGES.get(checkpoint);
+        if (null == stage) {
+            return;
+        }
+        long now = System.nanoTime();
+
+        LatencySample sample = samples.get(messageId);
+        if (null == sample) {
+            if (stage != Stage.ID_MAPPED) {
+                // Sampling started after the message was accepted, its stage times are not known
+                return;
+            }
+            samples.putIfAbsent(messageId, new LatencySample(destination, now));
+            return;
+        }
+
+        long sinceLastStage;
+        long sinceStart;
+        synchronized (sample) {
+            if (sample.isStamped(stage)) {
+                return;
+            }
+            sinceLastStage = now - sample.lastStampTime;
+            sinceStart = now - sample.startTime;
+            sample.stamp(stage, now);
+        }
+
+        MetricManager.histogram(Level.INFO, MetricManager.name(MetricsConstants.STAGE_LATENCY, stage.metricName))
+                .update(TimeUnit.NANOSECONDS.toMicros(sinceLastStage));
+        MetricManager.histogram(Level.DEBUG, MetricManager.name(MetricsConstants.DESTINATION_LATENCY,
+                sample.destination, stage.metricName)).update(TimeUnit.NANOSECONDS.toMicros(sinceStart));
+
+        if (stage.isFinal()) {
+            samples.remove(messageId);
+        }
+    }
+
+    /**
+     * Checkpoint times of a sampled message
+     */
+    private static final class LatencySample {
+
+        private final String destination;
+
+        private final long startTime;
+
+        private long lastStampTime;
+
+        /**
+         * Bit per stage which is set once the stage is stamped
+         */
+        private int stampedStages;
+
+        private LatencySample(String destination, long startTime) {
+            this.destination = destination;
+            this.startTime = startTime;
+            this.lastStampTime = startTime;
+            this.stampedStages = 1 << Stage.ID_MAPPED.ordinal();
+        }
+
+        private boolean isStamped(Stage stage) {
+            return (stampedStages & (1 << stage.ordinal())) != 0;
+        }
+
+        private void stamp(Stage stage, long time) {
+            stampedStages |= 1 << stage.ordinal();
+            lastStampTime = time;
+        }
+    }
+}
@@ -163,4 +163,16 @@ public class MetricsConstants {
      */
     public static final String ACK_SENT_RATE = PREFIX + "ack.sent";
 
+    /*Latency*/
+
+    /**
+     * Time sampled messages spend between a lifecycle stage and the previous one, per stage
+     */
+    public static final String STAGE_LATENCY = PREFIX + "message.stage.latency";
+    /**
+     * Time sampled messages take to reach a lifecycle stage since their message ID was assigned, per destination
+     * and stage
+     */
+    public static final String DESTINATION_LATENCY = PREFIX + "message.destination.latency";
+
 }
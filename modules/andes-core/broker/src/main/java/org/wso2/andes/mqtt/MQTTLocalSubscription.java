@@ -26,6 +26,7 @@ import org.wso2.andes.kernel.AndesException;
 import org.wso2.andes.kernel.AndesMessageMetadata;
 import org.wso2.andes.kernel.ConcurrentTrackingList;
 import org.wso2.andes.kernel.MessageData;
+import org.wso2.andes.kernel.MessageDataMap;
 import org.wso2.andes.kernel.OnflightMessageTracker;
 import org.wso2.andes.kernel.disruptor.inbound.InboundSubscriptionEvent;
 import org.wso2.andes.mqtt.utils.MQTTUtils;
@@ -33,7 +34,6 @@ import org.wso2.andes.server.ClusterResourceHolder;
 
 import java.nio.ByteBuffer;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 
@@ -66,8 +66,7 @@ public class MQTTLocalSubscription extends InboundSubscriptionEvent {
     /**
      * Map to track messages being sent <message id, MsgData reference>
      */
-    private final ConcurrentHashMap<Long, MessageData> messageSendingTracker
-            = new ConcurrentHashMap<Long, MessageData>();
+    private final MessageDataMap messageSendingTracker = new MessageDataMap(1);
 
     /**
      * Track messages sent as retained messages
@@ -263,7 +262,7 @@ public class MQTTLocalSubscription extends InboundSubscriptionEvent {
 
         if (null == messageData) {
             messageData = OnflightMessageTracker.getInstance().getTrackingData(messageID);
-            messageSendingTracker.put(messageID, messageData);
+            messageSendingTracker.put(messageData);
         }
         // increase delivery count
         int numOfCurrentDeliveries = messageData.incrementDeliveryCount(getChannelID());
@@ -294,6 +293,30 @@ public class MQTTLocalSubscription extends InboundSubscriptionEvent {
         return true;
     }
 
+    @Override
+    public int getRemainingCredit() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * MQTT subscribers are not disconnected by the broker.
+     */
+    @Override
+    public boolean forceDisconnect(String reason) {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasInterest(AndesMessageMetadata messageMetadata) {
+        // MQTT subscriptions do not have selectors
+        return true;
+    }
+
     @Override
     public void ackReceived(long messageID) {
         messageSendingTracker.remove(messageID);
@@ -17,6 +17,9 @@
  */
 package org.wso2.andes.server;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.apache.log4j.Logger;
 import org.wso2.andes.AMQException;
 import org.wso2.andes.AMQSecurityException;
@@ -95,6 +98,7 @@ import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -1047,6 +1051,31 @@ public class AMQChannel implements SessionConfig, AMQSessionModel
     }
 
     public void commit() throws AMQException
+    {
+        try
+        {
+            commitAsync().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new AMQException(AMQConstant.INTERNAL_ERROR, "Interrupted while committing transaction.", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new AMQException(AMQConstant.INTERNAL_ERROR, "Error occurred while committing transaction.",
+                                   e.getCause());
+        }
+    }
+
+    /**
+     * Commit the transaction without waiting for Andes to store the transacted messages. The channel must not be
+     * used until the returned future is complete.
+     *
+     * @return future completed once the transaction is committed
+     * @throws AMQException if the commit could not be started
+     */
+    public ListenableFuture<Boolean> commitAsync() throws AMQException
     {
         if (!isTransactional())
         {
@@ -1054,17 +1083,34 @@ public class AMQChannel implements SessionConfig, AMQSessionModel
         }
 
         _transaction.commit();
+
+        ListenableFuture<Boolean> commitFuture;
         if(null != andesTransactionEvent) {
             try {
-                andesTransactionEvent.commit();
+                commitFuture = andesTransactionEvent.commitAsync();
             } catch (AndesException e) {
                 throw new AMQException(AMQConstant.INTERNAL_ERROR,
                         "Error occurred while committing transaction.", e);
             }
+        } else {
+            commitFuture = Futures.immediateFuture(true);
         }
-        _txnCommits.incrementAndGet();
-        _txnStarts.incrementAndGet();
-        decrementOutstandingTxnsIfNecessary();
+
+        Futures.addCallback(commitFuture, new FutureCallback<Boolean>()
+        {
+            public void onSuccess(Boolean result)
+            {
+                _txnCommits.incrementAndGet();
+                _txnStarts.incrementAndGet();
+                decrementOutstandingTxnsIfNecessary();
+            }
+
+            public void onFailure(Throwable t)
+            {
+                // Failure is reported to the client by the caller
+            }
+        });
+        return commitFuture;
     }
 
     public void rollback() throws AMQException
@@ -26,6 +26,7 @@ import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.AndesContext;
 import org.wso2.andes.kernel.AndesContextStore;
 import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.MessagingEngine;
 import org.wso2.andes.kernel.slot.SlotManagerClusterMode;
 import org.wso2.andes.server.ClusterResourceHolder;
 import org.wso2.andes.server.cluster.coordination.CoordinationConstants;
@@ -253,6 +254,8 @@ public class ClusterManager implements StoreHealthListener{
         andesContextStore.removeNodeData(nodeID);
         //close all local queue and topic subscriptions belonging to the node
         ClusterResourceHolder.getInstance().getSubscriptionManager().closeAllClusterSubscriptionsOfNode(nodeID);
+        //delete messages of transactions the node did not commit
+        MessagingEngine.getInstance().deleteStagedMessagesOfNode(nodeID);
 
     }
 
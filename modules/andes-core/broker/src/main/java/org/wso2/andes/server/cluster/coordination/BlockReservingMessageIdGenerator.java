@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination;
+
+import org.wso2.andes.server.ClusterResourceHolder;
+import org.wso2.andes.server.cluster.ClusterManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock free message ID generator which uses the same ID layout as {@link TimeStampBasedMessageIdGenerator},
+ * <p/>
+ * [1 sign bit][45bits for time spent from reference time in milliseconds][8bit node id][10 bit sequence]
+ * <p/>
+ * The last reserved time stamp and sequence are kept in a single atomic word and advanced with compare and set,
+ * therefore several writers can reserve blocks of IDs without locking. When the 1024 sequence numbers of a
+ * millisecond are used up, IDs are borrowed from the following milliseconds instead of failing. Generated IDs are
+ * strictly increasing for a node even if the system clock moves backwards.
+ */
+public class BlockReservingMessageIdGenerator implements MessageIdGenerator {
+
+    /**
+     * REFERENCE_START time set to 2011
+     */
+    private static final long REFERENCE_START = 41L * 365L * 24L * 60L * 60L * 1000L;
+
+    private static final int SEQUENCE_BITS = 10;
+
+    private static final int NODE_ID_BITS = 8;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    /**
+     * Interval in milliseconds to read the node ID from the cluster manager again
+     */
+    private static final long NODE_ID_REFRESH_INTERVAL = 1000;
+
+    /**
+     * Last reserved time stamp and sequence, packed as [time stamp][sequence]
+     */
+    private final AtomicLong lastReservedClock = new AtomicLong();
+
+    private volatile int uniqueIdForNode;
+
+    /**
+     * Time the node ID was last read from the cluster manager. Long.MAX_VALUE if the node ID is fixed.
+     */
+    private volatile long nodeIdReadTime;
+
+    public BlockReservingMessageIdGenerator() {
+        nodeIdReadTime = 0;
+    }
+
+    /**
+     * Create a generator with a fixed node ID
+     *
+     * @param uniqueIdForNode unique ID of the node
+     */
+    public BlockReservingMessageIdGenerator(int uniqueIdForNode) {
+        this.uniqueIdForNode = uniqueIdForNode;
+        nodeIdReadTime = Long.MAX_VALUE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getNextId() {
+        return reserveIds(1);
+    }
+
+    /**
+     * Reserve a block of IDs. IDs of the block are iterated with {@link #nextId(long)} starting from the returned
+     * ID. All IDs in the block are greater than IDs reserved before.
+     *
+     * @param count number of IDs to reserve
+     * @return first ID of the block
+     */
+    public long reserveIds(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one ID should be reserved. Requested: " + count);
+        }
+        long currentTime = System.currentTimeMillis();
+        refreshUniqueIdForNode(currentTime);
+
+        long currentClock = (currentTime - REFERENCE_START) << SEQUENCE_BITS;
+        long lastClock;
+        long firstClock;
+        do {
+            lastClock = lastReservedClock.get();
+            firstClock = Math.max(lastClock + 1, currentClock);
+        } while (!lastReservedClock.compareAndSet(lastClock, firstClock + count - 1));
+
+        return (firstClock >>> SEQUENCE_BITS) * 256 * 1024 + uniqueIdForNode * 1024 + (firstClock & SEQUENCE_MASK);
+    }
+
+    /**
+     * Get the ID following the given one in a reserved block
+     *
+     * @param id an ID of a reserved block
+     * @return next ID of the block
+     */
+    public static long nextId(long id) {
+        if ((id & SEQUENCE_MASK) == SEQUENCE_MASK) {
+            // Move to sequence 0 of the next millisecond
+            return id + (1L << (SEQUENCE_BITS + NODE_ID_BITS)) - SEQUENCE_MASK;
+        }
+        return id + 1;
+    }
+
+    /**
+     * Node ID might change at runtime, hence it is read from the cluster manager periodically instead of for each ID
+     *
+     * @param currentTime current time in milliseconds
+     */
+    private void refreshUniqueIdForNode(long currentTime) {
+        if (currentTime - nodeIdReadTime >= NODE_ID_REFRESH_INTERVAL) {
+            ClusterManager clusterManager = ClusterResourceHolder.getInstance().getClusterManager();
+            if (null != clusterManager) {
+                uniqueIdForNode = clusterManager.getUniqueIdForLocalNode();
+                nodeIdReadTime = currentTime;
+            }
+        }
+    }
+}
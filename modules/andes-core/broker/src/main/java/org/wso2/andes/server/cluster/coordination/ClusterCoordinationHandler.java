@@ -20,11 +20,13 @@ package org.wso2.andes.server.cluster.coordination;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.andes.kernel.*;
+import org.wso2.andes.kernel.RetainedMessageListener.RetainedMessageEvent;
 import org.wso2.andes.server.ClusterResourceHolder;
 import org.wso2.andes.server.cluster.coordination.hazelcast.HazelcastAgent;
 import org.wso2.andes.subscription.BasicSubscription;
 
-public class ClusterCoordinationHandler implements QueueListener, ExchangeListener, BindingListener, SubscriptionListener {
+public class ClusterCoordinationHandler implements QueueListener, ExchangeListener, BindingListener, SubscriptionListener,
+        RetainedMessageListener {
 
 
     private static Log log = LogFactory.getLog(ClusterCoordinationHandler.class);
@@ -150,4 +152,22 @@ public class ClusterCoordinationHandler implements QueueListener, ExchangeListen
             handleClusterSubscriptionsChanged(new BasicSubscription(subscription.encodeAsStr()), changeType);
         }
     }
+
+    @Override
+    public void handleClusterRetainedMessageChanged(String topic, long messageID, RetainedMessageEvent changeType)
+            throws AndesException {
+        MessagingEngine.getInstance().refreshRetainedMessage(topic, messageID);
+    }
+
+    @Override
+    public void handleLocalRetainedMessageChanged(String topic, long messageID, RetainedMessageEvent changeType)
+            throws AndesException {
+        //notify cluster that the retained message is changed. Other nodes refresh their retained message index.
+        if (AndesContext.getInstance().isClusteringEnabled() && hazelcastAgent.isActive()) {
+            ClusterNotification clusterNotification = new ClusterNotification(
+                    messageID + CoordinationConstants.RETAINED_MESSAGE_NOTIFICATION_SEPARATOR + topic,
+                    changeType.toString(), "Retained Message Notification Message : " + changeType.toString());
+            hazelcastAgent.notifyRetainedMessagesChanged(clusterNotification);
+        }
+    }
 }
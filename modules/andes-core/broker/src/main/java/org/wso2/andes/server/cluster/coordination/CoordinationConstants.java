@@ -41,6 +41,16 @@ public final class CoordinationConstants {
      */
     public static String HAZELCAST_BINDING_CHANGED_NOTIFIER_TOPIC_NAME = "BINDING_CHANGED";
 
+    /**
+     * Hazelcast distributed topic name to send retained message notifications to cluster nodes
+     */
+    public static String HAZELCAST_RETAINED_MESSAGE_CHANGED_NOTIFIER_TOPIC_NAME = "RETAINED_MESSAGE_CHANGED";
+
+    /**
+     * Separator of the message id and the topic name in a retained message notification
+     */
+    public static final String RETAINED_MESSAGE_NOTIFICATION_SEPARATOR = ",";
+
     /**
      * Hazelcast distributed topic name to send coordinator change notifications to cluster nodes
      */
@@ -73,9 +83,12 @@ public final class CoordinationConstants {
     public static String UNASSIGNED_SLOT_MAP_NAME = "unassignedSlotsMap";
 
     /**
-     *Name of the distributed map to store message ID list against queue name
+     * Name of the distributed map to store message ID list against queue name. Values are SortedLongArrayWrapper
+     * objects updated through entry processors. Nodes of earlier versions keep TreeSetLongWrapper values in a map
+     * named "slotIdMap", which is not compatible with this map. All nodes of a cluster have to be upgraded together,
+     * not with a rolling upgrade.
      */
-    public static String SLOT_ID_MAP_NAME = "slotIdMap";
+    public static String SLOT_ID_MAP_NAME = "slotMessageIdMap";
 
     /**
      *Name of the distributed map to store last assigned message ID against queue name
@@ -173,6 +173,15 @@ public interface SlotAgent {
 	 */
 	public TreeSet<Long> getMessageIds(String queueName) throws AndesException;
 
+	/**
+	 * Remove and return the lowest message id of a queue
+	 *
+	 * @param queueName name of queue
+	 * @return lowest message id or null if the queue has no message ids
+	 * @throws org.wso2.andes.kernel.AndesException
+	 */
+	public Long pollFirstMessageId(String queueName) throws AndesException;
+
 	/**
 	 * Delete message ids
 	 *
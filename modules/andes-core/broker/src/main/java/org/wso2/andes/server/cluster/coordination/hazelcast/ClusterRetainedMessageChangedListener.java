@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast;
+
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.RetainedMessageListener;
+import org.wso2.andes.server.cluster.coordination.ClusterNotification;
+import org.wso2.andes.server.cluster.coordination.CoordinationConstants;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This listener class is triggered when a retained message is changed in cluster via HazelCast.
+ */
+public class ClusterRetainedMessageChangedListener implements MessageListener {
+    private static Log log = LogFactory.getLog(ClusterRetainedMessageChangedListener.class);
+    private List<RetainedMessageListener> retainedMessageListeners = new ArrayList<RetainedMessageListener>();
+
+    /**
+     * Register a listener interested on retained message changes in cluster
+     *
+     * @param listener listener to be registered
+     */
+    public void addRetainedMessageListener(RetainedMessageListener listener) {
+        retainedMessageListeners.add(listener);
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        ClusterNotification clusterNotification = (ClusterNotification) message.getMessageObject();
+        log.debug("Handling cluster gossip: received a retained message change notification "
+                + clusterNotification.getDescription());
+        String encodedNotification = clusterNotification.getEncodedObjectAsString();
+        int separatorIndex = encodedNotification.indexOf(CoordinationConstants.RETAINED_MESSAGE_NOTIFICATION_SEPARATOR);
+        long messageID = Long.parseLong(encodedNotification.substring(0, separatorIndex));
+        String topic = encodedNotification.substring(separatorIndex + 1);
+        RetainedMessageListener.RetainedMessageEvent change = RetainedMessageListener.RetainedMessageEvent
+                .valueOf(clusterNotification.getChangeType());
+        try {
+            for (RetainedMessageListener retainedMessageListener : retainedMessageListeners) {
+                retainedMessageListener.handleClusterRetainedMessageChanged(topic, messageID, change);
+            }
+        } catch (AndesException e) {
+            log.error("error while handling cluster retained message change notification", e);
+        }
+    }
+}
@@ -17,6 +17,9 @@
  */
 package org.wso2.andes.server.cluster.coordination.hazelcast;
 
+import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MapConfig;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.HazelcastInstanceNotActiveException;
 import com.hazelcast.core.IAtomicLong;
@@ -36,8 +39,17 @@ import org.wso2.andes.server.cluster.coordination.ClusterCoordinationHandler;
 import org.wso2.andes.server.cluster.coordination.ClusterNotification;
 import org.wso2.andes.server.cluster.coordination.CoordinationConstants;
 import org.wso2.andes.server.cluster.coordination.SlotAgent;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.AddMessageIdProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.AddQueueSlotsProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.AddUnassignedSlotsProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.DeleteQueueSlotProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.PollFirstMessageIdProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.PollQueueSlotProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.PollUnassignedSlotProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.RemoveMessageIdProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.RemoveQueueSlotsProcessor;
 import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.HashmapStringTreeSetWrapper;
-import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.TreeSetLongWrapper;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
 import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.TreeSetSlotWrapper;
 
 import java.util.HashMap;
@@ -89,15 +101,22 @@ public class HazelcastAgent implements SlotAgent {
      */
     private ITopic<ClusterNotification> exchangeChangeNotifierChannel;
 
+    /**
+     * Distributed topic to communicate retained message change notifications among cluster nodes.
+     */
+    private ITopic<ClusterNotification> retainedMessageChangeNotifierChannel;
+
     /**
      * These distributed maps are used for slot management
      */
 
 
     /**
-     * distributed Map to store message ID list against queue name
+     * distributed Map to store message ID list against queue name. Updated through entry processors so that only
+     * the changed message ID is sent to the member owning the entry. See
+     * {@link CoordinationConstants#SLOT_ID_MAP_NAME} for compatibility with earlier versions.
      */
-    private IMap<String, TreeSetLongWrapper> slotIdMap;
+    private IMap<String, SortedLongArrayWrapper> slotIdMap;
 
     /**
      * to keep track of assigned slots up to now. Key of the map contains nodeID+"_"+queueName
@@ -216,10 +235,21 @@ public class HazelcastAgent implements SlotAgent {
         clusterBindingChangedListener.addBindingListener(new ClusterCoordinationHandler(this));
         this.bindingChangeNotifierChannel.addMessageListener(clusterBindingChangedListener);
 
+        /**
+         * retained message changes
+         */
+        this.retainedMessageChangeNotifierChannel = this.hazelcastInstance.getTopic(
+                CoordinationConstants.HAZELCAST_RETAINED_MESSAGE_CHANGED_NOTIFIER_TOPIC_NAME);
+        ClusterRetainedMessageChangedListener clusterRetainedMessageChangedListener =
+                new ClusterRetainedMessageChangedListener();
+        clusterRetainedMessageChangedListener.addRetainedMessageListener(new ClusterCoordinationHandler(this));
+        this.retainedMessageChangeNotifierChannel.addMessageListener(clusterRetainedMessageChangedListener);
+
         /**
          * Initialize hazelcast maps for slots
          */
         unAssignedSlotMap = hazelcastInstance.getMap(CoordinationConstants.UNASSIGNED_SLOT_MAP_NAME);
+        configureSlotIdMap(hazelcastInstance.getConfig());
         slotIdMap = hazelcastInstance.getMap(CoordinationConstants.SLOT_ID_MAP_NAME);
         lastAssignedIDMap = hazelcastInstance.getMap(CoordinationConstants.LAST_ASSIGNED_ID_MAP_NAME);
         lastPublishedIDMap = hazelcastInstance.getMap(CoordinationConstants.LAST_PUBLISHED_ID_MAP_NAME);
@@ -291,6 +321,34 @@ public class HazelcastAgent implements SlotAgent {
         }
     }
 
+    public void notifyRetainedMessagesChanged(ClusterNotification clusterNotification) throws AndesException {
+        if (log.isDebugEnabled()) {
+            log.debug("GOSSIP: " + clusterNotification.getDescription());
+        }
+        try {
+            this.retainedMessageChangeNotifierChannel.publish(clusterNotification);
+        } catch (Exception e) {
+            log.error("Error while sending retained message change notification" + clusterNotification.getEncodedObjectAsString(), e);
+            throw new AndesException("Error while sending retained message change notification" + clusterNotification.getEncodedObjectAsString(), e);
+        }
+    }
+
+    /**
+     * Keep the message ID map in object in-memory format unless it is configured explicitly. Entry processors then
+     * update the stored wrapper in place instead of deserializing and serializing it on each update.
+     *
+     * @param config configuration of the hazelcast instance
+     */
+    private void configureSlotIdMap(Config config) {
+        MapConfig mapConfig = config.findMapConfig(CoordinationConstants.SLOT_ID_MAP_NAME);
+        if ("default".equals(mapConfig.getName())) {
+            MapConfig slotIdMapConfig = new MapConfig(mapConfig);
+            slotIdMapConfig.setName(CoordinationConstants.SLOT_ID_MAP_NAME);
+            slotIdMapConfig.setInMemoryFormat(InMemoryFormat.OBJECT);
+            config.addMapConfig(slotIdMapConfig);
+        }
+    }
+
     /**
      * This method returns a map containing thrift server port and hostname
      * @return thriftServerDetailsMap
@@ -369,32 +427,7 @@ public class HazelcastAgent implements SlotAgent {
     @Override
     public void deleteSlot(String nodeId, String queueName, long startMessageId, long endMessageId) throws AndesException {
         try {
-            HashMap<String, TreeSet<Slot>> queueToSlotMap = null;
-            HashmapStringTreeSetWrapper wrapper = this.slotAssignmentMap.get(nodeId);
-            if (null != wrapper) {
-                queueToSlotMap = wrapper.getStringListHashMap();
-            }
-            if (queueToSlotMap != null) {
-                TreeSet<Slot> currentSlotList = queueToSlotMap.get(queueName);
-                if (currentSlotList != null) {
-                    // com.google.gson.Gson gson = new GsonBuilder().create();
-                    //get the actual reference of the slot to be removed
-                    Slot slotInAssignmentMap = null; //currentSlotList.ceiling(emptySlot);
-                    for (Slot slot : currentSlotList) {
-                        if (slot.getStartMessageId() == startMessageId) {
-                            slotInAssignmentMap = slot;
-                        }
-                    }
-                    if (null != slotInAssignmentMap) {
-                        if (slotInAssignmentMap.addState(SlotState.DELETED)) {
-                            currentSlotList.remove(slotInAssignmentMap);
-                            queueToSlotMap.put(queueName, currentSlotList);
-                            wrapper.setStringListHashMap(queueToSlotMap);
-                            slotAssignmentMap.set(nodeId, wrapper);
-                        }
-                    }
-                }
-            }
+            slotAssignmentMap.executeOnKey(nodeId, new DeleteQueueSlotProcessor(queueName, startMessageId));
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to delete slot for queue : " +
                     queueName + " from node " + nodeId, ex);
@@ -408,61 +441,27 @@ public class HazelcastAgent implements SlotAgent {
     public void deleteSlotAssignmentByQueueName(String nodeId, String queueName) throws AndesException {
         try {
             TreeSet<Slot> slotListToReturn = new TreeSet<>();
-            //Get assigned slots from Hazelcast, delete all belonging to queue
-            //and set back
-            HashmapStringTreeSetWrapper wrapper = this.slotAssignmentMap.get(nodeId);
-            HashMap<String, TreeSet<Slot>> queueToSlotMap = null;
-            if (null != wrapper) {
-                queueToSlotMap = wrapper.getStringListHashMap();
-            }
-            if (queueToSlotMap != null) {
-                TreeSet<Slot> assignedSlotList = queueToSlotMap.remove(queueName);
-                if(assignedSlotList != null) {
-                    slotListToReturn.addAll(assignedSlotList);
-                }
-                wrapper.setStringListHashMap(queueToSlotMap);
-                this.slotAssignmentMap.set(nodeId, wrapper);
-            }
-
-            //Get overlapped slots from Hazelcast, delete all belonging to queue and
-            //set back
-            HashmapStringTreeSetWrapper overlappedSlotWrapper = this.overLappedSlotMap.get(nodeId);
-            HashMap<String, TreeSet<Slot>> queueToOverlappedSlotMap = null;
-            if (null != overlappedSlotWrapper) {
-                queueToOverlappedSlotMap = overlappedSlotWrapper.getStringListHashMap();
-            }
-            if (queueToOverlappedSlotMap != null) {
-                TreeSet<Slot> assignedOverlappedSlotList = queueToOverlappedSlotMap.remove(queueName);
-                if(assignedOverlappedSlotList != null) {
-                    slotListToReturn.addAll(assignedOverlappedSlotList);
-                }
-                overlappedSlotWrapper.setStringListHashMap(queueToOverlappedSlotMap);
-                this.overLappedSlotMap.set(nodeId, overlappedSlotWrapper);
-            }
+            //Delete assigned and overlapped slots belonging to queue from Hazelcast
+            TreeSet<Slot> assignedSlotList = (TreeSet<Slot>) slotAssignmentMap.executeOnKey(nodeId,
+                    new RemoveQueueSlotsProcessor(queueName));
+            slotListToReturn.addAll(assignedSlotList);
+            TreeSet<Slot> assignedOverlappedSlotList = (TreeSet<Slot>) overLappedSlotMap.executeOnKey(nodeId,
+                    new RemoveQueueSlotsProcessor(queueName));
+            slotListToReturn.addAll(assignedOverlappedSlotList);
 
             //add the deleted slots to un-assigned slot map, so that they can be assigned again.
-            if (!slotListToReturn.isEmpty()) {
-                TreeSetSlotWrapper treeSetStringWrapper = unAssignedSlotMap.get(queueName);
-                TreeSet<Slot> unAssignedSlotSet = new TreeSet<>();
-                if (null != treeSetStringWrapper) {
-                    unAssignedSlotSet = treeSetStringWrapper.getSlotTreeSet();
-                } else {
-                    treeSetStringWrapper = new TreeSetSlotWrapper();
-                }
-                if (unAssignedSlotSet == null) {
-                    unAssignedSlotSet = new TreeSet<>();
-                }
-                for (Slot returnSlot : slotListToReturn) {
-                    //Reassign only if the slot is not empty
-                    if (!SlotUtils.checkSlotEmptyFromMessageStore(returnSlot)) {
-                        if (returnSlot.addState(SlotState.RETURNED)) {
-                            unAssignedSlotSet.add(returnSlot);
-                        }
+            TreeSet<Slot> slotsToReassign = new TreeSet<>();
+            for (Slot returnSlot : slotListToReturn) {
+                //Reassign only if the slot is not empty
+                if (!SlotUtils.checkSlotEmptyFromMessageStore(returnSlot)) {
+                    if (returnSlot.addState(SlotState.RETURNED)) {
+                        slotsToReassign.add(returnSlot);
                     }
-                    treeSetStringWrapper.setSlotTreeSet(unAssignedSlotSet);
-                    unAssignedSlotMap.set(queueName, treeSetStringWrapper);
                 }
             }
+            if (!slotsToReassign.isEmpty()) {
+                unAssignedSlotMap.executeOnKey(queueName, new AddUnassignedSlotsProcessor(slotsToReassign));
+            }
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to delete slot assignment for queue : " +
                     queueName + " from node " + nodeId, ex);
@@ -476,16 +475,8 @@ public class HazelcastAgent implements SlotAgent {
     public Slot getUnAssignedSlot(String queueName) throws AndesException {
         Slot slotToBeAssigned = null;
         try {
-            TreeSetSlotWrapper unAssignedSlotWrapper = unAssignedSlotMap.get(queueName);
-            if (null != unAssignedSlotWrapper) {
-                TreeSet<Slot> slotsFromUnassignedSlotMap = unAssignedSlotWrapper.getSlotTreeSet();
-                if (slotsFromUnassignedSlotMap != null && !slotsFromUnassignedSlotMap.isEmpty()) {
-                    //Get and remove slot and update hazelcast map
-                    slotToBeAssigned = slotsFromUnassignedSlotMap.pollFirst();
-                    unAssignedSlotWrapper.setSlotTreeSet(slotsFromUnassignedSlotMap);
-                    unAssignedSlotMap.set(queueName, unAssignedSlotWrapper);
-                }
-            }
+            //Get and remove slot from hazelcast map
+            slotToBeAssigned = (Slot) unAssignedSlotMap.executeOnKey(queueName, new PollUnassignedSlotProcessor());
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to get unassigned slot for queue : " +
                     queueName, ex);
@@ -498,32 +489,13 @@ public class HazelcastAgent implements SlotAgent {
      */
     @Override
     public void updateSlotAssignment(String nodeId, String queueName, Slot allocatedSlot) throws AndesException {
-        TreeSet<Slot> currentSlotList;
-        HashMap<String, TreeSet<Slot>> queueToSlotMap;
-
         try {
-            HashmapStringTreeSetWrapper wrapper = this.slotAssignmentMap.get(nodeId);
-            if (wrapper == null) {
-                wrapper = new HashmapStringTreeSetWrapper();
-                queueToSlotMap = new HashMap<>();
-                wrapper.setStringListHashMap(queueToSlotMap);
-                this.slotAssignmentMap.putIfAbsent(nodeId, wrapper);
-            }
-            wrapper = this.slotAssignmentMap.get(nodeId);
-            queueToSlotMap = wrapper.getStringListHashMap();
-            currentSlotList = queueToSlotMap.get(queueName);
-            if (currentSlotList == null) {
-                currentSlotList = new TreeSet<>();
-            }
-
             //update slot state
             if (allocatedSlot.addState(SlotState.ASSIGNED)) {
-                //remove any similar slot from hazelcast and add the updated one
-                currentSlotList.remove(allocatedSlot);
-                currentSlotList.add(allocatedSlot);
-                queueToSlotMap.put(queueName, currentSlotList);
-                wrapper.setStringListHashMap(queueToSlotMap);
-                this.slotAssignmentMap.set(nodeId, wrapper);
+                //replace any similar slot in hazelcast with the updated one
+                TreeSet<Slot> allocatedSlots = new TreeSet<>();
+                allocatedSlots.add(allocatedSlot);
+                slotAssignmentMap.executeOnKey(nodeId, new AddQueueSlotsProcessor(queueName, allocatedSlots));
             }
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to update slot assignment for queue : " +
@@ -596,23 +568,10 @@ public class HazelcastAgent implements SlotAgent {
      */
     @Override
     public Slot getOverlappedSlot(String nodeId, String queueName) throws AndesException {
-        Slot slotToBeAssigned = null;
-        TreeSet<Slot> currentSlotList;
-        HashMap<String, TreeSet<Slot>> queueToSlotMap;
+        Slot slotToBeAssigned;
         try {
-            HashmapStringTreeSetWrapper wrapper = this.overLappedSlotMap.get(nodeId);
-            if (null != wrapper) {
-                queueToSlotMap = wrapper.getStringListHashMap();
-                currentSlotList = queueToSlotMap.get(queueName);
-                if (null != currentSlotList && !currentSlotList.isEmpty()) {
-                    //get and remove slot
-                    slotToBeAssigned = currentSlotList.pollFirst();
-                    queueToSlotMap.put(queueName, currentSlotList);
-                    //update hazelcast map
-                    wrapper.setStringListHashMap(queueToSlotMap);
-                    this.overLappedSlotMap.set(nodeId, wrapper);
-                }
-            }
+            //get and remove slot
+            slotToBeAssigned = (Slot) overLappedSlotMap.executeOnKey(nodeId, new PollQueueSlotProcessor(queueName));
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to getOverlappedSlot for queue : " +
                     queueName + " from node " + nodeId, ex);
@@ -626,11 +585,7 @@ public class HazelcastAgent implements SlotAgent {
     @Override
     public void addMessageId(String queueName, long messageId) throws AndesException {
         try {
-            TreeSet<Long> messageIdSet = this.getMessageIds(queueName);
-            TreeSetLongWrapper wrapper = this.slotIdMap.get(queueName);
-            messageIdSet.add(messageId);
-            wrapper.setLongTreeSet(messageIdSet);
-            this.slotIdMap.set(queueName, wrapper);
+            slotIdMap.executeOnKey(queueName, new AddMessageIdProcessor(messageId));
         }  catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to addMessageId for queue : " +
                     queueName, ex);
@@ -642,18 +597,31 @@ public class HazelcastAgent implements SlotAgent {
      */
     @Override
     public TreeSet<Long> getMessageIds(String queueName) throws AndesException {
-        TreeSetLongWrapper wrapper = null;
+        SortedLongArrayWrapper wrapper;
         try {
             wrapper = this.slotIdMap.get(queueName);
             if (wrapper == null) {
-                wrapper = new TreeSetLongWrapper();
+                wrapper = new SortedLongArrayWrapper();
                 this.slotIdMap.putIfAbsent(queueName, wrapper);
             }
         }  catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to getMessageIds for queue : " +
                     queueName, ex);
         }
-        return wrapper.getLongTreeSet();
+        return wrapper.toTreeSet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long pollFirstMessageId(String queueName) throws AndesException {
+        try {
+            return (Long) slotIdMap.executeOnKey(queueName, new PollFirstMessageIdProcessor());
+        }  catch (HazelcastInstanceNotActiveException ex) {
+            throw new AndesException("Failed to pollFirstMessageId for queue : " +
+                    queueName, ex);
+        }
     }
 
     /**
@@ -662,15 +630,7 @@ public class HazelcastAgent implements SlotAgent {
     @Override
     public void deleteMessageId(String queueName, long messageId) throws AndesException {
         try {
-            TreeSetLongWrapper wrapper = this.slotIdMap.get(queueName);
-            TreeSet<Long> messageIDSet;
-            messageIDSet = wrapper.getLongTreeSet();
-            if (messageIDSet != null && !messageIDSet.isEmpty()) {
-                messageIDSet.pollFirst();
-                //set modified published ID map to hazelcast
-                wrapper.setLongTreeSet(messageIDSet);
-                this.slotIdMap.set(queueName, wrapper);
-            }
+            slotIdMap.executeOnKey(queueName, new RemoveMessageIdProcessor(messageId));
         }  catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to deleteMessageId for queue : " +
                     queueName, ex);
@@ -691,30 +651,9 @@ public class HazelcastAgent implements SlotAgent {
             List<String> nodeIDs = AndesContext.getInstance().getClusterAgent().getAllNodeIdentifiers();
 
             for (String nodeID : nodeIDs) {
-                HashmapStringTreeSetWrapper wrapper = slotAssignmentMap.get(nodeID);
-                HashMap<String, TreeSet<Slot>> queueToSlotMap = null;
-                if (null != wrapper) {
-                    queueToSlotMap = wrapper.getStringListHashMap();
-                }
-                if (queueToSlotMap != null) {
-                    queueToSlotMap.remove(queueName);
-                    wrapper.setStringListHashMap(queueToSlotMap);
-                    slotAssignmentMap.set(nodeID, wrapper);
-                }
-
+                slotAssignmentMap.executeOnKey(nodeID, new RemoveQueueSlotsProcessor(queueName));
                 //clear overlapped slot map
-                HashmapStringTreeSetWrapper overlappedSlotsWrapper = overLappedSlotMap.get(nodeID);
-                if (null != overlappedSlotsWrapper) {
-                    HashMap<String, TreeSet<Slot>> queueToOverlappedSlotMap = null;
-                    if (null != wrapper) {
-                        queueToOverlappedSlotMap = overlappedSlotsWrapper.getStringListHashMap();
-                    }
-                    if (queueToSlotMap != null) {
-                        queueToOverlappedSlotMap.remove(queueName);
-                        overlappedSlotsWrapper.setStringListHashMap(queueToOverlappedSlotMap);
-                        overLappedSlotMap.set(nodeID, overlappedSlotsWrapper);
-                    }
-                }
+                overLappedSlotMap.executeOnKey(nodeID, new RemoveQueueSlotsProcessor(queueName));
             }
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to deleteSlotsByQueueName for queue : " +
@@ -768,16 +707,6 @@ public class HazelcastAgent implements SlotAgent {
 
         TreeSet<Slot> resultSet = new TreeSet<>();
         HashmapStringTreeSetWrapper wrapper = slotAssignmentMap.get(nodeId);
-        if (!overLappedSlotMap.containsKey(nodeId)) {
-            overLappedSlotMap.put(nodeId, new HashmapStringTreeSetWrapper());
-        }
-        HashmapStringTreeSetWrapper olWrapper = overLappedSlotMap.get(nodeId);
-        HashMap<String, TreeSet<Slot>> olSlotMap = olWrapper.getStringListHashMap();
-        if (!olSlotMap.containsKey(queueName)) {
-            olSlotMap.put(queueName, new TreeSet<Slot>());
-            olWrapper.setStringListHashMap(olSlotMap);
-            overLappedSlotMap.set(nodeId, olWrapper);
-        }
         if (null != wrapper) {
             HashMap<String, TreeSet<Slot>> queueToSlotMap = wrapper.getStringListHashMap();
             if (queueToSlotMap != null) {
@@ -796,20 +725,11 @@ public class HazelcastAgent implements SlotAgent {
     @Override
     public void reAssignSlot(Slot slotToBeReAssigned) throws AndesException {
         try {
-            TreeSet<Slot> freeSlotTreeSet = new TreeSet<>();
-            TreeSetSlotWrapper treeSetStringWrapper = new TreeSetSlotWrapper();
-
-            treeSetStringWrapper.setSlotTreeSet(freeSlotTreeSet);
-
-            this.unAssignedSlotMap.putIfAbsent(slotToBeReAssigned.getStorageQueueName(),
-                    treeSetStringWrapper);
-
             if (slotToBeReAssigned.addState(SlotState.RETURNED)) {
-                treeSetStringWrapper = this.unAssignedSlotMap.get(slotToBeReAssigned.getStorageQueueName());
-                freeSlotTreeSet = treeSetStringWrapper.getSlotTreeSet();
+                TreeSet<Slot> freeSlotTreeSet = new TreeSet<>();
                 freeSlotTreeSet.add(slotToBeReAssigned);
-                treeSetStringWrapper.setSlotTreeSet(freeSlotTreeSet);
-                this.unAssignedSlotMap.set(slotToBeReAssigned.getStorageQueueName(), treeSetStringWrapper);
+                unAssignedSlotMap.executeOnKey(slotToBeReAssigned.getStorageQueueName(),
+                        new AddUnassignedSlotsProcessor(freeSlotTreeSet));
             }
         } catch (HazelcastInstanceNotActiveException ex) {
             throw new AndesException("Failed to reAssignSlot", ex);
@@ -829,25 +749,13 @@ public class HazelcastAgent implements SlotAgent {
      */
     @Override
     public void updateOverlappedSlots(String nodeId, String queueName, TreeSet<Slot> overlappedSlots) throws AndesException {
-        HashmapStringTreeSetWrapper wrapper = slotAssignmentMap.get(nodeId);
-        HashMap<String, TreeSet<Slot>> queueToSlotMap = new HashMap<>();
-        if(null == wrapper) {
-            wrapper = new HashmapStringTreeSetWrapper();
-        } else {
-            queueToSlotMap = wrapper.getStringListHashMap();
-        }
-        HashmapStringTreeSetWrapper olWrapper = overLappedSlotMap.get(nodeId);
-        HashMap<String, TreeSet<Slot>> olSlotMap = olWrapper.getStringListHashMap();
-        for(Slot slot : overlappedSlots) {
-            //Add to global overlappedSlotMap
-            olSlotMap.get(queueName).remove(slot);
-            olSlotMap.get(queueName).add(slot);
+        try {
+            // Add all marked slots collected into the olSlot to global overlappedSlotsMap.
+            overLappedSlotMap.executeOnKey(nodeId, new AddQueueSlotsProcessor(queueName, overlappedSlots));
+        } catch (HazelcastInstanceNotActiveException ex) {
+            throw new AndesException("Failed to updateOverlappedSlots for queue : " +
+                    queueName + " from node " + nodeId, ex);
         }
-        wrapper.setStringListHashMap(queueToSlotMap);
-        slotAssignmentMap.set(nodeId, wrapper);
-        // Add all marked slots collected into the olSlot to global overlappedSlotsMap.
-        olWrapper.setStringListHashMap(olSlotMap);
-        overLappedSlotMap.set(nodeId, olWrapper);
     }
 
     /**
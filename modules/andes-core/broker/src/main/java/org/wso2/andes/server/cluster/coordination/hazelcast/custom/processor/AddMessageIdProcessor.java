@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Adds a message ID to the message ID set of a queue in the slot ID map. Executed on the member owning the queue
+ * entry, therefore only the message ID travels over the network and concurrent additions are not lost.
+ */
+public class AddMessageIdProcessor extends AbstractEntryProcessor<String, SortedLongArrayWrapper>
+        implements DataSerializable {
+
+    private long messageId;
+
+    /**
+     * Used by hazelcast when de-serializing
+     */
+    public AddMessageIdProcessor() {
+    }
+
+    /**
+     * @param messageId message ID to add
+     */
+    public AddMessageIdProcessor(long messageId) {
+        this.messageId = messageId;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, SortedLongArrayWrapper> entry) {
+        SortedLongArrayWrapper messageIds = entry.getValue();
+        if (null == messageIds) {
+            messageIds = new SortedLongArrayWrapper();
+        }
+        messageIds.add(messageId);
+        entry.setValue(messageIds);
+        return null;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeLong(messageId);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        messageId = in.readLong();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.HashmapStringTreeSetWrapper;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Adds slots of a queue to the slots kept against a node (slot assignment map and overlapped slot map). A slot
+ * already present with the same range is replaced, so that the stored slot carries the latest states.
+ */
+public class AddQueueSlotsProcessor extends AbstractEntryProcessor<String, HashmapStringTreeSetWrapper>
+        implements DataSerializable {
+
+    private String queueName;
+
+    private TreeSet<Slot> slots;
+
+    /**
+     * Used by hazelcast when de-serializing
+     */
+    public AddQueueSlotsProcessor() {
+    }
+
+    /**
+     * @param queueName name of the queue the slots belong to
+     * @param slots     slots to add
+     */
+    public AddQueueSlotsProcessor(String queueName, TreeSet<Slot> slots) {
+        this.queueName = queueName;
+        this.slots = slots;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, HashmapStringTreeSetWrapper> entry) {
+        HashmapStringTreeSetWrapper wrapper = entry.getValue();
+        if (null == wrapper) {
+            wrapper = new HashmapStringTreeSetWrapper();
+        }
+        HashMap<String, TreeSet<Slot>> queueToSlotMap = wrapper.getStringListHashMap();
+        if (null == queueToSlotMap) {
+            queueToSlotMap = new HashMap<>();
+            wrapper.setStringListHashMap(queueToSlotMap);
+        }
+        TreeSet<Slot> currentSlots = queueToSlotMap.get(queueName);
+        if (null == currentSlots) {
+            currentSlots = new TreeSet<>();
+            queueToSlotMap.put(queueName, currentSlots);
+        }
+        for (Slot slot : slots) {
+            currentSlots.remove(slot);
+            currentSlots.add(slot);
+        }
+        entry.setValue(wrapper);
+        return null;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeUTF(queueName);
+        out.writeObject(slots);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        queueName = in.readUTF();
+        slots = in.readObject();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.TreeSetSlotWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Adds slots to the unassigned slots of a queue
+ */
+public class AddUnassignedSlotsProcessor extends AbstractEntryProcessor<String, TreeSetSlotWrapper>
+        implements DataSerializable {
+
+    private TreeSet<Slot> slots;
+
+    /**
+     * Used by hazelcast when de-serializing
+     */
+    public AddUnassignedSlotsProcessor() {
+    }
+
+    /**
+     * @param slots slots to add
+     */
+    public AddUnassignedSlotsProcessor(TreeSet<Slot> slots) {
+        this.slots = slots;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, TreeSetSlotWrapper> entry) {
+        TreeSetSlotWrapper wrapper = entry.getValue();
+        if (null == wrapper) {
+            wrapper = new TreeSetSlotWrapper();
+        }
+        if (null == wrapper.getSlotTreeSet()) {
+            wrapper.setSlotTreeSet(new TreeSet<Slot>());
+        }
+        wrapper.getSlotTreeSet().addAll(slots);
+        entry.setValue(wrapper);
+        return null;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeObject(slots);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        slots = in.readObject();
+    }
+}
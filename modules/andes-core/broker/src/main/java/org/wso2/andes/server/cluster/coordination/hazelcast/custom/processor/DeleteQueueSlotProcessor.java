@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.HashmapStringTreeSetWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Removes the slot of a queue starting at the given message ID from the slots assigned to a node, if the stored
+ * slot can move to the {@link SlotState#DELETED} state. Returns true if the slot was removed.
+ */
+public class DeleteQueueSlotProcessor extends AbstractEntryProcessor<String, HashmapStringTreeSetWrapper>
+        implements DataSerializable {
+
+    private String queueName;
+
+    private long startMessageId;
+
+    /**
+     * Used by hazelcast when de-serializing
+     */
+    public DeleteQueueSlotProcessor() {
+    }
+
+    /**
+     * @param queueName      name of the queue the slot belongs to
+     * @param startMessageId start message ID of the slot
+     */
+    public DeleteQueueSlotProcessor(String queueName, long startMessageId) {
+        this.queueName = queueName;
+        this.startMessageId = startMessageId;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, HashmapStringTreeSetWrapper> entry) {
+        HashmapStringTreeSetWrapper wrapper = entry.getValue();
+        if (null == wrapper || null == wrapper.getStringListHashMap()) {
+            return false;
+        }
+        TreeSet<Slot> currentSlots = wrapper.getStringListHashMap().get(queueName);
+        if (null == currentSlots) {
+            return false;
+        }
+
+        Slot slotToDelete = null;
+        for (Slot slot : currentSlots) {
+            if (slot.getStartMessageId() == startMessageId) {
+                slotToDelete = slot;
+            }
+        }
+        if (null != slotToDelete && slotToDelete.addState(SlotState.DELETED)) {
+            currentSlots.remove(slotToDelete);
+            entry.setValue(wrapper);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeUTF(queueName);
+        out.writeLong(startMessageId);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        queueName = in.readUTF();
+        startMessageId = in.readLong();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Removes the lowest message ID from the message ID set of a queue in the slot ID map.
+ * Returns the removed message ID or null if the set is empty.
+ */
+public class PollFirstMessageIdProcessor extends AbstractEntryProcessor<String, SortedLongArrayWrapper>
+        implements DataSerializable {
+
+    @Override
+    public Object process(Map.Entry<String, SortedLongArrayWrapper> entry) {
+        SortedLongArrayWrapper messageIds = entry.getValue();
+        if (null == messageIds || messageIds.isEmpty()) {
+            return null;
+        }
+        long messageId = messageIds.pollFirst();
+        entry.setValue(messageIds);
+        return messageId;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        //nothing to write
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        //nothing to read
+    }
+}
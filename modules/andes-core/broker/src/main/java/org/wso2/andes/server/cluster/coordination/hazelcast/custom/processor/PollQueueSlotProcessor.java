@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.HashmapStringTreeSetWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Removes and returns the lowest slot of a queue kept against a node. Returns null if there is no slot.
+ */
+public class PollQueueSlotProcessor extends AbstractEntryProcessor<String, HashmapStringTreeSetWrapper>
+        implements DataSerializable {
+
+    private String queueName;
+
+    /**
+     * Used by hazelcast when de-serializing
+     */
+    public PollQueueSlotProcessor() {
+    }
+
+    /**
+     * @param queueName name of the queue
+     */
+    public PollQueueSlotProcessor(String queueName) {
+        this.queueName = queueName;
+    }
+
+    @Override
+    public Object process(Map.Entry<String, HashmapStringTreeSetWrapper> entry) {
+        HashmapStringTreeSetWrapper wrapper = entry.getValue();
+        if (null == wrapper || null == wrapper.getStringListHashMap()) {
+            return null;
+        }
+        TreeSet<Slot> currentSlots = wrapper.getStringListHashMap().get(queueName);
+        if (null == currentSlots || currentSlots.isEmpty()) {
+            return null;
+        }
+        Slot slot = currentSlots.pollFirst();
+        entry.setValue(wrapper);
+        return slot;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeUTF(queueName);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        queueName = in.readUTF();
+    }
+}
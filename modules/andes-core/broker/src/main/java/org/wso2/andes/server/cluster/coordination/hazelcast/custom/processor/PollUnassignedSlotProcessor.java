@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor;
+
+import com.hazelcast.map.AbstractEntryProcessor;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.TreeSetSlotWrapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Removes and returns the lowest unassigned slot of a queue. Returns null if there is no slot.
+ */
+public class PollUnassignedSlotProcessor extends AbstractEntryProcessor<String, TreeSetSlotWrapper>
+        implements DataSerializable {
+
+    @Override
+    public Object process(Map.Entry<String, TreeSetSlotWrapper> entry) {
+        TreeSetSlotWrapper wrapper = entry.getValue();
+        if (null == wrapper) {
+            return null;
+        }
+        TreeSet<Slot> slots = wrapper.getSlotTreeSet();
+        if (null == slots || slots.isEmpty()) {
+            return null;
+        }
+        Slot slot = slots.pollFirst();
+        entry.setValue(wrapper);
+        return slot;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        // No state to write
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        // No state to read
+    }
+}
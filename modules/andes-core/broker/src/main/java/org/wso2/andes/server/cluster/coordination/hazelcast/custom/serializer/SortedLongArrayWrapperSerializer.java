@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer;
+
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Delta encoded form of SortedLongArrayWrapper objects, written by the wrapper when hazelcast serializes it. Values
+ * are written as the lowest value followed by variable length encoded differences between consecutive values.
+ * Message IDs of a queue are close to each other, hence most differences fit in a few bytes.
+ */
+public final class SortedLongArrayWrapperSerializer {
+
+    private SortedLongArrayWrapperSerializer() {
+    }
+
+    /**
+     * Write values of the wrapper delta encoded
+     *
+     * @param dataOutput             output to write to
+     * @param sortedLongArrayWrapper values to write
+     * @throws IOException
+     */
+    public static void writeDeltaEncoded(DataOutput dataOutput, SortedLongArrayWrapper sortedLongArrayWrapper)
+            throws IOException {
+        int size = sortedLongArrayWrapper.size();
+        dataOutput.writeInt(size);
+        if (0 == size) {
+            return;
+        }
+
+        long previous = sortedLongArrayWrapper.get(0);
+        dataOutput.writeLong(previous);
+        for (int i = 1; i < size; i++) {
+            long current = sortedLongArrayWrapper.get(i);
+            writeUnsignedVarLong(dataOutput, current - previous);
+            previous = current;
+        }
+    }
+
+    /**
+     * Read values written by {@link #writeDeltaEncoded(java.io.DataOutput, SortedLongArrayWrapper)}
+     *
+     * @param dataInput input to read from
+     * @return wrapper with the values read
+     * @throws IOException
+     */
+    public static SortedLongArrayWrapper readDeltaEncoded(DataInput dataInput) throws IOException {
+        int size = dataInput.readInt();
+        if (0 == size) {
+            return new SortedLongArrayWrapper();
+        }
+
+        long[] values = new long[size];
+        values[0] = dataInput.readLong();
+        for (int i = 1; i < size; i++) {
+            values[i] = values[i - 1] + readUnsignedVarLong(dataInput);
+        }
+        return new SortedLongArrayWrapper(values, size);
+    }
+
+    /**
+     * Write a non negative long seven bits at a time, lowest bits first. High bit of each byte indicates that
+     * more bytes follow.
+     */
+    private static void writeUnsignedVarLong(DataOutput dataOutput, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            dataOutput.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        dataOutput.writeByte((int) value);
+    }
+
+    private static long readUnsignedVarLong(DataInput dataInput) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte currentByte;
+        do {
+            currentByte = dataInput.readByte();
+            value |= (long) (currentByte & 0x7F) << shift;
+            shift += 7;
+        } while ((currentByte & 0x80) != 0);
+        return value;
+    }
+}
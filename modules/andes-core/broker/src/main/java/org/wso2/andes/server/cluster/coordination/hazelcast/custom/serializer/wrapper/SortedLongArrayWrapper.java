@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.SortedLongArrayWrapperSerializer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+
+/**
+ * Sorted set of primitive longs backed by an array. Used in hazelcast maps in place of a TreeSet of boxed longs to
+ * hold message IDs of a queue. Message IDs are mostly added in increasing order and removed from the lowest end,
+ * therefore both are amortized constant time operations.
+ * <p/>
+ * The wrapper serializes itself in the delta encoded form of {@link SortedLongArrayWrapperSerializer}. Hazelcast
+ * uses DataSerializable ahead of any configured serializer, so no serializer registration is needed.
+ */
+public class SortedLongArrayWrapper implements DataSerializable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Values are kept in values[head] to values[head + size - 1] in ascending order
+     */
+    private long[] values;
+
+    private int head;
+
+    private int size;
+
+    public SortedLongArrayWrapper() {
+        values = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Create a wrapper over the given values
+     *
+     * @param sortedValues values in ascending order without duplicates. Array is not copied.
+     * @param size         number of values in the array
+     */
+    public SortedLongArrayWrapper(long[] sortedValues, int size) {
+        values = sortedValues;
+        this.size = size;
+    }
+
+    /**
+     * Add a value
+     *
+     * @param value value to add
+     * @return true if the value was not already present
+     */
+    public boolean add(long value) {
+        int insertionIndex;
+        if (0 == size || value > values[head + size - 1]) {
+            insertionIndex = size;
+        } else {
+            int index = Arrays.binarySearch(values, head, head + size, value);
+            if (index >= 0) {
+                return false;
+            }
+            insertionIndex = -index - 1 - head;
+        }
+
+        ensureCapacity(size + 1);
+        int position = head + insertionIndex;
+        System.arraycopy(values, position, values, position + 1, size - insertionIndex);
+        values[position] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove a value
+     *
+     * @param value value to remove
+     * @return true if the value was present
+     */
+    public boolean remove(long value) {
+        if (0 == size) {
+            return false;
+        }
+        if (values[head] == value) {
+            pollFirst();
+            return true;
+        }
+        int index = Arrays.binarySearch(values, head, head + size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, head + size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove the lowest value
+     *
+     * @return lowest value
+     * @throws NoSuchElementException if empty
+     */
+    public long pollFirst() {
+        long first = first();
+        head++;
+        size--;
+        if (0 == size) {
+            head = 0;
+        }
+        return first;
+    }
+
+    /**
+     * @return lowest value
+     * @throws NoSuchElementException if empty
+     */
+    public long first() {
+        if (0 == size) {
+            throw new NoSuchElementException();
+        }
+        return values[head];
+    }
+
+    /**
+     * @param index position in ascending order
+     * @return value at the given position
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return values[head + index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    /**
+     * @return values as a new tree set
+     */
+    public TreeSet<Long> toTreeSet() {
+        TreeSet<Long> treeSet = new TreeSet<Long>();
+        for (int i = head; i < head + size; i++) {
+            treeSet.add(values[i]);
+        }
+        return treeSet;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        SortedLongArrayWrapperSerializer.writeDeltaEncoded(out, this);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        SortedLongArrayWrapper read = SortedLongArrayWrapperSerializer.readDeltaEncoded(in);
+        values = read.values;
+        head = read.head;
+        size = read.size;
+    }
+
+    /**
+     * Make room for the given number of values after the head, first by dropping the space left by removed values
+     * and then by growing the array
+     *
+     * @param requiredSize required number of values
+     */
+    private void ensureCapacity(int requiredSize) {
+        if (head + requiredSize <= values.length) {
+            return;
+        }
+        if (requiredSize <= values.length / 2 + 1) {
+            System.arraycopy(values, head, values, 0, size);
+        } else {
+            long[] newValues = new long[Math.max(values.length * 2, requiredSize)];
+            System.arraycopy(values, head, newValues, 0, size);
+            values = newValues;
+        }
+        head = 0;
+    }
+}
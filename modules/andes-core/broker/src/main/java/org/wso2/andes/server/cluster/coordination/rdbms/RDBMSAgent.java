@@ -187,6 +187,21 @@ public class RDBMSAgent implements SlotAgent {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Long pollFirstMessageId(String queueName) throws AndesException {
+		TreeSet<Long> messageIds = andesContextStore.getMessageIds(queueName);
+		if (messageIds.isEmpty()) {
+			return null;
+		}
+		Long messageId = messageIds.first();
+		andesContextStore.deleteMessageId(messageId);
+		return messageId;
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -0,0 +1,513 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.rdbms;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
+import org.wso2.andes.store.AndesDataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered journal of slot store changes which are not yet written to the RDBMS slot store. A flush writes all
+ * pending changes in one transaction with one batched statement per kind of change, see {@link SlotStoreChanges}
+ * for the order they are applied in. Changes which cancel out or overwrite each other are merged before they reach
+ * the store,
+ * <ul>
+ * <li>A message id added and removed before a flush is never written</li>
+ * <li>A slot created and deleted before a flush is never written, nor are its assignments</li>
+ * <li>Only the latest last assigned id of a queue and last published id of a node is written</li>
+ * </ul>
+ * Merging makes the batched order give the same result as applying the changes one by one in journal order.
+ * <p/>
+ * Every change gets a sequence number. {@link #flushUpTo(long)} returns once the change with the given number is in
+ * the store, flushing unless a concurrent flush has already written it. Callers waiting at the same time are served
+ * by a single flush.
+ */
+public class SlotStoreJournal {
+
+    private static final Log log = LogFactory.getLog(SlotStoreJournal.class);
+
+    private final AndesContextStore contextStore;
+
+    /**
+     * Ordered changes. Guarded by journal monitor.
+     */
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Pending message id insertions by message id, used to cancel an insertion when the id is removed before it is
+     * written. Guarded by journal monitor.
+     */
+    private Map<Long, Entry> pendingMessageIdInserts = new HashMap<>();
+
+    /**
+     * Pending slot creations by slot, used to cancel a creation when the slot is deleted before it is written.
+     * Guarded by journal monitor.
+     */
+    private Map<String, Entry> pendingSlotCreations = new HashMap<>();
+
+    /**
+     * Pending slot assignments by slot, cancelled when the slot is deleted before they are written. Guarded by
+     * journal monitor.
+     */
+    private Map<String, List<Entry>> pendingSlotAssignments = new HashMap<>();
+
+    /**
+     * Latest last assigned id by queue. Guarded by journal monitor.
+     */
+    private Map<String, Long> lastAssignedIds = new LinkedHashMap<>();
+
+    /**
+     * Latest last published id by node. Guarded by journal monitor.
+     */
+    private Map<String, Long> lastPublishedIds = new LinkedHashMap<>();
+
+    /**
+     * Sequence number of the latest change. Guarded by journal monitor.
+     */
+    private long appendedSequence;
+
+    /**
+     * Sequence number of the latest change written to the store
+     */
+    private volatile long flushedSequence;
+
+    /**
+     * Serializes flushes so that changes reach the store in journal order
+     */
+    private final Object flushLock = new Object();
+
+    public SlotStoreJournal(AndesContextStore contextStore) {
+        this.contextStore = contextStore;
+    }
+
+    /**
+     * Append slot creation
+     *
+     * @param startMessageId   start message id of slot
+     * @param endMessageId     end message id of slot
+     * @param storageQueueName storage queue of slot
+     * @param assignedNodeId   node slot is assigned to
+     * @return sequence number of the change
+     */
+    public synchronized long createSlot(long startMessageId, long endMessageId, String storageQueueName,
+                                        String assignedNodeId) {
+        appendEntry(new Entry(EntryType.CREATE_SLOT, startMessageId, endMessageId, storageQueueName,
+                assignedNodeId));
+        return ++appendedSequence;
+    }
+
+    /**
+     * Append slot deletion
+     *
+     * @param startMessageId start message id of slot
+     * @param endMessageId   end message id of slot
+     * @return sequence number of the change
+     */
+    public synchronized long deleteSlot(long startMessageId, long endMessageId) {
+        appendEntry(new Entry(EntryType.DELETE_SLOT, startMessageId, endMessageId, null, null));
+        return ++appendedSequence;
+    }
+
+    /**
+     * Append slot assignment
+     *
+     * @param nodeId         node slot is assigned to
+     * @param queueName      queue slot is assigned to
+     * @param startMessageId start message id of slot
+     * @param endMessageId   end message id of slot
+     * @return sequence number of the change
+     */
+    public synchronized long createSlotAssignment(String nodeId, String queueName, long startMessageId,
+                                                  long endMessageId) {
+        appendEntry(new Entry(EntryType.CREATE_SLOT_ASSIGNMENT, startMessageId, endMessageId, queueName, nodeId));
+        return ++appendedSequence;
+    }
+
+    /**
+     * Append message id insertion
+     *
+     * @param queueName name of queue
+     * @param messageId message id to add
+     * @return sequence number of the change
+     */
+    public synchronized long addMessageId(String queueName, long messageId) {
+        appendEntry(new Entry(EntryType.ADD_MESSAGE_ID, messageId, messageId, queueName, null));
+        return ++appendedSequence;
+    }
+
+    /**
+     * Append message id removal. Cancels the insertion instead if it is not yet written.
+     *
+     * @param messageId message id to remove
+     * @return sequence number of the change
+     */
+    public synchronized long deleteMessageId(long messageId) {
+        appendEntry(new Entry(EntryType.DELETE_MESSAGE_ID, messageId, messageId, null, null));
+        return ++appendedSequence;
+    }
+
+    /**
+     * Record last assigned id of a queue. Overwrites a pending value of the same queue.
+     *
+     * @param queueName      name of queue
+     * @param lastAssignedId last assigned message id
+     * @return sequence number of the change
+     */
+    public synchronized long setQueueToLastAssignedId(String queueName, long lastAssignedId) {
+        lastAssignedIds.put(queueName, lastAssignedId);
+        return ++appendedSequence;
+    }
+
+    /**
+     * Record last published id of a node. Overwrites a pending value of the same node.
+     *
+     * @param nodeId          id of node
+     * @param lastPublishedId last published message id
+     * @return sequence number of the change
+     */
+    public synchronized long setNodeToLastPublishedId(String nodeId, long lastPublishedId) {
+        lastPublishedIds.put(nodeId, lastPublishedId);
+        return ++appendedSequence;
+    }
+
+    /**
+     * Drop a pending last published id of a node. Used when the node entry is removed from the store.
+     *
+     * @param nodeId id of node
+     */
+    public synchronized void removeNodeToLastPublishedId(String nodeId) {
+        lastPublishedIds.remove(nodeId);
+    }
+
+    /**
+     * @return sequence number of the latest change
+     */
+    public synchronized long getAppendedSequence() {
+        return appendedSequence;
+    }
+
+    /**
+     * @return number of changes waiting to be written
+     */
+    public synchronized int size() {
+        return entries.size() + lastAssignedIds.size() + lastPublishedIds.size();
+    }
+
+    /**
+     * Make sure the change with the given sequence number and all changes before it are written to the store
+     *
+     * @param sequence sequence number returned when the change was appended
+     * @throws AndesException if the changes cannot be written. They are kept to be retried by the next flush
+     */
+    public void flushUpTo(long sequence) throws AndesException {
+        if (flushedSequence >= sequence) {
+            return;
+        }
+        synchronized (flushLock) {
+            // A flush done while waiting for the lock may have written the change
+            if (flushedSequence < sequence) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Write all pending changes to the store in one transaction. If the store fails, the changes are kept at the
+     * head of the journal to be retried by the next flush.
+     *
+     * @throws AndesException if the changes cannot be written
+     */
+    public void flush() throws AndesException {
+        synchronized (flushLock) {
+            List<Entry> entriesToWrite;
+            Map<String, Long> lastAssignedIdsToWrite;
+            Map<String, Long> lastPublishedIdsToWrite;
+            long sequenceToWrite;
+
+            synchronized (this) {
+                sequenceToWrite = appendedSequence;
+                if (entries.isEmpty() && lastAssignedIds.isEmpty() && lastPublishedIds.isEmpty()) {
+                    flushedSequence = sequenceToWrite;
+                    return;
+                }
+                entriesToWrite = entries;
+                lastAssignedIdsToWrite = lastAssignedIds;
+                lastPublishedIdsToWrite = lastPublishedIds;
+                entries = new ArrayList<>();
+                pendingMessageIdInserts = new HashMap<>();
+                pendingSlotCreations = new HashMap<>();
+                pendingSlotAssignments = new HashMap<>();
+                lastAssignedIds = new LinkedHashMap<>();
+                lastPublishedIds = new LinkedHashMap<>();
+            }
+
+            SlotStoreChanges changes = new SlotStoreChanges();
+            for (Entry entry : entriesToWrite) {
+                if (!entry.cancelled) {
+                    entry.addTo(changes);
+                }
+            }
+            for (Map.Entry<String, Long> lastAssignedId : lastAssignedIdsToWrite.entrySet()) {
+                changes.setQueueToLastAssignedId(lastAssignedId.getKey(), lastAssignedId.getValue());
+            }
+            for (Map.Entry<String, Long> lastPublishedId : lastPublishedIdsToWrite.entrySet()) {
+                changes.setNodeToLastPublishedId(lastPublishedId.getKey(), lastPublishedId.getValue());
+            }
+
+            try {
+                if (!changes.isEmpty()) {
+                    contextStore.applySlotStoreChanges(changes);
+                }
+            } catch (AndesDataIntegrityViolationException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Slot store changes violate store constraints. Writing them one by one.", e);
+                }
+                applyOneByOne(entriesToWrite, lastAssignedIdsToWrite, lastPublishedIdsToWrite);
+            } catch (AndesException e) {
+                requeue(entriesToWrite, lastAssignedIdsToWrite, lastPublishedIdsToWrite);
+                throw e;
+            }
+            flushedSequence = sequenceToWrite;
+        }
+    }
+
+    /**
+     * Write changes one by one in journal order, dropping the ones which violate store constraints. Used when a
+     * batch is rejected for a constraint violation, which a single change can cause for the whole batch.
+     *
+     * @throws AndesException if the store fails. Changes not yet written are kept in the journal
+     */
+    private void applyOneByOne(List<Entry> entriesToWrite, Map<String, Long> lastAssignedIdsToWrite,
+                               Map<String, Long> lastPublishedIdsToWrite) throws AndesException {
+        int writtenCount = 0;
+        try {
+            for (Entry entry : entriesToWrite) {
+                if (!entry.cancelled) {
+                    applyEntry(entry);
+                }
+                writtenCount++;
+            }
+            for (Map.Entry<String, Long> lastAssignedId : lastAssignedIdsToWrite.entrySet()) {
+                contextStore.setQueueToLastAssignedId(lastAssignedId.getKey(), lastAssignedId.getValue());
+            }
+            lastAssignedIdsToWrite.clear();
+            for (Map.Entry<String, Long> lastPublishedId : lastPublishedIdsToWrite.entrySet()) {
+                contextStore.setNodeToLastPublishedId(lastPublishedId.getKey(), lastPublishedId.getValue());
+            }
+        } catch (AndesException e) {
+            requeue(entriesToWrite.subList(writtenCount, entriesToWrite.size()), lastAssignedIdsToWrite,
+                    lastPublishedIdsToWrite);
+            throw e;
+        }
+    }
+
+    /**
+     * Write a single change. A change violating store constraints can never succeed, therefore it is dropped.
+     *
+     * @param entry change to write
+     * @throws AndesException if the store fails
+     */
+    private void applyEntry(Entry entry) throws AndesException {
+        try {
+            entry.apply(contextStore);
+        } catch (AndesDataIntegrityViolationException e) {
+            //Same message id can be added twice when slots are overlapped. Such changes are already in store.
+            if (log.isDebugEnabled()) {
+                log.debug("Dropping slot store change which violates store constraints", e);
+            }
+        }
+    }
+
+    /**
+     * Put back changes which were not written in front of changes appended meanwhile. None of the changes put back
+     * are in the store, hence all changes are appended again so that the ones appended meanwhile can cancel them.
+     * Values recorded meanwhile are newer than the ones put back, therefore they are kept.
+     */
+    private synchronized void requeue(List<Entry> unwrittenEntries, Map<String, Long> unwrittenLastAssignedIds,
+                                      Map<String, Long> unwrittenLastPublishedIds) {
+        List<Entry> newEntries = entries;
+        entries = new ArrayList<>(unwrittenEntries.size() + newEntries.size());
+        pendingMessageIdInserts = new HashMap<>();
+        pendingSlotCreations = new HashMap<>();
+        pendingSlotAssignments = new HashMap<>();
+        for (Entry entry : unwrittenEntries) {
+            if (!entry.cancelled) {
+                appendEntry(entry);
+            }
+        }
+        for (Entry entry : newEntries) {
+            if (!entry.cancelled) {
+                appendEntry(entry);
+            }
+        }
+
+        for (Map.Entry<String, Long> lastAssignedId : unwrittenLastAssignedIds.entrySet()) {
+            if (!lastAssignedIds.containsKey(lastAssignedId.getKey())) {
+                lastAssignedIds.put(lastAssignedId.getKey(), lastAssignedId.getValue());
+            }
+        }
+        for (Map.Entry<String, Long> lastPublishedId : unwrittenLastPublishedIds.entrySet()) {
+            if (!lastPublishedIds.containsKey(lastPublishedId.getKey())) {
+                lastPublishedIds.put(lastPublishedId.getKey(), lastPublishedId.getValue());
+            }
+        }
+    }
+
+    /**
+     * Append a change, merging it with pending changes it cancels. Caller must hold the journal monitor.
+     *
+     * @param entry change to append
+     */
+    private void appendEntry(Entry entry) {
+        switch (entry.type) {
+            case ADD_MESSAGE_ID:
+                entries.add(entry);
+                pendingMessageIdInserts.put(entry.startMessageId, entry);
+                break;
+            case DELETE_MESSAGE_ID:
+                Entry pendingInsert = pendingMessageIdInserts.remove(entry.startMessageId);
+                if (null != pendingInsert) {
+                    pendingInsert.cancelled = true;
+                } else {
+                    entries.add(entry);
+                }
+                break;
+            case CREATE_SLOT:
+                entries.add(entry);
+                pendingSlotCreations.put(entry.getSlotKey(), entry);
+                break;
+            case CREATE_SLOT_ASSIGNMENT:
+                entries.add(entry);
+                List<Entry> assignments = pendingSlotAssignments.get(entry.getSlotKey());
+                if (null == assignments) {
+                    assignments = new ArrayList<>(1);
+                    pendingSlotAssignments.put(entry.getSlotKey(), assignments);
+                }
+                assignments.add(entry);
+                break;
+            case DELETE_SLOT:
+                // Assignments would be written after the deletion, they are void once the slot is deleted
+                List<Entry> pendingAssignments = pendingSlotAssignments.remove(entry.getSlotKey());
+                if (null != pendingAssignments) {
+                    for (Entry pendingAssignment : pendingAssignments) {
+                        pendingAssignment.cancelled = true;
+                    }
+                }
+                Entry pendingCreation = pendingSlotCreations.remove(entry.getSlotKey());
+                if (null != pendingCreation) {
+                    pendingCreation.cancelled = true;
+                } else {
+                    entries.add(entry);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown slot store change " + entry.type);
+        }
+    }
+
+    private enum EntryType {
+        ADD_MESSAGE_ID, DELETE_MESSAGE_ID, CREATE_SLOT, DELETE_SLOT, CREATE_SLOT_ASSIGNMENT
+    }
+
+    /**
+     * A single change to the slot store. Message id changes keep the message id as both start and end id.
+     */
+    private static final class Entry {
+
+        private final EntryType type;
+
+        private final long startMessageId;
+
+        private final long endMessageId;
+
+        private final String queueName;
+
+        private final String nodeId;
+
+        /**
+         * Set when a later change makes this one redundant. Guarded by journal monitor.
+         */
+        private boolean cancelled;
+
+        private Entry(EntryType type, long startMessageId, long endMessageId, String queueName, String nodeId) {
+            this.type = type;
+            this.startMessageId = startMessageId;
+            this.endMessageId = endMessageId;
+            this.queueName = queueName;
+            this.nodeId = nodeId;
+        }
+
+        private String getSlotKey() {
+            return startMessageId + ":" + endMessageId;
+        }
+
+        private void addTo(SlotStoreChanges changes) {
+            switch (type) {
+                case ADD_MESSAGE_ID:
+                    changes.addMessageId(queueName, startMessageId);
+                    break;
+                case DELETE_MESSAGE_ID:
+                    changes.deleteMessageId(startMessageId);
+                    break;
+                case CREATE_SLOT:
+                    changes.createSlot(startMessageId, endMessageId, queueName, nodeId);
+                    break;
+                case DELETE_SLOT:
+                    changes.deleteSlot(startMessageId, endMessageId);
+                    break;
+                case CREATE_SLOT_ASSIGNMENT:
+                    changes.createSlotAssignment(nodeId, queueName, startMessageId, endMessageId);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown slot store change " + type);
+            }
+        }
+
+        private void apply(AndesContextStore store) throws AndesException {
+            switch (type) {
+                case ADD_MESSAGE_ID:
+                    store.addMessageId(queueName, startMessageId);
+                    break;
+                case DELETE_MESSAGE_ID:
+                    store.deleteMessageId(startMessageId);
+                    break;
+                case CREATE_SLOT:
+                    store.createSlot(startMessageId, endMessageId, queueName, nodeId);
+                    break;
+                case DELETE_SLOT:
+                    store.deleteSlot(startMessageId, endMessageId);
+                    break;
+                case CREATE_SLOT_ASSIGNMENT:
+                    store.createSlotAssignment(nodeId, queueName, startMessageId, endMessageId);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown slot store change " + type);
+            }
+        }
+    }
+}
@@ -0,0 +1,712 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.rdbms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.configuration.enums.AndesConfiguration;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.slot.Slot;
+import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.server.cluster.coordination.SlotAgent;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RDBMS slot agent which keeps slot coordination state of queues in memory of the coordinator. Changes made on the
+ * slot assignment and slot submit paths are applied to the in memory state and appended to a {@link SlotStoreJournal}
+ * which is written to the RDBMS slot store in batches. Therefore slot assignment does not wait for database round
+ * trips.
+ * <p/>
+ * The RDBMS slot tables remain the persisted form of the state. State of a queue is loaded from them when the
+ * coordinator first accesses the queue, hence a newly elected coordinator rebuilds its state from what the previous
+ * coordinator has written.
+ * <ul>
+ * <li>A submitted message id is acknowledged only once it is written. Submitting threads wait for a flush, and
+ * threads waiting at the same time share one flush. A slot submission a publishing node got no reply for is
+ * submitted again, so no submitted message id is lost with the coordinator.</li>
+ * <li>Slot creations, assignments and deletions are written behind by a background thread, in one transaction
+ * together with the message id removals and last assigned ids they go with. If the coordinator leaves before they
+ * are written, the new coordinator creates the slot again from the message id which is still in the store, and
+ * messages of that slot may be delivered twice.</li>
+ * <li>Last published ids of nodes are written behind as well. An older value only makes the slot delete safe zone
+ * smaller.</li>
+ * </ul>
+ * <p/>
+ * Rarely used operations and operations on nodes which are not the coordinator are passed to {@link RDBMSAgent}
+ * after writing pending changes, so that they always operate on up to date store content.
+ */
+public class WriteBehindRDBMSAgent implements SlotAgent {
+
+    private static final Log log = LogFactory.getLog(WriteBehindRDBMSAgent.class);
+
+    private final AndesContextStore andesContextStore;
+
+    /**
+     * Agent used for operations which are directly done on the store
+     */
+    private final RDBMSAgent rdbmsAgent;
+
+    private final SlotStoreJournal journal;
+
+    /**
+     * Slot state of queues loaded by the coordinator
+     */
+    private final ConcurrentMap<String, QueueSlotState> queueStates = new ConcurrentHashMap<>();
+
+    private final int maxBatchSize;
+
+    private final ScheduledExecutorService writeBehindExecutor;
+
+    /**
+     * Whether a flush triggered by journal size is already scheduled
+     */
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * Whether the local node was the coordinator when last checked
+     */
+    private volatile boolean localStateActive = false;
+
+    public WriteBehindRDBMSAgent() {
+        andesContextStore = AndesContext.getInstance().getAndesContextStore();
+        rdbmsAgent = new RDBMSAgent();
+        journal = new SlotStoreJournal(andesContextStore);
+        maxBatchSize = AndesConfigurationManager.readValue(
+                AndesConfiguration.SLOT_MANAGEMENT_WRITE_BEHIND_MAX_BATCH_SIZE);
+        int flushInterval = AndesConfigurationManager.readValue(
+                AndesConfiguration.SLOT_MANAGEMENT_WRITE_BEHIND_FLUSH_INTERVAL);
+        int reconcileInterval = AndesConfigurationManager.readValue(
+                AndesConfiguration.SLOT_MANAGEMENT_WRITE_BEHIND_RECONCILE_INTERVAL);
+
+        writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("SlotStoreWriteBehind-%d").setDaemon(true).build());
+        writeBehindExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushJournal();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+
+        if (reconcileInterval > 0) {
+            writeBehindExecutor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    reconcileMessageIds();
+                }
+            }, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createSlot(long startMessageId, long endMessageId, String storageQueueName,
+                           String assignedNodeId) throws AndesException {
+        if (isLocalStateActive()) {
+            journal.createSlot(startMessageId, endMessageId, storageQueueName, assignedNodeId);
+            onJournalAppend();
+        } else {
+            rdbmsAgent.createSlot(startMessageId, endMessageId, storageQueueName, assignedNodeId);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteSlot(String nodeId, String queueName, long startMessageId, long endMessageId)
+            throws AndesException {
+        if (isLocalStateActive()) {
+            journal.deleteSlot(startMessageId, endMessageId);
+            onJournalAppend();
+        } else {
+            rdbmsAgent.deleteSlot(nodeId, queueName, startMessageId, endMessageId);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteSlotAssignmentByQueueName(String nodeId, String queueName) throws AndesException {
+        boolean active = isLocalStateActive();
+        journal.flush();
+        rdbmsAgent.deleteSlotAssignmentByQueueName(nodeId, queueName);
+        if (active) {
+            markReturnedSlots(queueName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slot getUnAssignedSlot(String queueName) throws AndesException {
+        if (!isLocalStateActive()) {
+            return rdbmsAgent.getUnAssignedSlot(queueName);
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        long version;
+        synchronized (state) {
+            if (state.noReturnedSlots) {
+                return null;
+            }
+            version = state.returnedSlotsVersion;
+        }
+
+        journal.flush();
+        Slot slot = rdbmsAgent.getUnAssignedSlot(queueName);
+
+        if (null == slot) {
+            synchronized (state) {
+                // Only remember if no slot was returned to the queue while reading
+                if (version == state.returnedSlotsVersion) {
+                    state.noReturnedSlots = true;
+                }
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateSlotAssignment(String nodeId, String queueName, Slot allocatedSlot) throws AndesException {
+        if (isLocalStateActive()) {
+            journal.createSlotAssignment(nodeId, queueName, allocatedSlot.getStartMessageId(),
+                    allocatedSlot.getEndMessageId());
+            onJournalAppend();
+        } else {
+            rdbmsAgent.updateSlotAssignment(nodeId, queueName, allocatedSlot);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getQueueToLastAssignedId(String queueName) throws AndesException {
+        if (!isLocalStateActive()) {
+            return rdbmsAgent.getQueueToLastAssignedId(queueName);
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        synchronized (state) {
+            return state.lastAssignedId;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setQueueToLastAssignedId(String queueName, long lastAssignedId) throws AndesException {
+        if (!isLocalStateActive()) {
+            rdbmsAgent.setQueueToLastAssignedId(queueName, lastAssignedId);
+            return;
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        synchronized (state) {
+            state.lastAssignedId = lastAssignedId;
+            journal.setQueueToLastAssignedId(queueName, lastAssignedId);
+        }
+        onJournalAppend();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getNodeToLastPublishedId(String nodeId) throws AndesException {
+        journal.flush();
+        return rdbmsAgent.getNodeToLastPublishedId(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNodeToLastPublishedId(String nodeId, long lastPublishedId) throws AndesException {
+        if (isLocalStateActive()) {
+            journal.setNodeToLastPublishedId(nodeId, lastPublishedId);
+            onJournalAppend();
+        } else {
+            rdbmsAgent.setNodeToLastPublishedId(nodeId, lastPublishedId);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removePublisherNode(String nodeId) throws AndesException {
+        journal.removeNodeToLastPublishedId(nodeId);
+        journal.flush();
+        rdbmsAgent.removePublisherNode(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeSet<String> getMessagePublishedNodes() throws AndesException {
+        journal.flush();
+        return rdbmsAgent.getMessagePublishedNodes();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reAssignSlot(Slot slotToBeReAssigned) throws AndesException {
+        boolean active = isLocalStateActive();
+        journal.flush();
+        rdbmsAgent.reAssignSlot(slotToBeReAssigned);
+        if (active) {
+            markReturnedSlots(slotToBeReAssigned.getStorageQueueName());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSlotState(long startMessageId, long endMessageId, SlotState slotState) throws AndesException {
+        boolean active = isLocalStateActive();
+        journal.flush();
+        rdbmsAgent.setSlotState(startMessageId, endMessageId, slotState);
+        if (active && (SlotState.RETURNED == slotState || SlotState.OVERLAPPED == slotState)) {
+            // Queue of the slot is not known here
+            for (String queueName : queueStates.keySet()) {
+                markReturnedSlots(queueName);
+                markOverlappedSlots(queueName);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Slot getOverlappedSlot(String nodeId, String queueName) throws AndesException {
+        if (!isLocalStateActive()) {
+            return rdbmsAgent.getOverlappedSlot(nodeId, queueName);
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        long version;
+        synchronized (state) {
+            if (state.noOverlappedSlots) {
+                return null;
+            }
+            version = state.overlappedSlotsVersion;
+        }
+
+        journal.flush();
+        Slot slot = rdbmsAgent.getOverlappedSlot(nodeId, queueName);
+
+        if (null == slot) {
+            synchronized (state) {
+                // Only remember if no slot was marked overlapped while reading
+                if (version == state.overlappedSlotsVersion) {
+                    state.noOverlappedSlots = true;
+                }
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteOverlappedSlots(String nodeId) throws AndesException {
+        rdbmsAgent.deleteOverlappedSlots(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addMessageId(String queueName, long messageId) throws AndesException {
+        if (!isLocalStateActive()) {
+            rdbmsAgent.addMessageId(queueName, messageId);
+            return;
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        long sequence;
+        synchronized (state) {
+            // Same message id can be added again when slots are overlapped or a submission is retried. The insert
+            // appended earlier is covered by the current sequence.
+            if (state.messageIds.add(messageId)) {
+                sequence = journal.addMessageId(queueName, messageId);
+            } else {
+                sequence = journal.getAppendedSequence();
+            }
+        }
+        // Submission is acknowledged only once the message id is in the store
+        journal.flushUpTo(sequence);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeSet<Long> getMessageIds(String queueName) throws AndesException {
+        if (!isLocalStateActive()) {
+            return rdbmsAgent.getMessageIds(queueName);
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        synchronized (state) {
+            return state.messageIds.toTreeSet();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long pollFirstMessageId(String queueName) throws AndesException {
+        if (!isLocalStateActive()) {
+            return rdbmsAgent.pollFirstMessageId(queueName);
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        Long messageId;
+        synchronized (state) {
+            if (state.messageIds.isEmpty()) {
+                return null;
+            }
+            messageId = state.messageIds.pollFirst();
+            state.messageIdsVersion++;
+            journal.deleteMessageId(messageId);
+        }
+        onJournalAppend();
+        return messageId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessageId(String queueName, long messageId) throws AndesException {
+        if (!isLocalStateActive()) {
+            rdbmsAgent.deleteMessageId(queueName, messageId);
+            return;
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        synchronized (state) {
+            if (state.messageIds.remove(messageId)) {
+                state.messageIdsVersion++;
+                journal.deleteMessageId(messageId);
+            }
+        }
+        onJournalAppend();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteSlotsByQueueName(String queueName) throws AndesException {
+        journal.flush();
+        rdbmsAgent.deleteSlotsByQueueName(queueName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteMessageIdsByQueueName(String queueName) throws AndesException {
+        if (!isLocalStateActive()) {
+            journal.flush();
+            rdbmsAgent.deleteMessageIdsByQueueName(queueName);
+            return;
+        }
+
+        QueueSlotState state = getQueueState(queueName);
+        synchronized (state) {
+            // Hold the queue state so that message ids added meanwhile are not deleted from store only
+            journal.flush();
+            rdbmsAgent.deleteMessageIdsByQueueName(queueName);
+            state.messageIds = new SortedLongArrayWrapper();
+            state.messageIdsVersion++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeSet<Slot> getAssignedSlotsByNodeId(String nodeId) throws AndesException {
+        journal.flush();
+        return rdbmsAgent.getAssignedSlotsByNodeId(nodeId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TreeSet<Slot> getAllSlotsByQueueName(String nodeId, String queueName) throws AndesException {
+        journal.flush();
+        return rdbmsAgent.getAllSlotsByQueueName(nodeId, queueName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateOverlappedSlots(String nodeId, String queueName, TreeSet<Slot> overlappedSlots)
+            throws AndesException {
+        boolean active = isLocalStateActive();
+        journal.flush();
+        rdbmsAgent.updateOverlappedSlots(nodeId, queueName, overlappedSlots);
+        if (active && !overlappedSlots.isEmpty()) {
+            markOverlappedSlots(queueName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getAllQueues() throws AndesException {
+        journal.flush();
+        return rdbmsAgent.getAllQueues();
+    }
+
+    /**
+     * Write pending changes to the store and stop background writing
+     */
+    public void stop() {
+        writeBehindExecutor.shutdown();
+        try {
+            writeBehindExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushJournal();
+    }
+
+    /**
+     * Check whether the local node is the coordinator and therefore may serve from in memory state. When the local
+     * node stops being the coordinator pending changes are written and the in memory state is dropped.
+     *
+     * @return true if the local node is the coordinator
+     * @throws AndesException if pending changes cannot be written
+     */
+    private boolean isLocalStateActive() throws AndesException {
+        boolean isCoordinator = AndesContext.getInstance().getClusterAgent().isCoordinator();
+        if (isCoordinator != localStateActive) {
+            synchronized (queueStates) {
+                if (isCoordinator != localStateActive) {
+                    if (!isCoordinator) {
+                        journal.flush();
+                    }
+                    queueStates.clear();
+                    localStateActive = isCoordinator;
+                    log.info((isCoordinator ? "Serving" : "Stopped serving")
+                            + " slot coordination state from memory with write-behind RDBMS slot store");
+                }
+            }
+        }
+        return isCoordinator;
+    }
+
+    /**
+     * Get slot state of a queue, loading it from the store on first access
+     *
+     * @param queueName name of queue
+     * @return slot state of queue
+     * @throws AndesException if the state cannot be loaded
+     */
+    private QueueSlotState getQueueState(String queueName) throws AndesException {
+        QueueSlotState state = queueStates.get(queueName);
+        if (null == state) {
+            synchronized (queueStates) {
+                state = queueStates.get(queueName);
+                if (null == state) {
+                    TreeSet<Long> storedMessageIds = andesContextStore.getMessageIds(queueName);
+                    long[] messageIds = new long[Math.max(storedMessageIds.size(), 16)];
+                    int index = 0;
+                    for (Long messageId : storedMessageIds) {
+                        messageIds[index++] = messageId;
+                    }
+                    state = new QueueSlotState(new SortedLongArrayWrapper(messageIds, index),
+                            andesContextStore.getQueueToLastAssignedId(queueName));
+                    queueStates.put(queueName, state);
+                }
+            }
+        }
+        return state;
+    }
+
+    private void markReturnedSlots(String queueName) {
+        QueueSlotState state = queueStates.get(queueName);
+        if (null != state) {
+            synchronized (state) {
+                state.returnedSlotsVersion++;
+                state.noReturnedSlots = false;
+            }
+        }
+    }
+
+    private void markOverlappedSlots(String queueName) {
+        QueueSlotState state = queueStates.get(queueName);
+        if (null != state) {
+            synchronized (state) {
+                state.overlappedSlotsVersion++;
+                state.noOverlappedSlots = false;
+            }
+        }
+    }
+
+    /**
+     * Schedule a flush ahead of the flush interval once enough changes are pending
+     */
+    private void onJournalAppend() {
+        if (journal.size() >= maxBatchSize && flushScheduled.compareAndSet(false, true)) {
+            writeBehindExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    flushJournal();
+                }
+            });
+        }
+    }
+
+    private void flushJournal() {
+        try {
+            journal.flush();
+        } catch (AndesException e) {
+            log.error("Error while writing slot changes to RDBMS slot store. Will be retried.", e);
+        } catch (RuntimeException e) {
+            log.error("Unexpected error while writing slot changes to RDBMS slot store.", e);
+        }
+    }
+
+    /**
+     * Pick up message ids which other nodes have written directly to the store, i.e. while recovering messages on
+     * start up. Only ids above the last assigned id are taken, since ids up to that have been handed out in slots.
+     */
+    private void reconcileMessageIds() {
+        if (!localStateActive) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, QueueSlotState> entry : queueStates.entrySet()) {
+                String queueName = entry.getKey();
+                QueueSlotState state = entry.getValue();
+                long version;
+                synchronized (state) {
+                    version = state.messageIdsVersion;
+                }
+
+                // Removals done before taking the version must be in store before reading
+                journal.flush();
+                TreeSet<Long> storedMessageIds = andesContextStore.getMessageIds(queueName);
+
+                int addedCount = 0;
+                synchronized (state) {
+                    if (version != state.messageIdsVersion) {
+                        continue;
+                    }
+                    for (Long messageId : storedMessageIds.tailSet(state.lastAssignedId, false)) {
+                        if (state.messageIds.add(messageId)) {
+                            addedCount++;
+                        }
+                    }
+                }
+                if (addedCount > 0 && log.isDebugEnabled()) {
+                    log.debug("Picked up " + addedCount + " message ids of queue " + queueName
+                            + " written by other nodes");
+                }
+            }
+        } catch (AndesException e) {
+            log.error("Error while reading message ids from RDBMS slot store.", e);
+        } catch (RuntimeException e) {
+            log.error("Unexpected error while reading message ids from RDBMS slot store.", e);
+        }
+    }
+
+    /**
+     * Slot state of a queue held by the coordinator. Guarded by its own monitor.
+     */
+    private static class QueueSlotState {
+
+        /**
+         * Message ids submitted for the queue which are not yet assigned in a slot
+         */
+        private SortedLongArrayWrapper messageIds;
+
+        private long lastAssignedId;
+
+        /**
+         * Incremented when message ids are removed
+         */
+        private long messageIdsVersion;
+
+        /**
+         * Set when the store had no returned slots for the queue
+         */
+        private boolean noReturnedSlots;
+
+        /**
+         * Incremented when a slot of the queue may have been returned
+         */
+        private long returnedSlotsVersion;
+
+        /**
+         * Set when the store had no overlapped slots for the queue
+         */
+        private boolean noOverlappedSlots;
+
+        /**
+         * Incremented when a slot of the queue may have been marked overlapped
+         */
+        private long overlappedSlotsVersion;
+
+        private QueueSlotState(SortedLongArrayWrapper messageIds, long lastAssignedId) {
+            this.messageIds = messageIds;
+            this.lastAssignedId = lastAssignedId;
+        }
+    }
+}
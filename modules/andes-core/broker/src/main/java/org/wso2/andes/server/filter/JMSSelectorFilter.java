@@ -23,23 +23,92 @@ import org.wso2.andes.AMQInvalidArgumentException;
 import org.wso2.andes.server.filter.jms.selector.SelectorParser;
 import org.wso2.andes.server.queue.Filterable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JMSSelectorFilter implements MessageFilter
 {
     private final static Logger _logger = org.apache.log4j.Logger.getLogger(JMSSelectorFilter.class);
 
+    /**
+     * Maximum number of header signatures for which selector outcomes are kept
+     */
+    private static final int MAX_CACHED_OUTCOMES = 1024;
+
+    /**
+     * Properties that have a different value on almost every message. Caching outcomes of selectors referring
+     * them would only fill the cache
+     */
+    private static final Set<String> PER_MESSAGE_PROPERTIES = new HashSet<String>(
+            Arrays.asList("JMSMessageID", "AMQMessageID", "JMSTimestamp", "JMSExpiration"));
+
     private String _selector;
     private BooleanExpression _matcher;
 
+    /**
+     * Properties referred by the selector. Outcome of the selector only depends on their values, which form the
+     * header signature of a message. Null if outcomes of the selector are not cached
+     */
+    private final PropertyExpression[] _signatureProperties;
+
+    /**
+     * Selector outcomes by header signature
+     */
+    private final ConcurrentHashMap<List<Object>, Boolean> _outcomeCache =
+            new ConcurrentHashMap<List<Object>, Boolean>();
+
     public JMSSelectorFilter(String selector) throws AMQInvalidArgumentException
     {
         _selector = selector;
-        _matcher = new SelectorParser().parse(selector);
+        BooleanExpression parsedSelector = new SelectorParser().parse(selector);
+        _matcher = SelectorCompiler.compile(parsedSelector);
+
+        Set<PropertyExpression> properties = new LinkedHashSet<PropertyExpression>();
+        if (collectProperties(parsedSelector, properties))
+        {
+            _signatureProperties = properties.toArray(new PropertyExpression[properties.size()]);
+        }
+        else
+        {
+            _signatureProperties = null;
+        }
     }
 
     public boolean matches(Filterable message)
     {
-        boolean match = _matcher.matches(message);
+        boolean match;
+        if (_signatureProperties == null)
+        {
+            match = _matcher.matches(message);
+        }
+        else
+        {
+            List<Object> signature = new ArrayList<Object>(_signatureProperties.length);
+            for (PropertyExpression property : _signatureProperties)
+            {
+                signature.add(property.evaluate(message));
+            }
+
+            Boolean cachedMatch = _outcomeCache.get(signature);
+            if (cachedMatch != null)
+            {
+                match = cachedMatch;
+            }
+            else
+            {
+                match = _matcher.matches(message);
+                if (_outcomeCache.size() >= MAX_CACHED_OUTCOMES)
+                {
+                    _outcomeCache.clear();
+                }
+                _outcomeCache.put(signature, match);
+            }
+        }
         if(_logger.isDebugEnabled())
         {
             _logger.debug(message + " match(" + match + ") selector(" + System.identityHashCode(_selector) + "):" + _selector);
@@ -52,6 +121,39 @@ public class JMSSelectorFilter implements MessageFilter
         return _selector;
     }
 
+    /**
+     * Collect properties referred by an expression tree
+     *
+     * @param expression root of the expression tree
+     * @param properties set to add properties to
+     * @return false if the outcome of the expression does not solely depend on cacheable property values
+     */
+    private static boolean collectProperties(Expression expression, Set<PropertyExpression> properties)
+    {
+        if (expression instanceof PropertyExpression)
+        {
+            PropertyExpression property = (PropertyExpression) expression;
+            properties.add(property);
+            return !PER_MESSAGE_PROPERTIES.contains(property.getName());
+        }
+        else if (expression instanceof ConstantExpression)
+        {
+            return true;
+        }
+        else if (expression instanceof BinaryExpression)
+        {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return collectProperties(binaryExpression.getLeft(), properties)
+                   && collectProperties(binaryExpression.getRight(), properties);
+        }
+        else if (expression instanceof UnaryExpression)
+        {
+            return collectProperties(((UnaryExpression) expression).getRight(), properties);
+        }
+        // XPath, XQuery or unknown expressions may depend on more than message headers
+        return false;
+    }
+
     @Override
     public String toString()
     {
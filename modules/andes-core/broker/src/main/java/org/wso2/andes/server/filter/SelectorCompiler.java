@@ -0,0 +1,975 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.andes.server.filter;
+
+import org.apache.log4j.Logger;
+import org.wso2.andes.server.message.AMQMessageHeader;
+import org.wso2.andes.server.queue.Filterable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles a parsed selector expression tree into a tree of specialised evaluators.
+ * <p/>
+ * Compared to walking the interpreted tree,
+ * <ul>
+ * <li>every property is resolved at most once per message into a pre-allocated slot</li>
+ * <li>sub trees without properties are folded into constants</li>
+ * <li>AND / OR chains are flattened. When only the match outcome matters their operands are re-ordered at
+ * runtime, cheapest and most selective first</li>
+ * <li>numeric constants are pre-converted, so mixed type comparisons do not box the constant on every message</li>
+ * </ul>
+ * Expressions the compiler does not specialise are evaluated by the interpreter, reading properties through the
+ * same slots. The evaluation outcome is the same as the interpreter's.
+ */
+public final class SelectorCompiler
+{
+    private static final Logger _logger = Logger.getLogger(SelectorCompiler.class);
+
+    /**
+     * Number of sampled evaluations of an AND / OR chain between two re-orderings of its operands
+     */
+    private static final int REORDER_INTERVAL = 64;
+
+    /**
+     * Operand statistics of an AND / OR chain are gathered on about one in every SAMPLE_MASK + 1 evaluations
+     */
+    private static final int SAMPLE_MASK = 15;
+
+    private static final int COST_CONSTANT = 0;
+    private static final int COST_PROPERTY = 1;
+    private static final int COST_COMPARISON = 2;
+    private static final int COST_LIKE = 8;
+    private static final int COST_INTERPRETED = 4;
+
+    private final Map<PropertyExpression, Integer> _slots = new LinkedHashMap<PropertyExpression, Integer>();
+
+    private SelectorCompiler()
+    {
+    }
+
+    /**
+     * Compile a selector expression
+     *
+     * @param expression parsed selector
+     * @return compiled selector, or the given expression if it cannot be compiled
+     */
+    public static BooleanExpression compile(BooleanExpression expression)
+    {
+        try
+        {
+            SelectorCompiler compiler = new SelectorCompiler();
+            Evaluator root = compiler.compileNode(expression, true);
+            PropertyExpression[] properties =
+                    compiler._slots.keySet().toArray(new PropertyExpression[compiler._slots.size()]);
+            return new CompiledSelector(expression, root, properties);
+        }
+        catch (RuntimeException e)
+        {
+            _logger.warn("Could not compile selector " + expression + ". Falling back to interpreter.", e);
+            return expression;
+        }
+    }
+
+    /**
+     * Compile a node of the expression tree
+     *
+     * @param expression   node to compile
+     * @param matchContext true if only whether the node evaluates to TRUE matters, not whether it is FALSE or null
+     * @return evaluator of the node
+     */
+    private Evaluator compileNode(Expression expression, boolean matchContext)
+    {
+        if (expression instanceof ConstantExpression)
+        {
+            return new ConstantEvaluator(((ConstantExpression) expression).getValue());
+        }
+        else if (expression instanceof PropertyExpression)
+        {
+            return new SlotEvaluator(slotOf((PropertyExpression) expression));
+        }
+        else if (isConstant(expression))
+        {
+            return new ConstantEvaluator(expression.evaluate(null));
+        }
+        else if (expression instanceof LogicExpression)
+        {
+            return compileLogic((LogicExpression) expression, matchContext);
+        }
+        else if (expression instanceof ComparisonExpression)
+        {
+            ComparisonExpression comparison = (ComparisonExpression) expression;
+            Evaluator left = compileNode(comparison.getLeft(), false);
+            Evaluator right = compileNode(comparison.getRight(), false);
+            if ("=".equals(comparison.getExpressionSymbol()))
+            {
+                return new EqualEvaluator(comparison, left, right);
+            }
+            return new ComparisonEvaluator(comparison, left, right);
+        }
+        else if (expression instanceof ComparisonExpression.LikeExpression)
+        {
+            ComparisonExpression.LikeExpression like = (ComparisonExpression.LikeExpression) expression;
+            return new LikeEvaluator(like, compileNode(like.getRight(), false));
+        }
+        else if (expression instanceof UnaryExpression
+                 && "NOT".equals(((UnaryExpression) expression).getExpressionSymbol()))
+        {
+            return new NotEvaluator(compileNode(((UnaryExpression) expression).getRight(), false));
+        }
+
+        registerSlots(expression);
+        return new InterpretedEvaluator(expression);
+    }
+
+    /**
+     * Flatten a chain of AND or OR expressions and compile its operands
+     */
+    private Evaluator compileLogic(LogicExpression expression, boolean matchContext)
+    {
+        String symbol = expression.getExpressionSymbol();
+        boolean isAnd = "AND".equals(symbol);
+
+        List<Expression> chain = new ArrayList<Expression>();
+        flatten(expression, symbol, chain);
+
+        List<Evaluator> operands = new ArrayList<Evaluator>(chain.size());
+        for (Expression operand : chain)
+        {
+            Evaluator evaluator = compileNode(operand, matchContext);
+            if (matchContext && evaluator instanceof ConstantEvaluator)
+            {
+                boolean isTrue = Boolean.TRUE.equals(((ConstantEvaluator) evaluator)._value);
+                if (isAnd && !isTrue)
+                {
+                    return new ConstantEvaluator(Boolean.FALSE);
+                }
+                else if (!isAnd && isTrue)
+                {
+                    return new ConstantEvaluator(Boolean.TRUE);
+                }
+                // neutral operand
+                continue;
+            }
+            operands.add(evaluator);
+        }
+
+        if (matchContext)
+        {
+            if (operands.isEmpty())
+            {
+                return new ConstantEvaluator(isAnd ? Boolean.TRUE : Boolean.FALSE);
+            }
+            if (operands.size() == 1)
+            {
+                return operands.get(0);
+            }
+            return new MatchChainEvaluator(operands, isAnd);
+        }
+        return isAnd ? new AndEvaluator(operands) : new OrEvaluator(operands);
+    }
+
+    private static void flatten(Expression expression, String symbol, List<Expression> chain)
+    {
+        if (expression instanceof LogicExpression
+            && symbol.equals(((LogicExpression) expression).getExpressionSymbol()))
+        {
+            LogicExpression logic = (LogicExpression) expression;
+            flatten(logic.getLeft(), symbol, chain);
+            flatten(logic.getRight(), symbol, chain);
+        }
+        else
+        {
+            chain.add(expression);
+        }
+    }
+
+    /**
+     * @return true if the sub tree only consists of constants and operators, hence can be evaluated at compile time
+     */
+    private static boolean isConstant(Expression expression)
+    {
+        if (expression instanceof ConstantExpression)
+        {
+            return true;
+        }
+        else if (expression instanceof BinaryExpression)
+        {
+            return isConstant(((BinaryExpression) expression).getLeft())
+                   && isConstant(((BinaryExpression) expression).getRight());
+        }
+        else if (expression instanceof UnaryExpression)
+        {
+            return isConstant(((UnaryExpression) expression).getRight());
+        }
+        return false;
+    }
+
+    /**
+     * Register slots for properties of a sub tree evaluated by the interpreter
+     */
+    private void registerSlots(Expression expression)
+    {
+        if (expression instanceof PropertyExpression)
+        {
+            slotOf((PropertyExpression) expression);
+        }
+        else if (expression instanceof BinaryExpression)
+        {
+            registerSlots(((BinaryExpression) expression).getLeft());
+            registerSlots(((BinaryExpression) expression).getRight());
+        }
+        else if (expression instanceof UnaryExpression)
+        {
+            registerSlots(((UnaryExpression) expression).getRight());
+        }
+    }
+
+    private int slotOf(PropertyExpression property)
+    {
+        Integer slot = _slots.get(property);
+        if (slot == null)
+        {
+            slot = _slots.size();
+            _slots.put(property, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Compiled form of a selector
+     */
+    static final class CompiledSelector implements BooleanExpression
+    {
+        private final BooleanExpression _source;
+        private final Evaluator _root;
+        private final PropertyExpression[] _properties;
+        private final Map<String, Integer> _slotsByName;
+
+        /**
+         * Evaluation state of each thread, reused for every message the thread evaluates
+         */
+        private final ThreadLocal<EvaluationContext> _contexts = new ThreadLocal<EvaluationContext>()
+        {
+            @Override
+            protected EvaluationContext initialValue()
+            {
+                return new EvaluationContext(CompiledSelector.this);
+            }
+        };
+
+        CompiledSelector(BooleanExpression source, Evaluator root, PropertyExpression[] properties)
+        {
+            _source = source;
+            _root = root;
+            _properties = properties;
+            _slotsByName = new HashMap<String, Integer>();
+            for (int i = 0; i < properties.length; i++)
+            {
+                _slotsByName.put(properties[i].getName(), i);
+            }
+        }
+
+        /**
+         * The compiled tree only tells matched outcomes apart, therefore the value is computed by the interpreter
+         */
+        public Object evaluate(Filterable message)
+        {
+            return _source.evaluate(message);
+        }
+
+        public boolean matches(Filterable message)
+        {
+            EvaluationContext context = _contexts.get();
+            context.reset(message);
+            try
+            {
+                return _root.matches(context);
+            }
+            finally
+            {
+                context.release();
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return _source.toString();
+        }
+    }
+
+    /**
+     * Per message evaluation state. Holds resolved property values and serves them to interpreted sub trees as
+     * well. A context is confined to a thread and reset for every message.
+     */
+    static final class EvaluationContext implements Filterable, AMQMessageHeader
+    {
+        private final CompiledSelector _selector;
+        private final Object[] _values;
+
+        /**
+         * Generation in which the value of each slot was resolved. A slot holds the value of the current message
+         * only if it was resolved in the current generation.
+         */
+        private final int[] _resolvedIn;
+        private int _generation;
+        private int _random;
+        private Filterable _message;
+
+        EvaluationContext(CompiledSelector selector)
+        {
+            _selector = selector;
+            _values = new Object[selector._properties.length];
+            _resolvedIn = new int[selector._properties.length];
+            _random = System.identityHashCode(this) | 1;
+        }
+
+        /**
+         * Prepare the context for evaluating a message. Values resolved for the previous message are dropped.
+         *
+         * @param message message to evaluate
+         */
+        void reset(Filterable message)
+        {
+            _message = message;
+            _generation++;
+            if (_generation == 0)
+            {
+                // generation wrapped around, slots resolved long ago would look current
+                Arrays.fill(_resolvedIn, 0);
+                _generation = 1;
+            }
+        }
+
+        /**
+         * Drop the reference to the evaluated message, so that the context does not keep it reachable
+         */
+        void release()
+        {
+            _message = null;
+        }
+
+        /**
+         * Decide whether an evaluation of an AND / OR chain updates the operand statistics. Samples are picked at
+         * random, so that periodic traffic does not bias the statistics.
+         */
+        boolean sample()
+        {
+            int random = _random;
+            random ^= random << 13;
+            random ^= random >>> 17;
+            random ^= random << 5;
+            _random = random;
+            return (random & SAMPLE_MASK) == 0;
+        }
+
+        Object valueOf(int slot)
+        {
+            if (_resolvedIn[slot] != _generation)
+            {
+                _values[slot] = _selector._properties[slot].evaluate(_message);
+                _resolvedIn[slot] = _generation;
+            }
+            return _values[slot];
+        }
+
+        public AMQMessageHeader getMessageHeader()
+        {
+            return this;
+        }
+
+        public boolean isPersistent()
+        {
+            return _message.isPersistent();
+        }
+
+        public boolean isRedelivered()
+        {
+            return _message.isRedelivered();
+        }
+
+        public String getCorrelationId()
+        {
+            return _message.getMessageHeader().getCorrelationId();
+        }
+
+        public long getExpiration()
+        {
+            return _message.getMessageHeader().getExpiration();
+        }
+
+        public String getMessageId()
+        {
+            return _message.getMessageHeader().getMessageId();
+        }
+
+        public String getMimeType()
+        {
+            return _message.getMessageHeader().getMimeType();
+        }
+
+        public String getEncoding()
+        {
+            return _message.getMessageHeader().getEncoding();
+        }
+
+        public byte getPriority()
+        {
+            return _message.getMessageHeader().getPriority();
+        }
+
+        public long getTimestamp()
+        {
+            return _message.getMessageHeader().getTimestamp();
+        }
+
+        public String getType()
+        {
+            return _message.getMessageHeader().getType();
+        }
+
+        public String getReplyTo()
+        {
+            return _message.getMessageHeader().getReplyTo();
+        }
+
+        public String getReplyToExchange()
+        {
+            return _message.getMessageHeader().getReplyToExchange();
+        }
+
+        public String getReplyToRoutingKey()
+        {
+            return _message.getMessageHeader().getReplyToRoutingKey();
+        }
+
+        public Object getHeader(String name)
+        {
+            Integer slot = _selector._slotsByName.get(name);
+            if (slot == null)
+            {
+                return _message.getMessageHeader().getHeader(name);
+            }
+            return valueOf(slot);
+        }
+
+        public boolean containsHeaders(Set<String> names)
+        {
+            return _message.getMessageHeader().containsHeaders(names);
+        }
+
+        public boolean containsHeader(String name)
+        {
+            return _message.getMessageHeader().containsHeader(name);
+        }
+    }
+
+    /**
+     * Node of a compiled selector
+     */
+    abstract static class Evaluator
+    {
+        abstract Object evaluate(EvaluationContext context);
+
+        boolean matches(EvaluationContext context)
+        {
+            return evaluate(context) == Boolean.TRUE;
+        }
+
+        /**
+         * @return estimated relative cost of evaluating the node
+         */
+        abstract int cost();
+    }
+
+    private static final class ConstantEvaluator extends Evaluator
+    {
+        private final Object _value;
+
+        ConstantEvaluator(Object value)
+        {
+            _value = value;
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            return _value;
+        }
+
+        int cost()
+        {
+            return COST_CONSTANT;
+        }
+    }
+
+    private static final class SlotEvaluator extends Evaluator
+    {
+        private final int _slot;
+
+        SlotEvaluator(int slot)
+        {
+            _slot = slot;
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            return context.valueOf(_slot);
+        }
+
+        int cost()
+        {
+            return COST_PROPERTY;
+        }
+    }
+
+    /**
+     * Evaluates a sub tree with the interpreter
+     */
+    private static final class InterpretedEvaluator extends Evaluator
+    {
+        private final Expression _expression;
+
+        InterpretedEvaluator(Expression expression)
+        {
+            _expression = expression;
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            return _expression.evaluate(context);
+        }
+
+        int cost()
+        {
+            return COST_INTERPRETED;
+        }
+    }
+
+    /**
+     * Ordered comparison (<, <=, >, >=). Same types are compared directly, other combinations follow the
+     * interpreter's conversion rules.
+     */
+    private static class ComparisonEvaluator extends Evaluator
+    {
+        protected final ComparisonExpression _comparison;
+        protected final Evaluator _left;
+        protected final Evaluator _right;
+
+        /**
+         * Right hand side numeric constant converted to the types the interpreter would convert it to
+         */
+        private final Long _rightAsLong;
+        private final Float _rightAsFloat;
+        private final Double _rightAsDouble;
+
+        ComparisonEvaluator(ComparisonExpression comparison, Evaluator left, Evaluator right)
+        {
+            _comparison = comparison;
+            _left = left;
+            _right = right;
+
+            Object constant = (right instanceof ConstantEvaluator) ? ((ConstantEvaluator) right)._value : null;
+            if (constant instanceof Integer || constant instanceof Long)
+            {
+                _rightAsLong = ((Number) constant).longValue();
+                _rightAsFloat = ((Number) constant).floatValue();
+                _rightAsDouble = ((Number) constant).doubleValue();
+            }
+            else if (constant instanceof Float)
+            {
+                _rightAsLong = null;
+                _rightAsFloat = null;
+                _rightAsDouble = ((Number) constant).doubleValue();
+            }
+            else
+            {
+                _rightAsLong = null;
+                _rightAsFloat = null;
+                _rightAsDouble = null;
+            }
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            Comparable lv = (Comparable) _left.evaluate(context);
+            if (lv == null)
+            {
+                return null;
+            }
+
+            Comparable rv = (Comparable) _right.evaluate(context);
+            if (rv == null)
+            {
+                return null;
+            }
+
+            return compare(lv, rv);
+        }
+
+        @SuppressWarnings("unchecked")
+        protected Boolean compare(Comparable lv, Comparable rv)
+        {
+            Class lc = lv.getClass();
+            Class rc = rv.getClass();
+            if (lc == rc)
+            {
+                return _comparison.asBoolean(lv.compareTo(rv)) ? Boolean.TRUE : Boolean.FALSE;
+            }
+
+            Comparable converted = null;
+            if (lc == Long.class && rc == Integer.class)
+            {
+                converted = _rightAsLong;
+            }
+            else if (lc == Float.class && (rc == Integer.class || rc == Long.class))
+            {
+                converted = _rightAsFloat;
+            }
+            else if (lc == Double.class && (rc == Integer.class || rc == Long.class || rc == Float.class))
+            {
+                converted = _rightAsDouble;
+            }
+
+            if (converted != null)
+            {
+                return _comparison.asBoolean(lv.compareTo(converted)) ? Boolean.TRUE : Boolean.FALSE;
+            }
+            return _comparison.compare(lv, rv);
+        }
+
+        int cost()
+        {
+            return COST_COMPARISON + _left.cost() + _right.cost();
+        }
+    }
+
+    private static final class EqualEvaluator extends ComparisonEvaluator
+    {
+        EqualEvaluator(ComparisonExpression comparison, Evaluator left, Evaluator right)
+        {
+            super(comparison, left, right);
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            Object lv = _left.evaluate(context);
+            Object rv = _right.evaluate(context);
+
+            // Iff one of the values is null
+            if ((lv == null) ^ (rv == null))
+            {
+                return Boolean.FALSE;
+            }
+
+            if ((lv == rv) || lv.equals(rv))
+            {
+                return Boolean.TRUE;
+            }
+
+            if ((lv instanceof Comparable) && (rv instanceof Comparable))
+            {
+                return compare((Comparable) lv, (Comparable) rv);
+            }
+
+            return Boolean.FALSE;
+        }
+    }
+
+    private static final class LikeEvaluator extends Evaluator
+    {
+        private final ComparisonExpression.LikeExpression _like;
+        private final Evaluator _operand;
+
+        LikeEvaluator(ComparisonExpression.LikeExpression like, Evaluator operand)
+        {
+            _like = like;
+            _operand = operand;
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            Object rv = _operand.evaluate(context);
+            if (rv == null)
+            {
+                return null;
+            }
+
+            if (!(rv instanceof String))
+            {
+                return Boolean.FALSE;
+            }
+
+            return _like.likePattern.matcher((String) rv).matches() ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        int cost()
+        {
+            return COST_LIKE + _operand.cost();
+        }
+    }
+
+    private static final class NotEvaluator extends Evaluator
+    {
+        private final Evaluator _operand;
+
+        NotEvaluator(Evaluator operand)
+        {
+            _operand = operand;
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            Boolean lvalue = (Boolean) _operand.evaluate(context);
+            if (lvalue == null)
+            {
+                return null;
+            }
+
+            return lvalue.booleanValue() ? Boolean.FALSE : Boolean.TRUE;
+        }
+
+        int cost()
+        {
+            return 1 + _operand.cost();
+        }
+    }
+
+    /**
+     * AND chain where FALSE and null outcomes must be told apart. Operands are evaluated in selector order.
+     */
+    private static final class AndEvaluator extends Evaluator
+    {
+        private final Evaluator[] _operands;
+
+        AndEvaluator(List<Evaluator> operands)
+        {
+            _operands = operands.toArray(new Evaluator[operands.size()]);
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            int last = _operands.length - 1;
+            for (int i = 0; i < last; i++)
+            {
+                Boolean value = (Boolean) _operands[i].evaluate(context);
+                if (value == null)
+                {
+                    return null;
+                }
+                if (!value.booleanValue())
+                {
+                    return Boolean.FALSE;
+                }
+            }
+            return (Boolean) _operands[last].evaluate(context);
+        }
+
+        int cost()
+        {
+            return chainCost(_operands);
+        }
+    }
+
+    /**
+     * OR chain where FALSE and null outcomes must be told apart. Operands are evaluated in selector order.
+     */
+    private static final class OrEvaluator extends Evaluator
+    {
+        private final Evaluator[] _operands;
+
+        OrEvaluator(List<Evaluator> operands)
+        {
+            _operands = operands.toArray(new Evaluator[operands.size()]);
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            int last = _operands.length - 1;
+            for (int i = 0; i < last; i++)
+            {
+                Boolean value = (Boolean) _operands[i].evaluate(context);
+                if ((value != null) && value.booleanValue())
+                {
+                    return Boolean.TRUE;
+                }
+            }
+            return (Boolean) _operands[last].evaluate(context);
+        }
+
+        int cost()
+        {
+            return chainCost(_operands);
+        }
+    }
+
+    private static int chainCost(Evaluator[] operands)
+    {
+        int cost = 0;
+        for (Evaluator operand : operands)
+        {
+            cost += operand.cost();
+        }
+        return cost;
+    }
+
+    /**
+     * AND / OR chain whose outcome only matters as matched or not. Such a chain matches if all (AND) or any (OR)
+     * operands match, regardless of the evaluation order. Therefore operands are periodically re-ordered so that the
+     * ones most likely to decide the outcome at the lowest cost are evaluated first.
+     * <p/>
+     * Statistics are gathered on a sample of the evaluations and updated without synchronisation. Lost updates only
+     * make the ordering less accurate.
+     */
+    private static final class MatchChainEvaluator extends Evaluator
+    {
+        private final boolean _isAnd;
+
+        private volatile Operand[] _operands;
+
+        private int _samples;
+
+        MatchChainEvaluator(List<Evaluator> evaluators, boolean isAnd)
+        {
+            _isAnd = isAnd;
+            Operand[] operands = new Operand[evaluators.size()];
+            for (int i = 0; i < operands.length; i++)
+            {
+                operands[i] = new Operand(evaluators.get(i));
+            }
+            // until statistics are available cheaper operands go first
+            sortByExpectedCost(operands);
+            _operands = operands;
+        }
+
+        Object evaluate(EvaluationContext context)
+        {
+            return matches(context) ? Boolean.TRUE : Boolean.FALSE;
+        }
+
+        boolean matches(EvaluationContext context)
+        {
+            if (!context.sample())
+            {
+                for (Operand operand : _operands)
+                {
+                    if (operand._evaluator.matches(context) != _isAnd)
+                    {
+                        return !_isAnd;
+                    }
+                }
+                return _isAnd;
+            }
+
+            if (++_samples % REORDER_INTERVAL == 0)
+            {
+                reorder();
+            }
+            for (Operand operand : _operands)
+            {
+                operand._evaluations++;
+                if (operand._evaluator.matches(context) != _isAnd)
+                {
+                    operand._decisions++;
+                    return !_isAnd;
+                }
+            }
+            return _isAnd;
+        }
+
+        private void reorder()
+        {
+            Operand[] operands = _operands.clone();
+            sortByExpectedCost(operands);
+            for (Operand operand : operands)
+            {
+                // decay, so that the ordering follows changes in traffic
+                operand._evaluations >>= 1;
+                operand._decisions >>= 1;
+            }
+            _operands = operands;
+        }
+
+        int cost()
+        {
+            int cost = 0;
+            for (Operand operand : _operands)
+            {
+                cost += operand._cost;
+            }
+            return cost;
+        }
+    }
+
+    private static final class Operand
+    {
+        private final Evaluator _evaluator;
+        private final int _cost;
+        private int _evaluations;
+        private int _decisions;
+
+        Operand(Evaluator evaluator)
+        {
+            _evaluator = evaluator;
+            _cost = evaluator.cost();
+        }
+
+        /**
+         * Cost of the operand divided by the probability that it decides the outcome of the chain
+         */
+        double expectedCost()
+        {
+            double decisionProbability = (_decisions + 1.0) / (_evaluations + 2.0);
+            return (_cost + 1) / decisionProbability;
+        }
+    }
+
+    /**
+     * Sort operands by expected cost. Other threads keep updating the statistics meanwhile, so the expected costs
+     * are read once up front. Comparing live values while sorting could see an inconsistent ordering.
+     */
+    private static void sortByExpectedCost(Operand[] operands)
+    {
+        double[] expectedCosts = new double[operands.length];
+        for (int i = 0; i < operands.length; i++)
+        {
+            expectedCosts[i] = operands[i].expectedCost();
+        }
+        // insertion sort, chains are short
+        for (int i = 1; i < operands.length; i++)
+        {
+            Operand operand = operands[i];
+            double expectedCost = expectedCosts[i];
+            int j = i - 1;
+            while (j >= 0 && expectedCosts[j] > expectedCost)
+            {
+                operands[j + 1] = operands[j];
+                expectedCosts[j + 1] = expectedCosts[j];
+                j--;
+            }
+            operands[j + 1] = operand;
+            expectedCosts[j + 1] = expectedCost;
+        }
+    }
+}
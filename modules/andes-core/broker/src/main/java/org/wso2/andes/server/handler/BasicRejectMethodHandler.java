@@ -20,8 +20,7 @@ package org.wso2.andes.server.handler;
 import org.wso2.andes.AMQException;
 import org.wso2.andes.amqp.QpidAndesBridge;
 import org.wso2.andes.framing.BasicRejectBody;
-import org.wso2.andes.kernel.AndesException;
-import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.kernel.Andes;
 import org.wso2.andes.protocol.AMQConstant;
 import org.wso2.andes.server.AMQChannel;
 import org.wso2.andes.server.message.AMQMessage;
@@ -126,12 +125,8 @@ public class BasicRejectMethodHandler implements StateAwareMethodListener<BasicR
             else
             {
                 _logger.warn("Dropping message as requeue not required and there is no dead letter queue");
-                try {
-                    MessagingEngine.getInstance().moveMessageToDeadLetterChannel(message.getMessage().getMessageNumber(),message.getQueue().getName());
-                } catch (AndesException e) {
-                    _logger.error("Error while moving message to DLC" , e);
-                    throw new AMQException(AMQConstant.INTERNAL_ERROR, "Error while moving message to DLC", e);
-                }
+                Andes.getInstance().moveMessageToDeadLetterChannel(message.getMessage().getMessageNumber(),
+                        message.getQueue().getName());
             }
         }
     }
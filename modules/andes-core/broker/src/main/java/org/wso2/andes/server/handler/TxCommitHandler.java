@@ -20,8 +20,6 @@ package org.wso2.andes.server.handler;
 import org.apache.log4j.Logger;
 import org.wso2.andes.AMQException;
 import org.wso2.andes.framing.TxCommitBody;
-import org.wso2.andes.framing.MethodRegistry;
-import org.wso2.andes.framing.AMQMethodBody;
 import org.wso2.andes.server.AMQChannel;
 import org.wso2.andes.server.protocol.AMQProtocolSession;
 import org.wso2.andes.server.state.AMQStateManager;
@@ -58,12 +56,9 @@ public class TxCommitHandler implements StateAwareMethodListener<TxCommitBody>
             {
                 throw body.getChannelNotFoundException(channelId);
             }
-            channel.commit();
+            // tx.commit-ok is written once Andes completes the commit. The read thread is released meanwhile.
+            session.completeCommitAsynchronously(channelId, channel.commitAsync(), body);
 
-            MethodRegistry methodRegistry = session.getMethodRegistry();
-            AMQMethodBody responseBody = methodRegistry.createTxCommitOkBody();
-            session.writeFrame(responseBody.generateFrame(channelId));
-                        
         }
         catch (AMQException e)
         {
@@ -17,6 +17,8 @@
  */
 package org.wso2.andes.server.protocol;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.log4j.Logger;
 import org.wso2.andes.AMQChannelException;
 import org.wso2.andes.AMQConnectionException;
@@ -72,12 +74,15 @@ import java.nio.ByteBuffer;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -129,6 +134,12 @@ public class AMQProtocolEngine implements ProtocolEngine, Managable, AMQProtocol
     private final List<Task> _taskList = new CopyOnWriteArrayList<Task>();
 
     private Map<Integer, Long> _closingChannelsList = new ConcurrentHashMap<Integer, Long>();
+
+    /**
+     * Frames received on channels with a pending transaction commit. They are processed in order once the commit
+     * completes, or dropped if the commit fails and the channel is closed. Only accessed from the read job.
+     */
+    private final Map<Integer, Queue<AMQFrame>> _framesAwaitingCommit = new ConcurrentHashMap<Integer, Queue<AMQFrame>>();
     private ProtocolOutputConverter _protocolOutputConverter;
     private Subject _authorizedSubject;
     private MethodDispatcher _dispatcher;
@@ -286,6 +297,14 @@ public class AMQProtocolEngine implements ProtocolEngine, Managable, AMQProtocol
         int channelId = frame.getChannel();
         AMQBody body = frame.getBodyFrame();
 
+        Queue<AMQFrame> framesAwaitingCommit = _framesAwaitingCommit.get(channelId);
+        if (framesAwaitingCommit != null)
+        {
+            // keep frame order of the channel behind the pending commit
+            framesAwaitingCommit.add(frame);
+            return;
+        }
+
         //Look up the Channel's Actor and set that as the current actor
         // If that is not available then we can use the ConnectionActor
         // that is associated with this AMQMPSession.
@@ -455,6 +474,102 @@ public class AMQProtocolEngine implements ProtocolEngine, Managable, AMQProtocol
         }
     }
 
+    public void completeCommitAsynchronously(final int channelId, final ListenableFuture<Boolean> commitFuture,
+                                             final TxCommitBody body)
+    {
+        if (commitFuture.isDone())
+        {
+            commitCompleted(channelId, commitFuture, body);
+            return;
+        }
+
+        _framesAwaitingCommit.put(channelId, new LinkedList<AMQFrame>());
+        commitFuture.addListener(new Runnable()
+        {
+            public void run()
+            {
+                // continue on the read job so that frames of the connection are still processed one at a time
+                Job.fireAsynchEvent(_poolReference.getPool(), _readJob, new Runnable()
+                {
+                    public void run()
+                    {
+                        commitCompleted(channelId, commitFuture, body);
+                    }
+                });
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * Reply to a completed commit and process frames received on the channel while the commit was pending
+     *
+     * @param channelId    channel of the transaction
+     * @param commitFuture completed commit
+     * @param body         commit request
+     */
+    private void commitCompleted(int channelId, ListenableFuture<Boolean> commitFuture, TxCommitBody body)
+    {
+        Queue<AMQFrame> framesAwaitingCommit = _framesAwaitingCommit.remove(channelId);
+
+        try
+        {
+            commitFuture.get();
+            if (getChannel(channelId) != null)
+            {
+                writeFrame(getMethodRegistry().createTxCommitOkBody().generateFrame(channelId));
+            }
+        }
+        catch (InterruptedException e)
+        {
+            // future is already complete
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            // close the channel with the error code of the failure as a failed synchronous commit did
+            Throwable cause = e.getCause();
+            AMQConstant errorCode = AMQConstant.INTERNAL_ERROR;
+            if (cause instanceof AMQException && ((AMQException) cause).getErrorCode() != null)
+            {
+                errorCode = ((AMQException) cause).getErrorCode();
+            }
+            String reason = "Failed to commit: " + cause.getMessage();
+            _logger.info(reason + " whilst processing:" + body);
+            if (getChannel(channelId) != null)
+            {
+                try
+                {
+                    writeFrame(body.getChannelException(errorCode, reason).getCloseFrame(channelId));
+                    closeChannel(channelId);
+                }
+                catch (AMQException closeException)
+                {
+                    _logger.error("Error while closing channel after failed commit.", closeException);
+                    closeProtocolSession();
+                }
+            }
+            return;
+        }
+
+        if (framesAwaitingCommit != null)
+        {
+            for (AMQFrame frame : framesAwaitingCommit)
+            {
+                try
+                {
+                    // a subsequent commit holds back the remaining frames again
+                    frameReceived(frame);
+                }
+                catch (Exception e)
+                {
+                    _logger.error("Unexpected exception when processing datablock", e);
+                    closeProtocolSession();
+                    return;
+                }
+            }
+        }
+    }
+
     public void contentHeaderReceived(int channelId, ContentHeaderBody body) throws AMQException
     {
 
@@ -17,6 +17,7 @@
  */
 package org.wso2.andes.server.protocol;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import org.wso2.andes.AMQConnectionException;
 import org.wso2.andes.AMQException;
 import org.wso2.andes.common.ClientProperties;
@@ -225,6 +226,16 @@ public interface AMQProtocolSession extends AMQVersionAwareProtocolSession, Auth
 
     void rollbackTransactions(AMQChannel channel) throws AMQException;
 
+    /**
+     * Reply to a transaction commit once it completes, without blocking the calling thread. Frames received on the
+     * channel until then are held back and processed in order after tx.commit-ok is written.
+     *
+     * @param channelId    channel of the transaction
+     * @param commitFuture pending commit
+     * @param body         commit request
+     */
+    void completeCommitAsynchronously(int channelId, ListenableFuture<Boolean> commitFuture, TxCommitBody body);
+
     List<AMQChannel> getChannels();
 
     void mgmtCloseChannel(int channelId);
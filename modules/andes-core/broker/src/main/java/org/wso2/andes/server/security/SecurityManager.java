@@ -17,6 +17,8 @@
  */
 package org.wso2.andes.server.security;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.log4j.Logger;
@@ -33,10 +35,13 @@ import javax.security.auth.Subject;
 import java.net.SocketAddress;
 import java.security.Principal;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.wso2.andes.server.security.access.ObjectType.*;
 import static org.wso2.andes.server.security.access.Operation.*;
@@ -54,12 +59,27 @@ public class SecurityManager
     
     /** Container for the {@link Principal} that is using to this thread. */
     private static final ThreadLocal<Subject> _subject = new ThreadLocal<Subject>();
-    
+
+    /** Maximum number of cached publish decisions per security manager. Zero disables caching. */
+    public static final long PUBLISH_DECISION_CACHE_SIZE = Long.getLong("qpid.security.publishDecisionCacheSize", 1000L);
+
+    /** Time a publish decision is cached, so that permission changes made outside the plugins are picked up. */
+    public static final long PUBLISH_DECISION_CACHE_EXPIRY = Long.getLong("qpid.security.publishDecisionCacheExpiry", 60000L); // 60s
+
+    /**
+     * Incremented whenever plugins of any security manager change. Virtual host security managers share the plugin
+     * map of the broker security manager, therefore a single generation covers both.
+     */
+    private static final AtomicLong _pluginGeneration = new AtomicLong();
+
     private PluginManager _pluginManager;
     private Map<String, SecurityPluginFactory> _pluginFactories = new HashMap<String, SecurityPluginFactory>();
     private Map<String, SecurityPlugin> _globalPlugins = new HashMap<String, SecurityPlugin>();
     private Map<String, SecurityPlugin> _hostPlugins = new HashMap<String, SecurityPlugin>();
 
+    /** Publish decisions by subject, exchange, routing key and plugin generation. Null if caching is disabled. */
+    private final Cache<PublishDecisionKey, Boolean> _publishDecisions = createPublishDecisionCache();
+
     public static class SecurityConfiguration extends ConfigurationPlugin
     {
         public static final ConfigurationPluginFactory FACTORY = new ConfigurationPluginFactory()
@@ -137,11 +157,13 @@ public class SecurityManager
     public void configureHostPlugins(ConfigurationPlugin hostConfig) throws ConfigurationException
     {
         _hostPlugins = configurePlugins(hostConfig);
+        _pluginGeneration.incrementAndGet();
     }
     
     public void configureGlobalPlugins(ConfigurationPlugin configuration) throws ConfigurationException
     {
         _globalPlugins = configurePlugins(configuration);
+        _pluginGeneration.incrementAndGet();
     }
 
     public Map<String, SecurityPlugin> configurePlugins(ConfigurationPlugin hostConfig) throws ConfigurationException
@@ -167,6 +189,7 @@ public class SecurityManager
     public void addHostPlugin(SecurityPlugin plugin)
     {
         _hostPlugins.put(plugin.getClass().getName(), plugin);
+        _pluginGeneration.incrementAndGet();
     }
 
     public static Logger getLogger()
@@ -181,7 +204,10 @@ public class SecurityManager
 
     private boolean checkAllPlugins(AccessCheck checker)
     {
-        HashMap<String, SecurityPlugin> remainingPlugins = new HashMap<String, SecurityPlugin>(_globalPlugins);
+        // only copied when there is something to remove from
+        Map<String, SecurityPlugin> remainingPlugins = _globalPlugins.isEmpty()
+                ? Collections.<String, SecurityPlugin>emptyMap()
+                : new HashMap<String, SecurityPlugin>(_globalPlugins);
 		
 		for (Entry<String, SecurityPlugin> hostEntry : _hostPlugins.entrySet())
         {
@@ -385,7 +411,30 @@ public class SecurityManager
         });
     }
 
+    /**
+     * Authorise publishing to an exchange. Decisions are cached per subject, exchange, routing key and immediate flag,
+     * and are discarded when plugins are reconfigured.
+     */
     public boolean authorisePublish(final boolean immediate, final String routingKey, final String exchangeName)
+    {
+        if (_publishDecisions == null)
+        {
+            return checkPublish(immediate, routingKey, exchangeName);
+        }
+
+        // Decisions of earlier plugin generations no longer match and age out of the cache
+        PublishDecisionKey key = new PublishDecisionKey(getThreadSubject(), exchangeName, routingKey, immediate,
+                                                        _pluginGeneration.get());
+        Boolean allowed = _publishDecisions.getIfPresent(key);
+        if (allowed == null)
+        {
+            allowed = checkPublish(immediate, routingKey, exchangeName);
+            _publishDecisions.put(key, allowed);
+        }
+        return allowed;
+    }
+
+    private boolean checkPublish(final boolean immediate, final String routingKey, final String exchangeName)
     {
         return checkAllPlugins(new AccessCheck()
         {
@@ -417,4 +466,69 @@ public class SecurityManager
             }
         });
     }
+
+    private static Cache<PublishDecisionKey, Boolean> createPublishDecisionCache()
+    {
+        if (PUBLISH_DECISION_CACHE_SIZE <= 0)
+        {
+            return null;
+        }
+        return CacheBuilder.newBuilder()
+                .maximumSize(PUBLISH_DECISION_CACHE_SIZE)
+                .expireAfterWrite(PUBLISH_DECISION_CACHE_EXPIRY, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Key of a cached publish decision. Subjects are compared by identity since a connection keeps the same subject.
+     */
+    private static final class PublishDecisionKey
+    {
+        private final Subject _subject;
+        private final String _exchangeName;
+        private final String _routingKey;
+        private final boolean _immediate;
+        private final long _generation;
+        private final int _hashCode;
+
+        PublishDecisionKey(Subject subject, String exchangeName, String routingKey, boolean immediate, long generation)
+        {
+            _subject = subject;
+            _exchangeName = exchangeName;
+            _routingKey = routingKey;
+            _immediate = immediate;
+            _generation = generation;
+
+            int hash = System.identityHashCode(subject);
+            hash = 31 * hash + (exchangeName == null ? 0 : exchangeName.hashCode());
+            hash = 31 * hash + (routingKey == null ? 0 : routingKey.hashCode());
+            hash = 31 * hash + (immediate ? 1 : 0);
+            _hashCode = 31 * hash + (int) (generation ^ (generation >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof PublishDecisionKey))
+            {
+                return false;
+            }
+            PublishDecisionKey other = (PublishDecisionKey) o;
+            return _subject == other._subject
+                   && _immediate == other._immediate
+                   && _generation == other._generation
+                   && (_exchangeName == null ? other._exchangeName == null : _exchangeName.equals(other._exchangeName))
+                   && (_routingKey == null ? other._routingKey == null : _routingKey.equals(other._routingKey));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return _hashCode;
+        }
+    }
 }
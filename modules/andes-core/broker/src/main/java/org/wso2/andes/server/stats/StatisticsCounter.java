@@ -19,6 +19,7 @@ package org.wso2.andes.server.stats;
 
 import java.util.Date;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +27,11 @@ import org.slf4j.LoggerFactory;
 /**
  * This class collects statistics and counts the total, rate per second and
  * peak rate per second values for the events that are registered with it. 
+ * <p/>
+ * Registering an event does not take a lock. Values are added to striped
+ * counters and the sample period is moved forward with compare and set, so
+ * that connection, virtual host and broker wide counters can be updated
+ * concurrently by all threads passing messages.
  */
 public class StatisticsCounter
 {
@@ -37,13 +43,21 @@ public class StatisticsCounter
     private static final String COUNTER = "counter";
     private static final AtomicLong _counterIds = new AtomicLong(0L);
     
-    private long _peak = 0L;
-    private long _total = 0L;
-    private long _temp = 0L;
-    private long _last = 0L;
-    private long _rate = 0L;
+    private final AtomicLong _peak = new AtomicLong();
+    private volatile StripedCounter _total;
 
-    private long _start;
+    /**
+     * Values registered in the current sample period
+     */
+    private final AtomicReference<Sample> _current = new AtomicReference<Sample>();
+
+    /**
+     * Values registered in the sample period before the current one, the
+     * rate is derived from it
+     */
+    private volatile Sample _previous;
+
+    private volatile long _start;
     
     private final long _period;
     private final String _name;
@@ -83,21 +97,26 @@ public class StatisticsCounter
         }
         
         long thisSample = (timestamp / _period);
-        synchronized (this)
+        Sample current = _current.get();
+        while (thisSample > current._sample)
         {
-            if (thisSample > _last)
+            Sample next = new Sample(thisSample);
+            if (_current.compareAndSet(current, next))
+            {
+                _previous = current;
+                updatePeak(current._count.sum());
+                current = next;
+            }
+            else
             {
-                _last = thisSample;
-                _rate = _temp;
-                _temp = 0L;
-                if (_rate > _peak)
-                {
-                    _peak = _rate;
-                }
+                current = _current.get();
             }
-            
-            _total += value;
-            _temp += value;
+        }
+
+        if (value != 0L)
+        {
+            _total.add(value);
+            current._count.add(value);
         }
     }
     
@@ -110,6 +129,25 @@ public class StatisticsCounter
         registerEvent(0L, System.currentTimeMillis());
     }
 
+    private void updatePeak(long rate)
+    {
+        long peak = _peak.get();
+        while (rate > peak && !_peak.compareAndSet(peak, rate))
+        {
+            peak = _peak.get();
+        }
+    }
+
+    /**
+     * @return values registered in the previous sample period, including
+     * values added by threads which read the period just before it ended
+     */
+    private long previousSampleCount()
+    {
+        Sample previous = _previous;
+        return previous == null ? 0L : previous._count.sum();
+    }
+
     /**
      * Reset 
      */
@@ -118,28 +156,29 @@ public class StatisticsCounter
         if (_log.isDebugEnabled()) {
             _log.debug("Resetting statistics for counter: " + _name);
         }
-        _peak = 0L;
-        _rate = 0L;
-        _total = 0L;
+        _peak.set(0L);
+        _total = new StripedCounter();
+        _previous = null;
         _start = System.currentTimeMillis();
-        _last = _start / _period;
+        _current.set(new Sample(_start / _period));
     }
 
     public double getPeak()
     {
         update();
-        return (double) _peak / ((double) _period / 1000.0d);
+        updatePeak(previousSampleCount());
+        return (double) _peak.get() / ((double) _period / 1000.0d);
     }
 
     public double getRate()
     {
         update();
-        return (double) _rate / ((double) _period / 1000.0d);
+        return (double) previousSampleCount() / ((double) _period / 1000.0d);
     }
 
     public long getTotal()
     {
-        return _total;
+        return _total.sum();
     }
 
     public long getStart()
@@ -161,4 +200,18 @@ public class StatisticsCounter
     {
         return _period;
     }
+
+    /**
+     * Values registered within one sample period
+     */
+    private static final class Sample
+    {
+        private final long _sample;
+        private final StripedCounter _count = new StripedCounter();
+
+        private Sample(long sample)
+        {
+            _sample = sample;
+        }
+    }
 }
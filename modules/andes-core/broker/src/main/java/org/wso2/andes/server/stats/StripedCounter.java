@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.andes.server.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A long sum which many threads can add to without contending on a single memory location. Values are
+ * added to a single base cell until two threads collide on it, after that each thread adds to one of a
+ * set of cells selected by its thread ID. Cells are spaced a cache line apart. The sum is the total of
+ * all cells and is not an atomic snapshot while values are being added.
+ */
+public class StripedCounter
+{
+    /**
+     * Number of longs in a cache line, cells are spaced this far apart to avoid false sharing
+     */
+    private static final int CELL_SPACING = 8;
+
+    private static final int STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLong _base = new AtomicLong();
+
+    private final AtomicReference<AtomicLongArray> _cells = new AtomicReference<AtomicLongArray>();
+
+    public void add(long value)
+    {
+        AtomicLongArray cells = _cells.get();
+        if (cells == null)
+        {
+            long current = _base.get();
+            if (_base.compareAndSet(current, current + value))
+            {
+                return;
+            }
+            // Contended, spread further additions over the cells
+            _cells.compareAndSet(null, new AtomicLongArray(STRIPES * CELL_SPACING));
+            cells = _cells.get();
+        }
+        cells.getAndAdd(cellIndex(), value);
+    }
+
+    public void increment()
+    {
+        add(1L);
+    }
+
+    public long sum()
+    {
+        long sum = _base.get();
+        AtomicLongArray cells = _cells.get();
+        if (cells != null)
+        {
+            for (int i = 0; i < cells.length(); i += CELL_SPACING)
+            {
+                sum += cells.get(i);
+            }
+        }
+        return sum;
+    }
+
+    private static int cellIndex()
+    {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 16)) * 0x9E3779B9;
+        return ((hash >>> 16) & (STRIPES - 1)) * CELL_SPACING;
+    }
+
+    /**
+     * @return smallest power of two which is at least twice the number of processors
+     */
+    private static int stripesFor(int processors)
+    {
+        int stripes = 1;
+        while (stripes < processors * 2)
+        {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
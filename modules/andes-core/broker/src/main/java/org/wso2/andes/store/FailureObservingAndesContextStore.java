@@ -27,6 +27,7 @@ import org.wso2.andes.kernel.AndesQueue;
 import org.wso2.andes.kernel.DurableStoreConnection;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
 
 import java.util.List;
 import java.util.Map;
@@ -251,6 +252,19 @@ public class FailureObservingAndesContextStore implements AndesContextStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        try {
+            wrappedInstance.updateMessageCountsForQueues(countDeltas);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -744,6 +758,19 @@ public class FailureObservingAndesContextStore implements AndesContextStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applySlotStoreChanges(SlotStoreChanges changes) throws AndesException {
+        try {
+            wrappedInstance.applySlotStoreChanges(changes);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
     /**
      * Get all assigned slots for give node
      *
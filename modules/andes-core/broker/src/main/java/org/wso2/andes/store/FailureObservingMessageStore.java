@@ -31,6 +31,7 @@ import org.wso2.andes.kernel.AndesMessagePart;
 import org.wso2.andes.kernel.AndesRemovableMetadata;
 import org.wso2.andes.kernel.DurableStoreConnection;
 import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.metrics.MessageLatencySampler;
 import org.wso2.andes.tools.utils.MessageTracer;
 
 /**
@@ -328,7 +329,7 @@ public class FailureObservingMessageStore implements MessageStore {
             wrappedInstance.deleteMessages(storageQueueName, messagesToRemove, deleteAllMetaData);
 
             //Tracing message activity
-            if (MessageTracer.isEnabled()) {
+            if (MessageTracer.isEnabled() || MessageLatencySampler.isEnabled()) {
                 for (long messageId : messagesToRemove) {
                     MessageTracer.trace(messageId, storageQueueName, MessageTracer.MESSAGE_DELETED);
                 }
@@ -538,6 +539,54 @@ public class FailureObservingMessageStore implements MessageStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveStagedMessages(String stagingQueueName, List<Long> stagedMessageIds,
+                                   List<AndesMessageMetadata> targetMetadata) throws AndesException {
+        try {
+            wrappedInstance.moveStagedMessages(stagingQueueName, stagedMessageIds, targetMetadata);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteAllMessagesOfStorageQueues(String storageQueueNamePrefix) throws AndesException {
+        try {
+            return wrappedInstance.deleteAllMessagesOfStorageQueues(storageQueueNamePrefix);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        try {
+            wrappedInstance.updateMessageCountsForQueues(countDeltas);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isMessageCountLive() {
+        return wrappedInstance.isMessageCountLive();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -577,6 +626,33 @@ public class FailureObservingMessageStore implements MessageStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, AndesMessageMetadata> getAllRetainedMetadata() throws AndesException {
+        try {
+            return wrappedInstance.getAllRetainedMetadata();
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Long, Map<Integer, AndesMessagePart>> getRetainedContentParts(List<Long> messageIDList)
+            throws AndesException {
+        try {
+            return wrappedInstance.getRetainedContentParts(messageIDList);
+        } catch (AndesStoreUnavailableException exception) {
+            notifyFailures(exception);
+            throw exception;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
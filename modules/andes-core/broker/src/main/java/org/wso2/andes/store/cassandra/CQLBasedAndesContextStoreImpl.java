@@ -18,6 +18,7 @@
 
 package org.wso2.andes.store.cassandra;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
@@ -37,6 +38,7 @@ import org.wso2.andes.kernel.AndesQueue;
 import org.wso2.andes.kernel.DurableStoreConnection;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -379,6 +381,23 @@ public class CQLBasedAndesContextStoreImpl implements AndesContextStore {
         execute(statement, "decrementing message count for queue " + destinationQueueName + " by " + decrementBy);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+
+        BatchStatement batchStatement = new BatchStatement(BatchStatement.Type.COUNTER);
+        for (Map.Entry<String, Long> entry : countDeltas.entrySet()) {
+            batchStatement.add(QueryBuilder.update(config.getKeyspace(), QUEUE_COUNTER_TABLE).
+                    with(incr(MESSAGE_COUNT, entry.getValue())).
+                    where(eq(QUEUE_NAME, entry.getKey())));
+        }
+        batchStatement.setConsistencyLevel(config.getWriteConsistencyLevel());
+
+        execute(batchStatement, "updating message counts of " + countDeltas.size() + " queues");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -697,6 +716,14 @@ public class CQLBasedAndesContextStoreImpl implements AndesContextStore {
         throw new NotImplementedException();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applySlotStoreChanges(SlotStoreChanges changes) throws AndesException {
+        throw new NotImplementedException();
+    }
+
     /**
      * {@inheritDoc}
      */
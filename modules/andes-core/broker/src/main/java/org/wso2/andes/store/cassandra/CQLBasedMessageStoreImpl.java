@@ -264,7 +264,7 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
                 batchStatement.add(psInsertMessagePart.bind(
                                 andesMessagePart.getMessageID(),
                                 andesMessagePart.getOffSet(),
-                                ByteBuffer.wrap(andesMessagePart.getData()))
+                                andesMessagePart.getDataAsByteBuffer())
                 );
             }
 
@@ -285,7 +285,7 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
             batchStatement.add(psInsertMessagePart.bind(
                             andesMessagePart.getMessageID(),
                             andesMessagePart.getOffSet(),
-                            ByteBuffer.wrap(andesMessagePart.getData()))
+                            andesMessagePart.getDataAsByteBuffer())
             );
         }
     }
@@ -998,6 +998,44 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
         contextStore.decrementMessageCountForQueue(destinationQueueName, decrementBy);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Transaction staging is not supported with Cassandra based message stores.
+     */
+    @Override
+    public void moveStagedMessages(String stagingQueueName, List<Long> stagedMessageIds,
+                                   List<AndesMessageMetadata> targetMetadata) throws AndesException {
+        throw new NotImplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Transaction staging is not supported with Cassandra based message stores.
+     */
+    @Override
+    public int deleteAllMessagesOfStorageQueues(String storageQueueNamePrefix) throws AndesException {
+        throw new NotImplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        contextStore.updateMessageCountsForQueues(countDeltas);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isMessageCountLive() {
+        // Message counts are kept in counters updated by count deltas
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1105,7 +1143,7 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
             batchStatement.add(psInsertRetainMessagePart.bind(
                     metadata.getMessageID(),
                     messagePart.getOffSet(),
-                    ByteBuffer.wrap(messagePart.getData())
+                    messagePart.getDataAsByteBuffer()
             ));
         }
 
@@ -1146,7 +1184,7 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
                                                 ifNotExists().
                     value(CQLConstants.MESSAGE_ID, messageID).
                     value(CQLConstants.MESSAGE_OFFSET, messagePart.getOffSet()).
-                    value(CQLConstants.MESSAGE_CONTENT, ByteBuffer.wrap(messagePart.getData())).
+                    value(CQLConstants.MESSAGE_CONTENT, messagePart.getDataAsByteBuffer()).
                     setConsistencyLevel(config.getWriteConsistencyLevel());
 
             execute(statement, "storing retain message content offset " + messagePart.getOffSet() +
@@ -1180,6 +1218,35 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
         return topicList;
     }
 
+    /**
+     * Get metadata of all retained messages
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, AndesMessageMetadata> getAllRetainedMetadata() throws AndesException {
+
+        Map<String, AndesMessageMetadata> metadataMap = new HashMap<>();
+
+        Statement statement = QueryBuilder.select().column(CQLConstants.TOPIC_NAME).column(CQLConstants.MESSAGE_ID).
+                column(CQLConstants.METADATA).
+                from(config.getKeyspace(), CQLConstants.RETAINED_METADATA_TABLE).
+                setConsistencyLevel(config.getReadConsistencyLevel());
+
+        ResultSet results = execute(statement, "retrieving metadata of all retained messages.");
+
+        for (Row result : results.all()) {
+            ByteBuffer buffer = result.getBytes(CQLConstants.METADATA);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            long messageId = result.getLong(CQLConstants.MESSAGE_ID);
+            metadataMap.put(result.getString(CQLConstants.TOPIC_NAME),
+                    new AndesMessageMetadata(messageId, bytes, true));
+        }
+
+        return metadataMap;
+    }
+
     /**
      * Get retain metadata for given topic destination
      *
@@ -1192,6 +1259,10 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
 
         RetainedItemData retainedItemData = getRetainedTopicID(destination);
 
+        if (null == retainedItemData) {
+            return null;
+        }
+
         Statement statement = QueryBuilder.select().column(CQLConstants.MESSAGE_ID).column(CQLConstants.METADATA).
                 from(config.getKeyspace(), CQLConstants.RETAINED_METADATA_TABLE).
                 where(eq(CQLConstants.TOPIC_ID, retainedItemData.topicID)).
@@ -1288,6 +1359,23 @@ public class CQLBasedMessageStoreImpl implements MessageStore {
     }
 
 
+    /**
+     * Get retained content parts for given message ids. Content of each message is read with a separate query since
+     * message id is the partition key of the retained content table.
+     *
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Long, Map<Integer, AndesMessagePart>> getRetainedContentParts(List<Long> messageIDList)
+            throws AndesException {
+
+        Map<Long, Map<Integer, AndesMessagePart>> contentMap = new HashMap<>(messageIDList.size());
+        for (Long messageID : messageIDList) {
+            contentMap.put(messageID, getRetainedContentParts(messageID));
+        }
+        return contentMap;
+    }
+
     /**
      * Used to store details about a retained item entry
      */
@@ -32,6 +32,7 @@ import org.wso2.andes.kernel.AndesQueue;
 import org.wso2.andes.kernel.DurableStoreConnection;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -319,6 +320,19 @@ public class HectorBasedAndesContextStoreImpl implements AndesContextStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        try {
+            HectorDataAccessHelper.updateCounters(countDeltas, HectorConstants.MESSAGE_COUNTERS_COLUMN_FAMILY,
+                    HectorConstants.MESSAGE_COUNTERS_RAW_NAME, keyspace);
+        } catch (CassandraDataAccessException e) {
+            throw new AndesException("Error while updating message counters", e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -615,6 +629,14 @@ public class HectorBasedAndesContextStoreImpl implements AndesContextStore {
         throw new NotImplementedException();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void applySlotStoreChanges(SlotStoreChanges changes) throws AndesException {
+        throw new NotImplementedException();
+    }
+
     /**
      * {@inheritDoc}
      */
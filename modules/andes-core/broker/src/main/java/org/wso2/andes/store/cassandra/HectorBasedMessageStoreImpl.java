@@ -108,6 +108,10 @@ public class HectorBasedMessageStoreImpl implements MessageStore {
         initializeCassandraMessageStore(hectorConnection);
         
         this.hectorUtils = new HectorUtils();
+
+        log.warn("Hector based message store does not store MQTT retained messages. Retained messages are "
+                + "neither kept over a restart nor delivered to subscribers of other nodes. Use the CQL or RDBMS "
+                + "based message store to retain messages.");
         return hectorConnection;
     }
 
@@ -872,6 +876,44 @@ public class HectorBasedMessageStoreImpl implements MessageStore {
         contextStore.decrementMessageCountForQueue(storageQueueName, decrementBy);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Transaction staging is not supported with Cassandra based message stores.
+     */
+    @Override
+    public void moveStagedMessages(String stagingQueueName, List<Long> stagedMessageIds,
+                                   List<AndesMessageMetadata> targetMetadata) throws AndesException {
+        throw new NotImplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Transaction staging is not supported with Cassandra based message stores.
+     */
+    @Override
+    public int deleteAllMessagesOfStorageQueues(String storageQueueNamePrefix) throws AndesException {
+        throw new NotImplementedException();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        contextStore.updateMessageCountsForQueues(countDeltas);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isMessageCountLive() {
+        // Message counts are kept in counters updated by count deltas
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -960,6 +1002,27 @@ public class HectorBasedMessageStoreImpl implements MessageStore {
         return Collections.emptyList();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, AndesMessageMetadata> getAllRetainedMetadata() throws AndesException {
+
+        // TODO: implement this method. Retained messages are not stored, which is warned when the store is initialized
+        return Collections.emptyMap();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Long, Map<Integer, AndesMessagePart>> getRetainedContentParts(List<Long> messageIDList)
+            throws AndesException {
+
+        // TODO: implement this method. Retained messages are not stored, which is warned when the store is initialized
+        return Collections.emptyMap();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -373,6 +373,38 @@ public class HectorDataAccessHelper {
         }
     }
 
+    /**
+     * Update several counters of a row with a single mutation
+     *
+     * @param columnDeltas value each counter is updated by, keyed by column name. Negative values decrement
+     * @param columnFamily column family name
+     * @param rawID        raw name
+     * @param keyspace     keyspace
+     * @throws CassandraDataAccessException
+     */
+    public static void updateCounters(Map<String, Long> columnDeltas, String columnFamily, String rawID,
+                                      Keyspace keyspace)
+            throws AndesStoreUnavailableException, CassandraDataAccessException {
+        try {
+            Mutator<String> mutator = HFactory.createMutator(keyspace, StringSerializer.get());
+            for (Map.Entry<String, Long> entry : columnDeltas.entrySet()) {
+                mutator.addCounter(rawID, columnFamily, HFactory.createCounterColumn(entry.getKey(),
+                        entry.getValue()));
+            }
+            mutator.execute();
+        } catch (HUnavailableException unavailEx) {
+            throw new AndesStoreUnavailableException("unable to meet required consitancy level for the operation",
+                                                     unavailEx);
+        } catch (HectorException e) {
+            if (e.getMessage().contains(HECTOR_CONNECTION_ERROR_MESSAGE)) {
+                throw new AndesStoreUnavailableException("Error while accessing " + columnFamily +
+                        " since cassandra connection is down", e);
+            } else {
+                throw new CassandraDataAccessException("Error while accessing:" + columnFamily, e);
+            }
+        }
+    }
+
     /**
      * Decrement counter by a given value
      *
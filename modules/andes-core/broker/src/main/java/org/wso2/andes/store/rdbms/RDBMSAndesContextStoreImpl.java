@@ -28,6 +28,7 @@ import org.wso2.andes.kernel.AndesQueue;
 import org.wso2.andes.kernel.DurableStoreConnection;
 import org.wso2.andes.kernel.slot.Slot;
 import org.wso2.andes.kernel.slot.SlotState;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
 import org.wso2.andes.metrics.MetricsConstants;
 import org.wso2.carbon.metrics.manager.Level;
 import org.wso2.carbon.metrics.manager.MetricManager;
@@ -567,6 +568,41 @@ public class RDBMSAndesContextStoreImpl implements AndesContextStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Counters are updated with a single batched statement in one transaction.
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        Context contextWrite = MetricManager.timer(Level.INFO, MetricsConstants.DB_WRITE).start();
+
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(false);
+
+            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_INCREMENT_QUEUE_COUNT);
+            for (Map.Entry<String, Long> entry : countDeltas.entrySet()) {
+                preparedStatement.setLong(1, entry.getValue());
+                preparedStatement.setString(2, entry.getKey());
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_UPDATING_QUEUE_COUNTS);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while " + RDBMSConstants
+                    .TASK_UPDATING_QUEUE_COUNTS + " for " + countDeltas.size() + " queues", e);
+        } finally {
+            contextWrite.stop();
+            close(preparedStatement, RDBMSConstants.TASK_UPDATING_QUEUE_COUNTS);
+            close(connection, RDBMSConstants.TASK_UPDATING_QUEUE_COUNTS);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1640,6 +1676,158 @@ public class RDBMSAndesContextStoreImpl implements AndesContextStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Each kind of change is written with a single batched statement.
+     */
+    @Override
+    public void applySlotStoreChanges(SlotStoreChanges changes) throws AndesException {
+        Connection connection = null;
+        List<PreparedStatement> preparedStatements = new ArrayList<>();
+        Context contextWrite = MetricManager.timer(Level.INFO, MetricsConstants.DB_WRITE).start();
+
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(false);
+
+            if (!changes.getDeletedMessageIds().isEmpty()) {
+                PreparedStatement preparedStatement = connection.prepareStatement(RDBMSConstants.PS_DELETE_MESSAGE_ID);
+                preparedStatements.add(preparedStatement);
+                for (Long messageId : changes.getDeletedMessageIds()) {
+                    preparedStatement.setLong(1, messageId);
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+
+            if (!changes.getAddedMessageIds().isEmpty()) {
+                PreparedStatement preparedStatement =
+                        connection.prepareStatement(RDBMSConstants.PS_INSERT_SLOT_MESSAGE_ID);
+                preparedStatements.add(preparedStatement);
+                for (SlotStoreChanges.MessageIdChange change : changes.getAddedMessageIds()) {
+                    preparedStatement.setString(1, change.getQueueName());
+                    preparedStatement.setLong(2, change.getMessageId());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+
+            if (!changes.getDeletedSlots().isEmpty()) {
+                PreparedStatement preparedStatement = connection.prepareStatement(RDBMSConstants.PS_DELETE_SLOT);
+                preparedStatements.add(preparedStatement);
+                for (SlotStoreChanges.SlotChange change : changes.getDeletedSlots()) {
+                    preparedStatement.setLong(1, change.getStartMessageId());
+                    preparedStatement.setLong(2, change.getEndMessageId());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+
+            if (!changes.getCreatedSlots().isEmpty()) {
+                PreparedStatement preparedStatement = connection.prepareStatement(RDBMSConstants.PS_INSERT_SLOT);
+                preparedStatements.add(preparedStatement);
+                for (SlotStoreChanges.SlotChange change : changes.getCreatedSlots()) {
+                    preparedStatement.setLong(1, change.getStartMessageId());
+                    preparedStatement.setLong(2, change.getEndMessageId());
+                    preparedStatement.setString(3, change.getQueueName());
+                    preparedStatement.setString(4, change.getNodeId());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+
+            if (!changes.getSlotAssignments().isEmpty()) {
+                PreparedStatement preparedStatement =
+                        connection.prepareStatement(RDBMSConstants.PS_INSERT_SLOT_ASSIGNMENT);
+                preparedStatements.add(preparedStatement);
+                for (SlotStoreChanges.SlotChange change : changes.getSlotAssignments()) {
+                    preparedStatement.setString(1, change.getNodeId());
+                    preparedStatement.setString(2, change.getQueueName());
+                    preparedStatement.setLong(3, change.getStartMessageId());
+                    preparedStatement.setLong(4, change.getEndMessageId());
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+            }
+
+            upsertLastIds(connection, preparedStatements, changes.getQueueToLastAssignedIds(),
+                    RDBMSConstants.PS_SELECT_QUEUE_TO_LAST_ASSIGNED_ID,
+                    RDBMSConstants.PS_UPDATE_QUEUE_TO_LAST_ASSIGNED_ID,
+                    RDBMSConstants.PS_INSERT_QUEUE_TO_LAST_ASSIGNED_ID);
+            upsertLastIds(connection, preparedStatements, changes.getNodeToLastPublishedIds(),
+                    RDBMSConstants.PS_SELECT_NODE_TO_LAST_PUBLISHED_ID,
+                    RDBMSConstants.PS_UPDATE_NODE_TO_LAST_PUBLISHED_ID,
+                    RDBMSConstants.PS_INSERT_NODE_TO_LAST_PUBLISHED_ID);
+
+            connection.commit();
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_APPLY_SLOT_STORE_CHANGES);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while " + RDBMSConstants
+                    .TASK_APPLY_SLOT_STORE_CHANGES + " count: " + changes.size(), e);
+        } finally {
+            contextWrite.stop();
+            for (PreparedStatement preparedStatement : preparedStatements) {
+                close(preparedStatement, RDBMSConstants.TASK_APPLY_SLOT_STORE_CHANGES);
+            }
+            close(connection, RDBMSConstants.TASK_APPLY_SLOT_STORE_CHANGES);
+        }
+    }
+
+    /**
+     * Write last ids keyed by queue or node in the current transaction. Existing rows are updated in one batch and
+     * missing rows inserted in another.
+     *
+     * @param connection         connection of the transaction
+     * @param preparedStatements statements to close once the transaction ends
+     * @param lastIds            last id by key
+     * @param selectQuery        query selecting the row of a key
+     * @param updateQuery        query updating the id of a key
+     * @param insertQuery        query inserting a key and id
+     * @throws SQLException
+     */
+    private void upsertLastIds(Connection connection, List<PreparedStatement> preparedStatements,
+                               Map<String, Long> lastIds, String selectQuery, String updateQuery,
+                               String insertQuery) throws SQLException {
+        if (lastIds.isEmpty()) {
+            return;
+        }
+        PreparedStatement selectStatement = connection.prepareStatement(selectQuery);
+        preparedStatements.add(selectStatement);
+        PreparedStatement updateStatement = connection.prepareStatement(updateQuery);
+        preparedStatements.add(updateStatement);
+        PreparedStatement insertStatement = connection.prepareStatement(insertQuery);
+        preparedStatements.add(insertStatement);
+
+        boolean hasUpdates = false;
+        boolean hasInserts = false;
+        for (Map.Entry<String, Long> lastId : lastIds.entrySet()) {
+            selectStatement.setString(1, lastId.getKey());
+            ResultSet resultSet = selectStatement.executeQuery();
+            try {
+                if (resultSet.next()) {
+                    updateStatement.setLong(1, lastId.getValue());
+                    updateStatement.setString(2, lastId.getKey());
+                    updateStatement.addBatch();
+                    hasUpdates = true;
+                } else {
+                    insertStatement.setString(1, lastId.getKey());
+                    insertStatement.setLong(2, lastId.getValue());
+                    insertStatement.addBatch();
+                    hasInserts = true;
+                }
+            } finally {
+                close(resultSet, RDBMSConstants.TASK_APPLY_SLOT_STORE_CHANGES);
+            }
+        }
+        if (hasUpdates) {
+            updateStatement.executeBatch();
+        }
+        if (hasInserts) {
+            insertStatement.executeBatch();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -396,6 +396,70 @@ public class RDBMSConstants {
                     " SET " + QUEUE_ID + " = ?," + METADATA + " = ?" +
                     " WHERE " + MESSAGE_ID + " = ?" +
                     " AND " + QUEUE_ID + " = ?";
+
+    /**
+     * Prepared statement to move a staged message to its destination queue under a new message ID
+     */
+    protected static final String PS_MOVE_STAGED_METADATA =
+            "UPDATE " + METADATA_TABLE +
+                    " SET " + MESSAGE_ID + " = ?," + QUEUE_ID + " = ?" +
+                    " WHERE " + MESSAGE_ID + " = ?" +
+                    " AND " + QUEUE_ID + " = ?";
+
+    /**
+     * Prepared statement to move content of a staged message to a new message ID
+     */
+    protected static final String PS_MOVE_STAGED_CONTENT =
+            "UPDATE " + CONTENT_TABLE +
+                    " SET " + MESSAGE_ID + " = ?" +
+                    " WHERE " + MESSAGE_ID + " = ?";
+
+    /**
+     * Prepared statement to read the expiry data of messages in a queue
+     */
+    protected static final String PS_SELECT_EXPIRY_DATA_OF_QUEUE =
+            "SELECT " + MESSAGE_ID + "," + EXPIRATION_TIME +
+                    " FROM " + EXPIRATION_TABLE +
+                    " WHERE " + MESSAGE_ID + " IN (" +
+                    "SELECT " + MESSAGE_ID +
+                    " FROM " + METADATA_TABLE +
+                    " WHERE " + QUEUE_ID + "=?)";
+
+    /**
+     * Queue IDs of queues whose name matches a LIKE pattern escaped with '!'. A backslash is not used as the escape
+     * character since it escapes characters within string literals of some databases.
+     */
+    protected static final String QUEUE_IDS_MATCHING_NAME =
+            "SELECT " + QUEUE_ID +
+                    " FROM " + QUEUES_TABLE +
+                    " WHERE " + QUEUE_NAME + " LIKE ? ESCAPE '!'";
+
+    /**
+     * Prepared statement to delete content of all messages in queues whose name matches a LIKE pattern
+     */
+    protected static final String PS_DELETE_CONTENT_OF_QUEUES_MATCHING_NAME =
+            "DELETE FROM " + CONTENT_TABLE +
+                    " WHERE " + MESSAGE_ID + " IN (" +
+                    "SELECT " + MESSAGE_ID +
+                    " FROM " + METADATA_TABLE +
+                    " WHERE " + QUEUE_ID + " IN (" + QUEUE_IDS_MATCHING_NAME + "))";
+
+    /**
+     * Prepared statement to delete expiry data of all messages in queues whose name matches a LIKE pattern
+     */
+    protected static final String PS_DELETE_EXPIRY_DATA_OF_QUEUES_MATCHING_NAME =
+            "DELETE FROM " + EXPIRATION_TABLE +
+                    " WHERE " + MESSAGE_ID + " IN (" +
+                    "SELECT " + MESSAGE_ID +
+                    " FROM " + METADATA_TABLE +
+                    " WHERE " + QUEUE_ID + " IN (" + QUEUE_IDS_MATCHING_NAME + "))";
+
+    /**
+     * Prepared statement to delete metadata of all messages in queues whose name matches a LIKE pattern
+     */
+    protected static final String PS_DELETE_METADATA_OF_QUEUES_MATCHING_NAME =
+            "DELETE FROM " + METADATA_TABLE +
+                    " WHERE " + QUEUE_ID + " IN (" + QUEUE_IDS_MATCHING_NAME + ")";
     /**
      * Prepared Statement to insert a new queue counter.
      */
@@ -665,6 +729,13 @@ public class RDBMSConstants {
             "SELECT " + TOPIC_NAME +
             " FROM " + RETAINED_METADATA_TABLE;
 
+    /**
+     * Prepared statement to select metadata of all retained messages
+     */
+    protected static final String PS_SELECT_ALL_RETAINED_METADATA =
+            "SELECT " + TOPIC_NAME + ", " + MESSAGE_ID + ", " + METADATA +
+            " FROM " + RETAINED_METADATA_TABLE;
+
     /**
      * Prepared statement to select retained message metadata for a given topic id
      */
@@ -681,6 +752,15 @@ public class RDBMSConstants {
             " FROM " + RETAINED_CONTENT_TABLE +
             " WHERE " + MESSAGE_ID + "=?";
 
+    /**
+     * Prepared statement prefix to select retained message content for a list of message ids. Should be completed
+     * with a "?" for each message id and a closing bracket.
+     */
+    protected static final String PS_RETRIEVE_RETAIN_MESSAGE_PARTS_FOR_IDS =
+            "SELECT " + MESSAGE_ID + ", " + MSG_OFFSET + ", " + MESSAGE_CONTENT +
+            " FROM " + RETAINED_CONTENT_TABLE +
+            " WHERE " + MESSAGE_ID + " IN (";
+
     /**
      * Prepared statement to select retained metadata for given topic name
      */
@@ -761,6 +841,7 @@ public class RDBMSConstants {
     protected static final String TASK_RETRIEVING_RETAINED_MESSAGE_PARTS = "retrieving retained " +
             "message parts.";
     protected static final String TASK_RETRIEVING_RETAINED_TOPICS = "retrieving all retained topics";
+    protected static final String TASK_RETRIEVING_RETAINED_METADATA = "retrieving all retained metadata";
     protected static final String TASK_RETRIEVING_RETAINED_TOPIC_ID = "retrieving retained " +
             " message id and topic id for given destination.";
 
@@ -793,12 +874,15 @@ public class RDBMSConstants {
     protected static final String TASK_DELETING_BINDING = "deleting binding information. ";
     protected static final String TASK_UPDATING_META_DATA_QUEUE = "updating message meta data queue.";
     protected static final String TASK_UPDATING_META_DATA = "updating message meta data.";
+    protected static final String TASK_MOVING_STAGED_MESSAGES = "moving staged messages.";
+    protected static final String TASK_DELETING_MESSAGES_OF_QUEUES = "deleting messages of queues. ";
     protected static final String TASK_ADDING_QUEUE_COUNTER = "adding counter for queue";
     protected static final String TASK_CHECK_QUEUE_COUNTER_EXIST = "checking queue counter exist";
     protected static final String TASK_RETRIEVING_QUEUE_COUNT = "retrieving queue count";
     protected static final String TASK_DELETING_QUEUE_COUNTER = "deleting queue counter";
     protected static final String TASK_INCREMENTING_QUEUE_COUNT = "incrementing queue count";
     protected static final String TASK_DECREMENTING_QUEUE_COUNT = "decrementing queue count";
+    protected static final String TASK_UPDATING_QUEUE_COUNTS = "updating queue counts";
 
     protected static final String TASK_CREATE_SLOT = "creating slot";
     protected static final String TASK_DELETE_SLOT = "deleting slot";
@@ -817,6 +901,7 @@ public class RDBMSConstants {
     protected static final String TASK_ADD_MESSAGE_ID = "adding message id";
     protected static final String TASK_DELETE_MESSAGE_ID = "deleting message ids";
     protected static final String TASK_GET_MESSAGE_IDS = "getting message ids";
+    protected static final String TASK_APPLY_SLOT_STORE_CHANGES = "applying slot store changes";
     protected static final String TASK_GET_ASSIGNED_SLOTS_BY_NODE_ID = "getting assigned slots by node id";
     protected static final String TASK_GET_ALL_SLOTS_BY_QUEUE_NAME = "getting all slots by queue name";
     protected static final String TASK_GET_OVERLAPPED_SLOT = "getting overlapped slot";
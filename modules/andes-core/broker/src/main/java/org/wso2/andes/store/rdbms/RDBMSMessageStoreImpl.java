@@ -25,6 +25,7 @@ import static org.wso2.andes.store.rdbms.RDBMSConstants.MSG_OFFSET;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.PS_INSERT_MESSAGE_PART;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.PS_INSERT_METADATA;
 import static org.wso2.andes.store.rdbms.RDBMSConstants.TASK_RETRIEVING_CONTENT_FOR_MESSAGES;
+import java.io.ByteArrayInputStream;
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -157,10 +158,30 @@ public class RDBMSMessageStoreImpl implements MessageStore {
     private void addContentToBatch(PreparedStatement preparedStatement, AndesMessagePart messagePart) throws SQLException {
         preparedStatement.setLong(1, messagePart.getMessageID());
         preparedStatement.setInt(2, messagePart.getOffSet());
-        preparedStatement.setBytes(3, messagePart.getData());
+        setContent(preparedStatement, 3, messagePart);
         preparedStatement.addBatch();
     }
 
+    /**
+     * Bind content of a message part to a prepared statement parameter. Slice content is streamed from the shared
+     * array so that it is not copied into an array of its own.
+     *
+     * @param preparedStatement prepared statement to bind to
+     * @param parameterIndex    index of the content parameter
+     * @param messagePart       message content to be stored
+     * @throws SQLException
+     */
+    private void setContent(PreparedStatement preparedStatement, int parameterIndex, AndesMessagePart messagePart)
+            throws SQLException {
+        if (messagePart.isSlice()) {
+            preparedStatement.setBinaryStream(parameterIndex,
+                    new ByteArrayInputStream(messagePart.getBackingArray(), messagePart.getDataOffset(),
+                            messagePart.getDataLength()), messagePart.getDataLength());
+        } else {
+            preparedStatement.setBytes(parameterIndex, messagePart.getData());
+        }
+    }
+
     /**
      * Add content to be removed to the prepared statement.
      * @param preparedStatement {@link java.sql.PreparedStatement}
@@ -231,7 +252,8 @@ public class RDBMSMessageStoreImpl implements MessageStore {
 
         try {
             connection = getConnection();
-            preparedStatement = connection.prepareStatement(getSelectContentPreparedStmt(messageIDList.size()));
+            preparedStatement = connection.prepareStatement(getSelectContentPreparedStmt(PS_SELECT_CONTENT_PART,
+                    messageIDList.size()));
             for (int mesageIDCounter = 0; mesageIDCounter < messageIDList.size(); mesageIDCounter++) {
                 preparedStatement.setLong(mesageIDCounter + 1, messageIDList.get(mesageIDCounter));
             }
@@ -277,13 +299,14 @@ public class RDBMSMessageStoreImpl implements MessageStore {
     /**
      * Create a prepared statement with given number of ? values set to IN operator
      *
+     * @param statementPrefix select statement ending with the opening bracket of the IN operator
      * @param messageCount number of messages that content need to be retrieved from.
      *                     CONDITION: messageCount > 0
      * @return Prepared Statement
      */
-    private String getSelectContentPreparedStmt(int messageCount) {
+    private String getSelectContentPreparedStmt(String statementPrefix, int messageCount) {
 
-        StringBuilder stmtBuilder = new StringBuilder(PS_SELECT_CONTENT_PART);
+        StringBuilder stmtBuilder = new StringBuilder(statementPrefix);
         for (int i = 0; i < messageCount - 1; i++) {
             stmtBuilder.append("?,");
         }
@@ -671,6 +694,127 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void moveStagedMessages(String stagingQueueName, List<Long> stagedMessageIds,
+                                   List<AndesMessageMetadata> targetMetadata) throws AndesException {
+        Connection connection = null;
+        PreparedStatement deleteExpiryPS = null;
+        PreparedStatement moveMetadataPS = null;
+        PreparedStatement moveContentPS = null;
+        PreparedStatement insertExpiryPS = null;
+
+        Context contextWrite = MetricManager.timer(Level.INFO, MetricsConstants.DB_WRITE).start();
+
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(false);
+
+            int stagingQueueID = getCachedQueueID(stagingQueueName);
+
+            // Expiry data refers to the metadata of the staged message ID, hence it is re-added after the move
+            Map<Long, Long> expirationTimes = getExpirationTimes(connection, stagingQueueID);
+            if (!expirationTimes.isEmpty()) {
+                deleteExpiryPS = connection.prepareStatement(RDBMSConstants.PS_DELETE_EXPIRY_DATA);
+                for (long stagedMessageId : stagedMessageIds) {
+                    if (expirationTimes.containsKey(stagedMessageId)) {
+                        deleteExpiryPS.setLong(1, stagedMessageId);
+                        deleteExpiryPS.addBatch();
+                    }
+                }
+                deleteExpiryPS.executeBatch();
+            }
+
+            moveMetadataPS = connection.prepareStatement(RDBMSConstants.PS_MOVE_STAGED_METADATA);
+            moveContentPS = connection.prepareStatement(RDBMSConstants.PS_MOVE_STAGED_CONTENT);
+            for (int i = 0; i < stagedMessageIds.size(); i++) {
+                long stagedMessageId = stagedMessageIds.get(i);
+                AndesMessageMetadata metadata = targetMetadata.get(i);
+
+                moveMetadataPS.setLong(1, metadata.getMessageID());
+                moveMetadataPS.setInt(2, getCachedQueueID(metadata.getStorageQueueName()));
+                moveMetadataPS.setLong(3, stagedMessageId);
+                moveMetadataPS.setInt(4, stagingQueueID);
+                moveMetadataPS.addBatch();
+
+                moveContentPS.setLong(1, metadata.getMessageID());
+                moveContentPS.setLong(2, stagedMessageId);
+                moveContentPS.addBatch();
+            }
+
+            int[] movedMetadataCounts = moveMetadataPS.executeBatch();
+            for (int i = 0; i < movedMetadataCounts.length; i++) {
+                if (0 == movedMetadataCounts[i]) {
+                    // Commit must not succeed partially
+                    rollback(connection, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+                    throw new AndesException("Staged message " + stagedMessageIds.get(i) + " not found in "
+                            + stagingQueueName);
+                }
+            }
+            moveContentPS.executeBatch();
+
+            if (!expirationTimes.isEmpty()) {
+                insertExpiryPS = connection.prepareStatement(RDBMSConstants.PS_INSERT_EXPIRY_DATA);
+                for (int i = 0; i < stagedMessageIds.size(); i++) {
+                    Long expirationTime = expirationTimes.get(stagedMessageIds.get(i));
+                    if (null != expirationTime) {
+                        AndesMessageMetadata metadata = targetMetadata.get(i);
+                        insertExpiryPS.setLong(1, metadata.getMessageID());
+                        insertExpiryPS.setLong(2, expirationTime);
+                        insertExpiryPS.setString(3, metadata.getStorageQueueName());
+                        insertExpiryPS.addBatch();
+                    }
+                }
+                insertExpiryPS.executeBatch();
+            }
+            connection.commit();
+
+            if (log.isDebugEnabled()) {
+                log.debug(stagedMessageIds.size() + " staged messages moved from " + stagingQueueName);
+            }
+        } catch (SQLException e) {
+            rollback(connection, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while moving staged messages from "
+                    + stagingQueueName, e);
+        } finally {
+            contextWrite.stop();
+            close(deleteExpiryPS, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+            close(moveMetadataPS, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+            close(moveContentPS, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+            close(insertExpiryPS, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+            close(connection, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+        }
+    }
+
+    /**
+     * Read the expiration time of the messages of a queue which have one
+     *
+     * @param connection SQLConnection. Connection resource is not closed within the method
+     * @param queueID    ID of the queue
+     * @return expiration time keyed by message ID
+     * @throws SQLException
+     */
+    private Map<Long, Long> getExpirationTimes(Connection connection, int queueID) throws SQLException {
+        Map<Long, Long> expirationTimes = new HashMap<Long, Long>();
+        PreparedStatement preparedStatement = null;
+        ResultSet resultSet = null;
+        try {
+            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_SELECT_EXPIRY_DATA_OF_QUEUE);
+            preparedStatement.setInt(1, queueID);
+            resultSet = preparedStatement.executeQuery();
+            while (resultSet.next()) {
+                expirationTimes.put(resultSet.getLong(RDBMSConstants.MESSAGE_ID),
+                        resultSet.getLong(RDBMSConstants.EXPIRATION_TIME));
+            }
+        } finally {
+            close(resultSet, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+            close(preparedStatement, RDBMSConstants.TASK_MOVING_STAGED_MESSAGES);
+        }
+        return expirationTimes;
+    }
+
     /**
      * Adds a single metadata to a batch insert of metadata
      *
@@ -1493,6 +1637,56 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int deleteAllMessagesOfStorageQueues(String storageQueueNamePrefix) throws AndesException {
+        Connection connection = null;
+        PreparedStatement deleteExpiryPS = null;
+        PreparedStatement deleteContentPS = null;
+        PreparedStatement deleteMetadataPS = null;
+        Context contextWrite = MetricManager.timer(Level.INFO, MetricsConstants.DB_WRITE).start();
+        String task = RDBMSConstants.TASK_DELETING_MESSAGES_OF_QUEUES + storageQueueNamePrefix;
+
+        // Match the prefix literally
+        String queueNamePattern = storageQueueNamePrefix.replace("!", "!!").replace("%", "!%").replace("_", "!_")
+                + "%";
+
+        try {
+            connection = getConnection();
+            connection.setAutoCommit(false);
+
+            // Expiry data refers to the metadata, hence it is deleted first
+            deleteExpiryPS = connection.prepareStatement(
+                    RDBMSConstants.PS_DELETE_EXPIRY_DATA_OF_QUEUES_MATCHING_NAME);
+            deleteExpiryPS.setString(1, queueNamePattern);
+            deleteExpiryPS.executeUpdate();
+
+            deleteContentPS = connection.prepareStatement(RDBMSConstants.PS_DELETE_CONTENT_OF_QUEUES_MATCHING_NAME);
+            deleteContentPS.setString(1, queueNamePattern);
+            deleteContentPS.executeUpdate();
+
+            deleteMetadataPS = connection.prepareStatement(
+                    RDBMSConstants.PS_DELETE_METADATA_OF_QUEUES_MATCHING_NAME);
+            deleteMetadataPS.setString(1, queueNamePattern);
+            int deletedMessageCount = deleteMetadataPS.executeUpdate();
+
+            connection.commit();
+            return deletedMessageCount;
+        } catch (SQLException e) {
+            rollback(connection, task);
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while deleting messages of queues starting with "
+                    + storageQueueNamePrefix, e);
+        } finally {
+            contextWrite.stop();
+            close(deleteExpiryPS, task);
+            close(deleteContentPS, task);
+            close(deleteMetadataPS, task);
+            close(connection, task);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1716,6 +1910,23 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         // Message count is taken from DB itself. No need to implement this
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateMessageCountsForQueues(Map<String, Long> countDeltas) throws AndesException {
+        // Message count is taken from DB itself. No need to implement this
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isMessageCountLive() {
+        // Message count is taken from DB itself
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -1925,7 +2136,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             for (AndesMessagePart messagePart : message.getContentChunkList()) {
                 insertContentPreparedStatement.setLong(1, metadata.getMessageID());
                 insertContentPreparedStatement.setInt(2, messagePart.getOffSet());
-                insertContentPreparedStatement.setBytes(3, messagePart.getData());
+                setContent(insertContentPreparedStatement, 3, messagePart);
                 insertContentPreparedStatement.addBatch();
             }
         }
@@ -1996,7 +2207,7 @@ public class RDBMSMessageStoreImpl implements MessageStore {
             for (AndesMessagePart messagePart : message.getContentChunkList()) {
                 preparedStatementForContent.setLong(1, messageID);
                 preparedStatementForContent.setInt(2, messagePart.getOffSet());
-                preparedStatementForContent.setBytes(3, messagePart.getData());
+                setContent(preparedStatementForContent, 3, messagePart);
                 preparedStatementForContent.addBatch();
             }
 
@@ -2047,6 +2258,39 @@ public class RDBMSMessageStoreImpl implements MessageStore {
     }
 
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, AndesMessageMetadata> getAllRetainedMetadata() throws AndesException {
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet results = null;
+        Map<String, AndesMessageMetadata> metadataMap = new HashMap<>();
+        Context contextRead = MetricManager.timer(Level.INFO, MetricsConstants.DB_READ).start();
+        try {
+            connection = getConnection();
+
+            preparedStatement = connection.prepareStatement(RDBMSConstants.PS_SELECT_ALL_RETAINED_METADATA);
+            results = preparedStatement.executeQuery();
+
+            while (results.next()) {
+                byte[] b = results.getBytes(RDBMSConstants.METADATA);
+                long messageId = results.getLong(RDBMSConstants.MESSAGE_ID);
+                metadataMap.put(results.getString(RDBMSConstants.TOPIC_NAME),
+                        new AndesMessageMetadata(messageId, b, true));
+            }
+        } catch (SQLException e) {
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while reading retained metadata ", e);
+        } finally {
+            contextRead.stop();
+            close(results, RDBMSConstants.TASK_RETRIEVING_RETAINED_METADATA);
+            close(preparedStatement, RDBMSConstants.TASK_RETRIEVING_RETAINED_METADATA);
+            close(connection, RDBMSConstants.TASK_RETRIEVING_RETAINED_METADATA);
+        }
+        return metadataMap;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2064,6 +2308,10 @@ public class RDBMSMessageStoreImpl implements MessageStore {
 
             RetainedItemData retainedItemData = getRetainedTopicID(connection, destination);
 
+            if (null == retainedItemData) {
+                return null;
+            }
+
             preparedStatement = connection.prepareStatement(RDBMSConstants.PS_SELECT_RETAINED_METADATA);
             preparedStatement.setLong(1, retainedItemData.topicID);
 
@@ -2132,6 +2380,57 @@ public class RDBMSMessageStoreImpl implements MessageStore {
         return contentParts;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Long, Map<Integer, AndesMessagePart>> getRetainedContentParts(List<Long> messageIDList)
+            throws AndesException {
+
+        Map<Long, Map<Integer, AndesMessagePart>> contentMap = new HashMap<>(messageIDList.size());
+
+        if (messageIDList.isEmpty()) {
+            return contentMap;
+        }
+
+        Connection connection = null;
+        PreparedStatement preparedStatement = null;
+        ResultSet results = null;
+
+        Context contextRead = MetricManager.timer(Level.INFO, MetricsConstants.DB_READ).start();
+
+        try {
+            connection = getConnection();
+
+            preparedStatement = connection.prepareStatement(getSelectContentPreparedStmt(
+                    RDBMSConstants.PS_RETRIEVE_RETAIN_MESSAGE_PARTS_FOR_IDS, messageIDList.size()));
+            for (int i = 0; i < messageIDList.size(); i++) {
+                preparedStatement.setLong(i + 1, messageIDList.get(i));
+            }
+            results = preparedStatement.executeQuery();
+
+            while (results.next()) {
+                long messageID = results.getLong(RDBMSConstants.MESSAGE_ID);
+                int offset = results.getInt(RDBMSConstants.MSG_OFFSET);
+                Map<Integer, AndesMessagePart> contentParts = contentMap.get(messageID);
+                if (null == contentParts) {
+                    contentParts = new HashMap<>();
+                    contentMap.put(messageID, contentParts);
+                }
+                contentParts.put(offset, createMessagePart(results, messageID, offset));
+            }
+        } catch (SQLException e) {
+            throw rdbmsStoreUtils.convertSQLException("Error occurred while retrieving retained message content from DB" +
+                    " for " + messageIDList.size() + " messages", e);
+        } finally {
+            contextRead.stop();
+            close(results, RDBMSConstants.TASK_RETRIEVING_RETAINED_MESSAGE_PARTS);
+            close(preparedStatement, RDBMSConstants.TASK_RETRIEVING_RETAINED_MESSAGE_PARTS);
+            close(connection, RDBMSConstants.TASK_RETRIEVING_RETAINED_MESSAGE_PARTS);
+        }
+        return contentMap;
+    }
+
     /**
      * {@inheritDoc} Check if data can be inserted, read and finally deleted
      * from the database.
@@ -27,6 +27,7 @@ import org.wso2.andes.configuration.AndesConfigurationManager;
 import org.wso2.andes.configuration.enums.AndesConfiguration;
 import org.wso2.andes.kernel.*;
 import org.wso2.andes.kernel.disruptor.inbound.InboundSubscriptionEvent;
+import org.wso2.andes.protocol.AMQConstant;
 import org.wso2.andes.server.AMQChannel;
 import org.wso2.andes.server.ClusterResourceHolder;
 import org.wso2.andes.server.exchange.DirectExchange;
@@ -39,7 +40,6 @@ import org.wso2.andes.server.subscription.SubscriptionImpl;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -73,6 +73,11 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
      */
     private List<DeliveryRule> deliveryRulesList = new ArrayList<DeliveryRule>();
 
+    /**
+     * Whether the subscription has selectors that need to be evaluated before scheduling messages to it
+     */
+    private boolean hasMessageFilters = false;
+
     /**
      * Count sent but not acknowledged message count for channel of the subscriber
      */
@@ -83,8 +88,7 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
     /**
      * Map to track messages being sent <message id, MsgData reference>
      */
-    private final ConcurrentHashMap<Long, MessageData> messageSendingTracker
-            = new ConcurrentHashMap<Long, MessageData>();
+    private final MessageDataMap messageSendingTracker = new MessageDataMap(1);
 
     public AMQPLocalSubscription(AMQQueue amqQueue, Subscription amqpSubscription, String subscriptionID, String destination,
                                  boolean isBoundToTopic, boolean isExclusive, boolean isDurable,
@@ -108,6 +112,7 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
 
         if (amqpSubscription != null && amqpSubscription instanceof SubscriptionImpl.AckSubscription) {
             channel = ((SubscriptionImpl.AckSubscription) amqpSubscription).getChannel();
+            hasMessageFilters = ((SubscriptionImpl) amqpSubscription).filtersMessages();
             initializeDeliveryRules();
         }
     }
@@ -161,6 +166,30 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
         }
     }
 
+    @Override
+    public int getRemainingCredit() {
+        return Math.max(0, maxNumberOfUnAckedMessages - unAckedMsgCount.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Selectors are evaluated against the message header decoded from metadata. Content is not needed.
+     */
+    @Override
+    public boolean hasInterest(AndesMessageMetadata messageMetadata) throws AndesException {
+        if (!hasMessageFilters) {
+            return true;
+        }
+        AMQMessage message = AMQPUtils.getAMQMessageFromAndesMetaData(messageMetadata);
+        QueueEntry queueEntry = AMQPUtils.convertAMQMessageToQueueEntry(message, amqQueue);
+        boolean interested = amqpSubscription.hasInterest(queueEntry);
+        if (!interested && log.isDebugEnabled()) {
+            log.debug("Subscription " + this + " is not interested in message id= " + messageMetadata.getMessageID());
+        }
+        return interested;
+    }
+
     @Override
     public void ackReceived(long messageID) {
         messageSendingTracker.remove(messageID);
@@ -179,6 +208,29 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
         unAckedMsgCount.set(0);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The AMQP channel of the subscription is closed.
+     */
+    @Override
+    public boolean forceDisconnect(String reason) throws AndesException {
+        AMQChannel subscriptionChannel = channel;
+        if (subscriptionChannel == null && amqpSubscription instanceof SubscriptionImpl) {
+            subscriptionChannel = ((SubscriptionImpl) amqpSubscription).getChannel();
+        }
+        if (subscriptionChannel == null) {
+            return false;
+        }
+        try {
+            subscriptionChannel.getConnectionModel().closeSession(subscriptionChannel, AMQConstant.RESOURCE_ERROR,
+                    reason);
+        } catch (AMQException e) {
+            throw new AndesException("Error while disconnecting subscription " + this, e);
+        }
+        return true;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -215,7 +267,7 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
             // All the Queues and Durable Topics related messages are adding to DLC
             if (!isBoundToTopic || isDurable){
                 messageSendingTracker.remove(message.getMessageId());
-                MessagingEngine.getInstance().moveMessageToDeadLetterChannel(message.getMessageId(), destinationQueue);
+                Andes.getInstance().moveMessageToDeadLetterChannel(message.getMessageId(), destinationQueue);
             }
         }
     }
@@ -268,7 +320,7 @@ public class AMQPLocalSubscription extends InboundSubscriptionEvent {
 
         if (null == messageData) {
             messageData = OnflightMessageTracker.getInstance().getTrackingData(messageID);
-            messageSendingTracker.put(messageID, messageData);
+            messageSendingTracker.put(messageData);
         }
         // increase delivery count
         int numOfCurrentDeliveries = messageData.incrementDeliveryCount(getChannelID());
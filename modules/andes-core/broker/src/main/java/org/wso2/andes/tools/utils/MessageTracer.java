@@ -22,9 +22,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wso2.andes.kernel.AndesMessage;
 import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.metrics.MessageLatencySampler;
 
 /**
- * Purpose of this class is to log message activities
+ * Purpose of this class is to log message activities. Activities of sampled messages are also timed by
+ * {@link MessageLatencySampler}.
  */
 public class MessageTracer {
 
@@ -55,6 +57,7 @@ public class MessageTracer {
      * @param content message activity
      */
     public static void trace(long messageId, String destination, String content) {
+        MessageLatencySampler.checkpoint(messageId, destination, content);
         if (log.isTraceEnabled()) {
 	        StringBuilder messageContent = new StringBuilder();
 	        messageContent.append("Message { Destination: ");
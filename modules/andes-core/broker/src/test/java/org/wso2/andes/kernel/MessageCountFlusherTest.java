@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link MessageCountFlusher}
+ */
+public class MessageCountFlusherTest {
+
+    private static final String QUEUE_NAME = "testQueue";
+
+    private TestMessageStore testStore;
+
+    private MessageCountFlusher messageCountFlusher;
+
+    @Before
+    public void setUp() {
+        testStore = new TestMessageStore();
+        MessageStore messageStore = (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class[]{MessageStore.class}, testStore);
+        messageCountFlusher = new MessageCountFlusher(messageStore);
+    }
+
+    /**
+     * Count updates should be served from memory and reach the store in one update when flushed
+     */
+    @Test
+    public void testCountUpdatesAreServedFromMemoryAndFlushedTogether() throws AndesException {
+        testStore.storeCounts.put(QUEUE_NAME, 5L);
+        assertEquals(5, messageCountFlusher.getMessageCount(QUEUE_NAME));
+
+        messageCountFlusher.incrementQueueCount(QUEUE_NAME, 3);
+        messageCountFlusher.decrementQueueCount(QUEUE_NAME, 1);
+        assertEquals(7, messageCountFlusher.getMessageCount(QUEUE_NAME));
+        assertEquals(1, testStore.countReads);
+        assertTrue(testStore.countUpdates.isEmpty());
+
+        messageCountFlusher.run();
+        assertEquals(1, testStore.countUpdates.size());
+        assertEquals(Long.valueOf(2), testStore.countUpdates.get(0).get(QUEUE_NAME));
+        assertEquals(Long.valueOf(7), testStore.storeCounts.get(QUEUE_NAME));
+    }
+
+    /**
+     * Count updates recorded while the store count is read should not be lost by reconciling
+     */
+    @Test
+    public void testReconcileKeepsUpdatesRecordedDuringStoreRead() throws AndesException {
+        testStore.storeCounts.put(QUEUE_NAME, 5L);
+        assertEquals(5, messageCountFlusher.getMessageCount(QUEUE_NAME));
+        messageCountFlusher.incrementQueueCount(QUEUE_NAME, 1);
+
+        testStore.incrementOnRead = 2;
+        messageCountFlusher.reconcileMessageCounts();
+
+        assertEquals(8, messageCountFlusher.getMessageCount(QUEUE_NAME));
+        messageCountFlusher.run();
+        assertEquals(Long.valueOf(8), testStore.storeCounts.get(QUEUE_NAME));
+    }
+
+    /**
+     * Reconciling should pick up count changes made to the store by others
+     */
+    @Test
+    public void testReconcilePicksUpStoreChanges() throws AndesException {
+        testStore.storeCounts.put(QUEUE_NAME, 5L);
+        assertEquals(5, messageCountFlusher.getMessageCount(QUEUE_NAME));
+
+        testStore.storeCounts.put(QUEUE_NAME, 9L);
+        assertEquals(5, messageCountFlusher.getMessageCount(QUEUE_NAME));
+        assertEquals(9, messageCountFlusher.reconcileMessageCount(QUEUE_NAME));
+        assertEquals(9, messageCountFlusher.getMessageCount(QUEUE_NAME));
+    }
+
+    /**
+     * A removed queue should neither be flushed nor served from memory anymore
+     */
+    @Test
+    public void testRemoveQueueDropsCounts() throws AndesException {
+        testStore.storeCounts.put(QUEUE_NAME, 5L);
+        assertEquals(5, messageCountFlusher.getMessageCount(QUEUE_NAME));
+        messageCountFlusher.incrementQueueCount(QUEUE_NAME, 4);
+
+        messageCountFlusher.removeQueue(QUEUE_NAME);
+        messageCountFlusher.run();
+        assertTrue(testStore.countUpdates.isEmpty());
+
+        testStore.storeCounts.put(QUEUE_NAME, 0L);
+        assertEquals(0, messageCountFlusher.getMessageCount(QUEUE_NAME));
+        assertEquals(2, testStore.countReads);
+    }
+
+    /**
+     * Count updates recorded while the count of a store with live message counts is read should not be counted twice
+     */
+    @Test
+    public void testReconcileWithLiveStoreCounts() throws AndesException {
+        testStore.liveMessageCounts = true;
+        messageCountFlusher = new MessageCountFlusher((MessageStore) Proxy.newProxyInstance(
+                MessageStore.class.getClassLoader(), new Class[]{MessageStore.class}, testStore));
+        testStore.storeCounts.put(QUEUE_NAME, 5L);
+        assertEquals(5, messageCountFlusher.getMessageCount(QUEUE_NAME));
+
+        // Messages are stored before their count updates are recorded
+        testStore.storeCounts.put(QUEUE_NAME, 7L);
+        testStore.incrementOnRead = 2;
+        messageCountFlusher.reconcileMessageCounts();
+
+        assertEquals(7, messageCountFlusher.getMessageCount(QUEUE_NAME));
+    }
+
+    /**
+     * Count updates should be kept and flushed again if the store update fails
+     */
+    @Test
+    public void testFailedFlushIsRetried() throws AndesException {
+        messageCountFlusher.incrementQueueCount(QUEUE_NAME, 3);
+        testStore.failUpdates = true;
+        messageCountFlusher.run();
+        assertTrue(testStore.countUpdates.isEmpty());
+
+        testStore.failUpdates = false;
+        messageCountFlusher.run();
+        assertEquals(1, testStore.countUpdates.size());
+        assertEquals(Long.valueOf(3), testStore.countUpdates.get(0).get(QUEUE_NAME));
+    }
+
+    /**
+     * Message store which only keeps message counts
+     */
+    private class TestMessageStore implements InvocationHandler {
+
+        private final Map<String, Long> storeCounts = new HashMap<String, Long>();
+
+        private final List<Map<String, Long>> countUpdates = new ArrayList<Map<String, Long>>();
+
+        private int countReads;
+
+        /**
+         * Count increment recorded by the flusher while the next store count is read
+         */
+        private int incrementOnRead;
+
+        private boolean failUpdates;
+
+        private boolean liveMessageCounts;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("getMessageCountForQueue".equals(name)) {
+                countReads++;
+                Long count = storeCounts.get((String) args[0]);
+                if (incrementOnRead > 0) {
+                    messageCountFlusher.incrementQueueCount((String) args[0], incrementOnRead);
+                    incrementOnRead = 0;
+                }
+                return null == count ? 0L : count;
+            } else if ("updateMessageCountsForQueues".equals(name)) {
+                if (failUpdates) {
+                    throw new AndesException("Store is not available");
+                }
+                Map<String, Long> countDeltas = (Map<String, Long>) args[0];
+                countUpdates.add(new HashMap<String, Long>(countDeltas));
+                if (liveMessageCounts) {
+                    return null;
+                }
+                for (Map.Entry<String, Long> countDelta : countDeltas.entrySet()) {
+                    Long count = storeCounts.get(countDelta.getKey());
+                    storeCounts.put(countDelta.getKey(), (null == count ? 0L : count) + countDelta.getValue());
+                }
+                return null;
+            } else if ("isMessageCountLive".equals(name)) {
+                return liveMessageCounts;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link MessageDataMap}
+ */
+public class MessageDataMapTest {
+
+    private MessageDataMap map;
+
+    @Before
+    public void setUp() {
+        map = new MessageDataMap(4);
+    }
+
+    /**
+     * Basic put, get and remove behaviour
+     */
+    @Test
+    public void testPutGetRemove() {
+        MessageData first = createMessageData(10L);
+        assertNull(map.putIfAbsent(first));
+        assertSame(first, map.putIfAbsent(createMessageData(10L)));
+        assertSame(first, map.get(10L));
+
+        MessageData replacement = createMessageData(10L);
+        assertSame(first, map.put(replacement));
+        assertSame(replacement, map.get(10L));
+        assertEquals(1, map.size());
+
+        assertSame(replacement, map.remove(10L));
+        assertNull(map.remove(10L));
+        assertFalse(map.containsKey(10L));
+        assertTrue(map.isEmpty());
+    }
+
+    /**
+     * Entries should survive table growth and reuse of removed slots
+     */
+    @Test
+    public void testGrowthAndRemovedSlotReuse() {
+        int messageCount = 10000;
+        for (long id = 1; id <= messageCount; id++) {
+            map.put(createMessageData(id));
+        }
+        assertEquals(messageCount, map.size());
+
+        for (long id = 1; id <= messageCount; id += 2) {
+            assertEquals(id, map.remove(id).msgID);
+        }
+        for (long id = 1; id <= messageCount; id += 2) {
+            assertNull(map.putIfAbsent(createMessageData(id)));
+        }
+
+        Set<Long> ids = new HashSet<Long>();
+        for (MessageData messageData : map.values()) {
+            ids.add(messageData.msgID);
+        }
+        assertEquals(messageCount, ids.size());
+        for (long id = 1; id <= messageCount; id++) {
+            assertEquals(id, map.get(id).msgID);
+        }
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertTrue(map.values().isEmpty());
+    }
+
+    private MessageData createMessageData(long messageId) {
+        return new MessageData(messageId, null, "queue", 0L, 0L, null, 0L);
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.andes.kernel.slot.Slot;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for moving messages to the dead letter channel through {@link MessagingEngine}
+ */
+public class MessagingEngineTest {
+
+    private TestMessageStore testStore;
+
+    private Object originalMessageStore;
+
+    private Object originalMessageCountFlusher;
+
+    @Before
+    public void setUp() throws Exception {
+        testStore = new TestMessageStore();
+        MessageStore messageStore = (MessageStore) Proxy.newProxyInstance(MessageStore.class.getClassLoader(),
+                new Class[]{MessageStore.class}, testStore);
+        originalMessageStore = setEngineField("messageStore", messageStore);
+        originalMessageCountFlusher = setEngineField("messageCountFlusher", new MessageCountFlusher(messageStore));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        setEngineField("messageStore", originalMessageStore);
+        setEngineField("messageCountFlusher", originalMessageCountFlusher);
+    }
+
+    /**
+     * Message ids should be grouped by the queue they are stored in, keeping their order
+     */
+    @Test
+    public void testMessagesAreGroupedByStorageQueue() {
+        List<AndesRemovableMetadata> messages = Arrays.asList(
+                new AndesRemovableMetadata(1, "orders", "orders"),
+                new AndesRemovableMetadata(2, "payments", "payments"),
+                new AndesRemovableMetadata(3, "orders", "orders"),
+                new AndesRemovableMetadata(4, "sports.cricket", "carbon:subscriber1"),
+                new AndesRemovableMetadata(5, "orders", "orders"));
+
+        Map<String, List<Long>> messageIDsByQueue = MessagingEngine.groupByStorageQueue(messages);
+
+        assertEquals(3, messageIDsByQueue.size());
+        assertEquals(Arrays.asList(1L, 3L, 5L), messageIDsByQueue.get("orders"));
+        assertEquals(Arrays.asList(2L), messageIDsByQueue.get("payments"));
+        assertEquals(Arrays.asList(4L), messageIDsByQueue.get("carbon:subscriber1"));
+    }
+
+    /**
+     * A store failure should be retried and the messages moved once the store recovers
+     */
+    @Test
+    public void testFailedMoveIsRetried() throws AndesException {
+        String queueName = "retry.com/orders";
+        String deadLetterQueueName = "retry.com/" + AndesConstants.DEAD_LETTER_QUEUE_SUFFIX;
+        Slot slot = createSlot(queueName, 3000, 3099);
+        trackMessages(slot, 3000, 3001, 3002);
+        testStore.failures.put(deadLetterQueueName, 2);
+
+        MessagingEngine.getInstance().moveMessagesToDeadLetterChannel(Arrays.asList(
+                new AndesRemovableMetadata(3000, queueName, queueName),
+                new AndesRemovableMetadata(3001, queueName, queueName)));
+
+        assertEquals(3, testStore.moveAttempts.get(deadLetterQueueName).intValue());
+        assertEquals(Arrays.asList(3000L, 3001L), testStore.movedMessageIDs.get(deadLetterQueueName));
+        assertEquals(2, MessagingEngine.getInstance().getMessageCountOfQueue(deadLetterQueueName));
+        assertEquals(1, OnflightMessageTracker.getInstance().getPendingMessageCount(slot));
+        assertNull(OnflightMessageTracker.getInstance().getTrackingData(3000));
+    }
+
+    /**
+     * Messages which could not be moved should release their slot, messages of other queues should still be
+     * moved and the failure should be thrown
+     */
+    @Test
+    public void testFailedMoveReleasesTracking() throws AndesException {
+        String failingQueueName = "failing.com/orders";
+        String failingDeadLetterQueueName = "failing.com/" + AndesConstants.DEAD_LETTER_QUEUE_SUFFIX;
+        String queueName = "working.com/orders";
+        String deadLetterQueueName = "working.com/" + AndesConstants.DEAD_LETTER_QUEUE_SUFFIX;
+        Slot failingSlot = createSlot(failingQueueName, 4000, 4099);
+        Slot slot = createSlot(queueName, 4100, 4199);
+        trackMessages(failingSlot, 4000, 4001, 4002);
+        trackMessages(slot, 4100, 4101);
+        testStore.failures.put(failingDeadLetterQueueName, Integer.MAX_VALUE);
+
+        try {
+            MessagingEngine.getInstance().moveMessagesToDeadLetterChannel(Arrays.asList(
+                    new AndesRemovableMetadata(4000, failingQueueName, failingQueueName),
+                    new AndesRemovableMetadata(4100, queueName, queueName),
+                    new AndesRemovableMetadata(4001, failingQueueName, failingQueueName)));
+            fail("Failure to move messages should be thrown");
+        } catch (AndesException e) {
+            assertNotNull(e.getCause());
+        }
+
+        assertEquals(3, testStore.moveAttempts.get(failingDeadLetterQueueName).intValue());
+        assertNull(testStore.movedMessageIDs.get(failingDeadLetterQueueName));
+        assertEquals(0, MessagingEngine.getInstance().getMessageCountOfQueue(failingDeadLetterQueueName));
+        assertEquals(1, OnflightMessageTracker.getInstance().getPendingMessageCount(failingSlot));
+        assertNull(OnflightMessageTracker.getInstance().getTrackingData(4000));
+        assertNull(OnflightMessageTracker.getInstance().getTrackingData(4001));
+
+        assertEquals(Arrays.asList(4100L), testStore.movedMessageIDs.get(deadLetterQueueName));
+        assertEquals(1, MessagingEngine.getInstance().getMessageCountOfQueue(deadLetterQueueName));
+        assertEquals(1, OnflightMessageTracker.getInstance().getPendingMessageCount(slot));
+    }
+
+    private static Object setEngineField(String name, Object value) throws Exception {
+        Field field = MessagingEngine.class.getDeclaredField(name);
+        field.setAccessible(true);
+        Object previousValue = field.get(MessagingEngine.getInstance());
+        field.set(MessagingEngine.getInstance(), value);
+        return previousValue;
+    }
+
+    private static Slot createSlot(String queueName, long start, long end) {
+        Slot slot = new Slot(start, end, queueName);
+        slot.setStorageQueueName(queueName);
+        return slot;
+    }
+
+    /**
+     * Buffer messages of a slot as the slot delivery worker would after reading them
+     */
+    private static void trackMessages(Slot slot, long... messageIDs) {
+        OnflightMessageTracker.getInstance().incrementMessageCountInSlot(slot, messageIDs.length);
+        for (long messageID : messageIDs) {
+            AndesMessageMetadata metadata = new AndesMessageMetadata();
+            metadata.setMessageID(messageID);
+            metadata.setStorageQueueName(slot.getStorageQueueName());
+            OnflightMessageTracker.getInstance().addMessageToBufferingTracker(slot, metadata);
+        }
+    }
+
+    /**
+     * Message store which records messages moved to dead letter queues, fails moves on demand and keeps message
+     * counts
+     */
+    private static class TestMessageStore implements InvocationHandler {
+
+        /**
+         * Number of moves to fail, by dead letter queue
+         */
+        private final Map<String, Integer> failures = new HashMap<String, Integer>();
+
+        private final Map<String, Integer> moveAttempts = new HashMap<String, Integer>();
+
+        private final Map<String, List<Long>> movedMessageIDs = new HashMap<String, List<Long>>();
+
+        private final Map<String, Long> storeCounts = new HashMap<String, Long>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("moveMetadataToDLC".equals(name) && args[0] instanceof List) {
+                String deadLetterQueueName = (String) args[1];
+                Integer attempts = moveAttempts.get(deadLetterQueueName);
+                moveAttempts.put(deadLetterQueueName, null == attempts ? 1 : attempts + 1);
+
+                Integer failuresLeft = failures.get(deadLetterQueueName);
+                if (null != failuresLeft && failuresLeft > 0) {
+                    failures.put(deadLetterQueueName, failuresLeft - 1);
+                    throw new AndesException("Store is not available");
+                }
+                movedMessageIDs.put(deadLetterQueueName, new ArrayList<Long>((List<Long>) args[0]));
+                return null;
+            } else if ("getMessageCountForQueue".equals(name)) {
+                Long count = storeCounts.get((String) args[0]);
+                return null == count ? 0L : count;
+            } else if ("updateMessageCountsForQueues".equals(name)) {
+                for (Map.Entry<String, Long> countDelta : ((Map<String, Long>) args[0]).entrySet()) {
+                    Long count = storeCounts.get(countDelta.getKey());
+                    storeCounts.put(countDelta.getKey(), (null == count ? 0L : count) + countDelta.getValue());
+                }
+                return null;
+            } else if ("isMessageCountLive".equals(name)) {
+                return false;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
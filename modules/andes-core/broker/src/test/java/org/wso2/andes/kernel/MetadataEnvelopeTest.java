@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.junit.Test;
+import org.wso2.andes.amqp.AMQPUtils;
+import org.wso2.andes.framing.AMQShortString;
+import org.wso2.andes.framing.BasicContentHeaderProperties;
+import org.wso2.andes.framing.ContentHeaderBody;
+import org.wso2.andes.framing.abstraction.MessagePublishInfoImpl;
+import org.wso2.andes.mqtt.MQTTMessageMetaData;
+import org.wso2.andes.mqtt.utils.MQTTUtils;
+import org.wso2.andes.server.message.MessageMetaData;
+import org.wso2.andes.server.store.MessageMetaDataType;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link MetadataEnvelope}
+ */
+public class MetadataEnvelopeTest {
+
+    private static final long MESSAGE_ID = 42;
+
+    private static final long EXPIRATION = 1500000000000L;
+
+    private static final long ARRIVAL_TIME = 1400000000000L;
+
+    private static final int CONTENT_SIZE = 2048;
+
+    /**
+     * Metadata read from an envelope has the fields of metadata parsed from the protocol header
+     */
+    @Test
+    public void testEnvelopeMatchesParsedHeader() {
+        byte[] protocolMetadata = createAMQPMetadata("amq.topic", "stocks.wso2");
+        AndesMessageMetadata parsed = new AndesMessageMetadata(MESSAGE_ID, protocolMetadata, true);
+
+        byte[] envelope = parsed.getMetadata();
+        assertTrue(MetadataEnvelope.isEnvelope(envelope));
+        AndesMessageMetadata read = new AndesMessageMetadata(MESSAGE_ID, envelope, true);
+
+        assertEquals(parsed.getDestination(), read.getDestination());
+        assertEquals(parsed.isTopic(), read.isTopic());
+        assertEquals(parsed.isPersistent(), read.isPersistent());
+        assertEquals(EXPIRATION, read.getExpirationTime());
+        assertEquals(ARRIVAL_TIME, read.getArrivalTime());
+        assertEquals(CONTENT_SIZE, read.getMessageContentLength());
+        assertEquals(7, read.getPriority());
+        assertEquals(MessageMetaDataType.META_DATA_0_8, read.getMetaDataType());
+        assertNull(read.getExchangeOverride());
+        assertArrayEquals(protocolMetadata, read.getProtocolMetadata());
+        assertArrayEquals(envelope, read.getMetadata());
+    }
+
+    /**
+     * Metadata written before the envelope is read by parsing the protocol header
+     */
+    @Test
+    public void testReadPlainProtocolMetadata() {
+        byte[] protocolMetadata = createAMQPMetadata("amq.direct", "orders");
+        assertFalse(MetadataEnvelope.isEnvelope(protocolMetadata));
+
+        AndesMessageMetadata read = new AndesMessageMetadata(MESSAGE_ID, protocolMetadata, true);
+
+        assertEquals("orders", read.getDestination());
+        assertFalse(read.isTopic());
+        assertTrue(read.isPersistent());
+        assertEquals(EXPIRATION, read.getExpirationTime());
+        assertEquals(CONTENT_SIZE, read.getMessageContentLength());
+        assertArrayEquals(protocolMetadata, read.getProtocolMetadata());
+    }
+
+    /**
+     * An overridden destination is kept in the envelope and applied to the protocol header on delivery
+     */
+    @Test
+    public void testDestinationOverride() {
+        byte[] protocolMetadata = createAMQPMetadata("amq.topic", "stocks.wso2");
+        AndesMessageMetadata original = new AndesMessageMetadata(MESSAGE_ID, protocolMetadata, true);
+        AndesMessageMetadata clone = original.shallowCopy(MESSAGE_ID + 1);
+        clone.updateMetadata("carbon:durableSubscriber", AMQPUtils.DIRECT_EXCHANGE_NAME);
+
+        assertArrayEquals(protocolMetadata, clone.getProtocolMetadata());
+        AndesMessageMetadata read = new AndesMessageMetadata(MESSAGE_ID + 1, clone.getMetadata(), true);
+        assertEquals("carbon:durableSubscriber", read.getDestination());
+        assertEquals(AMQPUtils.DIRECT_EXCHANGE_NAME, read.getExchangeOverride());
+        assertFalse(read.isTopic());
+        assertEquals(CONTENT_SIZE, read.getMessageContentLength());
+
+        MessageMetaData delivered = (MessageMetaData) AMQPUtils.convertAndesMetadataToAMQMetadata(read);
+        assertEquals("carbon:durableSubscriber", delivered.getMessagePublishInfo().getRoutingKey().toString());
+        assertEquals(AMQPUtils.DIRECT_EXCHANGE_NAME, delivered.getMessagePublishInfo().getExchange().toString());
+        assertEquals(EXPIRATION, delivered.getMessageHeader().getExpiration());
+        assertEquals(ARRIVAL_TIME, delivered.getArrivalTime());
+        assertEquals(CONTENT_SIZE, delivered.getContentSize());
+
+        MessageMetaData undelivered = (MessageMetaData) AMQPUtils.convertAndesMetadataToAMQMetadata(original);
+        assertEquals("stocks.wso2", undelivered.getMessagePublishInfo().getRoutingKey().toString());
+    }
+
+    /**
+     * MQTT metadata keeps qos level and the overridden storage queue
+     */
+    @Test
+    public void testMQTTDestinationOverride() {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setMessageID(MESSAGE_ID);
+        metadata.setTopic(true);
+        metadata.setDestination("sensors/1");
+        metadata.setPersistent(true);
+        metadata.setQosLevel(1);
+        metadata.setMessageContentLength(CONTENT_SIZE);
+        metadata.setMetaDataType(MessageMetaDataType.META_DATA_MQTT);
+        metadata.setMetadata(MQTTUtils.encodeMetaInfo(MQTTUtils.MQTT_META_INFO, MESSAGE_ID, true, 1, "sensors/1",
+                true, CONTENT_SIZE));
+
+        metadata.updateMetadata("carbon:client1", AMQPUtils.DIRECT_EXCHANGE_NAME);
+        assertEquals("carbon:client1", metadata.getStorageQueueName());
+
+        AndesMessageMetadata read = new AndesMessageMetadata(MESSAGE_ID, metadata.getMetadata(), true);
+        assertEquals("carbon:client1", read.getDestination());
+        assertEquals(1, read.getQosLevel());
+        assertFalse(read.isTopic());
+
+        MQTTMessageMetaData delivered = (MQTTMessageMetaData) AMQPUtils.convertAndesMetadataToAMQMetadata(read);
+        assertEquals("carbon:client1", delivered.getDestination());
+        assertEquals(CONTENT_SIZE, delivered.getContentSize());
+        assertFalse(delivered.isTopic());
+    }
+
+    private static byte[] createAMQPMetadata(String exchange, String routingKey) {
+        BasicContentHeaderProperties properties = new BasicContentHeaderProperties();
+        properties.setDeliveryMode((byte) BasicContentHeaderProperties.PERSISTENT);
+        properties.setExpiration(EXPIRATION);
+        properties.setPriority((byte) 7);
+        ContentHeaderBody contentHeaderBody = new ContentHeaderBody(60, 0, properties, CONTENT_SIZE);
+        MessageMetaData metaData = new MessageMetaData(new MessagePublishInfoImpl(new AMQShortString(exchange), false,
+                false, new AMQShortString(routingKey)), contentHeaderBody, 1L, 1, ARRIVAL_TIME);
+
+        byte[] underlying = new byte[1 + metaData.getStorableSize()];
+        underlying[0] = (byte) metaData.getType().ordinal();
+        ByteBuffer buf = ByteBuffer.wrap(underlying);
+        buf.position(1);
+        metaData.writeToBuffer(0, buf.slice());
+        return underlying;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel;
+
+import org.junit.Test;
+import org.wso2.andes.kernel.slot.Slot;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for {@link OnflightMessageTracker}
+ */
+public class OnflightMessageTrackerTest {
+
+    private static final String QUEUE_NAME = "trackerTestQueue";
+
+    /**
+     * Messages moved to the dead letter channel should be decremented from the slot they were read in, once per
+     * slot for the whole batch
+     */
+    @Test
+    public void testMovedMessagesAreDecrementedFromTheirSlots() throws AndesException {
+        OnflightMessageTracker tracker = OnflightMessageTracker.getInstance();
+        Slot firstSlot = createSlot(1000, 1099);
+        Slot secondSlot = createSlot(1100, 1199);
+        trackMessages(tracker, firstSlot, 1000, 1001, 1002);
+        trackMessages(tracker, secondSlot, 1100, 1101);
+
+        tracker.stampMessagesAsDLCAndRemoveFromTacking(Arrays.asList(1000L, 1100L, 1002L));
+
+        assertEquals(1, tracker.getPendingMessageCount(firstSlot));
+        assertEquals(1, tracker.getPendingMessageCount(secondSlot));
+        assertNull(tracker.getTrackingData(1000));
+        assertNull(tracker.getTrackingData(1002));
+        assertNull(tracker.getTrackingData(1100));
+        assertEquals(firstSlot, tracker.getTrackingData(1001).slot);
+        assertFalse(tracker.checkIfMessageIsAlreadyBuffered(firstSlot, 1000));
+        assertFalse(tracker.checkIfMessageIsAlreadyBuffered(secondSlot, 1100));
+    }
+
+    /**
+     * Messages which are not tracked, for example already acknowledged ones, should not change slot counts
+     */
+    @Test
+    public void testUntrackedMessagesAreSkipped() throws AndesException {
+        OnflightMessageTracker tracker = OnflightMessageTracker.getInstance();
+        Slot slot = createSlot(2000, 2099);
+        trackMessages(tracker, slot, 2000, 2001);
+
+        tracker.stampMessagesAsDLCAndRemoveFromTacking(Arrays.asList(2000L, 2050L, 2000L));
+
+        assertEquals(1, tracker.getPendingMessageCount(slot));
+        assertNull(tracker.getTrackingData(2000));
+        assertEquals(slot, tracker.getTrackingData(2001).slot);
+    }
+
+    private static Slot createSlot(long start, long end) {
+        Slot slot = new Slot(start, end, QUEUE_NAME);
+        slot.setStorageQueueName(QUEUE_NAME);
+        return slot;
+    }
+
+    /**
+     * Buffer messages of a slot as the slot delivery worker would after reading them
+     */
+    private static void trackMessages(OnflightMessageTracker tracker, Slot slot, long... messageIDs) {
+        tracker.incrementMessageCountInSlot(slot, messageIDs.length);
+        for (long messageID : messageIDs) {
+            AndesMessageMetadata metadata = new AndesMessageMetadata();
+            metadata.setMessageID(messageID);
+            metadata.setDestination(QUEUE_NAME);
+            metadata.setStorageQueueName(QUEUE_NAME);
+            tracker.addMessageToBufferingTracker(slot, metadata);
+        }
+    }
+}
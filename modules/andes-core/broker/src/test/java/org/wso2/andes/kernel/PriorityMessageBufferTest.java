@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link PriorityMessageBuffer}
+ */
+public class PriorityMessageBufferTest {
+
+    private PriorityMessageBuffer buffer;
+
+    @Before
+    public void setUp() {
+        buffer = new PriorityMessageBuffer();
+    }
+
+    /**
+     * Messages should be iterated highest priority first and in message id order within a priority
+     */
+    @Test
+    public void testIterationOrder() {
+        buffer.add(createMessage(1, 4));
+        buffer.add(createMessage(2, 0));
+        buffer.add(createMessage(3, 9));
+        buffer.add(createMessage(4, 4));
+        buffer.add(createMessage(5, 9));
+
+        long[] expectedOrder = {3, 5, 1, 4, 2};
+        Iterator<AndesMessageMetadata> iterator = buffer.iterator();
+        for (long expectedId : expectedOrder) {
+            assertTrue(iterator.hasNext());
+            assertEquals(expectedId, iterator.next().getMessageID());
+        }
+        assertFalse(iterator.hasNext());
+        assertEquals(5, buffer.size());
+        assertEquals(2, buffer.sizeOfLane(9));
+    }
+
+    /**
+     * Removing through iterator and clearing should keep the size consistent
+     */
+    @Test
+    public void testRemoveAndClear() {
+        for (int i = 0; i < 20; i++) {
+            buffer.add(createMessage(i, i % 10));
+        }
+        // duplicates are not buffered twice
+        assertFalse(buffer.add(createMessage(0, 0)));
+
+        Iterator<AndesMessageMetadata> iterator = buffer.iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(19, buffer.size());
+
+        assertTrue(buffer.remove(createMessage(0, 0)));
+        assertFalse(buffer.contains(createMessage(0, 0)));
+        assertEquals(18, buffer.size());
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertFalse(buffer.iterator().hasNext());
+    }
+
+    /**
+     * Priorities outside the JMS range should be clamped to the nearest lane
+     */
+    @Test
+    public void testOutOfRangePriority() {
+        buffer.add(createMessage(1, -3));
+        buffer.add(createMessage(2, 42));
+
+        assertEquals(1, buffer.sizeOfLane(0));
+        assertEquals(1, buffer.sizeOfLane(9));
+        assertEquals(2, buffer.iterator().next().getMessageID());
+    }
+
+    private AndesMessageMetadata createMessage(long messageId, int priority) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setMessageID(messageId);
+        metadata.setPriority(priority);
+        return metadata;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.andes.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link ReadySubscriberScheduler}
+ */
+public class ReadySubscriberSchedulerTest {
+
+    private Set<LocalSubscription> activeSubscriptions;
+
+    @Before
+    public void setUp() {
+        activeSubscriptions = new HashSet<LocalSubscription>();
+    }
+
+    /**
+     * Subscribers should take turns receiving a batch of consecutive messages each
+     */
+    @Test
+    public void testBatchPerTurn() throws AndesException {
+        LocalSubscription first = createSubscription(100);
+        LocalSubscription second = createSubscription(100);
+        ReadySubscriberScheduler scheduler = new ReadySubscriberScheduler(2);
+        scheduler.startRound(activeSubscriptions);
+
+        LocalSubscription firstInTurn = schedule(scheduler);
+        assertSame(firstInTurn, schedule(scheduler));
+        LocalSubscription secondInTurn = schedule(scheduler);
+        assertTrue(firstInTurn != secondInTurn);
+        assertSame(secondInTurn, schedule(scheduler));
+        assertSame(firstInTurn, schedule(scheduler));
+        assertTrue(activeSubscriptions.contains(first) && activeSubscriptions.contains(second));
+    }
+
+    /**
+     * A turn should not exceed the remaining credit and saturated subscribers should be skipped until they get room
+     */
+    @Test
+    public void testSaturatedSubscriberIsParkedUntilNextRound() throws AndesException {
+        createSubscription(1);
+        createSubscription(1);
+        ReadySubscriberScheduler scheduler = new ReadySubscriberScheduler(10);
+        scheduler.startRound(activeSubscriptions);
+
+        LocalSubscription firstInTurn = schedule(scheduler);
+        LocalSubscription secondInTurn = schedule(scheduler);
+        assertTrue(firstInTurn != secondInTurn);
+        assertNull("No subscriber has room", scheduler.getCurrentSubscription());
+        assertTrue(scheduler.hasSaturatedSubscriptions());
+
+        // Ack received for the second subscriber
+        handlerOf(secondInTurn).credit = 1;
+        assertNull("Parked subscriber is checked again in the next round", scheduler.getCurrentSubscription());
+        scheduler.startRound(activeSubscriptions);
+        assertSame(secondInTurn, schedule(scheduler));
+    }
+
+    /**
+     * Messages the subscriber in turn is not interested in should go to the next interested subscriber with room
+     */
+    @Test
+    public void testUninterestedSubscriberIsSkipped() throws AndesException {
+        TestSubscription notInterested = handlerOf(createSubscription(100));
+        notInterested.interested = false;
+        LocalSubscription interested = createSubscription(100);
+        ReadySubscriberScheduler scheduler = new ReadySubscriberScheduler(1);
+        scheduler.startRound(activeSubscriptions);
+
+        for (int i = 0; i < 4; i++) {
+            LocalSubscription subscription = scheduler.getCurrentSubscription();
+            if (!subscription.hasInterest(null)) {
+                subscription = scheduler.findInterestedSubscription(null);
+            }
+            assertSame(interested, subscription);
+            scheduler.messageScheduled(subscription);
+        }
+
+        handlerOf(interested).interested = false;
+        LocalSubscription subscription = scheduler.getCurrentSubscription();
+        assertFalse(subscription.hasInterest(null));
+        assertNull(scheduler.findInterestedSubscription(null));
+        assertFalse(scheduler.hasSaturatedSubscriptions());
+    }
+
+    /**
+     * Removed subscribers should not get a turn
+     */
+    @Test
+    public void testRemovedSubscriberIsDropped() throws AndesException {
+        LocalSubscription removed = createSubscription(100);
+        LocalSubscription remaining = createSubscription(100);
+        ReadySubscriberScheduler scheduler = new ReadySubscriberScheduler(1);
+        scheduler.startRound(activeSubscriptions);
+
+        Set<LocalSubscription> newActiveSubscriptions = new HashSet<LocalSubscription>();
+        newActiveSubscriptions.add(remaining);
+        scheduler.startRound(newActiveSubscriptions);
+
+        for (int i = 0; i < 3; i++) {
+            assertSame(remaining, schedule(scheduler));
+        }
+        assertEquals(0, handlerOf(removed).scheduledCount);
+    }
+
+    private LocalSubscription schedule(ReadySubscriberScheduler scheduler) {
+        LocalSubscription subscription = scheduler.getCurrentSubscription();
+        handlerOf(subscription).scheduledCount++;
+        handlerOf(subscription).credit--;
+        scheduler.messageScheduled(subscription);
+        return subscription;
+    }
+
+    private LocalSubscription createSubscription(int credit) {
+        TestSubscription handler = new TestSubscription(credit);
+        LocalSubscription subscription = (LocalSubscription) Proxy.newProxyInstance(
+                LocalSubscription.class.getClassLoader(), new Class[]{LocalSubscription.class}, handler);
+        activeSubscriptions.add(subscription);
+        return subscription;
+    }
+
+    private static TestSubscription handlerOf(LocalSubscription subscription) {
+        return (TestSubscription) Proxy.getInvocationHandler(subscription);
+    }
+
+    /**
+     * Subscription with a fixed credit which is reduced as messages are scheduled
+     */
+    private static class TestSubscription implements InvocationHandler {
+
+        private int credit;
+
+        private boolean interested = true;
+
+        private int scheduledCount;
+
+        TestSubscription(int credit) {
+            this.credit = credit;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("hasRoomToAcceptMessages".equals(name)) {
+                return credit > 0;
+            } else if ("getRemainingCredit".equals(name)) {
+                return Math.max(0, credit);
+            } else if ("hasInterest".equals(name)) {
+                return interested;
+            } else if ("hasExternalSubscriptions".equals(name)) {
+                return true;
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name)) {
+                return "TestSubscription";
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
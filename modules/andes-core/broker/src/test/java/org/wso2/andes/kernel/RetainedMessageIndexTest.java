@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for {@link RetainedMessageIndex}
+ */
+public class RetainedMessageIndexTest {
+
+    private static final int MAX_CACHED_CONTENT_SIZE = 16;
+
+    private RetainedMessageIndex index;
+
+    private long nextMessageID;
+
+    @Before
+    public void setUp() {
+        index = new RetainedMessageIndex(MAX_CACHED_CONTENT_SIZE);
+        nextMessageID = 1;
+    }
+
+    /**
+     * A retained message replaces the previous one of the topic and an empty message removes it
+     */
+    @Test
+    public void testUpdateAndRemove() {
+        index.update(createMessage("sensors/1/temperature", 4));
+        long messageID = nextMessageID;
+        index.update(createMessage("sensors/1/temperature", 4));
+        assertEquals(1, index.size());
+        assertEquals(messageID, index.get("sensors/1/temperature").getMessageID());
+
+        index.update(createMessage("sensors/1/temperature", 0));
+        assertNull(index.get("sensors/1/temperature"));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Content is kept only for small messages
+     */
+    @Test
+    public void testContentCaching() {
+        index.update(createMessage("small", MAX_CACHED_CONTENT_SIZE));
+        index.update(createMessage("large", MAX_CACHED_CONTENT_SIZE + 1));
+
+        assertNotNull(index.get("small").getContent());
+        assertEquals(MAX_CACHED_CONTENT_SIZE, index.get("small").getContentLength());
+        assertNull(index.get("large").getContent());
+        assertEquals(MAX_CACHED_CONTENT_SIZE + 1, index.get("large").getContentLength());
+    }
+
+    /**
+     * Removing a topic keeps retained messages of its parent and child topics
+     */
+    @Test
+    public void testRemoveKeepsOtherLevels() throws AndesException {
+        index.update(createMessage("a", 1));
+        index.update(createMessage("a/b", 1));
+        index.update(createMessage("a/b/c", 1));
+
+        index.remove("a/b");
+        assertNotNull(index.get("a"));
+        assertNull(index.get("a/b"));
+        assertNotNull(index.get("a/b/c"));
+
+        index.remove("a/b/c");
+        assertEquals(1, index.getMatching("#").size());
+    }
+
+    /**
+     * Lookups match the same topics as {@link TopicParserUtil#isMatching(String, String)}
+     */
+    @Test
+    public void testMatchingAgreesWithTopicParser() throws AndesException {
+        String[] levels = {"a", "b", ""};
+        Random random = new Random(7);
+        List<String> topics = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String topic = randomTopic(random, levels, false);
+            topics.add(topic);
+            index.update(createMessage(topic, 1));
+        }
+
+        String[] subscriptionLevels = {"a", "b", "", "+", "#"};
+        for (int i = 0; i < 500; i++) {
+            String subscriptionTopic = randomTopic(random, subscriptionLevels, true);
+            Set<String> expected = new HashSet<>();
+            for (String topic : topics) {
+                if (TopicParserUtil.isMatching(topic, subscriptionTopic)) {
+                    expected.add(index.get(topic).getMetadata().getDestination());
+                }
+            }
+            Set<String> actual = new HashSet<>();
+            for (RetainedMessageIndex.Entry entry : index.getMatching(subscriptionTopic)) {
+                actual.add(entry.getMetadata().getDestination());
+            }
+            assertEquals("Matches of " + subscriptionTopic, expected, actual);
+        }
+    }
+
+    /**
+     * Invalid subscription topics are rejected
+     */
+    @Test(expected = AndesException.class)
+    public void testInvalidSubscriptionTopic() throws AndesException {
+        index.getMatching("a/#/b");
+    }
+
+    /**
+     * Create a random topic of the given levels. Multi level wildcard is only used as the last level.
+     */
+    private static String randomTopic(Random random, String[] levels, boolean subscription) {
+        int levelCount = 1 + random.nextInt(4);
+        StringBuilder topic = new StringBuilder();
+        for (int i = 0; i < levelCount; i++) {
+            String level = levels[random.nextInt(levels.length)];
+            if (subscription && TopicParserUtil.MULTIPLE_LEVEL_WILDCARD.equals(level) && i != levelCount - 1) {
+                level = TopicParserUtil.SINGLE_LEVEL_WILDCARD;
+            }
+            if (i > 0) {
+                topic.append(TopicParserUtil.TOPIC_TOKEN_SEPARATOR);
+            }
+            topic.append(level);
+        }
+        return topic.toString();
+    }
+
+    private AndesMessage createMessage(String topic, int contentLength) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setMessageID(nextMessageID++);
+        metadata.setDestination(topic);
+        AndesMessage message = new AndesMessage(metadata);
+        AndesMessagePart messagePart = new AndesMessagePart();
+        messagePart.setMessageID(metadata.getMessageID());
+        messagePart.setData(new byte[contentLength]);
+        messagePart.setDataLength(contentLength);
+        messagePart.setOffSet(0);
+        message.addMessagePart(messagePart);
+        return message;
+    }
+}
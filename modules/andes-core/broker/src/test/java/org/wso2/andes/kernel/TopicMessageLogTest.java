@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link TopicMessageLog}
+ */
+public class TopicMessageLogTest {
+
+    private Set<LocalSubscription> activeSubscriptions;
+
+    @Before
+    public void setUp() {
+        activeSubscriptions = new HashSet<LocalSubscription>();
+    }
+
+    /**
+     * A fast subscriber should read ahead of a slow one and messages should be trimmed only after both read them
+     */
+    @Test
+    public void testSubscribersReadAtOwnPace() {
+        LocalSubscription fast = createSubscription();
+        LocalSubscription slow = createSubscription();
+        TopicMessageLog topicMessageLog = new TopicMessageLog(10);
+        topicMessageLog.updateSubscriptions(activeSubscriptions);
+        appendMessages(topicMessageLog, 1, 3);
+
+        for (long messageID = 1; messageID <= 3; messageID++) {
+            assertEquals(messageID, topicMessageLog.next(fast).getMessageID());
+        }
+        assertNull(topicMessageLog.next(fast));
+        assertEquals(1, topicMessageLog.next(slow).getMessageID());
+
+        List<AndesMessageMetadata> trimmedMessages = topicMessageLog.trim();
+        assertEquals(1, trimmedMessages.size());
+        assertEquals(1, trimmedMessages.get(0).getMessageID());
+        assertEquals(2, topicMessageLog.size());
+        assertTrue(topicMessageLog.hasPendingMessages());
+    }
+
+    /**
+     * A subscriber joining later should only read messages appended after it joined
+     */
+    @Test
+    public void testNewSubscriberStartsAtEnd() {
+        LocalSubscription first = createSubscription();
+        TopicMessageLog topicMessageLog = new TopicMessageLog(10);
+        topicMessageLog.updateSubscriptions(activeSubscriptions);
+        appendMessages(topicMessageLog, 1, 2);
+
+        LocalSubscription second = createSubscription();
+        topicMessageLog.updateSubscriptions(activeSubscriptions);
+        appendMessages(topicMessageLog, 3, 3);
+
+        assertEquals(3, topicMessageLog.next(second).getMessageID());
+        assertNull(topicMessageLog.next(second));
+        assertEquals(1, topicMessageLog.next(first).getMessageID());
+    }
+
+    /**
+     * Skipping the oldest message should move only the subscribers at the head and free a slot of a full log
+     */
+    @Test
+    public void testSkipOldestWhenFull() {
+        LocalSubscription fast = createSubscription();
+        LocalSubscription slow = createSubscription();
+        TopicMessageLog topicMessageLog = new TopicMessageLog(2);
+        topicMessageLog.updateSubscriptions(activeSubscriptions);
+        appendMessages(topicMessageLog, 1, 2);
+        topicMessageLog.next(fast);
+        topicMessageLog.next(fast);
+
+        assertTrue(topicMessageLog.isFull());
+        assertEquals(1, topicMessageLog.getSubscriptionsAtHead().size());
+        assertTrue(topicMessageLog.getSubscriptionsAtHead().contains(slow));
+
+        topicMessageLog.skipOldest();
+        assertEquals(1, topicMessageLog.trim().size());
+        assertFalse(topicMessageLog.isFull());
+        assertEquals(2, topicMessageLog.next(slow).getMessageID());
+    }
+
+    /**
+     * An evicted subscriber should not hold messages and should not be added back while it is still active
+     */
+    @Test
+    public void testEvictedSubscriberIsNotAddedBack() {
+        LocalSubscription remaining = createSubscription();
+        LocalSubscription evicted = createSubscription();
+        TopicMessageLog topicMessageLog = new TopicMessageLog(10);
+        topicMessageLog.updateSubscriptions(activeSubscriptions);
+        appendMessages(topicMessageLog, 1, 2);
+        topicMessageLog.next(remaining);
+        topicMessageLog.next(remaining);
+
+        topicMessageLog.evictSubscription(evicted);
+        topicMessageLog.updateSubscriptions(activeSubscriptions);
+        assertFalse(topicMessageLog.getSubscriptions().contains(evicted));
+        assertEquals(2, topicMessageLog.trim().size());
+        assertFalse(topicMessageLog.hasPendingMessages());
+    }
+
+    private void appendMessages(TopicMessageLog topicMessageLog, long firstMessageID, long lastMessageID) {
+        for (long messageID = firstMessageID; messageID <= lastMessageID; messageID++) {
+            AndesMessageMetadata message = new AndesMessageMetadata();
+            message.setMessageID(messageID);
+            topicMessageLog.append(message);
+        }
+    }
+
+    private LocalSubscription createSubscription() {
+        LocalSubscription subscription = (LocalSubscription) Proxy.newProxyInstance(
+                LocalSubscription.class.getClassLoader(), new Class[]{LocalSubscription.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if ("equals".equals(name)) {
+                            return proxy == args[0];
+                        } else if ("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        } else if ("toString".equals(name)) {
+                            return "TestSubscription";
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+        activeSubscriptions.add(subscription);
+        return subscription;
+    }
+}
@@ -28,7 +28,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for {@link ContentChunkHandlerTest}
@@ -121,4 +123,48 @@ public class ContentChunkHandlerTest {
 
         assertEquals("Content mismatch", content, contentBuilder.toString());
     }
+
+    /**
+     * Test content resize logic when original chunks are slices of a shared array, as created for content received
+     * from network buffers. Chunks which lie within an original chunk should not be copied.
+     */
+    @Test
+    public void testResizeSliceChunks() {
+        int contentLength = originalChunkSize * originalChunkCount;
+        // Leading byte makes slice offsets differ from the content offsets
+        byte[] backingArray = new byte[contentLength + 1];
+        for (int i = 0; i < backingArray.length; i++) {
+            backingArray[i] = (byte) (Math.random() * 128);
+        }
+
+        List<AndesMessagePart> originalChunks = new ArrayList<>(originalChunkCount);
+        for (int i = 0; i < originalChunkCount; i++) {
+            AndesMessagePart part = new AndesMessagePart();
+            part.setMessageID(messageId);
+            part.setOffSet(i * originalChunkSize);
+            part.setData(backingArray, 1 + i * originalChunkSize, originalChunkSize);
+            originalChunks.add(part);
+        }
+
+        List<AndesMessagePart> resultList = contentChunkHandler.resizeChunks(originalChunks, contentLength);
+
+        int offset = 0;
+        for (AndesMessagePart messagePart : resultList) {
+            assertEquals("Incorrect offset", offset, messagePart.getOffSet());
+            assertEquals("Incorrect message id", messageId, messagePart.getMessageID());
+            assertTrue("Chunk size exceeds maximum", messagePart.getDataLength() <= maxChunkSize);
+
+            int originalChunkIndex = offset / originalChunkSize;
+            boolean withinOriginalChunk =
+                    (offset + messagePart.getDataLength() - 1) / originalChunkSize == originalChunkIndex;
+            assertEquals("Only chunks within an original chunk should be slices", withinOriginalChunk,
+                    messagePart.isSlice());
+
+            assertArrayEquals("Content mismatch",
+                    Arrays.copyOfRange(backingArray, 1 + offset, 1 + offset + messagePart.getDataLength()),
+                    messagePart.getData());
+            offset = offset + messagePart.getDataLength();
+        }
+        assertEquals("Content length mismatch", contentLength, offset);
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.kernel.disruptor.inbound;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.kernel.AndesChannel;
+import org.wso2.andes.kernel.FlowControlListener;
+import org.wso2.andes.kernel.FlowControlManager;
+import org.wso2.andes.kernel.MessagingEngine;
+import org.wso2.andes.subscription.SubscriptionStore;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link InboundTransactionEvent}. Events published by the transaction are recorded instead of
+ * going through the disruptor and are processed by the test as the state event handler would.
+ */
+public class InboundTransactionEventTest {
+
+    private static final int MAX_BATCH_SIZE = 1024 * 1024;
+
+    private RecordingEventManager eventManager;
+
+    private InboundTransactionEvent transactionEvent;
+
+    @Before
+    public void setUp() throws Exception {
+        // Every configuration property takes its default value
+        Field configuration = AndesConfigurationManager.class.getDeclaredField("compositeConfiguration");
+        configuration.setAccessible(true);
+        if (null == configuration.get(null)) {
+            configuration.set(null, new CompositeConfiguration());
+        }
+
+        eventManager = new RecordingEventManager(new SubscriptionStore());
+        AndesChannel channel = new FlowControlManager().createChannel(new FlowControlListener() {
+            @Override
+            public void block() {
+            }
+
+            @Override
+            public void unblock() {
+            }
+        });
+        transactionEvent = new InboundTransactionEvent(MessagingEngine.getInstance(), eventManager, MAX_BATCH_SIZE,
+                0, 100, channel);
+    }
+
+    @After
+    public void tearDown() {
+        eventManager.stop();
+    }
+
+    /**
+     * Closing the channel while a commit is in flight should close the transaction only after the commit is
+     * processed as a commit
+     */
+    @Test
+    public void testCloseWhileCommitInFlight() throws Exception {
+        ListenableFuture<Boolean> commitFuture = transactionEvent.commitAsync();
+        assertEquals(InboundEventContainer.Type.TRANSACTION_COMMIT_EVENT, eventManager.nextEvent());
+
+        final AtomicReference<Throwable> closeFailure = new AtomicReference<Throwable>();
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    transactionEvent.close();
+                } catch (Throwable t) {
+                    closeFailure.set(t);
+                }
+            }
+        });
+        closer.start();
+
+        // Close must not publish its event before the pending commit is processed
+        assertNull(eventManager.events.poll(200, TimeUnit.MILLISECONDS));
+        assertTrue(closer.isAlive());
+
+        transactionEvent.updateState();
+        assertTrue(commitFuture.isDone());
+        assertTrue(commitFuture.get());
+
+        assertEquals(InboundEventContainer.Type.TRANSACTION_CLOSE_EVENT, eventManager.nextEvent());
+        transactionEvent.updateState();
+        closer.join(10000);
+        assertFalse(closer.isAlive());
+        assertNull(closeFailure.get());
+    }
+
+    /**
+     * Closing the channel after a commit is processed should not wait
+     */
+    @Test
+    public void testCloseAfterCommit() throws Exception {
+        ListenableFuture<Boolean> commitFuture = transactionEvent.commitAsync();
+        assertEquals(InboundEventContainer.Type.TRANSACTION_COMMIT_EVENT, eventManager.nextEvent());
+        transactionEvent.updateState();
+        assertTrue(commitFuture.get());
+
+        eventManager.processNextEvent = true;
+        transactionEvent.close();
+        assertEquals(InboundEventContainer.Type.TRANSACTION_CLOSE_EVENT, eventManager.nextEvent());
+    }
+
+    /**
+     * Event manager which records published transaction events without processing them
+     */
+    private class RecordingEventManager extends InboundEventManager {
+
+        private final BlockingQueue<InboundEventContainer.Type> events =
+                new LinkedBlockingQueue<InboundEventContainer.Type>();
+
+        /**
+         * True to process the next published event on the publishing thread
+         */
+        private volatile boolean processNextEvent;
+
+        RecordingEventManager(SubscriptionStore subscriptionStore) {
+            super(subscriptionStore, MessagingEngine.getInstance());
+        }
+
+        @Override
+        public void requestTransactionCommitEvent(InboundTransactionEvent transactionEvent, AndesChannel channel) {
+            record(transactionEvent, InboundEventContainer.Type.TRANSACTION_COMMIT_EVENT);
+        }
+
+        @Override
+        public void requestTransactionRollbackEvent(InboundTransactionEvent transactionEvent, AndesChannel channel) {
+            record(transactionEvent, InboundEventContainer.Type.TRANSACTION_ROLLBACK_EVENT);
+        }
+
+        @Override
+        public void requestTransactionCloseEvent(InboundTransactionEvent transactionEvent, AndesChannel channel) {
+            record(transactionEvent, InboundEventContainer.Type.TRANSACTION_CLOSE_EVENT);
+        }
+
+        private void record(InboundTransactionEvent transactionEvent, InboundEventContainer.Type eventType) {
+            events.add(eventType);
+            if (processNextEvent) {
+                processNextEvent = false;
+                try {
+                    transactionEvent.updateState();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        InboundEventContainer.Type nextEvent() throws InterruptedException {
+            return events.poll(10, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.slot;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for {@link AdaptiveSlotWindow}
+ */
+public class AdaptiveSlotWindowTest {
+
+    private static final int SUBMIT_LATENCY = 10;
+
+    private static final int MIN_WINDOW_SIZE = 100;
+
+    private static final int MAX_WINDOW_SIZE = 10000;
+
+    /**
+     * The initial window should be the configured window size clamped to the bounds
+     */
+    @Test
+    public void testInitialWindowIsClamped() {
+        assertEquals(1000, createWindow(1000).getWindowSize());
+        assertEquals(MIN_WINDOW_SIZE, createWindow(5).getWindowSize());
+        assertEquals(MAX_WINDOW_SIZE, createWindow(50000).getWindowSize());
+    }
+
+    /**
+     * The window should hold the messages published within the submit latency at the smoothed publish rate
+     */
+    @Test
+    public void testWindowFollowsSmoothedPublishRate() {
+        AdaptiveSlotWindow window = createWindow(1000);
+
+        // Initial rate is 100 messages per ms, observed rate is 50 messages per ms
+        window.update(500, 10);
+        assertEquals(750, window.getWindowSize());
+
+        window.update(750, 10);
+        assertEquals(750, window.getWindowSize());
+    }
+
+    /**
+     * A burst should not grow the window beyond the maximum and an idle queue should shrink it to the minimum
+     */
+    @Test
+    public void testWindowStaysWithinBounds() {
+        AdaptiveSlotWindow window = createWindow(1000);
+
+        window.update(100000, 1);
+        assertEquals(MAX_WINDOW_SIZE, window.getWindowSize());
+
+        for (int i = 0; i < 20; i++) {
+            window.update(1, 1000);
+        }
+        assertEquals(MIN_WINDOW_SIZE, window.getWindowSize());
+    }
+
+    /**
+     * A slot submitted within the same millisecond it was opened should not divide by zero
+     */
+    @Test
+    public void testZeroSlotAge() {
+        AdaptiveSlotWindow window = createWindow(1000);
+        window.update(50, 0);
+        assertEquals(750, window.getWindowSize());
+    }
+
+    private static AdaptiveSlotWindow createWindow(int initialWindowSize) {
+        return new AdaptiveSlotWindow(initialWindowSize, SUBMIT_LATENCY, MIN_WINDOW_SIZE, MAX_WINDOW_SIZE);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.kernel.slot;
+
+import org.junit.After;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for {@link SlotMessageCounter}
+ */
+public class SlotMessageCounterTest {
+
+    private static final String QUEUE_NAME = "testQueue";
+
+    /**
+     * Slot submit timer period long enough not to run during a test
+     */
+    private static final int IDLE_SUBMIT_TIMEOUT = 600000;
+
+    private final RecordingSlotCoordinator slotCoordinator = new RecordingSlotCoordinator();
+
+    private SlotMessageCounter slotMessageCounter;
+
+    @After
+    public void tearDown() {
+        if (null != slotMessageCounter) {
+            slotMessageCounter.stop();
+        }
+    }
+
+    /**
+     * A slot should be submitted once it reaches the slot window size
+     */
+    @Test
+    public void testSlotSubmittedAtWindowSize() {
+        slotMessageCounter = createCounter(3, false);
+        recordMessages(1, 3);
+
+        assertEquals(Collections.singletonList("1-3"), slotCoordinator.submittedSlots);
+    }
+
+    /**
+     * A slot which could not be submitted since the coordinator is unreachable should be submitted with the next one
+     */
+    @Test
+    public void testSlotRestoredOnConnectionFailure() throws Exception {
+        slotMessageCounter = createCounter(3, false);
+        recordMessages(1, 2);
+
+        slotCoordinator.failure = new ConnectionException("Coordinator unreachable");
+        slotMessageCounter.submitSlot(QUEUE_NAME);
+        assertTrue(slotCoordinator.submittedSlots.isEmpty());
+
+        recordMessages(3, 3);
+        assertEquals(Collections.singletonList("1-3"), slotCoordinator.submittedSlots);
+    }
+
+    /**
+     * A slot should not be lost when the coordinator call fails with an unexpected error
+     */
+    @Test
+    public void testSlotRestoredOnUnexpectedFailure() throws Exception {
+        slotMessageCounter = createCounter(3, false);
+        recordMessages(1, 2);
+
+        slotCoordinator.failure = new IllegalStateException("Unexpected");
+        try {
+            slotMessageCounter.submitSlot(QUEUE_NAME);
+            fail("Unexpected failure should be propagated");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        recordMessages(3, 3);
+        assertEquals(Collections.singletonList("1-3"), slotCoordinator.submittedSlots);
+    }
+
+    /**
+     * Messages recorded while a slot is being submitted go to a new slot, which should be merged with the slot if
+     * the submission fails
+     */
+    @Test
+    public void testRestoredSlotMergedWithNewerSlot() throws Exception {
+        slotMessageCounter = createCounter(10, false);
+        recordMessages(1, 2);
+
+        slotCoordinator.failure = new ConnectionException("Coordinator unreachable");
+        slotCoordinator.onSubmit = new Runnable() {
+            @Override
+            public void run() {
+                recordMessages(3, 4);
+            }
+        };
+        slotMessageCounter.submitSlot(QUEUE_NAME);
+
+        slotMessageCounter.submitSlot(QUEUE_NAME);
+        assertEquals(Collections.singletonList("1-4"), slotCoordinator.submittedSlots);
+
+        // The merged slot should be submitted once
+        slotMessageCounter.submitSlot(QUEUE_NAME);
+        assertEquals(1, slotCoordinator.submittedSlots.size());
+    }
+
+    /**
+     * With adaptive sizing, a slot older than the submit latency should be submitted by the timer thread when the
+     * inbound disruptor reports the end of a batch
+     */
+    @Test
+    public void testExpiredSlotSubmittedOffBatchThread() throws Exception {
+        slotMessageCounter = createCounter(1000, true);
+        recordMessages(1, 2);
+        Thread.sleep(5);
+
+        slotMessageCounter.onInboundBatchEnd();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (slotCoordinator.submittedSlots.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(Collections.singletonList("1-2"), slotCoordinator.submittedSlots);
+        assertNotSame(Thread.currentThread(), slotCoordinator.submittingThread);
+    }
+
+    /**
+     * A configured submit latency of zero should be treated as the minimum latency with adaptive sizing
+     */
+    @Test
+    public void testZeroSubmitLatency() {
+        slotMessageCounter = new SlotMessageCounter(slotCoordinator, IDLE_SUBMIT_TIMEOUT, 3, IDLE_SUBMIT_TIMEOUT,
+                true, 0, 1, 3);
+        recordMessages(1, 3);
+
+        assertEquals(Collections.singletonList("1-3"), slotCoordinator.submittedSlots);
+    }
+
+    private SlotMessageCounter createCounter(int slotWindowSize, boolean adaptiveSizingEnabled) {
+        return new SlotMessageCounter(slotCoordinator, IDLE_SUBMIT_TIMEOUT, slotWindowSize, IDLE_SUBMIT_TIMEOUT,
+                adaptiveSizingEnabled, 1, 1, slotWindowSize);
+    }
+
+    private void recordMessages(long firstMessageID, long lastMessageID) {
+        for (long messageID = firstMessageID; messageID <= lastMessageID; messageID++) {
+            AndesMessageMetadata metadata = new AndesMessageMetadata();
+            metadata.setMessageID(messageID);
+            metadata.setStorageQueueName(QUEUE_NAME);
+            slotMessageCounter.recordMetadataCountInSlot(metadata);
+        }
+    }
+
+    /**
+     * Slot coordinator recording submitted slots as "start-end" and failing the next submission on request
+     */
+    private static class RecordingSlotCoordinator implements SlotCoordinator {
+
+        private final List<String> submittedSlots = Collections.synchronizedList(new ArrayList<String>());
+
+        private volatile Thread submittingThread;
+
+        private Exception failure;
+
+        private Runnable onSubmit;
+
+        @Override
+        public void updateMessageId(String queueName, long startMessageId, long endMessageId)
+                throws ConnectionException {
+            if (null != onSubmit) {
+                Runnable action = onSubmit;
+                onSubmit = null;
+                action.run();
+            }
+            if (null != failure) {
+                Exception exception = failure;
+                failure = null;
+                if (exception instanceof ConnectionException) {
+                    throw (ConnectionException) exception;
+                }
+                throw (RuntimeException) exception;
+            }
+            submittingThread = Thread.currentThread();
+            submittedSlots.add(startMessageId + "-" + endMessageId);
+        }
+
+        @Override
+        public Slot getSlot(String queueName) {
+            return null;
+        }
+
+        @Override
+        public void updateSlotDeletionSafeZone(long currentSlotDeleteSafeZone) {
+        }
+
+        @Override
+        public boolean deleteSlot(String queueName, Slot slot) {
+            return true;
+        }
+
+        @Override
+        public void reAssignSlotWhenNoSubscribers(String queueName) {
+        }
+
+        @Override
+        public void clearAllActiveSlotRelationsToQueue(String queueName) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link MessageLatencySampler}
+ */
+public class MessageLatencySamplerTest {
+
+    @After
+    public void tearDown() {
+        MessageLatencySampler.setSampleInterval(0);
+    }
+
+    /**
+     * No message should be sampled while sampling is disabled
+     */
+    @Test
+    public void testDisabledSampling() {
+        MessageLatencySampler.setSampleInterval(0);
+        assertFalse(MessageLatencySampler.isEnabled());
+        for (long messageId = 1; messageId <= 1000; messageId++) {
+            assertFalse(MessageLatencySampler.isSampled(messageId));
+        }
+    }
+
+    /**
+     * About one in sample interval consecutive message IDs should be sampled
+     */
+    @Test
+    public void testSampleRate() {
+        MessageLatencySampler.setSampleInterval(100);
+        int sampledCount = 0;
+        long firstMessageId = 1L << 30;
+        for (long messageId = firstMessageId; messageId < firstMessageId + 100000; messageId++) {
+            if (MessageLatencySampler.isSampled(messageId)) {
+                sampledCount++;
+            }
+        }
+        assertTrue("Sampled " + sampledCount + " of 100000 messages", sampledCount > 800 && sampledCount < 1200);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link BlockReservingMessageIdGenerator}
+ */
+public class BlockReservingMessageIdGeneratorTest {
+
+    private static final int NODE_ID = 5;
+
+    /**
+     * More IDs than fit in a millisecond should be generated without failing and without changing the node ID bits
+     */
+    @Test
+    public void testSequenceOverflowBorrowsNextMillisecond() {
+        BlockReservingMessageIdGenerator generator = new BlockReservingMessageIdGenerator(NODE_ID);
+
+        long lastId = generator.getNextId();
+        for (int i = 0; i < 10000; i++) {
+            long id = generator.getNextId();
+            assertTrue("IDs should be strictly increasing", id > lastId);
+            assertEquals("Node ID bits should not change", NODE_ID, (id >> 10) & 0xFF);
+            lastId = id;
+        }
+    }
+
+    /**
+     * IDs of a reserved block iterated with nextId should be increasing and below the next reservation
+     */
+    @Test
+    public void testReservedBlockSpansMilliseconds() {
+        BlockReservingMessageIdGenerator generator = new BlockReservingMessageIdGenerator(NODE_ID);
+
+        long id = generator.reserveIds(3000);
+        for (int i = 1; i < 3000; i++) {
+            long nextId = BlockReservingMessageIdGenerator.nextId(id);
+            assertTrue(nextId > id);
+            assertEquals(NODE_ID, (nextId >> 10) & 0xFF);
+            id = nextId;
+        }
+        assertTrue("Next reservation should follow the block", generator.getNextId() > id);
+    }
+
+    /**
+     * Concurrent writers should never receive the same ID
+     */
+    @Test
+    public void testConcurrentReservationsAreUnique() throws Exception {
+        final BlockReservingMessageIdGenerator generator = new BlockReservingMessageIdGenerator(NODE_ID);
+        int writerCount = 4;
+        final int blockCount = 2000;
+        final int blockSize = 16;
+
+        ExecutorService executor = Executors.newFixedThreadPool(writerCount);
+        List<Future<List<Long>>> futures = new ArrayList<>();
+        for (int i = 0; i < writerCount; i++) {
+            futures.add(executor.submit(new Callable<List<Long>>() {
+                @Override
+                public List<Long> call() {
+                    List<Long> ids = new ArrayList<>(blockCount * blockSize);
+                    for (int block = 0; block < blockCount; block++) {
+                        long id = generator.reserveIds(blockSize);
+                        for (int j = 0; j < blockSize; j++) {
+                            ids.add(id);
+                            id = BlockReservingMessageIdGenerator.nextId(id);
+                        }
+                    }
+                    return ids;
+                }
+            }));
+        }
+
+        Set<Long> allIds = new HashSet<>();
+        for (Future<List<Long>> future : futures) {
+            allIds.addAll(future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(writerCount * blockCount * blockSize, allIds.size());
+    }
+}
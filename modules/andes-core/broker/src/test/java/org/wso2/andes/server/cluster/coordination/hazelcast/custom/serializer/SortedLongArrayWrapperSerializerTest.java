@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer;
+
+import com.hazelcast.nio.serialization.Data;
+import com.hazelcast.nio.serialization.SerializationService;
+import com.hazelcast.nio.serialization.SerializationServiceBuilder;
+import org.junit.Test;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.processor.PollFirstMessageIdProcessor;
+import org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link SortedLongArrayWrapperSerializer} and
+ * {@link org.wso2.andes.server.cluster.coordination.hazelcast.custom.serializer.wrapper.SortedLongArrayWrapper}
+ */
+public class SortedLongArrayWrapperSerializerTest {
+
+    /**
+     * Values should stay sorted and unique regardless of the order they are added and removed in
+     */
+    @Test
+    public void testSortedSetOperations() {
+        SortedLongArrayWrapper wrapper = new SortedLongArrayWrapper();
+        TreeSet<Long> expected = new TreeSet<Long>();
+
+        long base = 1438000000000L;
+        for (int i = 0; i < 100; i++) {
+            long value = base + ((i * 37) % 100) * 1024;
+            assertEquals(expected.add(value), wrapper.add(value));
+        }
+        assertFalse(wrapper.add(base));
+
+        for (int i = 0; i < 30; i++) {
+            assertEquals(expected.pollFirst().longValue(), wrapper.pollFirst());
+        }
+        assertTrue(wrapper.remove(base + 50 * 1024));
+        expected.remove(base + 50 * 1024);
+        assertFalse(wrapper.remove(base + 50 * 1024));
+
+        // Appending after removals from the front reuses the freed space
+        for (int i = 100; i < 200; i++) {
+            expected.add(base + i * 1024);
+            wrapper.add(base + i * 1024);
+        }
+        assertEquals(expected, wrapper.toTreeSet());
+        assertEquals(expected.first().longValue(), wrapper.first());
+    }
+
+    /**
+     * Delta encoded form should read back to the same values
+     */
+    @Test
+    public void testDeltaEncodingRoundTrip() throws IOException {
+        SortedLongArrayWrapper wrapper = new SortedLongArrayWrapper();
+        long value = 1438000000000L;
+        for (int i = 0; i < 10000; i++) {
+            value = value + 1 + (i % 7) * 300000;
+            wrapper.add(value);
+        }
+        wrapper.add(Long.MAX_VALUE);
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        SortedLongArrayWrapperSerializer.writeDeltaEncoded(new DataOutputStream(byteStream), wrapper);
+        // Far smaller than eight bytes per value
+        assertTrue(byteStream.size() < wrapper.size() * 4);
+
+        SortedLongArrayWrapper readWrapper = SortedLongArrayWrapperSerializer.readDeltaEncoded(
+                new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray())));
+        assertEquals(wrapper.toTreeSet(), readWrapper.toTreeSet());
+
+        ByteArrayOutputStream emptyStream = new ByteArrayOutputStream();
+        SortedLongArrayWrapperSerializer.writeDeltaEncoded(new DataOutputStream(emptyStream),
+                new SortedLongArrayWrapper());
+        assertTrue(SortedLongArrayWrapperSerializer.readDeltaEncoded(
+                new DataInputStream(new ByteArrayInputStream(emptyStream.toByteArray()))).isEmpty());
+    }
+
+    /**
+     * Hazelcast should serialize the wrapper in its delta encoded form without any serializer configuration
+     */
+    @Test
+    public void testHazelcastSerialization() {
+        SortedLongArrayWrapper wrapper = new SortedLongArrayWrapper();
+        long value = 1438000000000L;
+        for (int i = 0; i < 10000; i++) {
+            value = value + 1 + (i % 7) * 300000;
+            wrapper.add(value);
+        }
+        wrapper.pollFirst();
+
+        SerializationService serializationService = new SerializationServiceBuilder().build();
+        Data data = serializationService.toData(wrapper);
+        assertTrue(data.bufferSize() < wrapper.size() * 4);
+
+        SortedLongArrayWrapper readWrapper = serializationService.toObject(data);
+        assertEquals(wrapper.toTreeSet(), readWrapper.toTreeSet());
+    }
+
+    /**
+     * Poll first processor should remove and return the lowest message id, and null once the set is empty
+     */
+    @Test
+    public void testPollFirstMessageIdProcessor() {
+        SortedLongArrayWrapper wrapper = new SortedLongArrayWrapper();
+        wrapper.add(20L);
+        wrapper.add(10L);
+        Map.Entry<String, SortedLongArrayWrapper> entry =
+                new AbstractMap.SimpleEntry<String, SortedLongArrayWrapper>("queue", wrapper);
+
+        PollFirstMessageIdProcessor processor = new PollFirstMessageIdProcessor();
+        assertEquals(10L, processor.process(entry));
+        assertEquals(20L, processor.process(entry));
+        assertNull(processor.process(entry));
+        assertTrue(entry.getValue().isEmpty());
+    }
+}
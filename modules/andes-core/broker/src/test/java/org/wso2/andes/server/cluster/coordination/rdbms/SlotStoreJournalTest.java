@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.cluster.coordination.rdbms;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesContextStore;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.kernel.slot.SlotStoreChanges;
+import org.wso2.andes.store.AndesDataIntegrityViolationException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for {@link SlotStoreJournal}. The slot store is an in memory model which applies a batch in the order
+ * an RDBMS store does, and can be made to fail.
+ */
+public class SlotStoreJournalTest {
+
+    private static final String QUEUE_NAME = "journalTestQueue";
+
+    private static final String NODE_ID = "node1";
+
+    private SlotStoreModel store;
+
+    private SlotStoreJournal journal;
+
+    @Before
+    public void setUp() {
+        store = new SlotStoreModel();
+        journal = new SlotStoreJournal(store.asContextStore());
+    }
+
+    /**
+     * Changes cancelling each other should never reach the store and the rest should give the same result as
+     * applying them one by one
+     */
+    @Test
+    public void testMergedChangesMatchJournalOrder() throws AndesException {
+        journal.addMessageId(QUEUE_NAME, 10);
+        journal.addMessageId(QUEUE_NAME, 20);
+        journal.flush();
+
+        // Removed then added again in one flush, must remain
+        journal.deleteMessageId(10);
+        journal.addMessageId(QUEUE_NAME, 10);
+        // Added then removed in one flush, must not be written
+        journal.addMessageId(QUEUE_NAME, 30);
+        journal.deleteMessageId(30);
+        // Created, assigned and deleted in one flush, must not be written
+        journal.createSlot(1, 20, QUEUE_NAME, NODE_ID);
+        journal.createSlotAssignment(NODE_ID, QUEUE_NAME, 1, 20);
+        journal.deleteSlot(1, 20);
+        journal.createSlot(21, 40, QUEUE_NAME, NODE_ID);
+        journal.setQueueToLastAssignedId(QUEUE_NAME, 20);
+        journal.setQueueToLastAssignedId(QUEUE_NAME, 40);
+        journal.flush();
+
+        assertEquals(2, store.batchCount);
+        assertTrue(store.messageIds.containsKey(10L));
+        assertTrue(store.messageIds.containsKey(20L));
+        assertFalse(store.messageIds.containsKey(30L));
+        assertFalse(store.slots.containsKey("1:20"));
+        assertTrue(store.slots.containsKey("21:40"));
+        assertEquals(Long.valueOf(40), store.lastAssignedIds.get(QUEUE_NAME));
+        assertEquals(0, journal.size());
+    }
+
+    /**
+     * Changes of a failed flush should be kept and written by the next flush. Changes appended while the failed
+     * flush was in progress should cancel the kept ones they undo.
+     */
+    @Test
+    public void testFailedFlushRetainsChanges() throws AndesException {
+        journal.addMessageId(QUEUE_NAME, 10);
+        journal.addMessageId(QUEUE_NAME, 20);
+        journal.createSlot(1, 5, QUEUE_NAME, NODE_ID);
+        journal.setNodeToLastPublishedId(NODE_ID, 20);
+
+        store.failNextBatch = true;
+        store.onBatch = new Runnable() {
+            @Override
+            public void run() {
+                // Appended while the failing flush is writing
+                journal.deleteMessageId(10);
+                journal.deleteSlot(1, 5);
+            }
+        };
+        try {
+            journal.flush();
+            fail("Flush should fail when the store fails");
+        } catch (AndesException expected) {
+            // Changes are kept for the next flush
+        }
+        assertTrue(store.messageIds.isEmpty());
+        assertTrue(journal.size() > 0);
+
+        store.onBatch = null;
+        journal.flush();
+
+        assertFalse(store.messageIds.containsKey(10L));
+        assertTrue(store.messageIds.containsKey(20L));
+        assertTrue(store.slots.isEmpty());
+        assertEquals(Long.valueOf(20), store.lastPublishedIds.get(NODE_ID));
+        assertEquals(0, journal.size());
+    }
+
+    /**
+     * Waiting for a change already written by another flush should not write again
+     */
+    @Test
+    public void testFlushUpToSharesFlushes() throws AndesException {
+        long firstSequence = journal.addMessageId(QUEUE_NAME, 10);
+        long secondSequence = journal.addMessageId(QUEUE_NAME, 20);
+
+        journal.flushUpTo(secondSequence);
+        journal.flushUpTo(firstSequence);
+        journal.flushUpTo(secondSequence);
+
+        assertEquals(1, store.batchCount);
+        assertEquals(2, store.messageIds.size());
+
+        store.failNextBatch = true;
+        long failedSequence = journal.addMessageId(QUEUE_NAME, 30);
+        try {
+            journal.flushUpTo(failedSequence);
+            fail("Waiting for a change which could not be written should fail");
+        } catch (AndesException expected) {
+            // Change is kept and written by the next wait
+        }
+        journal.flushUpTo(failedSequence);
+        assertTrue(store.messageIds.containsKey(30L));
+    }
+
+    /**
+     * A batch rejected for a constraint violation should be written one by one, dropping only the violating change
+     */
+    @Test
+    public void testConstraintViolationFallsBackToSingleChanges() throws AndesException {
+        journal.addMessageId(QUEUE_NAME, 10);
+        journal.flush();
+
+        // Another node wrote message id 20 directly to the store
+        store.messageIds.put(20L, QUEUE_NAME);
+        journal.addMessageId(QUEUE_NAME, 20);
+        journal.addMessageId(QUEUE_NAME, 30);
+        journal.createSlot(1, 10, QUEUE_NAME, NODE_ID);
+        journal.deleteMessageId(10);
+        journal.flush();
+
+        assertFalse(store.messageIds.containsKey(10L));
+        assertTrue(store.messageIds.containsKey(20L));
+        assertTrue(store.messageIds.containsKey(30L));
+        assertTrue(store.slots.containsKey("1:10"));
+        assertEquals(0, journal.size());
+    }
+
+    /**
+     * In memory model of the slot tables
+     */
+    private static class SlotStoreModel implements InvocationHandler {
+
+        private final Map<Long, String> messageIds = new TreeMap<>();
+
+        private final Map<String, String> slots = new HashMap<>();
+
+        private final Map<String, Long> lastAssignedIds = new HashMap<>();
+
+        private final Map<String, Long> lastPublishedIds = new HashMap<>();
+
+        private boolean failNextBatch;
+
+        private Runnable onBatch;
+
+        private int batchCount;
+
+        private AndesContextStore asContextStore() {
+            return (AndesContextStore) Proxy.newProxyInstance(AndesContextStore.class.getClassLoader(),
+                    new Class[]{AndesContextStore.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("applySlotStoreChanges".equals(name)) {
+                applyBatch((SlotStoreChanges) args[0]);
+            } else if ("addMessageId".equals(name)) {
+                addMessageId((String) args[0], (Long) args[1]);
+            } else if ("deleteMessageId".equals(name)) {
+                messageIds.remove((Long) args[0]);
+            } else if ("createSlot".equals(name)) {
+                slots.put(args[0] + ":" + args[1], (String) args[3]);
+            } else if ("deleteSlot".equals(name)) {
+                slots.remove(args[0] + ":" + args[1]);
+            } else if ("createSlotAssignment".equals(name)) {
+                slots.put(args[2] + ":" + args[3], (String) args[0]);
+            } else if ("setQueueToLastAssignedId".equals(name)) {
+                lastAssignedIds.put((String) args[0], (Long) args[1]);
+            } else if ("setNodeToLastPublishedId".equals(name)) {
+                lastPublishedIds.put((String) args[0], (Long) args[1]);
+            } else {
+                throw new UnsupportedOperationException(name);
+            }
+            return null;
+        }
+
+        /**
+         * Apply a batch all or nothing, in the order of {@link SlotStoreChanges}
+         */
+        private void applyBatch(SlotStoreChanges changes) throws AndesException {
+            if (null != onBatch) {
+                onBatch.run();
+            }
+            if (failNextBatch) {
+                failNextBatch = false;
+                throw new AndesException("Store unavailable");
+            }
+            for (SlotStoreChanges.MessageIdChange change : changes.getAddedMessageIds()) {
+                if (messageIds.containsKey(change.getMessageId())
+                        && !changes.getDeletedMessageIds().contains(change.getMessageId())) {
+                    throw new AndesDataIntegrityViolationException("Duplicate message id", null);
+                }
+            }
+            batchCount++;
+            for (Long messageId : changes.getDeletedMessageIds()) {
+                messageIds.remove(messageId);
+            }
+            for (SlotStoreChanges.MessageIdChange change : changes.getAddedMessageIds()) {
+                messageIds.put(change.getMessageId(), change.getQueueName());
+            }
+            for (SlotStoreChanges.SlotChange change : changes.getDeletedSlots()) {
+                slots.remove(change.getStartMessageId() + ":" + change.getEndMessageId());
+            }
+            for (SlotStoreChanges.SlotChange change : changes.getCreatedSlots()) {
+                slots.put(change.getStartMessageId() + ":" + change.getEndMessageId(), change.getNodeId());
+            }
+            for (SlotStoreChanges.SlotChange change : changes.getSlotAssignments()) {
+                slots.put(change.getStartMessageId() + ":" + change.getEndMessageId(), change.getNodeId());
+            }
+            lastAssignedIds.putAll(changes.getQueueToLastAssignedIds());
+            lastPublishedIds.putAll(changes.getNodeToLastPublishedIds());
+        }
+
+        private void addMessageId(String queueName, long messageId) throws AndesException {
+            if (messageIds.containsKey(messageId)) {
+                throw new AndesDataIntegrityViolationException("Duplicate message id", null);
+            }
+            messageIds.put(messageId, queueName);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.filter;
+
+import org.junit.Test;
+import org.wso2.andes.server.message.AMQMessageHeader;
+import org.wso2.andes.server.queue.Filterable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link JMSSelectorFilter}
+ */
+public class JMSSelectorFilterTest {
+
+    /**
+     * Messages with the same header signature should reuse the cached selector outcome
+     */
+    @Test
+    public void testOutcomeCachedPerHeaderSignature() throws Exception {
+        JMSSelectorFilter filter = new JMSSelectorFilter("color = 'red' AND weight > 10");
+
+        TestMessage heavyRed = new TestMessage("msg1").withHeader("color", "red").withHeader("weight", 20);
+        assertTrue(filter.matches(heavyRed));
+        // signature lookup and full evaluation
+        assertEquals(4, heavyRed.headerLookups);
+
+        TestMessage anotherHeavyRed = new TestMessage("msg2").withHeader("color", "red").withHeader("weight", 20);
+        assertTrue(filter.matches(anotherHeavyRed));
+        // signature lookup only
+        assertEquals(2, anotherHeavyRed.headerLookups);
+
+        assertFalse(filter.matches(new TestMessage("msg3").withHeader("color", "red").withHeader("weight", 5)));
+        assertFalse(filter.matches(new TestMessage("msg4").withHeader("color", "blue").withHeader("weight", 20)));
+        assertFalse(filter.matches(new TestMessage("msg5")));
+    }
+
+    /**
+     * Selectors on per message properties should still be evaluated correctly for every message
+     */
+    @Test
+    public void testPerMessagePropertySelector() throws Exception {
+        JMSSelectorFilter filter = new JMSSelectorFilter("JMSMessageID = 'msg1' AND color = 'red'");
+
+        assertTrue(filter.matches(new TestMessage("msg1").withHeader("color", "red")));
+        assertFalse(filter.matches(new TestMessage("msg2").withHeader("color", "red")));
+        assertTrue(filter.matches(new TestMessage("msg1").withHeader("color", "red")));
+    }
+
+    /**
+     * Filterable message with application headers, counting header lookups
+     */
+    private static class TestMessage implements Filterable, AMQMessageHeader {
+
+        private final String messageId;
+
+        private final Map<String, Object> headers = new HashMap<String, Object>();
+
+        private int headerLookups = 0;
+
+        TestMessage(String messageId) {
+            this.messageId = messageId;
+        }
+
+        TestMessage withHeader(String name, Object value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        @Override
+        public AMQMessageHeader getMessageHeader() {
+            return this;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return true;
+        }
+
+        @Override
+        public boolean isRedelivered() {
+            return false;
+        }
+
+        @Override
+        public String getCorrelationId() {
+            return null;
+        }
+
+        @Override
+        public long getExpiration() {
+            return 0;
+        }
+
+        @Override
+        public String getMessageId() {
+            return messageId;
+        }
+
+        @Override
+        public String getMimeType() {
+            return null;
+        }
+
+        @Override
+        public String getEncoding() {
+            return null;
+        }
+
+        @Override
+        public byte getPriority() {
+            return 4;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return 0;
+        }
+
+        @Override
+        public String getType() {
+            return null;
+        }
+
+        @Override
+        public String getReplyTo() {
+            return null;
+        }
+
+        @Override
+        public String getReplyToExchange() {
+            return null;
+        }
+
+        @Override
+        public String getReplyToRoutingKey() {
+            return null;
+        }
+
+        @Override
+        public Object getHeader(String name) {
+            headerLookups++;
+            return headers.get(name);
+        }
+
+        @Override
+        public boolean containsHeaders(Set<String> names) {
+            return headers.keySet().containsAll(names);
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+    }
+}
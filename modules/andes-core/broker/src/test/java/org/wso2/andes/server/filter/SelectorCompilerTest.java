@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.filter;
+
+import org.junit.Test;
+import org.wso2.andes.server.filter.jms.selector.SelectorParser;
+import org.wso2.andes.server.message.AMQMessageHeader;
+import org.wso2.andes.server.queue.Filterable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link SelectorCompiler}
+ */
+public class SelectorCompilerTest {
+
+    private static final String[] SELECTORS = {
+            "region = 'EU' AND priority > 5",
+            "region = 'EU' OR region = 'US'",
+            "NOT (region = 'EU' AND priority > 5)",
+            "NOT (region = 'EU' OR weight < 2.5)",
+            "region LIKE 'E%' AND priority BETWEEN 3 AND 7",
+            "region IN ('EU', 'US', 'APAC') AND NOT priority = 4",
+            "region IS NULL OR priority >= 8",
+            "region IS NOT NULL AND (weight > 10 OR priority < 2)",
+            "priority + 1 > 5 AND 2 > 1",
+            "1 = 2 OR region <> 'EU'",
+            "JMSPriority > 3 AND region = 'EU'",
+            "flag AND region = 'EU'",
+            "weight > 10 AND priority > 5 AND region = 'EU'"
+    };
+
+    /**
+     * Compiled selectors should give the same outcome as the interpreter for every message
+     */
+    @Test
+    public void testSameOutcomeAsInterpreter() throws Exception {
+        List<TestMessage> messages = createMessages();
+        for (String selector : SELECTORS) {
+            BooleanExpression interpreted = new SelectorParser().parse(selector);
+            BooleanExpression compiled = SelectorCompiler.compile(new SelectorParser().parse(selector));
+            assertTrue(compiled instanceof SelectorCompiler.CompiledSelector);
+
+            // run enough rounds for operands to be re-ordered
+            for (int round = 0; round < 300; round++) {
+                for (TestMessage message : messages) {
+                    assertEquals(selector + " on " + message, interpreted.matches(message),
+                            compiled.matches(message));
+                }
+            }
+        }
+    }
+
+    /**
+     * A property referred several times should be read from the message once
+     */
+    @Test
+    public void testPropertyResolvedOnce() throws Exception {
+        BooleanExpression compiled = SelectorCompiler.compile(
+                new SelectorParser().parse("region = 'EU' OR region = 'US' OR region LIKE 'A%'"));
+        TestMessage message = new TestMessage().withHeader("region", "APAC");
+        assertTrue(compiled.matches(message));
+        assertEquals(1, message.headerLookups);
+    }
+
+    /**
+     * Threads sharing a compiled selector should each get the interpreter's outcome while operands are re-ordered
+     */
+    @Test
+    public void testConcurrentEvaluation() throws Exception {
+        final String selector = "weight > 10 AND priority > 5 AND region = 'EU'";
+        final BooleanExpression interpreted = new SelectorParser().parse(selector);
+        final BooleanExpression compiled = SelectorCompiler.compile(new SelectorParser().parse(selector));
+        final List<TestMessage> messages = createMessages();
+        final AtomicInteger mismatches = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int round = 0; round < 200; round++) {
+                        for (TestMessage message : messages) {
+                            if (interpreted.matches(message) != compiled.matches(message)) {
+                                mismatches.incrementAndGet();
+                            }
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.get());
+    }
+
+    private List<TestMessage> createMessages() {
+        List<TestMessage> messages = new ArrayList<TestMessage>();
+        Object[] regions = {"EU", "US", "APAC", null, 12};
+        Object[] priorities = {1, 4, 6L, 9.5, null, "high"};
+        Object[] weights = {0.5f, 11, null};
+        Object[] flags = {true, false, null};
+        for (Object region : regions) {
+            for (Object priority : priorities) {
+                for (Object weight : weights) {
+                    for (Object flag : flags) {
+                        messages.add(new TestMessage().withHeader("region", region)
+                                .withHeader("priority", priority).withHeader("weight", weight)
+                                .withHeader("flag", flag));
+                    }
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Filterable message with application headers, counting header lookups
+     */
+    private static class TestMessage implements Filterable, AMQMessageHeader {
+
+        private final Map<String, Object> headers = new HashMap<String, Object>();
+
+        private int headerLookups = 0;
+
+        TestMessage withHeader(String name, Object value) {
+            if (null != value) {
+                headers.put(name, value);
+            }
+            return this;
+        }
+
+        @Override
+        public AMQMessageHeader getMessageHeader() {
+            return this;
+        }
+
+        @Override
+        public boolean isPersistent() {
+            return true;
+        }
+
+        @Override
+        public boolean isRedelivered() {
+            return false;
+        }
+
+        @Override
+        public String getCorrelationId() {
+            return null;
+        }
+
+        @Override
+        public long getExpiration() {
+            return 0;
+        }
+
+        @Override
+        public String getMessageId() {
+            return null;
+        }
+
+        @Override
+        public String getMimeType() {
+            return null;
+        }
+
+        @Override
+        public String getEncoding() {
+            return null;
+        }
+
+        @Override
+        public byte getPriority() {
+            return 5;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return 0;
+        }
+
+        @Override
+        public String getType() {
+            return null;
+        }
+
+        @Override
+        public String getReplyTo() {
+            return null;
+        }
+
+        @Override
+        public String getReplyToExchange() {
+            return null;
+        }
+
+        @Override
+        public String getReplyToRoutingKey() {
+            return null;
+        }
+
+        @Override
+        public Object getHeader(String name) {
+            headerLookups++;
+            return headers.get(name);
+        }
+
+        @Override
+        public boolean containsHeaders(Set<String> names) {
+            return headers.keySet().containsAll(names);
+        }
+
+        @Override
+        public boolean containsHeader(String name) {
+            return headers.containsKey(name);
+        }
+
+        @Override
+        public String toString() {
+            return headers.toString();
+        }
+    }
+}
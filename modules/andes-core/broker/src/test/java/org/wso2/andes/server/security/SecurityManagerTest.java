@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.server.security;
+
+import junit.framework.TestCase;
+import org.wso2.andes.server.security.access.ObjectProperties;
+import org.wso2.andes.server.security.access.ObjectType;
+import org.wso2.andes.server.security.access.Operation;
+
+import javax.security.auth.Subject;
+
+/**
+ * Tests caching of publish decisions in {@link SecurityManager}
+ */
+public class SecurityManagerTest extends TestCase
+{
+    private SecurityManager _securityManager;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _securityManager = new SecurityManager(null, null);
+        SecurityManager.setThreadSubject(new Subject());
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        SecurityManager.setThreadSubject(null);
+        super.tearDown();
+    }
+
+    public void testRepeatedPublishIsAuthorisedOnce()
+    {
+        CountingPlugin plugin = new CountingPlugin(Result.ALLOWED);
+        _securityManager.addHostPlugin(plugin);
+
+        assertTrue(_securityManager.authorisePublish(false, "rk", "amq.direct"));
+        assertTrue(_securityManager.authorisePublish(false, "rk", "amq.direct"));
+        assertEquals("Repeated publish should be served from cache", 1, plugin._publishChecks);
+
+        assertTrue(_securityManager.authorisePublish(false, "other", "amq.direct"));
+        assertTrue(_securityManager.authorisePublish(true, "rk", "amq.direct"));
+        assertEquals("Different routing key and immediate flag should be checked", 3, plugin._publishChecks);
+
+        SecurityManager.setThreadSubject(new Subject());
+        assertTrue(_securityManager.authorisePublish(false, "rk", "amq.direct"));
+        assertEquals("Different subject should be checked", 4, plugin._publishChecks);
+    }
+
+    public void testPluginChangeDiscardsCachedDecisions()
+    {
+        _securityManager.addHostPlugin(new CountingPlugin(Result.ALLOWED));
+        assertTrue(_securityManager.authorisePublish(false, "rk", "amq.direct"));
+
+        _securityManager.addHostPlugin(new DenyingPlugin());
+        assertFalse("Cached decision should be discarded after plugin change",
+                    _securityManager.authorisePublish(false, "rk", "amq.direct"));
+    }
+
+    private static class CountingPlugin extends AbstractPlugin
+    {
+        private final Result _result;
+        private int _publishChecks;
+
+        CountingPlugin(Result result)
+        {
+            _result = result;
+        }
+
+        public Result access(ObjectType object, Object instance)
+        {
+            return Result.ABSTAIN;
+        }
+
+        public Result authorise(Operation operation, ObjectType object, ObjectProperties properties)
+        {
+            if (operation == Operation.PUBLISH)
+            {
+                _publishChecks++;
+            }
+            return _result;
+        }
+    }
+
+    private static class DenyingPlugin extends CountingPlugin
+    {
+        DenyingPlugin()
+        {
+            super(Result.DENIED);
+        }
+    }
+}
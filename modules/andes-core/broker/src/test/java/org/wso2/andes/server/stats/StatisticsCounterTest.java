@@ -141,4 +141,34 @@ public class StatisticsCounterTest extends TestCase
         Thread.sleep(1000);
         assertEquals(0.0, counter.getRate());
     }
+
+    /**
+     * Test that no events are lost when many threads register events on the
+     * same counter concurrently.
+     */
+    public void testConcurrentTotal() throws Exception
+    {
+        final StatisticsCounter counter = new StatisticsCounter("test", 10L);
+        final int eventsPerThread = 100000;
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < eventsPerThread; j++)
+                    {
+                        counter.registerEvent(2L);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+        assertEquals(2L * eventsPerThread * threads.length, counter.getTotal());
+    }
 }
@@ -23,6 +23,7 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -304,6 +305,48 @@ public class RDBMSAndesContextStoreImplTest {
         Assert.assertEquals(startValue - decrementBy, resultSet.getLong(RDBMSConstants.MESSAGE_COUNT));
     }
 
+    /**
+     * Test updating message counts of several queues in one call through context store method and then test the
+     * DB state
+     */
+    @Test
+    public void testUpdateMessageCountsForQueues() throws Exception {
+        String[] queueNames = {"queue1", "queue2"};
+        long startValue = 50;
+        long[] deltas = {20, -30};
+
+        // add counters for queues and update the data base for test
+        String insert = "INSERT INTO " + RDBMSConstants.QUEUE_COUNTER_TABLE + " (" +
+                RDBMSConstants.QUEUE_NAME + "," +
+                RDBMSConstants.MESSAGE_COUNT + ") " +
+                " VALUES ( ?,?)";
+
+        PreparedStatement preparedStatement = connection.prepareStatement(insert);
+        Map<String, Long> countDeltas = new HashMap<String, Long>();
+        for (int i = 0; i < queueNames.length; i++) {
+            preparedStatement.setString(1, queueNames[i]);
+            preparedStatement.setLong(2, startValue);
+            preparedStatement.addBatch();
+            countDeltas.put(queueNames[i], deltas[i]);
+        }
+        preparedStatement.executeBatch();
+
+        // update message counts
+        contextStore.updateMessageCountsForQueues(countDeltas);
+
+        // test for database state
+        String select = "SELECT *  FROM " + RDBMSConstants.QUEUE_COUNTER_TABLE + " WHERE " +
+                RDBMSConstants.QUEUE_NAME + "=?";
+        preparedStatement = connection.prepareStatement(select);
+        for (int i = 0; i < queueNames.length; i++) {
+            preparedStatement.setString(1, queueNames[i]);
+            ResultSet resultSet = preparedStatement.executeQuery();
+
+            resultSet.first();
+            Assert.assertEquals(startValue + deltas[i], resultSet.getLong(RDBMSConstants.MESSAGE_COUNT));
+        }
+    }
+
     /**
      * Test functionality of getAllStoredDurableSubscriptions() method by populating the db and
      * then retrieving the durableSubscriptions using the method
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.andes.store.rdbms;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wso2.andes.kernel.AndesMessageMetadata;
+import org.wso2.andes.kernel.AndesRemovableMetadata;
+import org.wso2.andes.kernel.MessageStore;
+import org.wso2.andes.kernel.disruptor.inbound.InboundTransactionEvent;
+import org.wso2.andes.store.rdbms.h2.H2MemAndesContextStoreImpl;
+import org.wso2.andes.store.rdbms.h2.H2MemMessageStoreImpl;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NameAlreadyBoundException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests moving and deleting messages staged by transactions on the schema of the H2 in-memory message store
+ */
+public class RDBMSTransactionStagingTest {
+
+    private static final String STAGING_QUEUE_PREFIX = InboundTransactionEvent.getStagingQueuePrefix("node1");
+
+    private static final String STAGING_QUEUE = STAGING_QUEUE_PREFIX + "1";
+
+    private static final String DESTINATION_QUEUE = "queue_1";
+
+    /**
+     * Expiry time relative to now, long past so that staged messages with an expiry are already expired
+     */
+    private static final int EXPIRED = -1000000000;
+
+    /**
+     * Keeps the in-memory database open between store connections
+     */
+    private static Connection connection;
+
+    private MessageStore messageStore;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        try {
+            System.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.naming.java.javaURLContextFactory");
+            System.setProperty(Context.URL_PKG_PREFIXES, "org.apache.naming");
+
+            InitialContext ic = new InitialContext();
+            ic.createSubcontext("jdbc");
+            JdbcDataSource ds = new JdbcDataSource();
+            ds.setURL("jdbc:h2:mem:msg_store;DB_CLOSE_ON_EXIT=FALSE");
+            ic.bind(RDBMSConstants.H2_MEM_JNDI_LOOKUP_NAME, ds);
+        } catch (NameAlreadyBoundException ignored) {
+        }
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:msg_store;DB_CLOSE_ON_EXIT=FALSE");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        messageStore = new H2MemMessageStoreImpl();
+        messageStore.initializeMessageStore(new H2MemAndesContextStoreImpl(), null);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        messageStore.close();
+        Statement statement = connection.createStatement();
+        statement.execute("DROP ALL OBJECTS");
+        statement.close();
+    }
+
+    /**
+     * A staged message with an expiry should be moved along with its expiry data, under its new message ID and
+     * destination queue
+     */
+    @Test
+    public void testMoveStagedMessageWithExpiry() throws Exception {
+        // Only even message IDs get an expiry
+        messageStore.addMetadata(RDBMSTestHelper.getMetadataList(STAGING_QUEUE, 0, 2, EXPIRED));
+        messageStore.storeMessagePart(RDBMSTestHelper.getMessagePartList(0, 2));
+
+        List<AndesMessageMetadata> targetMetadata = new ArrayList<>();
+        targetMetadata.add(createTarget(10));
+        targetMetadata.add(createTarget(11));
+        messageStore.moveStagedMessages(STAGING_QUEUE, Arrays.asList(0L, 1L), targetMetadata);
+
+        assertTrue(messageStore.getMetadataList(STAGING_QUEUE, 0, 1).isEmpty());
+        assertEquals(2, messageStore.getMetadataList(DESTINATION_QUEUE, 10, 11).size());
+        assertNotNull(messageStore.getContent(10, 0));
+
+        List<AndesRemovableMetadata> expiredMessages = messageStore.getExpiredMessages(10);
+        assertEquals(1, expiredMessages.size());
+        assertEquals(10, expiredMessages.get(0).getMessageID());
+        assertEquals(DESTINATION_QUEUE, expiredMessages.get(0).getStorageDestination());
+    }
+
+    /**
+     * Deleting the staging queues of a node should delete the expiry data of staged messages
+     */
+    @Test
+    public void testDeleteStagedMessagesWithExpiry() throws Exception {
+        messageStore.addMetadata(RDBMSTestHelper.getMetadataList(STAGING_QUEUE, 0, 4, EXPIRED));
+        messageStore.addMetadata(RDBMSTestHelper.getMetadataList(DESTINATION_QUEUE, 4, 6, EXPIRED));
+
+        assertEquals(4, messageStore.deleteAllMessagesOfStorageQueues(STAGING_QUEUE_PREFIX));
+
+        assertTrue(messageStore.getMetadataList(STAGING_QUEUE, 0, 3).isEmpty());
+        List<AndesRemovableMetadata> expiredMessages = messageStore.getExpiredMessages(10);
+        assertEquals(1, expiredMessages.size());
+        assertEquals(4, expiredMessages.get(0).getMessageID());
+    }
+
+    private AndesMessageMetadata createTarget(long messageId) {
+        AndesMessageMetadata metadata = new AndesMessageMetadata();
+        metadata.setMessageID(messageId);
+        metadata.setStorageQueueName(DESTINATION_QUEUE);
+        return metadata;
+    }
+}
@@ -697,6 +697,24 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
      */
     public abstract void acknowledgeMessage(long deliveryTag, boolean multiple);
 
+    /**
+     * Acknowledge a message consumed in AUTO_ACKNOWLEDGE or DUPS_OK_ACKNOWLEDGE mode. The acknowledgement is sent
+     * right away unless the session batches acknowledgements.
+     *
+     * @param deliveryTag The tag of the consumed message.
+     */
+    void autoAcknowledgeMessage(long deliveryTag)
+    {
+        acknowledgeMessage(deliveryTag, false);
+    }
+
+    /**
+     * Called by the dispatcher when it has dispatched all the messages received so far.
+     */
+    protected void dispatcherIdle()
+    {
+    }
+
     public MethodRegistry getMethodRegistry()
     {
         MethodRegistry methodRegistry = getProtocolHandler().getMethodRegistry();
@@ -1714,6 +1732,14 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
         ackWaitTimeOutTrackingMap.put(id, System.currentTimeMillis());
     }
 
+    /**
+     * @return the tag of the last message received on this session, -1 if none is received
+     */
+    protected long getHighestDeliveryTag()
+    {
+        return _highestDeliveryTag.get();
+    }
+
     protected void addDeliveredMessage(long id)
     {
         _deliveredMessageTags.add(id);
@@ -3338,6 +3364,10 @@ public abstract class AMQSession<C extends BasicMessageConsumer, P extends Basic
                 while (!_closed.get() && ((disp = (Dispatchable) _queue.take()) != null))
                 {
                     disp.dispatch(AMQSession.this);
+                    if (_queue.isEmpty())
+                    {
+                        dispatcherIdle();
+                    }
                 }
             }
             catch (InterruptedException e)
@@ -21,7 +21,13 @@
 package org.wso2.andes.client;
 
 
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.SortedSet;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeSet;
 
 import javax.jms.Destination;
 import javax.jms.JMSException;
@@ -41,6 +47,7 @@ import org.wso2.andes.client.state.AMQState;
 import org.wso2.andes.client.state.AMQStateManager;
 import org.wso2.andes.client.state.listener.SpecificMethodFrameListener;
 import org.wso2.andes.common.AMQPFilterTypes;
+import org.wso2.andes.configuration.ClientProperties;
 import org.wso2.andes.framing.AMQFrame;
 import org.wso2.andes.framing.AMQMethodBody;
 import org.wso2.andes.framing.AMQShortString;
@@ -85,6 +92,71 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
     /** Used for debugging. */
     private static final Logger _logger = LoggerFactory.getLogger(AMQSession.class);
 
+    private static Timer ackBatchTimer = new Timer("ack-batch-flusher", true);
+
+    /**
+     * Sends the batched acknowledgement of a session once the batch delay is elapsed
+     */
+    private static class AckBatchFlusher extends TimerTask
+    {
+        private WeakReference<AMQSession_0_8> session;
+
+        public AckBatchFlusher(AMQSession_0_8 session)
+        {
+            this.session = new WeakReference<AMQSession_0_8>(session);
+        }
+
+        public void run()
+        {
+            AMQSession_0_8 ssn = session.get();
+            if (ssn == null || ssn.isClosed())
+            {
+                cancel();
+            }
+            else
+            {
+                try
+                {
+                    ssn.flushAcknowledgments();
+                }
+                catch (Throwable t)
+                {
+                    _logger.error("error flushing batched acks", t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of consumed messages acknowledged with a single multiple acknowledgement. Batching is disabled when
+     * this is 1 or less.
+     */
+    private final int _ackBatchSize = Integer.getInteger(ClientProperties.ACK_BATCH_SIZE_PROP_NAME,
+                                                         ClientProperties.ACK_BATCH_SIZE_DEFAULT);
+
+    /**
+     * Maximum time in milliseconds a batched acknowledgement is held
+     */
+    private final long _ackBatchDelay = Long.getLong(ClientProperties.ACK_BATCH_DELAY_PROP_NAME,
+                                                     ClientProperties.ACK_BATCH_DELAY_DEFAULT);
+
+    private final Object _ackBatchLock = new Object();
+
+    /**
+     * Every message up to this tag is either acknowledged or in the pending batch. A multiple acknowledgement for a
+     * higher tag would acknowledge messages not consumed yet, e.g. prefetched messages of another consumer.
+     */
+    private long _ackBatchLastTag;
+
+    /** Number of consumed messages waiting for the batched acknowledgement */
+    private int _ackBatchCount;
+
+    /** Tags consumed after a gap in the consumed tags. These are acknowledged one by one. */
+    private final SortedSet<Long> _ackBatchOutOfOrderTags = new TreeSet<Long>();
+
+    /** Set when a gap is not closed within a prefetch window, acknowledgements are sent one by one from then on */
+    private boolean _ackBatchSuspended;
+
     /**
      * Creates a new session on a connection.
      *
@@ -101,6 +173,11 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
     {
 
          super(con,channelId,transacted,acknowledgeMode,messageFactoryRegistry,defaultPrefetchHighMark,defaultPrefetchLowMark);
+
+        if (isAckBatchingEnabled() && _ackBatchDelay > 0)
+        {
+            ackBatchTimer.schedule(new AckBatchFlusher(this), _ackBatchDelay, _ackBatchDelay);
+        }
     }
 
     /**
@@ -137,6 +214,28 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
         }
 
         getProtocolHandler().writeFrame(ackFrame);
+        if (multiple)
+        {
+            Iterator<Long> tags = _unacknowledgedMessageTags.iterator();
+            while (tags.hasNext())
+            {
+                if (tags.next() <= deliveryTag)
+                {
+                    tags.remove();
+                }
+            }
+            synchronized (ackWaitTimeOutTrackingMap)
+            {
+                Iterator<Long> trackedTags = ackWaitTimeOutTrackingMap.keySet().iterator();
+                while (trackedTags.hasNext())
+                {
+                    if (trackedTags.next() <= deliveryTag)
+                    {
+                        trackedTags.remove();
+                    }
+                }
+            }
+        }
         _unacknowledgedMessageTags.remove(deliveryTag);
         ackWaitTimeOutTrackingMap.remove(deliveryTag);
          if(_logger.isDebugEnabled()) {
@@ -155,6 +254,9 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
 
     public void sendClose(long timeout) throws AMQException, FailoverException
     {
+        // acknowledge consumed messages before the broker requeues them on close
+        flushAcknowledgments();
+
         // we also need to check the state manager for 08/09 as the
         // _connection variable may not be updated in time by the error receiving
         // thread.
@@ -200,8 +302,12 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
 
     public void sendRecover() throws AMQException, FailoverException
     {
+        // a batched acknowledgement sent after recover would cover requeued messages
+        flushAcknowledgments();
         _unacknowledgedMessageTags.clear();
         ackWaitTimeOutTrackingMap.clear();
+        // every message received so far is either acknowledged or requeued by the broker once recovered
+        long recoveredTag = getHighestDeliveryTag();
 
         if (isStrictAMQP())
         {
@@ -235,6 +341,7 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
                 throw new RuntimeException("Unsupported version of the AMQP Protocol: " + getProtocolVersion());
             }
         }
+        resetAckBatch(recoveredTag);
     }
 
     public void releaseForRollback()
@@ -578,9 +685,122 @@ public final class AMQSession_0_8 extends AMQSession<BasicMessageConsumer_0_8, B
                 + "not supported for AMQP 0-8/0-9 versions");
     }
     
+    /**
+     * Send the batched acknowledgement of consumed messages, if any
+     */
     protected void flushAcknowledgments()
     {
-        
+        synchronized (_ackBatchLock)
+        {
+            if (_ackBatchCount > 0)
+            {
+                acknowledgeMessage(_ackBatchLastTag, true);
+                _ackBatchCount = 0;
+            }
+        }
+    }
+
+    /**
+     * Acknowledge a message consumed in AUTO_ACKNOWLEDGE or DUPS_OK_ACKNOWLEDGE mode. When batching is enabled
+     * consecutive tags are acknowledged together with a multiple acknowledgement once the batch is full, the batch
+     * delay is elapsed or the dispatcher has no more messages. A tag consumed ahead of a lower tag, which is still
+     * with a consumer, is acknowledged on its own.
+     *
+     * @param deliveryTag The tag of the consumed message.
+     */
+    void autoAcknowledgeMessage(long deliveryTag)
+    {
+        if (!isAckBatchingEnabled())
+        {
+            acknowledgeMessage(deliveryTag, false);
+            return;
+        }
+
+        synchronized (_ackBatchLock)
+        {
+            if (_ackBatchSuspended)
+            {
+                acknowledgeMessage(deliveryTag, false);
+            }
+            else if (deliveryTag == _ackBatchLastTag + 1)
+            {
+                _ackBatchLastTag = deliveryTag;
+                _ackBatchCount++;
+                advanceAckBatchOverOutOfOrderTags();
+                if (_ackBatchCount >= _ackBatchSize)
+                {
+                    flushAcknowledgments();
+                }
+            }
+            else
+            {
+                acknowledgeMessage(deliveryTag, false);
+                _ackBatchOutOfOrderTags.add(deliveryTag);
+                if (_ackBatchOutOfOrderTags.size() > Math.max(getDefaultPrefetchHigh(), _ackBatchSize))
+                {
+                    _logger.info("Delivery tag " + (_ackBatchLastTag + 1) + " is not consumed within a prefetch "
+                                 + "window on channel " + _channelId + ". Acknowledgements are no longer batched.");
+                    flushAcknowledgments();
+                    _ackBatchOutOfOrderTags.clear();
+                    _ackBatchSuspended = true;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void dispatcherIdle()
+    {
+        flushAcknowledgments();
+    }
+
+    @Override
+    void resubscribe() throws AMQException
+    {
+        // delivery tags start over on the new channel
+        synchronized (_ackBatchLock)
+        {
+            _ackBatchLastTag = 0;
+            _ackBatchCount = 0;
+            _ackBatchOutOfOrderTags.clear();
+            _ackBatchSuspended = false;
+        }
+        super.resubscribe();
+    }
+
+    private boolean isAckBatchingEnabled()
+    {
+        return _ackBatchSize > 1
+               && (_acknowledgeMode == AUTO_ACKNOWLEDGE || _acknowledgeMode == DUPS_OK_ACKNOWLEDGE);
+    }
+
+    /**
+     * Mark messages up to the given tag as settled after the broker requeued every unacknowledged message
+     */
+    private void resetAckBatch(long settledTag)
+    {
+        synchronized (_ackBatchLock)
+        {
+            if (settledTag > _ackBatchLastTag)
+            {
+                _ackBatchLastTag = settledTag;
+            }
+            _ackBatchOutOfOrderTags.headSet(_ackBatchLastTag + 1).clear();
+            advanceAckBatchOverOutOfOrderTags();
+        }
+    }
+
+    /**
+     * Move the batch over tags already acknowledged one by one once the gap below them is closed
+     */
+    private void advanceAckBatchOverOutOfOrderTags()
+    {
+        Iterator<Long> tags = _ackBatchOutOfOrderTags.iterator();
+        while (tags.hasNext() && tags.next() == _ackBatchLastTag + 1)
+        {
+            tags.remove();
+            _ackBatchLastTag++;
+        }
     }
 
     public boolean isQueueBound(String exchangeName, String queueName,
@@ -797,7 +797,7 @@ public abstract class BasicMessageConsumer<U> extends Closeable implements Messa
                 // we do not auto ack a message if the application code called recover()
                 if (!_session.isInRecovery())
                 {
-                    _session.acknowledgeMessage(msg.getDeliveryTag(), false);
+                    _session.autoAcknowledgeMessage(msg.getDeliveryTag());
                 }
 
                 break;
@@ -90,6 +90,24 @@ public class ClientProperties
 
     public static final String QPID_VERIFY_CLIENT_ID = "qpid.verify_client_id";
 
+    /**
+     * This property is currently used within the 0-8/0-9 code path only
+     * Number of messages consumed in AUTO_ACKNOWLEDGE and DUPS_OK_ACKNOWLEDGE modes which are acknowledged
+     * together with a single multiple acknowledgement. Acknowledgements are sent one by one when this is 1 or less.
+     * type: int
+     */
+    public static final String ACK_BATCH_SIZE_PROP_NAME = "qpid.session.ack_batch_size";
+    public static final int ACK_BATCH_SIZE_DEFAULT = 1;
+
+    /**
+     * Maximum time in milliseconds a batched acknowledgement is held before it is sent, regardless of the number of
+     * messages in the batch. Batched acknowledgements are also sent when the session runs out of messages to
+     * dispatch, on recover and on close.
+     * type: long
+     */
+    public static final String ACK_BATCH_DELAY_PROP_NAME = "qpid.session.ack_batch_delay";
+    public static final long ACK_BATCH_DELAY_DEFAULT = 100;
+
     private static ClientProperties _instance = new ClientProperties();
 
     /*
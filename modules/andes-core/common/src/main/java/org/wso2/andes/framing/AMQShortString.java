@@ -21,13 +21,14 @@
 
 package org.wso2.andes.framing;
 
+import com.google.common.cache.CacheBuilder;
 import org.apache.mina.common.ByteBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * A short string is a representation of an AMQ Short String
@@ -96,17 +97,19 @@ public final class AMQShortString implements CharSequence, Comparable<AMQShortSt
     }
 
 
-    private static final ThreadLocal<Map<AMQShortString, WeakReference<AMQShortString>>> _localInternMap =
-            new ThreadLocal<Map<AMQShortString, WeakReference<AMQShortString>>>()
-            {
-                protected Map<AMQShortString, WeakReference<AMQShortString>> initialValue()
-                {
-                    return new WeakHashMap<AMQShortString, WeakReference<AMQShortString>>();
-                };
-            };
+    /**
+     * Maximum number of interned short strings. The least recently used strings are evicted from the intern pool
+     * when it is full, so that names which are used once, e.g. temporary queue names, do not accumulate while
+     * names in use stay pooled.
+     */
+    public static final String INTERN_POOL_SIZE_PROP_NAME = "qpid.short_string.intern_pool_size";
 
-    private static final Map<AMQShortString, WeakReference<AMQShortString>> _globalInternMap =
-            new WeakHashMap<AMQShortString, WeakReference<AMQShortString>>();
+    private static final int INTERN_POOL_SIZE = Integer.getInteger(INTERN_POOL_SIZE_PROP_NAME, 10000);
+
+    private static final ConcurrentMap<AMQShortString, AMQShortString> _internPool = CacheBuilder.newBuilder()
+            .maximumSize(INTERN_POOL_SIZE)
+            .<AMQShortString, AMQShortString>build()
+            .asMap();
 
     private static final Logger _logger = LoggerFactory.getLogger(AMQShortString.class);
 
@@ -617,40 +620,29 @@ public final class AMQShortString implements CharSequence, Comparable<AMQShortSt
     }
 
 
+    /**
+     * Get the pooled short string equal to this one. Lookups of pooled strings neither block nor allocate.
+     *
+     * @return pooled short string, this short string or a trimmed copy of it if it was not pooled before
+     */
     public AMQShortString intern()
     {
 
         hashCode();
 
-        Map<AMQShortString, WeakReference<AMQShortString>> localMap =
-                _localInternMap.get();
-
-        WeakReference<AMQShortString> ref = localMap.get(this);
-        AMQShortString internString;
-
-        if(ref != null)
+        AMQShortString internString = _internPool.get(this);
+        if (internString != null)
         {
-            internString = ref.get();
-            if(internString != null)
-            {
-                return internString;
-            }
+            return internString;
         }
 
-
-        synchronized(_globalInternMap)
+        internString = shrink();
+        internString.hashCode();
+        AMQShortString existing = _internPool.putIfAbsent(internString, internString);
+        if (existing != null)
         {
-
-            ref = _globalInternMap.get(this);
-            if((ref == null) || ((internString = ref.get()) == null))
-            {
-                internString = shrink();
-                ref = new WeakReference(internString);
-                _globalInternMap.put(internString, ref);
-            }
-
+            return existing;
         }
-        localMap.put(internString, ref);
         return internString;
 
     }
@@ -300,6 +300,43 @@ public class AMQShortStringTest extends TestCase
         assertEquals("join result differs from expected", expected.toString(), result.asString());
     }
 
+    /**
+     * Tests interning of equal short strings, including one backed by a larger array.
+     */
+    public void testIntern()
+    {
+        AMQShortString first = new AMQShortString("sports.cricket.scores");
+        AMQShortString second = new AMQShortString("sports.cricket.scores");
+        AMQShortString interned = first.intern();
+
+        assertSame("equal short strings are not interned to the same instance", interned, second.intern());
+        assertEquals("interned short string differs from the original", first, interned);
+
+        AMQShortString token = new AMQShortString("news.sports.cricket.scores").tokenize((byte) '.').nextToken();
+        AMQShortString internedToken = token.intern();
+        assertEquals("interned token differs from the token", "news", internedToken.asString());
+        assertSame("equal tokens are not interned to the same instance", internedToken,
+                   new AMQShortString("news").intern());
+    }
+
+    /**
+     * Tests that a short string in use stays pooled while more short strings than the pool holds are interned.
+     */
+    public void testInternKeepsRecentlyUsed()
+    {
+        AMQShortString interned = new AMQShortString("sports.cricket.scores").intern();
+        int poolSize = Integer.getInteger(AMQShortString.INTERN_POOL_SIZE_PROP_NAME, 10000);
+        for (int i = 0; i < poolSize * 3; i++)
+        {
+            new AMQShortString("temp.queue." + i).intern();
+            if (i % 100 == 0)
+            {
+                assertSame("short string in use is evicted from the pool", interned,
+                           new AMQShortString("sports.cricket.scores").intern());
+            }
+        }
+    }
+
     /**
      * A helper method to generate a string with given length containing given
      * character
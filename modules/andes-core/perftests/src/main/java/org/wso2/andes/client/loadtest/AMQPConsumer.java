@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.apache.log4j.Logger;
+import org.wso2.andes.client.AMQConnectionFactory;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+/**
+ * Consumer receiving JMS messages through the AMQP transport with the Andes client. Durable subscriptions are
+ * removed when the consumer closes.
+ */
+class AMQPConsumer extends LoadConsumer {
+
+    private static final Logger log = Logger.getLogger(AMQPConsumer.class);
+
+    private final String connectionURL;
+
+    private final Workload workload;
+
+    private final String destinationName;
+
+    /**
+     * Message selector, null to receive all messages
+     */
+    private final String selector;
+
+    private final String subscriptionName;
+
+    private final boolean transacted;
+
+    private Connection connection;
+
+    private Session session;
+
+    private MessageConsumer consumer;
+
+    /**
+     * @param connectionURL        AMQP connection URL with a client ID unique to this consumer
+     * @param workload             kind of destination to consume from
+     * @param destinationName      queue or topic name
+     * @param selector             message selector, null or empty to receive all messages
+     * @param subscriptionName     name of the durable subscription, used for durable topics only
+     * @param progress             progress shared by publishers and consumers of the load test
+     * @param idleTimeoutMillis    time without messages after publishing is done after which the consumer stops
+     * @param transactionBatchSize number of messages received in a transaction, 0 if not transacted
+     */
+    AMQPConsumer(String connectionURL, Workload workload, String destinationName, String selector,
+                 String subscriptionName, LoadTestProgress progress, long idleTimeoutMillis,
+                 int transactionBatchSize) {
+        super(progress, idleTimeoutMillis, transactionBatchSize);
+        this.connectionURL = connectionURL;
+        this.workload = workload;
+        this.destinationName = destinationName;
+        this.selector = (null == selector || selector.isEmpty()) ? null : selector;
+        this.subscriptionName = subscriptionName;
+        this.transacted = transactionBatchSize > 0;
+    }
+
+    @Override
+    void open() throws Exception {
+        connection = new AMQConnectionFactory(connectionURL).createConnection();
+        session = connection.createSession(transacted, transacted ? Session.SESSION_TRANSACTED
+                : Session.AUTO_ACKNOWLEDGE);
+        Destination destination = workload.isTopic() ? session.createTopic(destinationName)
+                : session.createQueue(destinationName);
+        if (Workload.DURABLE_TOPIC == workload) {
+            consumer = session.createDurableSubscriber((Topic) destination, subscriptionName, selector, false);
+        } else {
+            consumer = session.createConsumer(destination, selector);
+        }
+        connection.start();
+    }
+
+    @Override
+    long receive(long timeoutMillis) throws JMSException {
+        Message message = consumer.receive(timeoutMillis);
+        if (null == message) {
+            return NO_MESSAGE;
+        }
+        return message.getLongProperty(AMQPPublisher.SEND_TIME_PROPERTY);
+    }
+
+    @Override
+    void commit() throws JMSException {
+        session.commit();
+    }
+
+    @Override
+    void close() {
+        if (null == connection) {
+            return;
+        }
+        try {
+            if (Workload.DURABLE_TOPIC == workload && null != consumer) {
+                consumer.close();
+                session.unsubscribe(subscriptionName);
+            }
+            connection.close();
+        } catch (JMSException e) {
+            log.warn("Error while closing consumer connection", e);
+        }
+    }
+}
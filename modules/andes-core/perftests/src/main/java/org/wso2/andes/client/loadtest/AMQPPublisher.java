@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.apache.log4j.Logger;
+import org.wso2.andes.client.AMQConnectionFactory;
+import org.wso2.andes.client.message.TestMessageFactory;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+/**
+ * Publisher sending JMS text messages through the AMQP transport with the Andes client
+ */
+class AMQPPublisher extends LoadPublisher {
+
+    private static final Logger log = Logger.getLogger(AMQPPublisher.class);
+
+    /**
+     * Long property holding {@link System#nanoTime()} at which a message was sent
+     */
+    static final String SEND_TIME_PROPERTY = "sendTime";
+
+    /**
+     * Int property in [0, {@link #PARTITION_COUNT}) set on each message so that consumers can select a share of the
+     * messages, e.g. with the selector "partition &lt; 5"
+     */
+    static final String PARTITION_PROPERTY = "partition";
+
+    static final int PARTITION_COUNT = 10;
+
+    private final String connectionURL;
+
+    private final Workload workload;
+
+    private final String destinationName;
+
+    private final int messageSize;
+
+    private final boolean persistent;
+
+    private final boolean transacted;
+
+    private Connection connection;
+
+    private Session session;
+
+    private MessageProducer producer;
+
+    private TextMessage message;
+
+    /**
+     * @param connectionURL        AMQP connection URL with a client ID unique to this publisher
+     * @param workload             kind of destination to publish to
+     * @param destinationName      queue or topic name
+     * @param messageSize          size of message content in bytes
+     * @param persistent           true to send persistent messages
+     * @param messageCount         number of messages to send
+     * @param rate                 maximum number of messages sent per second, 0 for no limit
+     * @param transactionBatchSize number of messages sent in a transaction, 0 if not transacted
+     */
+    AMQPPublisher(String connectionURL, Workload workload, String destinationName, int messageSize,
+                  boolean persistent, long messageCount, int rate, int transactionBatchSize) {
+        super(messageCount, rate, transactionBatchSize);
+        this.connectionURL = connectionURL;
+        this.workload = workload;
+        this.destinationName = destinationName;
+        this.messageSize = messageSize;
+        this.persistent = persistent;
+        this.transacted = transactionBatchSize > 0;
+    }
+
+    @Override
+    void open() throws Exception {
+        connection = new AMQConnectionFactory(connectionURL).createConnection();
+        session = connection.createSession(transacted, transacted ? Session.SESSION_TRANSACTED
+                : Session.AUTO_ACKNOWLEDGE);
+        Destination destination = workload.isTopic() ? session.createTopic(destinationName)
+                : session.createQueue(destinationName);
+        producer = session.createProducer(destination);
+        producer.setDeliveryMode(persistent ? DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT);
+        message = TestMessageFactory.newTextMessage(session, messageSize);
+    }
+
+    @Override
+    void publish(long sequence, long sendTimeNanos) throws JMSException {
+        message.setLongProperty(SEND_TIME_PROPERTY, sendTimeNanos);
+        message.setIntProperty(PARTITION_PROPERTY, (int) (sequence % PARTITION_COUNT));
+        producer.send(message);
+    }
+
+    @Override
+    void commit() throws JMSException {
+        session.commit();
+    }
+
+    @Override
+    void close() {
+        if (null != connection) {
+            try {
+                connection.close();
+            } catch (JMSException e) {
+                log.warn("Error while closing publisher connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.apache.log4j.Logger;
+import org.dna.mqtt.moquette.server.Server;
+import org.h2.jdbcx.JdbcDataSource;
+import org.wso2.andes.configuration.AndesConfigurationManager;
+import org.wso2.andes.kernel.AndesContext;
+import org.wso2.andes.kernel.AndesException;
+import org.wso2.andes.server.Broker;
+import org.wso2.andes.server.BrokerOptions;
+import org.wso2.andes.server.registry.ApplicationRegistry;
+import org.wso2.andes.store.rdbms.h2.H2MemAndesContextStoreImpl;
+import org.wso2.andes.store.rdbms.h2.H2MemMessageStoreImpl;
+import org.wso2.carbon.utils.ServerConstants;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import javax.naming.NameAlreadyBoundException;
+import javax.naming.NamingException;
+
+/**
+ * Runs a broker inside the current JVM with the H2 in-memory message and context stores. AMQP and MQTT transports
+ * listen on the given ports so that clients connect to the broker over loopback as they would to a standalone
+ * broker.
+ * <p/>
+ * Andes configuration is written to a temporary carbon home with default values for everything other than the
+ * stores and the ports. Qpid configuration, virtual hosts and users, is read from the given Qpid configuration file.
+ */
+public class EmbeddedBroker {
+
+    private static final Logger log = Logger.getLogger(EmbeddedBroker.class);
+
+    /**
+     * JNDI name of the data source the H2 in-memory stores connect to
+     */
+    private static final String H2_MEM_JNDI_LOOKUP_NAME = "WSO2MBInMemoryStoreDB";
+
+    private static final String H2_MEM_URL = "jdbc:h2:mem:loadtest_store;DB_CLOSE_ON_EXIT=FALSE";
+
+    private final File qpidConfigFile;
+
+    private final int amqpPort;
+
+    private final int mqttPort;
+
+    private Broker broker;
+
+    private Server mqttServer;
+
+    /**
+     * Create a broker listening on the given ports
+     *
+     * @param qpidConfigFile Qpid configuration file, e.g. ${QPID_HOME}/etc/config.xml
+     * @param amqpPort       port AMQP clients connect to
+     * @param mqttPort       port MQTT clients connect to
+     */
+    public EmbeddedBroker(File qpidConfigFile, int amqpPort, int mqttPort) {
+        this.qpidConfigFile = qpidConfigFile;
+        this.amqpPort = amqpPort;
+        this.mqttPort = mqttPort;
+    }
+
+    /**
+     * Start the broker and its transports
+     *
+     * @throws AndesException if the broker could not be started
+     */
+    public void start() throws AndesException {
+        if (null == System.getProperty(ServerConstants.CARBON_HOME)) {
+            System.setProperty(ServerConstants.CARBON_HOME, createCarbonHome().getAbsolutePath());
+        }
+        AndesConfigurationManager.initialize(0);
+        AndesContext.getInstance().setClusteringEnabled(false);
+        AndesContext.getInstance().constructStoreConfiguration();
+        bindInMemoryDataSource();
+
+        BrokerOptions options = new BrokerOptions();
+        options.setConfigFile(qpidConfigFile.getAbsolutePath());
+        options.addPort(amqpPort);
+        broker = new Broker();
+        broker.startup(options);
+
+        try {
+            mqttServer = new Server();
+            mqttServer.startServer(mqttPort);
+        } catch (IOException e) {
+            throw new AndesException("Error while starting MQTT transport on port " + mqttPort, e);
+        }
+        log.info("Embedded broker started with AMQP port " + amqpPort + " and MQTT port " + mqttPort);
+    }
+
+    /**
+     * Stop the transports and the broker
+     *
+     * @throws AndesException if the broker did not shut down cleanly
+     */
+    public void stop() throws AndesException {
+        if (null != mqttServer) {
+            mqttServer.stopServer();
+        }
+        if (null != broker) {
+            broker.shutdown();
+            ApplicationRegistry.remove();
+        }
+    }
+
+    /**
+     * Bind an H2 in-memory data source to the JNDI name the in-memory stores look up. The Tomcat naming context is
+     * used unless another JNDI provider is configured.
+     */
+    private static void bindInMemoryDataSource() throws AndesException {
+        if (null == System.getProperty(Context.INITIAL_CONTEXT_FACTORY)) {
+            System.setProperty(Context.INITIAL_CONTEXT_FACTORY, "org.apache.naming.java.javaURLContextFactory");
+            System.setProperty(Context.URL_PKG_PREFIXES, "org.apache.naming");
+        }
+        try {
+            InitialContext initialContext = new InitialContext();
+            try {
+                initialContext.createSubcontext("jdbc");
+            } catch (NameAlreadyBoundException ignored) {
+                // Sub context is created once per JVM
+            }
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL(H2_MEM_URL);
+            initialContext.rebind(H2_MEM_JNDI_LOOKUP_NAME, dataSource);
+        } catch (NamingException e) {
+            throw new AndesException("Error while binding in-memory data source", e);
+        }
+    }
+
+    /**
+     * Create a carbon home with a broker.xml selecting the in-memory stores and the transport ports
+     */
+    private File createCarbonHome() throws AndesException {
+        try {
+            File carbonHome = Files.createTempDirectory("andes-loadtest").toFile();
+            File configDirectory = new File(carbonHome, "repository" + File.separator + "conf");
+            File databaseDirectory = new File(carbonHome, "repository" + File.separator + "database");
+            if (!configDirectory.mkdirs() || !databaseDirectory.mkdirs()) {
+                throw new AndesException("Could not create carbon home at " + carbonHome);
+            }
+            Writer writer = new FileWriter(new File(configDirectory, "broker.xml"));
+            try {
+                writer.write("<broker>\n"
+                        + "    <transports>\n"
+                        + "        <amqp enabled=\"true\">\n"
+                        + "            <defaultConnection enabled=\"true\" port=\"" + amqpPort + "\"/>\n"
+                        + "            <sslConnection enabled=\"false\"/>\n"
+                        + "        </amqp>\n"
+                        + "        <mqtt enabled=\"true\">\n"
+                        + "            <defaultConnection enabled=\"true\" port=\"" + mqttPort + "\"/>\n"
+                        + "            <sslConnection enabled=\"false\"/>\n"
+                        + "        </mqtt>\n"
+                        + "    </transports>\n"
+                        + "    <persistence>\n"
+                        + "        <messageStore class=\"" + H2MemMessageStoreImpl.class.getName() + "\"/>\n"
+                        + "        <contextStore class=\"" + H2MemAndesContextStoreImpl.class.getName() + "\"/>\n"
+                        + "    </persistence>\n"
+                        + "</broker>\n");
+            } finally {
+                writer.close();
+            }
+            return carbonHome;
+        } catch (IOException e) {
+            throw new AndesException("Error while creating configuration of the embedded broker", e);
+        }
+    }
+}
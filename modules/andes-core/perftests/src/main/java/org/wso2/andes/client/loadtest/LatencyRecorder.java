@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records publish to deliver latencies of the messages received by a consumer. A recorder is used by a single
+ * consumer thread. Latencies are kept as recorded so that percentiles of all consumers are exact.
+ */
+class LatencyRecorder {
+
+    /**
+     * Percentiles reported for a load test
+     */
+    private static final double[] PERCENTILES = {50, 75, 90, 95, 99, 99.9};
+
+    private long[] latencies = new long[1024];
+
+    private int count;
+
+    /**
+     * Record the latency of a message
+     *
+     * @param latencyNanos time from publishing to receiving the message in nanoseconds
+     */
+    void record(long latencyNanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count] = latencyNanos;
+        count++;
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Summarize latencies recorded by all recorders in microseconds. The summary has the minimum, mean, maximum and
+     * percentiles keyed as "p50", "p99.9" etc.
+     *
+     * @param recorders recorders of all consumers
+     * @return latency summary, empty if no latency was recorded
+     */
+    static Map<String, Double> summarize(Collection<LatencyRecorder> recorders) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total = total + recorder.count;
+        }
+        Map<String, Double> summary = new LinkedHashMap<>();
+        if (0 == total) {
+            return summary;
+        }
+
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.latencies, 0, merged, offset, recorder.count);
+            offset = offset + recorder.count;
+        }
+        Arrays.sort(merged);
+
+        double sum = 0;
+        for (long latency : merged) {
+            sum = sum + latency;
+        }
+        summary.put("min", toMicros(merged[0]));
+        summary.put("mean", toMicros(sum / total));
+        for (double percentile : PERCENTILES) {
+            int index = (int) Math.ceil(percentile / 100 * total) - 1;
+            String key = "p" + (percentile == Math.rint(percentile) ? Integer.toString((int) percentile)
+                    : Double.toString(percentile));
+            summary.put(key, toMicros(merged[Math.max(0, index)]));
+        }
+        summary.put("max", toMicros(merged[total - 1]));
+        return summary;
+    }
+
+    private static double toMicros(double nanos) {
+        return nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
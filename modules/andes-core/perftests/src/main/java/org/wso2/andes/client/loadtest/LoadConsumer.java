@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumer of a load test. A consumer receives messages on its own thread and records the latency of each until
+ * the load test is done. Clients of the broker transports extend this to receive messages through the transport.
+ */
+abstract class LoadConsumer implements Runnable {
+
+    private static final Logger log = Logger.getLogger(LoadConsumer.class);
+
+    /**
+     * Returned by {@link #receive(long)} when no message arrived in time
+     */
+    static final long NO_MESSAGE = -1;
+
+    /**
+     * Time to wait for a message before checking whether the load test is done
+     */
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private final LoadTestProgress progress;
+
+    private final long idleTimeoutNanos;
+
+    /**
+     * Number of messages received in a transaction, 0 if messages are not received in transactions
+     */
+    private final int transactionBatchSize;
+
+    private final LatencyRecorder latencyRecorder = new LatencyRecorder();
+
+    private volatile long receivedCount;
+
+    private volatile long lastReceiveNanos;
+
+    private volatile Exception error;
+
+    /**
+     * @param progress             progress shared by publishers and consumers of the load test
+     * @param idleTimeoutMillis    time without messages after publishing is done after which the consumer stops
+     * @param transactionBatchSize number of messages received in a transaction, 0 if not transacted
+     */
+    LoadConsumer(LoadTestProgress progress, long idleTimeoutMillis, int transactionBatchSize) {
+        this.progress = progress;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.transactionBatchSize = transactionBatchSize;
+    }
+
+    /**
+     * Connect to the broker and subscribe. Messages published after this returns are received by the consumer.
+     *
+     * @throws Exception if the subscription could not be made
+     */
+    abstract void open() throws Exception;
+
+    /**
+     * Receive a message
+     *
+     * @param timeoutMillis maximum time to wait for a message
+     * @return {@link System#nanoTime()} at which the message was sent, {@link #NO_MESSAGE} if no message arrived
+     * @throws Exception if receiving failed
+     */
+    abstract long receive(long timeoutMillis) throws Exception;
+
+    /**
+     * Commit messages received since the last commit
+     *
+     * @throws Exception if the transaction could not be committed
+     */
+    abstract void commit() throws Exception;
+
+    /**
+     * Close the subscription and disconnect from the broker
+     */
+    abstract void close();
+
+    @Override
+    public void run() {
+        try {
+            long idleSince = System.nanoTime();
+            while (!progress.isReceivingDone()) {
+                long sendTimeNanos = receive(POLL_INTERVAL_MILLIS);
+                long now = System.nanoTime();
+                if (NO_MESSAGE == sendTimeNanos) {
+                    if (progress.isPublishingDone() && now - idleSince > idleTimeoutNanos) {
+                        break;
+                    }
+                    continue;
+                }
+                idleSince = now;
+                latencyRecorder.record(now - sendTimeNanos);
+                lastReceiveNanos = now;
+                receivedCount++;
+                progress.messageReceived();
+                if (transactionBatchSize > 0 && receivedCount % transactionBatchSize == 0) {
+                    commit();
+                }
+            }
+            if (transactionBatchSize > 0 && receivedCount % transactionBatchSize != 0) {
+                commit();
+            }
+        } catch (Exception e) {
+            error = e;
+            log.error("Consumer stopped after receiving " + receivedCount + " messages", e);
+        } finally {
+            close();
+        }
+    }
+
+    LatencyRecorder getLatencyRecorder() {
+        return latencyRecorder;
+    }
+
+    long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * @return {@link System#nanoTime()} at which the last message was received, 0 if none was received
+     */
+    long getLastReceiveNanos() {
+        return lastReceiveNanos;
+    }
+
+    /**
+     * @return error which stopped the consumer, null if it stopped normally
+     */
+    Exception getError() {
+        return error;
+    }
+}
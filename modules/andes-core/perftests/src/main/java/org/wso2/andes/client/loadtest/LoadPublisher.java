@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.apache.log4j.Logger;
+import org.wso2.andes.junit.extensions.BatchedThrottle;
+import org.wso2.andes.junit.extensions.Throttle;
+
+/**
+ * Publisher of a load test. A publisher sends a fixed number of messages at up to a given rate from its own thread,
+ * stamping each message with the time it was sent so that consumers can measure publish to deliver latency. Clients
+ * of the broker transports extend this to send messages through the transport.
+ */
+abstract class LoadPublisher implements Runnable {
+
+    private static final Logger log = Logger.getLogger(LoadPublisher.class);
+
+    private final long messageCount;
+
+    /**
+     * Number of messages sent in a transaction, 0 if messages are not sent in transactions
+     */
+    private final int transactionBatchSize;
+
+    private final Throttle throttle;
+
+    private volatile long sentCount;
+
+    private volatile long firstSendNanos;
+
+    private volatile long lastSendNanos;
+
+    private volatile Exception error;
+
+    /**
+     * @param messageCount         number of messages to send
+     * @param rate                 maximum number of messages sent per second, 0 for no limit
+     * @param transactionBatchSize number of messages sent in a transaction, 0 if not transacted
+     */
+    LoadPublisher(long messageCount, int rate, int transactionBatchSize) {
+        this.messageCount = messageCount;
+        this.transactionBatchSize = transactionBatchSize;
+        if (rate > 0) {
+            throttle = new BatchedThrottle();
+            throttle.setRate(rate);
+        } else {
+            throttle = null;
+        }
+    }
+
+    /**
+     * Connect to the broker
+     *
+     * @throws Exception if the connection could not be made
+     */
+    abstract void open() throws Exception;
+
+    /**
+     * Send a message
+     *
+     * @param sequence      sequence number of the message within this publisher
+     * @param sendTimeNanos {@link System#nanoTime()} at sending
+     * @throws Exception if the message could not be sent
+     */
+    abstract void publish(long sequence, long sendTimeNanos) throws Exception;
+
+    /**
+     * Commit messages sent since the last commit
+     *
+     * @throws Exception if the transaction could not be committed
+     */
+    abstract void commit() throws Exception;
+
+    /**
+     * Wait until the broker confirmed all sent messages, for transports which send asynchronously
+     *
+     * @throws Exception if waiting was interrupted or failed
+     */
+    void flush() throws Exception {
+    }
+
+    /**
+     * Disconnect from the broker
+     */
+    abstract void close();
+
+    @Override
+    public void run() {
+        try {
+            firstSendNanos = System.nanoTime();
+            for (long sequence = 0; sequence < messageCount; sequence++) {
+                if (null != throttle) {
+                    throttle.throttle();
+                }
+                publish(sequence, System.nanoTime());
+                sentCount = sequence + 1;
+                if (transactionBatchSize > 0 && sentCount % transactionBatchSize == 0) {
+                    commit();
+                }
+            }
+            if (transactionBatchSize > 0 && sentCount % transactionBatchSize != 0) {
+                commit();
+            }
+            flush();
+        } catch (Exception e) {
+            error = e;
+            log.error("Publisher stopped after sending " + sentCount + " messages", e);
+        } finally {
+            lastSendNanos = System.nanoTime();
+            close();
+        }
+    }
+
+    long getSentCount() {
+        return sentCount;
+    }
+
+    long getFirstSendNanos() {
+        return firstSendNanos;
+    }
+
+    long getLastSendNanos() {
+        return lastSendNanos;
+    }
+
+    /**
+     * @return error which stopped the publisher, null if all messages were sent
+     */
+    Exception getError() {
+        return error;
+    }
+}
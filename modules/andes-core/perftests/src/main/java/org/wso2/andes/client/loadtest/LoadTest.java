@@ -0,0 +1,546 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import com.google.gson.GsonBuilder;
+import org.apache.log4j.Logger;
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage.QOSType;
+import org.wso2.andes.client.requestreply.PingPongProducer;
+import org.wso2.andes.configuration.ClientProperties;
+import org.wso2.andes.junit.extensions.util.CommandLineParser;
+import org.wso2.andes.junit.extensions.util.ParsedProperties;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Load test of the broker with publishers and consumers connecting over loopback. By default a broker is started
+ * in this JVM with the H2 in-memory stores (see {@link EmbeddedBroker}) so that a load test needs nothing else to
+ * run. Results are written as JSON.
+ * <p/>
+ * Options are given as name=value arguments or system properties. Options shared with {@link PingPongProducer} have
+ * the same names.
+ * <p/><table><caption>Options</caption>
+ * <tr><th> Option           <th> Default    <th> Comments
+ * <tr><td> workload         <td> queue      <td> queue, topic or durable_topic.
+ * <tr><td> protocol         <td> amqp       <td> amqp or mqtt. MQTT supports topic workloads only.
+ * <tr><td> publishers       <td> 1          <td> Number of publishers, each with its own connection.
+ * <tr><td> consumers        <td> 1          <td> Number of consumers, each with its own connection.
+ * <tr><td> messageCount     <td> 10000      <td> Number of messages sent by each publisher.
+ * <tr><td> messageSize      <td> 1024       <td> Message content size in bytes.
+ * <tr><td> destinationName  <td> loadtest   <td> Queue or topic name.
+ * <tr><td> persistent       <td> false      <td> Send persistent AMQP messages.
+ * <tr><td> transacted       <td> false      <td> Send and receive AMQP messages in transactions.
+ * <tr><td> commitBatchSize  <td> 1          <td> Number of messages per transaction.
+ * <tr><td> selector         <td>            <td> AMQP message selector of consumers. Messages have an int property
+ *                                                "partition" in [0, 10), e.g. "partition &lt; 5" selects half.
+ * <tr><td> rate             <td> 0          <td> Maximum messages per second of each publisher, 0 for no limit.
+ * <tr><td> rates            <td>            <td> Comma separated publish rates, e.g. "100,10000". If set the load
+ *                                                test runs once per rate against the same broker instead of once at
+ *                                                rate, and reports the latency percentiles of each rate together.
+ *                                                Running this with two broker configurations compares broker
+ *                                                settings at low and high load, e.g. adaptive slot sizing.
+ * <tr><td> mqttQos          <td> 1          <td> QoS of MQTT messages, 0 or 1.
+ * <tr><td> ackBatchSize     <td> 1          <td> Number of AMQP messages consumers acknowledge with a single
+ *                                                acknowledgement, 1 to acknowledge messages one by one.
+ * <tr><td> ackBatchDelay    <td> 100        <td> Maximum milliseconds a batched acknowledgement is held.
+ * <tr><td> timeout          <td> 30000      <td> Milliseconds without messages after publishing is done after
+ *                                                which consumers stop.
+ * <tr><td> embedded         <td> true       <td> Start a broker in this JVM. If false connect to a running broker.
+ * <tr><td> host             <td> localhost  <td> Broker host.
+ * <tr><td> amqpPort         <td> 5672       <td> AMQP port.
+ * <tr><td> mqttPort         <td> 1883       <td> MQTT port.
+ * <tr><td> qpidConfig       <td> ${QPID_HOME}/etc/config.xml <td> Qpid configuration of the embedded broker.
+ * <tr><td> username         <td> guest      <td> AMQP user name.
+ * <tr><td> password         <td> guest      <td> AMQP password.
+ * <tr><td> virtualHost      <td>            <td> AMQP virtual host.
+ * <tr><td> resultFile       <td> loadtest-result.json <td> File the JSON results are written to.
+ * </table>
+ */
+public class LoadTest {
+
+    private static final Logger log = Logger.getLogger(LoadTest.class);
+
+    public static final String WORKLOAD_PROPNAME = "workload";
+
+    public static final String WORKLOAD_DEFAULT = "queue";
+
+    public static final String PROTOCOL_PROPNAME = "protocol";
+
+    public static final String PROTOCOL_AMQP = "amqp";
+
+    public static final String PROTOCOL_MQTT = "mqtt";
+
+    public static final String PUBLISHER_COUNT_PROPNAME = "publishers";
+
+    public static final int PUBLISHER_COUNT_DEFAULT = 1;
+
+    public static final String CONSUMER_COUNT_PROPNAME = "consumers";
+
+    public static final int CONSUMER_COUNT_DEFAULT = 1;
+
+    public static final String MESSAGE_COUNT_PROPNAME = "messageCount";
+
+    public static final long MESSAGE_COUNT_DEFAULT = 10000;
+
+    public static final int MESSAGE_SIZE_DEFAULT = 1024;
+
+    public static final String DESTINATION_NAME_DEFAULT = "loadtest";
+
+    public static final String RATES_PROPNAME = "rates";
+
+    public static final String RATES_DEFAULT = "";
+
+    public static final String MQTT_QOS_PROPNAME = "mqttQos";
+
+    public static final int MQTT_QOS_DEFAULT = 1;
+
+    public static final String ACK_BATCH_SIZE_PROPNAME = "ackBatchSize";
+
+    public static final String ACK_BATCH_DELAY_PROPNAME = "ackBatchDelay";
+
+    public static final String EMBEDDED_PROPNAME = "embedded";
+
+    public static final boolean EMBEDDED_DEFAULT = true;
+
+    public static final String HOST_PROPNAME = "host";
+
+    public static final String HOST_DEFAULT = "localhost";
+
+    public static final String AMQP_PORT_PROPNAME = "amqpPort";
+
+    public static final int AMQP_PORT_DEFAULT = 5672;
+
+    public static final String MQTT_PORT_PROPNAME = "mqttPort";
+
+    public static final int MQTT_PORT_DEFAULT = 1883;
+
+    public static final String QPID_CONFIG_PROPNAME = "qpidConfig";
+
+    public static final String RESULT_FILE_PROPNAME = "resultFile";
+
+    public static final String RESULT_FILE_DEFAULT = "loadtest-result.json";
+
+    public static final ParsedProperties defaults = new ParsedProperties();
+
+    static {
+        defaults.setPropertyIfNull(WORKLOAD_PROPNAME, WORKLOAD_DEFAULT);
+        defaults.setPropertyIfNull(PROTOCOL_PROPNAME, PROTOCOL_AMQP);
+        defaults.setPropertyIfNull(PUBLISHER_COUNT_PROPNAME, PUBLISHER_COUNT_DEFAULT);
+        defaults.setPropertyIfNull(CONSUMER_COUNT_PROPNAME, CONSUMER_COUNT_DEFAULT);
+        defaults.setPropertyIfNull(MESSAGE_COUNT_PROPNAME, MESSAGE_COUNT_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.MESSAGE_SIZE_PROPNAME, MESSAGE_SIZE_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.PING_QUEUE_NAME_PROPNAME, DESTINATION_NAME_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.PERSISTENT_MODE_PROPNAME,
+                PingPongProducer.PERSISTENT_MODE_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.TRANSACTED_PROPNAME, PingPongProducer.TRANSACTED_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.TX_BATCH_SIZE_PROPNAME, PingPongProducer.TX_BATCH_SIZE_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.SELECTOR_PROPNAME, PingPongProducer.SELECTOR_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.RATE_PROPNAME, PingPongProducer.RATE_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.TIMEOUT_PROPNAME, PingPongProducer.TIMEOUT_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.USERNAME_PROPNAME, PingPongProducer.USERNAME_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.PASSWORD_PROPNAME, PingPongProducer.PASSWORD_DEFAULT);
+        defaults.setPropertyIfNull(PingPongProducer.VIRTUAL_HOST_PROPNAME, PingPongProducer.VIRTUAL_HOST_DEFAULT);
+        defaults.setPropertyIfNull(RATES_PROPNAME, RATES_DEFAULT);
+        defaults.setPropertyIfNull(MQTT_QOS_PROPNAME, MQTT_QOS_DEFAULT);
+        defaults.setPropertyIfNull(ACK_BATCH_SIZE_PROPNAME, ClientProperties.ACK_BATCH_SIZE_DEFAULT);
+        defaults.setPropertyIfNull(ACK_BATCH_DELAY_PROPNAME, ClientProperties.ACK_BATCH_DELAY_DEFAULT);
+        defaults.setPropertyIfNull(EMBEDDED_PROPNAME, EMBEDDED_DEFAULT);
+        defaults.setPropertyIfNull(HOST_PROPNAME, HOST_DEFAULT);
+        defaults.setPropertyIfNull(AMQP_PORT_PROPNAME, AMQP_PORT_DEFAULT);
+        defaults.setPropertyIfNull(MQTT_PORT_PROPNAME, MQTT_PORT_DEFAULT);
+        defaults.setPropertyIfNull(QPID_CONFIG_PROPNAME,
+                System.getProperty("QPID_HOME") + File.separator + "etc" + File.separator + "config.xml");
+        defaults.setPropertyIfNull(RESULT_FILE_PROPNAME, RESULT_FILE_DEFAULT);
+    }
+
+    private final Workload workload;
+
+    private final boolean mqtt;
+
+    private final int publisherCount;
+
+    private final int consumerCount;
+
+    private final long messageCount;
+
+    private final int messageSize;
+
+    private final String destinationName;
+
+    private final boolean persistent;
+
+    /**
+     * Number of messages per transaction, 0 if not transacted
+     */
+    private final int transactionBatchSize;
+
+    private final String selector;
+
+    private final int rate;
+
+    /**
+     * Publish rates of successive runs, empty to run once at {@link #rate}
+     */
+    private final List<Integer> rates;
+
+    private final QOSType mqttQos;
+
+    private final long idleTimeoutMillis;
+
+    private final int ackBatchSize;
+
+    private final long ackBatchDelay;
+
+    private final boolean embedded;
+
+    private final String host;
+
+    private final int amqpPort;
+
+    private final int mqttPort;
+
+    private final String qpidConfig;
+
+    private final String username;
+
+    private final String password;
+
+    private final String virtualHost;
+
+    private final File resultFile;
+
+    /**
+     * Create a load test
+     *
+     * @param overrides options overriding the {@link #defaults}
+     */
+    public LoadTest(Properties overrides) {
+        ParsedProperties properties = new ParsedProperties(defaults);
+        properties.putAll(overrides);
+
+        workload = Workload.parse(properties.getProperty(WORKLOAD_PROPNAME));
+        String protocol = properties.getProperty(PROTOCOL_PROPNAME);
+        if (!PROTOCOL_AMQP.equalsIgnoreCase(protocol) && !PROTOCOL_MQTT.equalsIgnoreCase(protocol)) {
+            throw new IllegalArgumentException("Unknown protocol " + protocol);
+        }
+        mqtt = PROTOCOL_MQTT.equalsIgnoreCase(protocol);
+        publisherCount = properties.getPropertyAsInteger(PUBLISHER_COUNT_PROPNAME);
+        consumerCount = properties.getPropertyAsInteger(CONSUMER_COUNT_PROPNAME);
+        messageCount = properties.getPropertyAsLong(MESSAGE_COUNT_PROPNAME);
+        messageSize = properties.getPropertyAsInteger(PingPongProducer.MESSAGE_SIZE_PROPNAME);
+        destinationName = properties.getProperty(PingPongProducer.PING_QUEUE_NAME_PROPNAME);
+        persistent = properties.getPropertyAsBoolean(PingPongProducer.PERSISTENT_MODE_PROPNAME);
+        transactionBatchSize = properties.getPropertyAsBoolean(PingPongProducer.TRANSACTED_PROPNAME)
+                ? properties.getPropertyAsInteger(PingPongProducer.TX_BATCH_SIZE_PROPNAME) : 0;
+        selector = properties.getProperty(PingPongProducer.SELECTOR_PROPNAME);
+        rate = properties.getPropertyAsInteger(PingPongProducer.RATE_PROPNAME);
+        rates = new ArrayList<>();
+        for (String runRate : properties.getProperty(RATES_PROPNAME).split(",")) {
+            if (!runRate.trim().isEmpty()) {
+                rates.add(Integer.parseInt(runRate.trim()));
+            }
+        }
+        mqttQos = QOSType.valueOf(properties.getPropertyAsInteger(MQTT_QOS_PROPNAME));
+        idleTimeoutMillis = properties.getPropertyAsLong(PingPongProducer.TIMEOUT_PROPNAME);
+        ackBatchSize = properties.getPropertyAsInteger(ACK_BATCH_SIZE_PROPNAME);
+        ackBatchDelay = properties.getPropertyAsLong(ACK_BATCH_DELAY_PROPNAME);
+        embedded = properties.getPropertyAsBoolean(EMBEDDED_PROPNAME);
+        host = properties.getProperty(HOST_PROPNAME);
+        amqpPort = properties.getPropertyAsInteger(AMQP_PORT_PROPNAME);
+        mqttPort = properties.getPropertyAsInteger(MQTT_PORT_PROPNAME);
+        qpidConfig = properties.getProperty(QPID_CONFIG_PROPNAME);
+        username = properties.getProperty(PingPongProducer.USERNAME_PROPNAME);
+        password = properties.getProperty(PingPongProducer.PASSWORD_PROPNAME);
+        virtualHost = properties.getProperty(PingPongProducer.VIRTUAL_HOST_PROPNAME);
+        resultFile = new File(properties.getProperty(RESULT_FILE_PROPNAME));
+
+        if (publisherCount < 1 || consumerCount < 1) {
+            throw new IllegalArgumentException("There must be at least one publisher and one consumer.");
+        }
+        if (mqtt) {
+            if (!workload.isTopic()) {
+                throw new IllegalArgumentException("MQTT supports topic workloads only.");
+            }
+            if (transactionBatchSize > 0 || !selector.isEmpty()) {
+                throw new IllegalArgumentException("MQTT does not support transactions or selectors.");
+            }
+            if (QOSType.MOST_ONE != mqttQos && QOSType.LEAST_ONE != mqttQos) {
+                throw new IllegalArgumentException("MQTT QoS must be 0 or 1.");
+            }
+        }
+    }
+
+    /**
+     * Run the load test, starting and stopping the embedded broker if enabled
+     *
+     * @return results of the load test
+     * @throws Exception if the broker could not be started or clients could not connect
+     */
+    public Map<String, Object> run() throws Exception {
+        EmbeddedBroker broker = null;
+        if (embedded) {
+            broker = new EmbeddedBroker(new File(qpidConfig), amqpPort, mqttPort);
+            broker.start();
+        }
+        try {
+            if (rates.isEmpty()) {
+                return runClients(rate);
+            }
+            return runRates();
+        } finally {
+            if (null != broker) {
+                broker.stop();
+            }
+        }
+    }
+
+    /**
+     * Run the clients once per rate of {@link #rates}. The result has the results of each run and the latency
+     * percentiles of all runs keyed by rate, along with the total errors of all runs.
+     */
+    private Map<String, Object> runRates() throws Exception {
+        List<Map<String, Object>> runs = new ArrayList<>(rates.size());
+        Map<String, Object> latencyByRate = new LinkedHashMap<>();
+        int publisherErrors = 0;
+        int consumerErrors = 0;
+        for (int runRate : rates) {
+            Map<String, Object> run = runClients(runRate);
+            runs.add(run);
+            publisherErrors = publisherErrors + (Integer) run.get("publisherErrors");
+            consumerErrors = consumerErrors + (Integer) run.get("consumerErrors");
+
+            Map<?, ?> latency = (Map<?, ?>) run.get("latencyMicros");
+            Map<String, Object> percentiles = new LinkedHashMap<>();
+            percentiles.put("p50", latency.get("p50"));
+            percentiles.put("p99", latency.get("p99"));
+            percentiles.put("receiveThroughput", run.get("receiveThroughput"));
+            latencyByRate.put(Integer.toString(runRate), percentiles);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("latencyByRate", latencyByRate);
+        result.put("publisherErrors", publisherErrors);
+        result.put("consumerErrors", consumerErrors);
+        result.put("runs", runs);
+        return result;
+    }
+
+    /**
+     * Run publishers and consumers once
+     *
+     * @param rate maximum messages per second of each publisher, 0 for no limit
+     * @return results of the run
+     */
+    private Map<String, Object> runClients(int rate) throws Exception {
+        // Sessions read acknowledgement batching options when they are created
+        System.setProperty(ClientProperties.ACK_BATCH_SIZE_PROP_NAME, Integer.toString(ackBatchSize));
+        System.setProperty(ClientProperties.ACK_BATCH_DELAY_PROP_NAME, Long.toString(ackBatchDelay));
+
+        LoadTestProgress progress = new LoadTestProgress(getExpectedReceiveCount());
+
+        // Consumers subscribe before publishing starts so that topic consumers receive every message
+        List<LoadConsumer> consumers = new ArrayList<>(consumerCount);
+        for (int i = 0; i < consumerCount; i++) {
+            LoadConsumer consumer = createConsumer(i, progress);
+            consumer.open();
+            consumers.add(consumer);
+        }
+        List<LoadPublisher> publishers = new ArrayList<>(publisherCount);
+        for (int i = 0; i < publisherCount; i++) {
+            LoadPublisher publisher = createPublisher(i, rate);
+            publisher.open();
+            publishers.add(publisher);
+        }
+
+        log.info("Starting " + workload + " load test with " + publisherCount + " publishers and " + consumerCount
+                + " consumers" + (rate > 0 ? " at " + rate + " messages per second per publisher" : ""));
+        ResourceUsage startUsage = ResourceUsage.snapshot();
+        List<Thread> consumerThreads = startThreads(consumers, "loadtest-consumer-");
+        List<Thread> publisherThreads = startThreads(publishers, "loadtest-publisher-");
+        for (Thread thread : publisherThreads) {
+            thread.join();
+        }
+        progress.publishingDone();
+        for (Thread thread : consumerThreads) {
+            thread.join();
+        }
+        ResourceUsage endUsage = ResourceUsage.snapshot();
+
+        return createResult(publishers, consumers, rate, startUsage, endUsage);
+    }
+
+    /**
+     * Number of messages consumers receive when every message is delivered, -1 if a selector filters messages
+     */
+    private long getExpectedReceiveCount() {
+        if (!selector.isEmpty()) {
+            return -1;
+        }
+        long publishedCount = publisherCount * messageCount;
+        return workload.isTopic() ? publishedCount * consumerCount : publishedCount;
+    }
+
+    private LoadConsumer createConsumer(int index, LoadTestProgress progress) {
+        String clientID = "loadtest_consumer_" + index;
+        if (mqtt) {
+            return new MQTTConsumer(host, mqttPort, clientID, destinationName, mqttQos,
+                    Workload.DURABLE_TOPIC == workload, progress, idleTimeoutMillis);
+        }
+        return new AMQPConsumer(getConnectionURL(clientID), workload, destinationName, selector,
+                "loadtest_subscription_" + index, progress, idleTimeoutMillis, transactionBatchSize);
+    }
+
+    private LoadPublisher createPublisher(int index, int rate) {
+        String clientID = "loadtest_publisher_" + index;
+        if (mqtt) {
+            return new MQTTPublisher(host, mqttPort, clientID, destinationName, mqttQos, messageSize, messageCount,
+                    rate);
+        }
+        return new AMQPPublisher(getConnectionURL(clientID), workload, destinationName, messageSize, persistent,
+                messageCount, rate, transactionBatchSize);
+    }
+
+    private String getConnectionURL(String clientID) {
+        return "amqp://" + username + ":" + password + "@" + clientID + "/" + virtualHost
+                + "?brokerlist='tcp://" + host + ":" + amqpPort + "'";
+    }
+
+    private static List<Thread> startThreads(List<? extends Runnable> clients, String namePrefix) {
+        List<Thread> threads = new ArrayList<>(clients.size());
+        for (int i = 0; i < clients.size(); i++) {
+            Thread thread = new Thread(clients.get(i), namePrefix + i);
+            thread.start();
+            threads.add(thread);
+        }
+        return threads;
+    }
+
+    private Map<String, Object> createResult(List<LoadPublisher> publishers, List<LoadConsumer> consumers, int rate,
+                                             ResourceUsage startUsage, ResourceUsage endUsage) {
+        long publishedCount = 0;
+        int publisherErrors = 0;
+        long firstSendNanos = Long.MAX_VALUE;
+        long lastSendNanos = 0;
+        for (LoadPublisher publisher : publishers) {
+            publishedCount = publishedCount + publisher.getSentCount();
+            firstSendNanos = Math.min(firstSendNanos, publisher.getFirstSendNanos());
+            lastSendNanos = Math.max(lastSendNanos, publisher.getLastSendNanos());
+            if (null != publisher.getError()) {
+                publisherErrors++;
+            }
+        }
+
+        long receivedCount = 0;
+        int consumerErrors = 0;
+        long lastReceiveNanos = firstSendNanos;
+        List<LatencyRecorder> latencyRecorders = new ArrayList<>(consumers.size());
+        for (LoadConsumer consumer : consumers) {
+            receivedCount = receivedCount + consumer.getReceivedCount();
+            lastReceiveNanos = Math.max(lastReceiveNanos, consumer.getLastReceiveNanos());
+            latencyRecorders.add(consumer.getLatencyRecorder());
+            if (null != consumer.getError()) {
+                consumerErrors++;
+            }
+        }
+
+        Map<String, Object> configuration = new LinkedHashMap<>();
+        configuration.put(WORKLOAD_PROPNAME, workload.name().toLowerCase());
+        configuration.put(PROTOCOL_PROPNAME, mqtt ? PROTOCOL_MQTT : PROTOCOL_AMQP);
+        configuration.put(PUBLISHER_COUNT_PROPNAME, publisherCount);
+        configuration.put(CONSUMER_COUNT_PROPNAME, consumerCount);
+        configuration.put(MESSAGE_COUNT_PROPNAME, messageCount);
+        configuration.put(PingPongProducer.MESSAGE_SIZE_PROPNAME, messageSize);
+        configuration.put(PingPongProducer.PERSISTENT_MODE_PROPNAME, persistent);
+        configuration.put(PingPongProducer.TX_BATCH_SIZE_PROPNAME, transactionBatchSize);
+        configuration.put(PingPongProducer.SELECTOR_PROPNAME, selector);
+        configuration.put(PingPongProducer.RATE_PROPNAME, rate);
+        if (mqtt) {
+            configuration.put(MQTT_QOS_PROPNAME, mqttQos.getValue());
+        } else {
+            configuration.put(ACK_BATCH_SIZE_PROPNAME, ackBatchSize);
+            configuration.put(ACK_BATCH_DELAY_PROPNAME, ackBatchDelay);
+        }
+        configuration.put(EMBEDDED_PROPNAME, embedded);
+
+        double publishSeconds = (lastSendNanos - firstSendNanos) / 1e9;
+        double receiveSeconds = (lastReceiveNanos - firstSendNanos) / 1e9;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("configuration", configuration);
+        result.put("publishedMessages", publishedCount);
+        result.put("receivedMessages", receivedCount);
+        result.put("publisherErrors", publisherErrors);
+        result.put("consumerErrors", consumerErrors);
+        result.put("publishSeconds", publishSeconds);
+        result.put("publishThroughput", publishSeconds > 0 ? publishedCount / publishSeconds : 0);
+        // From the first message sent to the last message received
+        result.put("receiveSeconds", receiveSeconds);
+        result.put("receiveThroughput", receiveSeconds > 0 ? receivedCount / receiveSeconds : 0);
+        result.put("latencyMicros", LatencyRecorder.summarize(latencyRecorders));
+        result.put("garbageCollection", endUsage.getCollectionsSince(startUsage));
+        result.put("allocationBytesPerSecond", endUsage.getAllocationRateSince(startUsage));
+        double cpuSeconds = endUsage.getCpuSecondsSince(startUsage);
+        // CPU of the broker and the clients together when the broker is embedded
+        result.put("cpuSeconds", cpuSeconds);
+        result.put("cpuMicrosPerMessage",
+                (cpuSeconds > 0 && receivedCount > 0) ? cpuSeconds * 1e6 / receivedCount : -1);
+        return result;
+    }
+
+    /**
+     * Write results as JSON to the result file
+     *
+     * @param result results of a load test
+     * @throws IOException if the file could not be written
+     */
+    public void writeResult(Map<String, Object> result) throws IOException {
+        Writer writer = new FileWriter(resultFile);
+        try {
+            new GsonBuilder().setPrettyPrinting().create().toJson(result, writer);
+        } finally {
+            writer.close();
+        }
+        log.info("Load test results written to " + resultFile.getAbsolutePath());
+    }
+
+    public static void main(String[] args) {
+        try {
+            Properties options = CommandLineParser.processCommandLine(args,
+                    new CommandLineParser(new String[][]{}), System.getProperties());
+            LoadTest loadTest = new LoadTest(options);
+            Map<String, Object> result = loadTest.run();
+            loadTest.writeResult(result);
+
+            int errors = (Integer) result.get("publisherErrors") + (Integer) result.get("consumerErrors");
+            System.exit(errors > 0 ? 1 : 0);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            log.error("Load test failed.", e);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a load test shared by its publishers and consumers. Consumers finish when the expected number of
+ * messages is received, or when the expected number is not known, e.g. with selectors, once publishing is done
+ * and no message is received for the idle timeout.
+ */
+class LoadTestProgress {
+
+    /**
+     * Number of messages consumers are expected to receive, -1 if not known
+     */
+    private final long expectedReceiveCount;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private volatile boolean publishingDone = false;
+
+    /**
+     * @param expectedReceiveCount number of messages consumers are expected to receive, -1 if not known
+     */
+    LoadTestProgress(long expectedReceiveCount) {
+        this.expectedReceiveCount = expectedReceiveCount;
+    }
+
+    /**
+     * Count a message received by a consumer
+     */
+    void messageReceived() {
+        receivedCount.incrementAndGet();
+    }
+
+    /**
+     * Mark that all publishers are done, successfully or not
+     */
+    void publishingDone() {
+        publishingDone = true;
+    }
+
+    boolean isPublishingDone() {
+        return publishingDone;
+    }
+
+    /**
+     * @return true if consumers received all expected messages
+     */
+    boolean isReceivingDone() {
+        return expectedReceiveCount >= 0 && receivedCount.get() >= expectedReceiveCount;
+    }
+
+    long getReceivedCount() {
+        return receivedCount.get();
+    }
+}
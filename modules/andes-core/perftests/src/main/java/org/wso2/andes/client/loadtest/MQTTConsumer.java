@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage.QOSType;
+import org.dna.mqtt.moquette.proto.messages.PublishMessage;
+
+/**
+ * Consumer receiving messages through the MQTT transport. A durable consumer connects without a clean session so
+ * that the broker keeps its subscription.
+ */
+class MQTTConsumer extends LoadConsumer {
+
+    private final String host;
+
+    private final int port;
+
+    private final String clientID;
+
+    private final String topic;
+
+    private final QOSType qos;
+
+    private final boolean durable;
+
+    private final MQTTLoopbackClient client = new MQTTLoopbackClient();
+
+    /**
+     * @param host              broker host
+     * @param port              MQTT port of the broker
+     * @param clientID          MQTT client ID unique to this consumer
+     * @param topic             topic name or filter to subscribe to
+     * @param qos               maximum QoS of delivered messages
+     * @param durable           true to keep the subscription while disconnected
+     * @param progress          progress shared by publishers and consumers of the load test
+     * @param idleTimeoutMillis time without messages after publishing is done after which the consumer stops
+     */
+    MQTTConsumer(String host, int port, String clientID, String topic, QOSType qos, boolean durable,
+                 LoadTestProgress progress, long idleTimeoutMillis) {
+        super(progress, idleTimeoutMillis, 0);
+        this.host = host;
+        this.port = port;
+        this.clientID = clientID;
+        this.topic = topic;
+        this.qos = qos;
+        this.durable = durable;
+    }
+
+    @Override
+    void open() throws Exception {
+        client.connect(host, port, clientID, !durable);
+        client.subscribe(topic, qos);
+    }
+
+    @Override
+    long receive(long timeoutMillis) throws InterruptedException {
+        PublishMessage message = client.poll(timeoutMillis);
+        if (null == message) {
+            return NO_MESSAGE;
+        }
+        return message.getPayload().getLong(0);
+    }
+
+    @Override
+    void commit() {
+        throw new UnsupportedOperationException("MQTT does not support transactions");
+    }
+
+    @Override
+    void close() {
+        client.disconnect();
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.dna.mqtt.moquette.parser.netty.MQTTDecoder;
+import org.dna.mqtt.moquette.parser.netty.MQTTEncoder;
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage;
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage.QOSType;
+import org.dna.mqtt.moquette.proto.messages.ConnAckMessage;
+import org.dna.mqtt.moquette.proto.messages.ConnectMessage;
+import org.dna.mqtt.moquette.proto.messages.DisconnectMessage;
+import org.dna.mqtt.moquette.proto.messages.PubAckMessage;
+import org.dna.mqtt.moquette.proto.messages.PublishMessage;
+import org.dna.mqtt.moquette.proto.messages.SubscribeMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal MQTT 3.1 client for load tests, built on the MQTT codec of the broker. It supports QoS 0 and 1 publishing
+ * and subscribing, which is what the load test needs, and nothing else.
+ * <p/>
+ * QoS 1 messages are published without waiting for each acknowledgement. At most {@link #MAX_IN_FLIGHT} messages
+ * are unacknowledged at a time so that message IDs are not reused while in flight.
+ */
+class MQTTLoopbackClient {
+
+    /**
+     * Maximum number of QoS 1 messages published and not yet acknowledged
+     */
+    private static final int MAX_IN_FLIGHT = 1024;
+
+    private static final int MAX_MESSAGE_ID = 65535;
+
+    private static final int KEEP_ALIVE_SECONDS = 60;
+
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+
+    private final EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+
+    private final Semaphore inFlightPermits = new Semaphore(MAX_IN_FLIGHT);
+
+    private final BlockingQueue<PublishMessage> receivedMessages = new LinkedBlockingQueue<>();
+
+    private final CountDownLatch connectLatch = new CountDownLatch(1);
+
+    private final CountDownLatch subscribeLatch = new CountDownLatch(1);
+
+    private volatile byte connectReturnCode = -1;
+
+    private Channel channel;
+
+    private int nextMessageID = 1;
+
+    /**
+     * Connect to the broker
+     *
+     * @param host         broker host
+     * @param port         MQTT port of the broker
+     * @param clientID     MQTT client ID
+     * @param cleanSession false to keep the subscriptions of the client while it is disconnected
+     * @throws IOException          if the broker did not accept the connection
+     * @throws InterruptedException if interrupted while waiting for the broker
+     */
+    void connect(String host, int port, String clientID, boolean cleanSession)
+            throws IOException, InterruptedException {
+        Bootstrap bootstrap = new Bootstrap();
+        bootstrap.group(eventLoopGroup)
+                .channel(NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast("decoder", new MQTTDecoder());
+                        ch.pipeline().addLast("encoder", new MQTTEncoder());
+                        ch.pipeline().addLast("handler", new ResponseHandler());
+                    }
+                });
+        channel = bootstrap.connect(host, port).sync().channel();
+
+        ConnectMessage connectMessage = new ConnectMessage();
+        connectMessage.setProtocolName("MQIsdp");
+        connectMessage.setProcotolVersion((byte) 3);
+        connectMessage.setClientID(clientID);
+        connectMessage.setCleanSession(cleanSession);
+        connectMessage.setKeepAlive(KEEP_ALIVE_SECONDS);
+        channel.writeAndFlush(connectMessage);
+
+        if (!connectLatch.await(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("No connection acknowledgement from " + host + ":" + port);
+        }
+        if (ConnAckMessage.CONNECTION_ACCEPTED != connectReturnCode) {
+            throw new IOException("Connection refused by broker with return code " + connectReturnCode);
+        }
+    }
+
+    /**
+     * Subscribe to a topic
+     *
+     * @param topic topic name or filter
+     * @param qos   maximum QoS of delivered messages
+     * @throws IOException          if the broker did not acknowledge the subscription
+     * @throws InterruptedException if interrupted while waiting for the broker
+     */
+    void subscribe(String topic, QOSType qos) throws IOException, InterruptedException {
+        SubscribeMessage subscribeMessage = new SubscribeMessage();
+        subscribeMessage.setQos(QOSType.LEAST_ONE);
+        subscribeMessage.setMessageID(nextMessageID());
+        subscribeMessage.addSubscription(new SubscribeMessage.Couple((byte) qos.getValue(), topic));
+        channel.writeAndFlush(subscribeMessage);
+        if (!subscribeLatch.await(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("No subscription acknowledgement for " + topic);
+        }
+    }
+
+    /**
+     * Publish a message. QoS 1 messages wait while {@link #MAX_IN_FLIGHT} messages are unacknowledged.
+     *
+     * @param topic   topic name
+     * @param qos     QoS 0 or 1
+     * @param payload message payload
+     * @throws InterruptedException if interrupted while waiting to send
+     */
+    void publish(String topic, QOSType qos, byte[] payload) throws InterruptedException {
+        PublishMessage publishMessage = new PublishMessage();
+        publishMessage.setTopicName(topic);
+        publishMessage.setQos(qos);
+        publishMessage.setPayload(ByteBuffer.wrap(payload));
+        if (QOSType.LEAST_ONE == qos) {
+            inFlightPermits.acquire();
+            publishMessage.setMessageID(nextMessageID());
+        }
+        ChannelFuture writeFuture = channel.writeAndFlush(publishMessage);
+        if (!channel.isWritable()) {
+            // Wait for the socket to drain instead of queueing messages without a bound
+            writeFuture.sync();
+        }
+    }
+
+    /**
+     * Wait until the broker acknowledged all published QoS 1 messages
+     *
+     * @throws IOException          if acknowledgements did not arrive in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void awaitAcknowledgements() throws IOException, InterruptedException {
+        if (!inFlightPermits.tryAcquire(MAX_IN_FLIGHT, RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException((MAX_IN_FLIGHT - inFlightPermits.availablePermits())
+                    + " published messages were not acknowledged");
+        }
+        inFlightPermits.release(MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Take a message delivered to a subscription of this client
+     *
+     * @param timeoutMillis maximum time to wait for a message
+     * @return delivered message, null if none arrived in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    PublishMessage poll(long timeoutMillis) throws InterruptedException {
+        return receivedMessages.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Disconnect from the broker and release the network threads
+     */
+    void disconnect() {
+        try {
+            if (null != channel && channel.isActive()) {
+                channel.writeAndFlush(new DisconnectMessage()).awaitUninterruptibly();
+                channel.close().awaitUninterruptibly();
+            }
+        } finally {
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * Message IDs are only assigned from the publishing thread and from subscribe, which is called before publishing
+     */
+    private int nextMessageID() {
+        int messageID = nextMessageID;
+        nextMessageID = (nextMessageID == MAX_MESSAGE_ID) ? 1 : nextMessageID + 1;
+        return messageID;
+    }
+
+    /**
+     * Handles messages sent by the broker
+     */
+    private class ResponseHandler extends SimpleChannelInboundHandler<AbstractMessage> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, AbstractMessage message) {
+            switch (message.getMessageType()) {
+                case AbstractMessage.CONNACK:
+                    connectReturnCode = ((ConnAckMessage) message).getReturnCode();
+                    connectLatch.countDown();
+                    break;
+                case AbstractMessage.SUBACK:
+                    subscribeLatch.countDown();
+                    break;
+                case AbstractMessage.PUBACK:
+                    inFlightPermits.release();
+                    break;
+                case AbstractMessage.PUBLISH:
+                    PublishMessage publishMessage = (PublishMessage) message;
+                    if (QOSType.LEAST_ONE == publishMessage.getQos()) {
+                        PubAckMessage pubAckMessage = new PubAckMessage();
+                        pubAckMessage.setMessageID(publishMessage.getMessageID());
+                        ctx.writeAndFlush(pubAckMessage);
+                    }
+                    receivedMessages.add(publishMessage);
+                    break;
+                default:
+                    // Other responses are not used by the load test
+                    break;
+            }
+        }
+    }
+}
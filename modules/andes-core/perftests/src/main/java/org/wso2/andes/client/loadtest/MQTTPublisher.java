@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import org.dna.mqtt.moquette.proto.messages.AbstractMessage.QOSType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Publisher sending messages through the MQTT transport. The send time is written to the first 8 bytes of the
+ * payload.
+ */
+class MQTTPublisher extends LoadPublisher {
+
+    /**
+     * Smallest payload, large enough for the send time
+     */
+    static final int MIN_PAYLOAD_SIZE = 8;
+
+    private final String host;
+
+    private final int port;
+
+    private final String clientID;
+
+    private final String topic;
+
+    private final QOSType qos;
+
+    private final int payloadSize;
+
+    private final MQTTLoopbackClient client = new MQTTLoopbackClient();
+
+    /**
+     * @param host         broker host
+     * @param port         MQTT port of the broker
+     * @param clientID     MQTT client ID unique to this publisher
+     * @param topic        topic to publish to
+     * @param qos          QoS 0 or 1
+     * @param messageSize  payload size in bytes, at least {@link #MIN_PAYLOAD_SIZE}
+     * @param messageCount number of messages to send
+     * @param rate         maximum number of messages sent per second, 0 for no limit
+     */
+    MQTTPublisher(String host, int port, String clientID, String topic, QOSType qos, int messageSize,
+                  long messageCount, int rate) {
+        super(messageCount, rate, 0);
+        this.host = host;
+        this.port = port;
+        this.clientID = clientID;
+        this.topic = topic;
+        this.qos = qos;
+        this.payloadSize = Math.max(MIN_PAYLOAD_SIZE, messageSize);
+    }
+
+    @Override
+    void open() throws Exception {
+        client.connect(host, port, clientID, true);
+    }
+
+    @Override
+    void publish(long sequence, long sendTimeNanos) throws InterruptedException {
+        // A payload is encoded after this returns, hence each message gets its own
+        byte[] payload = new byte[payloadSize];
+        ByteBuffer.wrap(payload).putLong(sendTimeNanos);
+        client.publish(topic, qos, payload);
+    }
+
+    @Override
+    void commit() {
+        throw new UnsupportedOperationException("MQTT does not support transactions");
+    }
+
+    @Override
+    void flush() throws Exception {
+        if (QOSType.LEAST_ONE == qos) {
+            client.awaitAcknowledgements();
+        }
+    }
+
+    @Override
+    void close() {
+        client.disconnect();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Garbage collection, allocation and CPU counters of the JVM at a point in time. The difference of two snapshots gives
+ * the resource usage of a load test, which includes both the broker and the clients as they share the JVM.
+ * <p/>
+ * Allocated bytes are summed over the threads alive when the snapshot is taken, hence allocations of threads that
+ * terminated in between two snapshots are not counted.
+ */
+class ResourceUsage {
+
+    private final long timeNanos;
+
+    private final Map<String, long[]> collections = new LinkedHashMap<>();
+
+    private final long allocatedBytes;
+
+    private final long cpuTimeNanos;
+
+    private ResourceUsage() {
+        timeNanos = System.nanoTime();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections.put(collector.getName(),
+                    new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+        }
+        allocatedBytes = readAllocatedBytes();
+        cpuTimeNanos = readProcessCpuTime();
+    }
+
+    /**
+     * @return counters of the JVM at this point in time
+     */
+    static ResourceUsage snapshot() {
+        return new ResourceUsage();
+    }
+
+    /**
+     * Collection count and time in milliseconds of each garbage collector since the given snapshot
+     *
+     * @param start snapshot taken at the start of the load test
+     * @return counts and times keyed by collector name
+     */
+    Map<String, Map<String, Long>> getCollectionsSince(ResourceUsage start) {
+        Map<String, Map<String, Long>> usage = new LinkedHashMap<>();
+        for (Map.Entry<String, long[]> entry : collections.entrySet()) {
+            long[] startCounters = start.collections.get(entry.getKey());
+            if (null == startCounters) {
+                continue;
+            }
+            Map<String, Long> collectorUsage = new LinkedHashMap<>();
+            collectorUsage.put("count", entry.getValue()[0] - startCounters[0]);
+            collectorUsage.put("timeMillis", entry.getValue()[1] - startCounters[1]);
+            usage.put(entry.getKey(), collectorUsage);
+        }
+        return usage;
+    }
+
+    /**
+     * Allocation rate since the given snapshot
+     *
+     * @param start snapshot taken at the start of the load test
+     * @return allocated bytes per second, -1 if the JVM does not count allocations
+     */
+    double getAllocationRateSince(ResourceUsage start) {
+        if (allocatedBytes < 0 || start.allocatedBytes < 0) {
+            return -1;
+        }
+        double seconds = (timeNanos - start.timeNanos) / 1e9;
+        return (allocatedBytes - start.allocatedBytes) / seconds;
+    }
+
+    /**
+     * CPU time used by the JVM process since the given snapshot
+     *
+     * @param start snapshot taken at the start of the load test
+     * @return CPU seconds, -1 if the JVM does not measure process CPU time
+     */
+    double getCpuSecondsSince(ResourceUsage start) {
+        if (cpuTimeNanos < 0 || start.cpuTimeNanos < 0) {
+            return -1;
+        }
+        return (cpuTimeNanos - start.cpuTimeNanos) / 1e9;
+    }
+
+    /**
+     * CPU time of the JVM process in nanoseconds, -1 if not supported
+     */
+    private static long readProcessCpuTime() {
+        OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (!(osBean instanceof com.sun.management.OperatingSystemMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.OperatingSystemMXBean) osBean).getProcessCpuTime();
+    }
+
+    /**
+     * Sum of the bytes allocated by live threads, -1 if allocation counting is not supported
+     */
+    private static long readAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long allocated : allocationBean.getThreadAllocatedBytes(allocationBean.getAllThreadIds())) {
+            // -1 is returned for threads which terminated after their ids were read
+            if (allocated > 0) {
+                total = total + allocated;
+            }
+        }
+        return total;
+    }
+}
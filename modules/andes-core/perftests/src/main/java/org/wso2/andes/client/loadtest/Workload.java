@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.andes.client.loadtest;
+
+/**
+ * Kind of destination a load test publishes to and consumes from
+ */
+enum Workload {
+
+    /**
+     * Publishers send to a queue shared by all consumers, each message is delivered to one consumer
+     */
+    QUEUE,
+
+    /**
+     * Publishers send to a topic, each message is delivered to every consumer. Messages are not kept for consumers
+     * which are not connected.
+     */
+    TOPIC,
+
+    /**
+     * Publishers send to a topic, each message is delivered to every consumer and is kept for consumers until they
+     * receive it
+     */
+    DURABLE_TOPIC;
+
+    /**
+     * Parse a workload name ignoring case, e.g. "durable_topic"
+     *
+     * @param name workload name
+     * @return workload
+     */
+    static Workload parse(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    /**
+     * @return true if each message is delivered to every consumer
+     */
+    boolean isTopic() {
+        return this != QUEUE;
+    }
+}